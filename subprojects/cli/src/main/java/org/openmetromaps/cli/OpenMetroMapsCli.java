@@ -21,6 +21,7 @@ import org.openmetromaps.cli.export.RunExportBatik;
 import org.openmetromaps.cli.export.RunExportPng;
 import org.openmetromaps.cli.graphml.RunGraphMLImport;
 import org.openmetromaps.cli.gtfs.RunGtfsImport;
+import org.openmetromaps.cli.gtfs.RunGtfsImportMulti;
 import org.openmetromaps.cli.maps.RunMapEditor;
 import org.openmetromaps.cli.maps.RunMapMorpher;
 import org.openmetromaps.cli.maps.RunMapViewer;
@@ -34,6 +35,7 @@ import org.openmetromaps.cli.osm.RunModelInspector;
 import org.openmetromaps.cli.osm.RunOsmDownloadOverpass;
 import org.openmetromaps.cli.osm.RunOsmImportFile;
 import org.openmetromaps.cli.osm.RunOsmImportOverpass;
+import org.openmetromaps.cli.osm.RunOsmImportUpdate;
 import org.openmetromaps.cli.startup.RunUiSelector;
 import org.openmetromaps.cli.util.RunFindCloseStations;
 import org.openmetromaps.cli.util.RunListChangeStations;
@@ -83,6 +85,9 @@ public class OpenMetroMapsCli
 					RunSimpleMapViewer.class);
 			options.addCommand("gtfs-import", RunGtfsImport.OPTIONS_FACTORY,
 					RunGtfsImport.class);
+			options.addCommand("gtfs-import-multi",
+					RunGtfsImportMulti.OPTIONS_FACTORY,
+					RunGtfsImportMulti.class);
 			options.addCommand("graphml-import",
 					RunGraphMLImport.OPTIONS_FACTORY, RunGraphMLImport.class);
 			options.addCommand("create-markdown-view",
@@ -106,6 +111,8 @@ public class OpenMetroMapsCli
 					RunOsmImportFile.class);
 			options.addCommand("overpass", RunOsmImportOverpass.OPTIONS_FACTORY,
 					RunOsmImportOverpass.class);
+			options.addCommand("update", RunOsmImportUpdate.OPTIONS_FACTORY,
+					RunOsmImportUpdate.class);
 			return options;
 		}
 
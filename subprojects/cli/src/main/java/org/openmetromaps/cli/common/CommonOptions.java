@@ -17,10 +17,14 @@
 
 package org.openmetromaps.cli.common;
 
+import java.io.IOException;
+import java.nio.file.Paths;
+
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.Options;
 import org.openmetromaps.maps.PlanRenderer.SegmentMode;
 import org.openmetromaps.maps.PlanRenderer.StationMode;
+import org.openmetromaps.misc.ImportMetrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -38,6 +42,7 @@ public class CommonOptions
 
 	private static final String OPTION_STATION_MODE = "station-mode";
 	private static final String OPTION_SEGMENT_MODE = "segment-mode";
+	private static final String OPTION_METRICS = "metrics";
 
 	private static String POSSIBLE_VALUES_STATION_MODE = EnumUtil
 			.buildNameList(StationMode.values(), new SimpleEnumNamer<>());
@@ -90,4 +95,25 @@ public class CommonOptions
 		return config;
 	}
 
+	public static void addMetricsOptions(Options options)
+	{
+		// @formatter:off
+		OptionHelper.addL(options, OPTION_METRICS, true, false, "file", "a file to write the JSON summary of the import's phases to");
+		// @formatter:on
+	}
+
+	/**
+	 * Print the JSON summary of the metrics and write it to the file specified
+	 * on the command line, if any.
+	 */
+	public static void emitMetrics(CommandLine line, ImportMetrics metrics)
+			throws IOException
+	{
+		System.out.println("Import summary:");
+		System.out.println(metrics.toJson());
+		if (line.hasOption(OPTION_METRICS)) {
+			metrics.writeJson(Paths.get(line.getOptionValue(OPTION_METRICS)));
+		}
+	}
+
 }
@@ -18,8 +18,6 @@
 package org.openmetromaps.cli.export;
 
 import java.io.IOException;
-import java.io.InputStream;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 
@@ -96,9 +94,7 @@ public class RunExportBatik
 			System.exit(1);
 		}
 
-		InputStream input = Files.newInputStream(pathInput);
-
-		XmlModel xmlModel = DesktopXmlModelReader.read(input);
+		XmlModel xmlModel = DesktopXmlModelReader.read(pathInput);
 
 		XmlModelConverter modelConverter = new XmlModelConverter();
 		MapModel model = modelConverter.convert(xmlModel);
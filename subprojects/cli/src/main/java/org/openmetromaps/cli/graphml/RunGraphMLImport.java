@@ -17,16 +17,14 @@
 
 package org.openmetromaps.cli.graphml;
 
-import java.io.OutputStream;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.Options;
+import org.openmetromaps.graphml.CompactGraph;
 import org.openmetromaps.graphml.GraphConverter;
-import org.openmetromaps.graphml.GraphMLReader;
-import org.openmetromaps.graphml.GraphWithData;
+import org.openmetromaps.graphml.StreamingGraphMLReader;
 import org.openmetromaps.maps.CoordinateConversionType;
 import org.openmetromaps.maps.MapModel;
 import org.openmetromaps.maps.ModelUtil;
@@ -53,7 +51,7 @@ public class RunGraphMLImport
 			Options options = new Options();
 			// @formatter:off
 			OptionHelper.addL(options, OPTION_INPUT, true, true, "file", "a source GraphML file");
-			OptionHelper.addL(options, OPTION_OUTPUT, true, true, "file", "a target model text file");
+			OptionHelper.addL(options, OPTION_OUTPUT, true, true, "file", "a target model file (compressed if ending with .gz)");
 			// @formatter:on
 			return new CommonsCliExeOptions(options, "[options]");
 		}
@@ -74,19 +72,17 @@ public class RunGraphMLImport
 		System.out.println("Input: " + pathInput);
 		System.out.println("Output: " + pathOutput);
 
-		GraphMLReader graphMLReader = new GraphMLReader();
-		GraphWithData graphWithData = graphMLReader.read(pathInput);
+		StreamingGraphMLReader graphMLReader = new StreamingGraphMLReader();
+		CompactGraph graph = graphMLReader.read(pathInput);
 
 		GraphConverter converter = new GraphConverter();
-		ModelData data = converter.convert(graphWithData);
+		ModelData data = converter.convert(graph);
 
 		MapModel model = new MapModel(data);
 		ModelUtil.ensureView(model, CoordinateConversionType.IDENTITY);
 
-		OutputStream os = Files.newOutputStream(pathOutput);
-
-		new XmlModelWriter().write(os, model.getData(), model.getViews());
-		os.close();
+		new XmlModelWriter().write(pathOutput, model.getData(),
+				model.getViews());
 	}
 
 }
@@ -17,19 +17,23 @@
 
 package org.openmetromaps.cli.gtfs;
 
-import java.io.OutputStream;
-import java.nio.file.Files;
+import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
 
+import javax.xml.parsers.ParserConfigurationException;
+
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.Options;
+import org.openmetromaps.cli.common.CommonOptions;
 import org.openmetromaps.gtfs.DraftModel;
 import org.openmetromaps.gtfs.GtfsImporter;
 import org.openmetromaps.maps.model.ModelData;
 import org.openmetromaps.maps.xml.XmlModelWriter;
+import org.openmetromaps.misc.ImportMetrics;
+import org.openmetromaps.misc.ImportPhase;
 import org.openmetromaps.misc.NameChanger;
 import org.openmetromaps.model.gtfs.DraftModelConverter;
 
@@ -45,6 +49,8 @@ public class RunGtfsImport
 	private static final String OPTION_INPUT = "input";
 	private static final String OPTION_OUTPUT = "output";
 	private static final String OPTION_FIX_BOMS = "fix-boms";
+	private static final String OPTION_PARALLEL = "parallel";
+	private static final String OPTION_SORT_MEMORY = "sort-memory";
 
 	public static ExeOptionsFactory OPTIONS_FACTORY = new ExeOptionsFactory() {
 
@@ -54,9 +60,12 @@ public class RunGtfsImport
 			Options options = new Options();
 			// @formatter:off
 			OptionHelper.addL(options, OPTION_INPUT, true, true, "file", "a source GTFS zip file");
-			OptionHelper.addL(options, OPTION_OUTPUT, true, true, "file", "a target model text file");
-			OptionHelper.addL(options, OPTION_FIX_BOMS, false, false, "whether to check for BOMs in zipped files");
+			OptionHelper.addL(options, OPTION_OUTPUT, true, true, "file", "a target model file (compressed if ending with .gz)");
+			OptionHelper.addL(options, OPTION_FIX_BOMS, false, false, "ignored, byte order marks are always skipped");
+			OptionHelper.addL(options, OPTION_PARALLEL, false, false, "read files and analyze routes concurrently");
+			OptionHelper.addL(options, OPTION_SORT_MEMORY, true, false, "megabytes", "sort stop times on disk, buffering at most this much of them in memory (trips and stops are still kept in memory)");
 			// @formatter:on
+			CommonOptions.addMetricsOptions(options);
 			return new CommonsCliExeOptions(options, "[options]");
 		}
 
@@ -69,7 +78,17 @@ public class RunGtfsImport
 
 		String argInput = line.getOptionValue(OPTION_INPUT);
 		String argOutput = line.getOptionValue(OPTION_OUTPUT);
-		boolean fixBoms = line.hasOption(OPTION_FIX_BOMS);
+		boolean parallel = line.hasOption(OPTION_PARALLEL);
+		long sortMemory = 0;
+		if (line.hasOption(OPTION_SORT_MEMORY)) {
+			String argSortMemory = line.getOptionValue(OPTION_SORT_MEMORY);
+			try {
+				sortMemory = Long.parseLong(argSortMemory) * 1024 * 1024;
+			} catch (NumberFormatException e) {
+				System.out.println("Invalid sort memory: " + argSortMemory);
+				System.exit(1);
+			}
+		}
 
 		Path pathInput = Paths.get(argInput);
 		Path pathOutput = Paths.get(argOutput);
@@ -77,6 +96,43 @@ public class RunGtfsImport
 		System.out.println("Input: " + pathInput);
 		System.out.println("Output: " + pathOutput);
 
+		NameChanger nameChanger = createNameChanger();
+
+		ImportMetrics metrics = new ImportMetrics("gtfs-import");
+
+		GtfsImporter importer = new GtfsImporter(pathInput, nameChanger);
+		importer.setParallel(parallel);
+		importer.setSortMemory(sortMemory);
+		importer.setMetrics(metrics);
+		importer.execute();
+
+		DraftModel draft = importer.getModel();
+		ModelData data = convert(metrics, draft);
+
+		write(metrics, pathOutput, data);
+
+		CommonOptions.emitMetrics(line, metrics);
+	}
+
+	static ModelData convert(ImportMetrics metrics, DraftModel draft)
+	{
+		try (ImportPhase phase = metrics.start("convert")) {
+			ModelData data = new DraftModelConverter().convert(draft);
+			phase.addEntities(data.stations.size());
+			return data;
+		}
+	}
+
+	static void write(ImportMetrics metrics, Path pathOutput, ModelData data)
+			throws ParserConfigurationException, IOException
+	{
+		try (ImportPhase phase = metrics.start("write")) {
+			new XmlModelWriter().write(pathOutput, data, new ArrayList<>());
+		}
+	}
+
+	static NameChanger createNameChanger()
+	{
 		List<String> prefixes = new ArrayList<>();
 		prefixes.add("S ");
 		prefixes.add("U ");
@@ -88,19 +144,7 @@ public class RunGtfsImport
 		suffixes.add(" H");
 		suffixes.add(" M+H");
 
-		NameChanger nameChanger = new NameChanger(prefixes, suffixes);
-
-		GtfsImporter importer = new GtfsImporter(pathInput, nameChanger,
-				fixBoms);
-		importer.execute();
-
-		OutputStream os = Files.newOutputStream(pathOutput);
-
-		DraftModel draft = importer.getModel();
-		ModelData data = new DraftModelConverter().convert(draft);
-
-		new XmlModelWriter().write(os, data, new ArrayList<>());
-		os.close();
+		return new NameChanger(prefixes, suffixes);
 	}
 
 }
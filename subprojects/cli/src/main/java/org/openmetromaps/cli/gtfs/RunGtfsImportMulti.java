@@ -0,0 +1,128 @@
+// Copyright 2019 Sebastian Kuerten
+//
+// This file is part of OpenMetroMaps.
+//
+// OpenMetroMaps is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Lesser General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// OpenMetroMaps is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with OpenMetroMaps. If not, see <http://www.gnu.org/licenses/>.
+
+package org.openmetromaps.cli.gtfs;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.Options;
+import org.openmetromaps.cli.common.CommonOptions;
+import org.openmetromaps.gtfs.DraftModel;
+import org.openmetromaps.gtfs.DraftModelMerger;
+import org.openmetromaps.gtfs.GtfsMultiImporter;
+import org.openmetromaps.maps.model.ModelData;
+import org.openmetromaps.misc.ImportMetrics;
+import org.openmetromaps.misc.NameChanger;
+
+import de.topobyte.utilities.apache.commons.cli.OptionHelper;
+import de.topobyte.utilities.apache.commons.cli.commands.args.CommonsCliArguments;
+import de.topobyte.utilities.apache.commons.cli.commands.options.CommonsCliExeOptions;
+import de.topobyte.utilities.apache.commons.cli.commands.options.ExeOptions;
+import de.topobyte.utilities.apache.commons.cli.commands.options.ExeOptionsFactory;
+
+public class RunGtfsImportMulti
+{
+
+	private static final String OPTION_INPUT = "input";
+	private static final String OPTION_OUTPUT = "output";
+	private static final String OPTION_FIX_BOMS = "fix-boms";
+	private static final String OPTION_THREADS = "threads";
+	private static final String OPTION_MERGE_DISTANCE = "merge-distance";
+	private static final String OPTION_MERGE_ANY_NAME = "merge-any-name";
+
+	private static final double DEFAULT_MERGE_DISTANCE = 200;
+
+	public static ExeOptionsFactory OPTIONS_FACTORY = new ExeOptionsFactory() {
+
+		@Override
+		public ExeOptions createOptions()
+		{
+			Options options = new Options();
+			// @formatter:off
+			OptionHelper.addL(options, OPTION_INPUT, true, true, "file", "a source GTFS zip file, specify multiple times for multiple feeds");
+			OptionHelper.addL(options, OPTION_OUTPUT, true, true, "file", "a target model file (compressed if ending with .gz)");
+			OptionHelper.addL(options, OPTION_FIX_BOMS, false, false, "ignored, byte order marks are always skipped");
+			OptionHelper.addL(options, OPTION_THREADS, true, false, "number", "number of feeds to import concurrently");
+			OptionHelper.addL(options, OPTION_MERGE_DISTANCE, true, false, "meters", "merge stations of different feeds closer than this (default: 200)");
+			OptionHelper.addL(options, OPTION_MERGE_ANY_NAME, false, false, "merge close stations even if their names differ");
+			// @formatter:on
+			CommonOptions.addMetricsOptions(options);
+			return new CommonsCliExeOptions(options, "[options]");
+		}
+
+	};
+
+	public static void main(String name, CommonsCliArguments arguments)
+			throws Exception
+	{
+		CommandLine line = arguments.getLine();
+
+		String[] argsInput = line.getOptionValues(OPTION_INPUT);
+		String argOutput = line.getOptionValue(OPTION_OUTPUT);
+		boolean mergeAnyName = line.hasOption(OPTION_MERGE_ANY_NAME);
+
+		int threads = Runtime.getRuntime().availableProcessors();
+		double mergeDistance = DEFAULT_MERGE_DISTANCE;
+		try {
+			if (line.hasOption(OPTION_THREADS)) {
+				threads = Integer.parseInt(line.getOptionValue(OPTION_THREADS));
+			}
+			if (line.hasOption(OPTION_MERGE_DISTANCE)) {
+				mergeDistance = Double.parseDouble(
+						line.getOptionValue(OPTION_MERGE_DISTANCE));
+			}
+		} catch (NumberFormatException e) {
+			System.out.println("Invalid number: " + e.getMessage());
+			System.exit(1);
+		}
+
+		List<Path> pathsInput = new ArrayList<>();
+		for (String argInput : argsInput) {
+			pathsInput.add(Paths.get(argInput));
+		}
+		Path pathOutput = Paths.get(argOutput);
+
+		for (Path pathInput : pathsInput) {
+			System.out.println("Input: " + pathInput);
+		}
+		System.out.println("Output: " + pathOutput);
+
+		NameChanger nameChanger = RunGtfsImport.createNameChanger();
+
+		ImportMetrics metrics = new ImportMetrics("gtfs-import multi");
+
+		DraftModelMerger merger = new DraftModelMerger(mergeDistance,
+				!mergeAnyName);
+		GtfsMultiImporter importer = new GtfsMultiImporter(pathsInput,
+				nameChanger, merger);
+		importer.setNumThreads(threads);
+		importer.setMetrics(metrics);
+		importer.execute();
+
+		DraftModel draft = importer.getModel();
+		ModelData data = RunGtfsImport.convert(metrics, draft);
+
+		RunGtfsImport.write(metrics, pathOutput, data);
+
+		CommonOptions.emitMetrics(line, metrics);
+	}
+
+}
@@ -18,8 +18,6 @@
 package org.openmetromaps.cli.maps;
 
 import java.io.IOException;
-import java.io.InputStream;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 
@@ -79,9 +77,7 @@ public class RunMapMorpher
 	private static MapModel read(Path pathInput)
 			throws IOException, ParsingException
 	{
-		InputStream input = Files.newInputStream(pathInput);
-
-		XmlModel xmlModel = DesktopXmlModelReader.read(input);
+		XmlModel xmlModel = DesktopXmlModelReader.read(pathInput);
 
 		XmlModelConverter modelConverter = new XmlModelConverter();
 		MapModel model = modelConverter.convert(xmlModel);
@@ -17,8 +17,6 @@
 
 package org.openmetromaps.cli.markdownview;
 
-import java.io.InputStream;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 
@@ -41,6 +39,7 @@ public class RunCreateMarkdownView
 
 	private static final String OPTION_INPUT = "input";
 	private static final String OPTION_OUTPUT = "output";
+	private static final String OPTION_INCREMENTAL = "incremental";
 
 	public static ExeOptionsFactory OPTIONS_FACTORY = new ExeOptionsFactory() {
 
@@ -51,6 +50,7 @@ public class RunCreateMarkdownView
 			// @formatter:off
 			OptionHelper.addL(options, OPTION_INPUT, true, true, "file", "a model XML file");
 			OptionHelper.addL(options, OPTION_OUTPUT, true, true, "file", "an output directory");
+			OptionHelper.addL(options, OPTION_INCREMENTAL, false, false, "only write pages that changed since the last run");
 			// @formatter:on
 			return new CommonsCliExeOptions(options, "[options]");
 		}
@@ -68,14 +68,13 @@ public class RunCreateMarkdownView
 		Path pathInput = Paths.get(argInput);
 		Path pathOutput = Paths.get(argOutput);
 
-		InputStream input = Files.newInputStream(pathInput);
-
-		XmlModel xmlModel = DesktopXmlModelReader.read(input);
+		XmlModel xmlModel = DesktopXmlModelReader.read(pathInput);
 
 		XmlModelConverter modelConverter = new XmlModelConverter();
 		MapModel model = modelConverter.convert(xmlModel);
 
 		MarkdownViewCreator creator = new MarkdownViewCreator(model);
+		creator.setIncremental(line.hasOption(OPTION_INCREMENTAL));
 		creator.create(pathOutput);
 	}
 
@@ -17,8 +17,12 @@
 
 package org.openmetromaps.cli.osm;
 
+import java.nio.file.Paths;
+
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.Options;
+import org.openmetromaps.osm.IntermediateStorageConfig;
+import org.openmetromaps.osm.IntermediateStorageConfig.Mode;
 
 import de.topobyte.osm4j.utils.FileFormat;
 import de.topobyte.osm4j.utils.config.PbfConfig;
@@ -45,6 +49,10 @@ public class OsmOptions
 
 	private static final String OPTION_INPUT_FORMAT = "input-format";
 	private static final String OPTION_OUTPUT_FORMAT = "output-format";
+	private static final String OPTION_TMP_DIR = "tmp-dir";
+	private static final String OPTION_COMPRESS_INTERMEDIATE = "compress-intermediate";
+	private static final String OPTION_IN_MEMORY = "in-memory";
+	private static final String OPTION_IN_MEMORY_THRESHOLD = "in-memory-threshold";
 
 	public static void addInputOutputOptions(Options options)
 	{
@@ -66,6 +74,16 @@ public class OsmOptions
 		TboOptions.add(options);
 	}
 
+	public static void addIntermediateStorageOptions(Options options)
+	{
+		// @formatter:off
+		OptionHelper.addL(options, OPTION_TMP_DIR, true, false, "dir", "a directory for intermediate files, e.g. on a tmpfs");
+		OptionHelper.addL(options, OPTION_COMPRESS_INTERMEDIATE, false, false, "compress intermediate files on disk");
+		OptionHelper.addL(options, OPTION_IN_MEMORY, false, false, "keep intermediate files in memory");
+		OptionHelper.addL(options, OPTION_IN_MEMORY_THRESHOLD, true, false, "megabytes", "keep intermediate files in memory if their size estimated from the input is smaller than this");
+		// @formatter:on
+	}
+
 	public static Input parseInput(CommandLine line)
 	{
 		Input input = new Input();
@@ -102,4 +120,27 @@ public class OsmOptions
 		return output;
 	}
 
+	public static IntermediateStorageConfig parseIntermediateStorage(
+			CommandLine line)
+	{
+		IntermediateStorageConfig config = new IntermediateStorageConfig();
+		if (line.hasOption(OPTION_TMP_DIR)) {
+			config.setDirectory(Paths.get(line.getOptionValue(OPTION_TMP_DIR)));
+		}
+		config.setCompress(line.hasOption(OPTION_COMPRESS_INTERMEDIATE));
+		if (line.hasOption(OPTION_IN_MEMORY)) {
+			config.setMode(Mode.MEMORY);
+		} else if (line.hasOption(OPTION_IN_MEMORY_THRESHOLD)) {
+			String value = line.getOptionValue(OPTION_IN_MEMORY_THRESHOLD);
+			try {
+				config.setMemoryThreshold(Long.parseLong(value) * 1024 * 1024);
+			} catch (NumberFormatException e) {
+				throw new RuntimeException("invalid argument for option "
+						+ OPTION_IN_MEMORY_THRESHOLD + ": " + value);
+			}
+			config.setMode(Mode.AUTO);
+		}
+		return config;
+	}
+
 }
@@ -0,0 +1,57 @@
+// Copyright 2019 Sebastian Kuerten
+//
+// This file is part of OpenMetroMaps.
+//
+// OpenMetroMaps is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Lesser General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// OpenMetroMaps is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with OpenMetroMaps. If not, see <http://www.gnu.org/licenses/>.
+
+package org.openmetromaps.cli.osm;
+
+import java.nio.file.Paths;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.Options;
+import org.openmetromaps.osm.OverpassApi;
+import org.openmetromaps.osm.OverpassCache;
+
+import de.topobyte.utilities.apache.commons.cli.OptionHelper;
+
+public class OverpassOptions
+{
+
+	private static final String OPTION_CACHE = "cache";
+	private static final String OPTION_OFFLINE = "offline";
+
+	public static void addCacheOptions(Options options)
+	{
+		// @formatter:off
+		OptionHelper.addL(options, OPTION_CACHE, true, false, "dir", "a directory to record responses to and replay responses from");
+		OptionHelper.addL(options, OPTION_OFFLINE, false, false, "only replay responses from the cache");
+		// @formatter:on
+	}
+
+	public static OverpassApi parseApi(CommandLine line)
+	{
+		if (!line.hasOption(OPTION_CACHE)) {
+			if (line.hasOption(OPTION_OFFLINE)) {
+				throw new RuntimeException("option " + OPTION_OFFLINE
+						+ " requires option " + OPTION_CACHE);
+			}
+			return new OverpassApi();
+		}
+		OverpassCache cache = new OverpassCache(
+				Paths.get(line.getOptionValue(OPTION_CACHE)));
+		return new OverpassApi(cache, line.hasOption(OPTION_OFFLINE));
+	}
+
+}
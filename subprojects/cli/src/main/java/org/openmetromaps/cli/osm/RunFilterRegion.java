@@ -24,7 +24,10 @@ import java.nio.file.Paths;
 
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.Options;
+import org.openmetromaps.cli.common.CommonOptions;
+import org.openmetromaps.misc.ImportMetrics;
 import org.openmetromaps.osm.FilterRegion;
+import org.openmetromaps.osm.IntermediateStorageConfig;
 
 import com.vividsolutions.jts.geom.Geometry;
 import com.vividsolutions.jts.io.ParseException;
@@ -44,6 +47,8 @@ public class RunFilterRegion
 	private static final String OPTION_INPUT = "input";
 	private static final String OPTION_OUTPUT = "output";
 	private static final String OPTION_BOUNDARY = "boundary";
+	private static final String OPTION_GRID_SIZE = "grid-size";
+	private static final String OPTION_THREADS = "threads";
 
 	public static ExeOptionsFactory OPTIONS_FACTORY = new ExeOptionsFactory() {
 
@@ -52,10 +57,14 @@ public class RunFilterRegion
 		{
 			Options options = new Options();
 			OsmOptions.addInputOutputOptions(options);
+			OsmOptions.addIntermediateStorageOptions(options);
+			CommonOptions.addMetricsOptions(options);
 			// @formatter:off
 			OptionHelper.addL(options, OPTION_INPUT, true, true, "file", "a source OSM data file");
 			OptionHelper.addL(options, OPTION_OUTPUT, true, true, "file", "a target OSM data file");
 			OptionHelper.addL(options, OPTION_BOUNDARY, true, true, "file", "a boundary geometry file");
+			OptionHelper.addL(options, OPTION_GRID_SIZE, true, false, "number", "number of grid rows and columns for the region pre-check");
+			OptionHelper.addL(options, OPTION_THREADS, true, false, "number", "number of threads for testing nodes");
 			// @formatter:on
 			return new CommonsCliExeOptions(options, "[options]");
 		}
@@ -69,14 +78,31 @@ public class RunFilterRegion
 
 		OsmOptions.Input input = null;
 		OsmOptions.Output output = null;
+		IntermediateStorageConfig storageConfig = null;
 		try {
 			input = OsmOptions.parseInput(line);
 			output = OsmOptions.parseOutput(line);
+			storageConfig = OsmOptions.parseIntermediateStorage(line);
 		} catch (Exception e) {
 			System.out.println(e.getMessage());
 			System.exit(1);
 		}
 
+		Integer gridSize = null;
+		Integer threads = null;
+		try {
+			if (line.hasOption(OPTION_GRID_SIZE)) {
+				gridSize = Integer
+						.parseInt(line.getOptionValue(OPTION_GRID_SIZE));
+			}
+			if (line.hasOption(OPTION_THREADS)) {
+				threads = Integer.parseInt(line.getOptionValue(OPTION_THREADS));
+			}
+		} catch (NumberFormatException e) {
+			System.out.println("Invalid number: " + e.getMessage());
+			System.exit(1);
+		}
+
 		boolean useMetadata = false;
 
 		String argInput = line.getOptionValue(OPTION_INPUT);
@@ -98,9 +124,21 @@ public class RunFilterRegion
 		Geometry region = new WKTReader()
 				.read(new FileReader(pathBoundary.toFile()));
 
+		ImportMetrics metrics = new ImportMetrics("osm-extract");
+
 		FilterRegion filter = new FilterRegion(fileInput, fileOutput, region,
 				outputConfig);
+		filter.setIntermediateStorageConfig(storageConfig);
+		if (gridSize != null) {
+			filter.setGridSize(gridSize);
+		}
+		if (threads != null) {
+			filter.setNumThreads(threads);
+		}
+		filter.setMetrics(metrics);
 		filter.execute();
+
+		CommonOptions.emitMetrics(line, metrics);
 	}
 
 }
@@ -23,7 +23,10 @@ import java.nio.file.Paths;
 
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.Options;
+import org.openmetromaps.cli.common.CommonOptions;
+import org.openmetromaps.misc.ImportMetrics;
 import org.openmetromaps.osm.FilterRelevantData;
+import org.openmetromaps.osm.IntermediateStorageConfig;
 
 import de.topobyte.osm4j.utils.OsmFile;
 import de.topobyte.osm4j.utils.OsmOutputConfig;
@@ -38,6 +41,7 @@ public class RunFilterRelevantData
 
 	private static final String OPTION_INPUT = "input";
 	private static final String OPTION_OUTPUT = "output";
+	private static final String OPTION_SINGLE_PASS = "single-pass";
 
 	public static ExeOptionsFactory OPTIONS_FACTORY = new ExeOptionsFactory() {
 
@@ -46,9 +50,12 @@ public class RunFilterRelevantData
 		{
 			Options options = new Options();
 			OsmOptions.addInputOutputOptions(options);
+			OsmOptions.addIntermediateStorageOptions(options);
+			CommonOptions.addMetricsOptions(options);
 			// @formatter:off
 			OptionHelper.addL(options, OPTION_INPUT, true, true, "file", "a source OSM data file");
 			OptionHelper.addL(options, OPTION_OUTPUT, true, true, "file", "a target OSM data file");
+			OptionHelper.addL(options, OPTION_SINGLE_PASS, false, false, "split and filter sorted input in a single pass (resolving references still reads the split files)");
 			// @formatter:on
 			return new CommonsCliExeOptions(options, "[options]");
 		}
@@ -62,9 +69,11 @@ public class RunFilterRelevantData
 
 		OsmOptions.Input input = null;
 		OsmOptions.Output output = null;
+		IntermediateStorageConfig storageConfig = null;
 		try {
 			input = OsmOptions.parseInput(line);
 			output = OsmOptions.parseOutput(line);
+			storageConfig = OsmOptions.parseIntermediateStorage(line);
 		} catch (Exception e) {
 			System.out.println(e.getMessage());
 			System.exit(1);
@@ -85,9 +94,16 @@ public class RunFilterRelevantData
 		System.out.println("Input: " + pathInput);
 		System.out.println("Output: " + pathOutput);
 
+		ImportMetrics metrics = new ImportMetrics("osm-filter");
+
 		FilterRelevantData filter = new FilterRelevantData(fileInput,
 				fileOutput, outputConfig);
+		filter.setSinglePass(line.hasOption(OPTION_SINGLE_PASS));
+		filter.setIntermediateStorageConfig(storageConfig);
+		filter.setMetrics(metrics);
 		filter.execute();
+
+		CommonOptions.emitMetrics(line, metrics);
 	}
 
 }
@@ -27,6 +27,7 @@ import org.apache.commons.cli.Options;
 import org.openmetromaps.imports.config.ImportConfig;
 import org.openmetromaps.imports.config.osm.OsmSource;
 import org.openmetromaps.imports.config.reader.DesktopImportConfigReader;
+import org.openmetromaps.osm.OverpassApi;
 import org.openmetromaps.osm.OverpassApiDownloader;
 
 import de.topobyte.utilities.apache.commons.cli.OptionHelper;
@@ -51,6 +52,7 @@ public class RunOsmDownloadOverpass
 			OptionHelper.addL(options, OPTION_CONFIG, true, true, "file", "an importer configuration file");
 			OptionHelper.addL(options, OPTION_OUTPUT, true, true, "file", "an output file");
 			// @formatter:on
+			OverpassOptions.addCacheOptions(options);
 			return new CommonsCliExeOptions(options, "[options]");
 		}
 
@@ -61,6 +63,14 @@ public class RunOsmDownloadOverpass
 	{
 		CommandLine line = arguments.getLine();
 
+		OverpassApi api = null;
+		try {
+			api = OverpassOptions.parseApi(line);
+		} catch (Exception e) {
+			System.out.println(e.getMessage());
+			System.exit(1);
+		}
+
 		String argConfig = line.getOptionValue(OPTION_CONFIG);
 		String argOutput = line.getOptionValue(OPTION_OUTPUT);
 		Path pathConfig = Paths.get(argConfig);
@@ -84,7 +94,7 @@ public class RunOsmDownloadOverpass
 		System.out.println("Overpass API query:");
 		System.out.println(query);
 
-		OverpassApiDownloader downloader = new OverpassApiDownloader();
+		OverpassApiDownloader downloader = new OverpassApiDownloader(api);
 		downloader.execute(query, pathOutput);
 	}
 
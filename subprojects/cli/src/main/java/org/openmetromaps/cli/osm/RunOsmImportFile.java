@@ -17,22 +17,27 @@
 
 package org.openmetromaps.cli.osm;
 
+import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
 
+import javax.xml.parsers.ParserConfigurationException;
+
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.Options;
+import org.openmetromaps.cli.common.CommonOptions;
 import org.openmetromaps.imports.config.ImportConfig;
 import org.openmetromaps.imports.config.Processing;
 import org.openmetromaps.imports.config.osm.OsmSource;
 import org.openmetromaps.imports.config.reader.DesktopImportConfigReader;
 import org.openmetromaps.maps.model.ModelData;
 import org.openmetromaps.maps.xml.XmlModelWriter;
+import org.openmetromaps.misc.ImportMetrics;
+import org.openmetromaps.misc.ImportPhase;
 import org.openmetromaps.model.osm.DraftModel;
 import org.openmetromaps.model.osm.DraftModelConverter;
 import org.openmetromaps.model.osm.FileModelBuilder;
@@ -63,8 +68,9 @@ public class RunOsmImportFile
 			// @formatter:off
 			OptionHelper.addL(options, OPTION_INPUT, true, true, "file", "a source OSM data file");
 			OptionHelper.addL(options, OPTION_CONFIG, true, true, "file", "an importer configuration file");
-			OptionHelper.addL(options, OPTION_OUTPUT, true, true, "file", "a target model text file");
+			OptionHelper.addL(options, OPTION_OUTPUT, true, true, "file", "a target model file (compressed if ending with .gz)");
 			// @formatter:on
+			CommonOptions.addMetricsOptions(options);
 			return new CommonsCliExeOptions(options, "[options]");
 		}
 
@@ -111,18 +117,46 @@ public class RunOsmImportFile
 
 		List<Fix> fixes = new ArrayList<>();
 
+		ImportMetrics metrics = new ImportMetrics("osm-import file");
+
 		FileModelBuilder modelBuilder = new FileModelBuilder(fileInput,
 				routeFilter, processing.getPrefixes(), processing.getSuffixes(),
 				fixes);
+		modelBuilder.setMetrics(metrics);
 		modelBuilder.run(true, true);
 
-		OutputStream os = Files.newOutputStream(pathOutput);
-
 		DraftModel draft = modelBuilder.getModel();
-		ModelData data = new DraftModelConverter().convert(draft);
+		ModelData data = convert(metrics, createConverter(processing), draft);
+
+		write(metrics, pathOutput, data);
 
-		new XmlModelWriter().write(os, data, new ArrayList<>());
-		os.close();
+		CommonOptions.emitMetrics(line, metrics);
+	}
+
+	static ModelData convert(ImportMetrics metrics,
+			DraftModelConverter converter, DraftModel draft)
+	{
+		try (ImportPhase phase = metrics.start("convert")) {
+			ModelData data = converter.convert(draft);
+			phase.addEntities(data.stations.size());
+			return data;
+		}
+	}
+
+	static void write(ImportMetrics metrics, Path pathOutput, ModelData data)
+			throws ParserConfigurationException, IOException
+	{
+		try (ImportPhase phase = metrics.start("write")) {
+			new XmlModelWriter().write(pathOutput, data, new ArrayList<>());
+		}
+	}
+
+	static DraftModelConverter createConverter(Processing processing)
+	{
+		DraftModelConverter converter = new DraftModelConverter();
+		converter.setMergeDistance(processing.getMergeDistance());
+		converter.setNameSimilarity(processing.getMergeNameSimilarity());
+		return converter;
 	}
 
 }
@@ -18,7 +18,6 @@
 package org.openmetromaps.cli.osm;
 
 import java.io.InputStream;
-import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -27,14 +26,16 @@ import java.util.List;
 
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.Options;
+import org.openmetromaps.cli.common.CommonOptions;
 import org.openmetromaps.imports.config.ImportConfig;
 import org.openmetromaps.imports.config.Processing;
 import org.openmetromaps.imports.config.osm.OsmSource;
 import org.openmetromaps.imports.config.reader.DesktopImportConfigReader;
 import org.openmetromaps.maps.model.ModelData;
-import org.openmetromaps.maps.xml.XmlModelWriter;
+import org.openmetromaps.misc.ImportMetrics;
 import org.openmetromaps.model.osm.Fix;
 import org.openmetromaps.model.osm.filter.RouteFilter;
+import org.openmetromaps.osm.OverpassApi;
 import org.openmetromaps.osm.OverpassApiImporter;
 
 import de.topobyte.utilities.apache.commons.cli.OptionHelper;
@@ -57,8 +58,10 @@ public class RunOsmImportOverpass
 			Options options = new Options();
 			// @formatter:off
 			OptionHelper.addL(options, OPTION_CONFIG, true, true, "file", "an importer configuration file");
-			OptionHelper.addL(options, OPTION_OUTPUT, true, true, "file", "a target model text file");
+			OptionHelper.addL(options, OPTION_OUTPUT, true, true, "file", "a target model file (compressed if ending with .gz)");
 			// @formatter:on
+			OverpassOptions.addCacheOptions(options);
+			CommonOptions.addMetricsOptions(options);
 			return new CommonsCliExeOptions(options, "[options]");
 		}
 
@@ -69,6 +72,14 @@ public class RunOsmImportOverpass
 	{
 		CommandLine line = arguments.getLine();
 
+		OverpassApi api = null;
+		try {
+			api = OverpassOptions.parseApi(line);
+		} catch (Exception e) {
+			System.out.println(e.getMessage());
+			System.exit(1);
+		}
+
 		String argConfig = line.getOptionValue(OPTION_CONFIG);
 		String argOutput = line.getOptionValue(OPTION_OUTPUT);
 		Path pathConfig = Paths.get(argConfig);
@@ -97,13 +108,18 @@ public class RunOsmImportOverpass
 		System.out.println("Overpass API query:");
 		System.out.println(query);
 
-		OverpassApiImporter overpassApiImporter = new OverpassApiImporter();
+		ImportMetrics metrics = new ImportMetrics("osm-import overpass");
+
+		OverpassApiImporter overpassApiImporter = new OverpassApiImporter(api);
+		overpassApiImporter
+				.setConverter(RunOsmImportFile.createConverter(processing));
+		overpassApiImporter.setMetrics(metrics);
 		ModelData data = overpassApiImporter.execute(query, routeFilter,
 				processing.getPrefixes(), processing.getSuffixes(), fixes);
 
-		OutputStream os = Files.newOutputStream(pathOutput);
-		new XmlModelWriter().write(os, data, new ArrayList<>());
-		os.close();
+		RunOsmImportFile.write(metrics, pathOutput, data);
+
+		CommonOptions.emitMetrics(line, metrics);
 	}
 
 }
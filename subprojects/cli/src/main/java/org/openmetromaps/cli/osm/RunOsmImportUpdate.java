@@ -0,0 +1,219 @@
+// Copyright 2019 Sebastian Kuerten
+//
+// This file is part of OpenMetroMaps.
+//
+// OpenMetroMaps is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Lesser General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// OpenMetroMaps is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with OpenMetroMaps. If not, see <http://www.gnu.org/licenses/>.
+
+package org.openmetromaps.cli.osm;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.Options;
+import org.openmetromaps.cli.common.CommonOptions;
+import org.openmetromaps.imports.config.ImportConfig;
+import org.openmetromaps.imports.config.Processing;
+import org.openmetromaps.imports.config.osm.OsmSource;
+import org.openmetromaps.imports.config.reader.DesktopImportConfigReader;
+import org.openmetromaps.maps.model.ModelData;
+import org.openmetromaps.misc.ImportMetrics;
+import org.openmetromaps.misc.ImportPhase;
+import org.openmetromaps.model.osm.DraftModel;
+import org.openmetromaps.model.osm.Fix;
+import org.openmetromaps.model.osm.ModelBuilder;
+import org.openmetromaps.model.osm.OsmChange;
+import org.openmetromaps.model.osm.OsmChangeReader;
+import org.openmetromaps.model.osm.RouteIndex;
+import org.openmetromaps.model.osm.filter.RouteFilter;
+
+import de.topobyte.osm4j.utils.FileFormat;
+import de.topobyte.osm4j.utils.OsmFile;
+import de.topobyte.utilities.apache.commons.cli.OptionHelper;
+import de.topobyte.utilities.apache.commons.cli.commands.args.CommonsCliArguments;
+import de.topobyte.utilities.apache.commons.cli.commands.options.CommonsCliExeOptions;
+import de.topobyte.utilities.apache.commons.cli.commands.options.ExeOptions;
+import de.topobyte.utilities.apache.commons.cli.commands.options.ExeOptionsFactory;
+
+public class RunOsmImportUpdate
+{
+
+	private static final String OPTION_INPUT = "input";
+	private static final String OPTION_INPUT_FORMAT = "input-format";
+	private static final String OPTION_INDEX = "index";
+	private static final String OPTION_DIFF = "diff";
+	private static final String OPTION_CONFIG = "config";
+	private static final String OPTION_OUTPUT = "output";
+	private static final String OPTION_FORCE = "force";
+
+	public static ExeOptionsFactory OPTIONS_FACTORY = new ExeOptionsFactory() {
+
+		@Override
+		public ExeOptions createOptions()
+		{
+			Options options = new Options();
+			// @formatter:off
+			OptionHelper.addL(options, OPTION_INPUT, true, false, "file", "a source OSM data file to create the index from");
+			OptionHelper.addL(options, OPTION_INPUT_FORMAT, true, false, "the file format of the input");
+			OptionHelper.addL(options, OPTION_INDEX, true, true, "file", "a route index file to create or update");
+			OptionHelper.addL(options, OPTION_DIFF, true, false, "file", "an osmChange file to apply (may be repeated)");
+			OptionHelper.addL(options, OPTION_CONFIG, true, true, "file", "an importer configuration file");
+			OptionHelper.addL(options, OPTION_OUTPUT, true, true, "file", "a target model file (compressed if ending with .gz)");
+			OptionHelper.addL(options, OPTION_FORCE, false, false, "update index and model even if stops of changed routes are missing");
+			// @formatter:on
+			CommonOptions.addMetricsOptions(options);
+			return new CommonsCliExeOptions(options, "[options]");
+		}
+
+	};
+
+	public static void main(String name, CommonsCliArguments arguments)
+			throws Exception
+	{
+		CommandLine line = arguments.getLine();
+
+		Path pathIndex = Paths.get(line.getOptionValue(OPTION_INDEX));
+		Path pathConfig = Paths.get(line.getOptionValue(OPTION_CONFIG));
+		Path pathOutput = Paths.get(line.getOptionValue(OPTION_OUTPUT));
+		boolean force = line.hasOption(OPTION_FORCE);
+
+		OsmFile fileInput = null;
+		if (line.hasOption(OPTION_INPUT)) {
+			FileFormat format = FileFormat
+					.parseFileFormat(line.getOptionValue(OPTION_INPUT_FORMAT));
+			if (format == null) {
+				System.out.println("please specify a valid input format: "
+						+ FileFormat.getHumanReadableListOfSupportedFormats());
+				System.exit(1);
+			}
+			Path pathInput = Paths.get(line.getOptionValue(OPTION_INPUT));
+			fileInput = new OsmFile(pathInput, format);
+		} else if (!Files.exists(pathIndex)) {
+			System.out.println("Index does not exist, please specify an input "
+					+ "file to create it from");
+			System.exit(1);
+		}
+
+		List<Path> pathsDiff = new ArrayList<>();
+		if (line.hasOption(OPTION_DIFF)) {
+			for (String argDiff : line.getOptionValues(OPTION_DIFF)) {
+				pathsDiff.add(Paths.get(argDiff));
+			}
+		}
+
+		if (fileInput != null) {
+			System.out.println("Input: " + fileInput.getPath());
+		}
+		System.out.println("Index: " + pathIndex);
+		for (Path pathDiff : pathsDiff) {
+			System.out.println("Diff: " + pathDiff);
+		}
+		System.out.println("Config: " + pathConfig);
+		System.out.println("Output: " + pathOutput);
+
+		InputStream isConfig = Files.newInputStream(pathConfig);
+		ImportConfig config = DesktopImportConfigReader.read(isConfig);
+		isConfig.close();
+
+		if (!(config.getSource() instanceof OsmSource)) {
+			System.out.println("Config is not an OSM configuration");
+			return;
+		}
+
+		final OsmSource source = (OsmSource) config.getSource();
+		Processing processing = config.getProcessing();
+
+		RouteFilter routeFilter = new OsmSourceRouteFilter(source);
+
+		ImportMetrics metrics = new ImportMetrics("osm-import update");
+
+		RouteIndex index;
+		if (fileInput != null) {
+			index = RouteIndex.read(fileInput, routeFilter, metrics);
+		} else {
+			try (ImportPhase phase = metrics.start("load-index")) {
+				phase.addBytes(Files.size(pathIndex));
+				index = RouteIndex.load(pathIndex);
+				phase.addEntities(index.getRelations().size()
+						+ index.getNodes().size());
+			}
+		}
+
+		int numMissing = 0;
+		for (Path pathDiff : pathsDiff) {
+			OsmChange change;
+			RouteIndex.Update update;
+			try (ImportPhase phase = metrics.start("apply " + pathDiff)) {
+				phase.addBytes(Files.size(pathDiff));
+				change = OsmChangeReader.read(pathDiff);
+				update = index.apply(change, routeFilter);
+				phase.addEntities(change.getNodes().size()
+						+ change.getRelations().size());
+			}
+			System.out.println(String.format(
+					"%s: %d node changes, %d relation changes, %d affected routes, %d changed stops",
+					pathDiff, change.getNodes().size(),
+					change.getRelations().size(),
+					update.getAffectedRelations().size(),
+					update.getNumChangedStops()));
+			if (!update.getMissingNodes().isEmpty()) {
+				numMissing += update.getMissingNodes().size();
+				System.out.println(String.format(
+						"Warning: %d stops of changed routes are neither in the index nor in the diff",
+						update.getMissingNodes().size()));
+			}
+		}
+
+		// the model would silently lack these stops and so would all models
+		// built from the updated index later on
+		if (numMissing > 0 && !force) {
+			System.out.println(String.format(
+					"%d stops are missing, leaving the index unchanged. Recreate the index from a full file or use --%s to update anyway",
+					numMissing, OPTION_FORCE));
+			System.exit(1);
+		}
+
+		try (ImportPhase phase = metrics.start("write-index")) {
+			index.write(pathIndex);
+		}
+
+		System.out.println(String.format("Index: %d routes, %d stops",
+				index.getRelations().size(), index.getNodes().size()));
+		if (numMissing > 0) {
+			System.out.println(
+					"The model may differ from a full import, consider recreating the index");
+		}
+
+		List<Fix> fixes = new ArrayList<>();
+
+		ModelBuilder modelBuilder = new ModelBuilder(index.getRelations(),
+				index.getNodes(), routeFilter, processing.getPrefixes(),
+				processing.getSuffixes(), fixes);
+		modelBuilder.setMetrics(metrics);
+		modelBuilder.run(true, true);
+
+		DraftModel draft = modelBuilder.getModel();
+		ModelData data = RunOsmImportFile.convert(metrics,
+				RunOsmImportFile.createConverter(processing), draft);
+
+		RunOsmImportFile.write(metrics, pathOutput, data);
+
+		CommonOptions.emitMetrics(line, metrics);
+	}
+
+}
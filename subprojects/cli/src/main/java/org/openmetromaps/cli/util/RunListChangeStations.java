@@ -17,8 +17,6 @@
 
 package org.openmetromaps.cli.util;
 
-import java.io.InputStream;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
@@ -29,6 +27,7 @@ import java.util.Set;
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.Options;
 import org.openmetromaps.heavyutil.HeavyUtil;
+import org.openmetromaps.heavyutil.InterchangeIndex;
 import org.openmetromaps.maps.MapModel;
 import org.openmetromaps.maps.MapModelUtil;
 import org.openmetromaps.maps.graph.LineNetwork;
@@ -80,9 +79,7 @@ public class RunListChangeStations
 
 		System.out.println("Input: " + pathInput);
 
-		InputStream input = Files.newInputStream(pathInput);
-
-		XmlModel xmlModel = DesktopXmlModelReader.read(input);
+		XmlModel xmlModel = DesktopXmlModelReader.read(pathInput);
 
 		XmlModelConverter modelConverter = new XmlModelConverter();
 		MapModel model = modelConverter.convert(xmlModel);
@@ -98,6 +95,8 @@ public class RunListChangeStations
 
 		Multimap<Station, Line> stationToLines = HashMultimap.create();
 		HeavyUtil.fillStationToLines(stationToLines, model);
+		InterchangeIndex interchangeIndex = new InterchangeIndex(lineNetwork,
+				stationToLines);
 
 		Set<Node> changeNodes = new HashSet<>();
 
@@ -105,8 +104,8 @@ public class RunListChangeStations
 		for (NetworkLine line : lines) {
 			List<Node> nodes = LineNetworkUtil.getNodes(lineNetwork, line.line);
 			for (Node node : nodes) {
-				List<Line> changeLines = HeavyUtil
-						.determineInterestingLines(stationToLines, line, node);
+				List<Line> changeLines = HeavyUtil.determineInterestingLines(
+						interchangeIndex, line, node);
 				if (changeLines.isEmpty()) {
 					continue;
 				}
@@ -18,9 +18,6 @@
 package org.openmetromaps.cli.util;
 
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
@@ -88,9 +85,7 @@ public class RunPurgeStations
 	private static void execute(Path path) throws IOException, ParsingException,
 			ParserConfigurationException, TransformerException
 	{
-		InputStream input = Files.newInputStream(path);
-
-		XmlModel xmlModel = DesktopXmlModelReader.read(input);
+		XmlModel xmlModel = DesktopXmlModelReader.read(path);
 
 		XmlModelConverter modelConverter = new XmlModelConverter();
 		MapModel model = modelConverter.convert(xmlModel);
@@ -129,9 +124,7 @@ public class RunPurgeStations
 			}
 		}
 
-		OutputStream output = Files.newOutputStream(path);
-		new XmlModelWriter().write(output, data, views);
-		output.close();
+		new XmlModelWriter().write(path, data, views);
 	}
 
 }
@@ -18,8 +18,6 @@
 package org.openmetromaps.desktop;
 
 import java.io.IOException;
-import java.io.InputStream;
-import java.nio.file.Files;
 import java.nio.file.Path;
 
 import org.openmetromaps.maps.MapModel;
@@ -34,9 +32,7 @@ public class DesktopUtil
 
 	public static MapModel load(Path path) throws ParsingException, IOException
 	{
-		InputStream input = Files.newInputStream(path);
-		XmlModel xmlModel = DesktopXmlModelReader.read(input);
-		input.close();
+		XmlModel xmlModel = DesktopXmlModelReader.read(path);
 
 		XmlModelConverter modelConverter = new XmlModelConverter();
 		MapModel model = modelConverter.convert(xmlModel);
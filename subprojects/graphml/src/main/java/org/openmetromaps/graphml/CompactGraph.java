@@ -0,0 +1,189 @@
+// Copyright 2019 Sebastian Kuerten
+//
+// This file is part of OpenMetroMaps.
+//
+// OpenMetroMaps is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Lesser General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// OpenMetroMaps is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with OpenMetroMaps. If not, see <http://www.gnu.org/licenses/>.
+
+package org.openmetromaps.graphml;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An undirected multigraph stored in primitive arrays. Vertices and edges are
+ * identified by their index. The edges incident to each vertex are stored in
+ * a compressed adjacency array, i.e. the incident edges of vertex {@code v}
+ * are {@code adjacency[offsets[v]]} to {@code adjacency[offsets[v + 1] - 1]}.
+ * The lines of each edge are stored the same way as indexes into the list of
+ * line ids.
+ */
+public class CompactGraph
+{
+
+	private int numVertices;
+	private String[] vertexIds;
+	private String[] labels;
+	private double[] xs;
+	private double[] ys;
+
+	private int numEdges;
+	private int[] sources;
+	private int[] targets;
+	private int[] edgeLineOffsets;
+	private int[] edgeLines;
+
+	private List<String> lineIds;
+	private Map<String, String> data;
+
+	private int[] adjacencyOffsets;
+	private int[] adjacency;
+
+	public CompactGraph(int numVertices, String[] vertexIds, String[] labels,
+			double[] xs, double[] ys, int numEdges, int[] sources,
+			int[] targets, int[] edgeLineOffsets, int[] edgeLines,
+			List<String> lineIds, Map<String, String> data)
+	{
+		this.numVertices = numVertices;
+		this.vertexIds = vertexIds;
+		this.labels = labels;
+		this.xs = xs;
+		this.ys = ys;
+		this.numEdges = numEdges;
+		this.sources = sources;
+		this.targets = targets;
+		this.edgeLineOffsets = edgeLineOffsets;
+		this.edgeLines = edgeLines;
+		this.lineIds = lineIds;
+		this.data = data;
+
+		buildAdjacency();
+	}
+
+	private void buildAdjacency()
+	{
+		adjacencyOffsets = new int[numVertices + 1];
+		for (int e = 0; e < numEdges; e++) {
+			adjacencyOffsets[sources[e] + 1]++;
+			if (targets[e] != sources[e]) {
+				adjacencyOffsets[targets[e] + 1]++;
+			}
+		}
+		for (int v = 0; v < numVertices; v++) {
+			adjacencyOffsets[v + 1] += adjacencyOffsets[v];
+		}
+
+		adjacency = new int[adjacencyOffsets[numVertices]];
+		int[] fill = new int[numVertices];
+		for (int e = 0; e < numEdges; e++) {
+			int s = sources[e];
+			adjacency[adjacencyOffsets[s] + fill[s]++] = e;
+			int t = targets[e];
+			if (t != s) {
+				adjacency[adjacencyOffsets[t] + fill[t]++] = e;
+			}
+		}
+	}
+
+	public int getNumVertices()
+	{
+		return numVertices;
+	}
+
+	public String getVertexId(int vertex)
+	{
+		return vertexIds[vertex];
+	}
+
+	public String getLabel(int vertex)
+	{
+		return labels[vertex];
+	}
+
+	public double getX(int vertex)
+	{
+		return xs[vertex];
+	}
+
+	public double getY(int vertex)
+	{
+		return ys[vertex];
+	}
+
+	public int getNumEdges()
+	{
+		return numEdges;
+	}
+
+	public int getSource(int edge)
+	{
+		return sources[edge];
+	}
+
+	public int getTarget(int edge)
+	{
+		return targets[edge];
+	}
+
+	/**
+	 * Get the vertex at the other end of the edge or -1 if the specified
+	 * vertex is not incident to the edge.
+	 */
+	public int getOpposite(int edge, int vertex)
+	{
+		if (sources[edge] == vertex) {
+			return targets[edge];
+		} else if (targets[edge] == vertex) {
+			return sources[edge];
+		}
+		return -1;
+	}
+
+	public int getDegree(int vertex)
+	{
+		return adjacencyOffsets[vertex + 1] - adjacencyOffsets[vertex];
+	}
+
+	/**
+	 * Get the i'th edge incident to the specified vertex.
+	 */
+	public int getIncidentEdge(int vertex, int i)
+	{
+		return adjacency[adjacencyOffsets[vertex] + i];
+	}
+
+	public int getNumEdgeLines(int edge)
+	{
+		return edgeLineOffsets[edge + 1] - edgeLineOffsets[edge];
+	}
+
+	/**
+	 * Get the index of the i'th line of the specified edge in
+	 * {@link #getLineIds()}.
+	 */
+	public int getEdgeLine(int edge, int i)
+	{
+		return edgeLines[edgeLineOffsets[edge] + i];
+	}
+
+	public List<String> getLineIds()
+	{
+		return lineIds;
+	}
+
+	public Map<String, String> getData()
+	{
+		return data;
+	}
+
+}
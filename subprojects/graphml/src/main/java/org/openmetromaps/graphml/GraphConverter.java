@@ -18,13 +18,13 @@
 package org.openmetromaps.graphml;
 
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.IntFunction;
 
 import org.openmetromaps.maps.MapModelUtil;
 import org.openmetromaps.maps.model.Coordinate;
@@ -32,6 +32,8 @@ import org.openmetromaps.maps.model.Line;
 import org.openmetromaps.maps.model.ModelData;
 import org.openmetromaps.maps.model.Station;
 import org.openmetromaps.maps.model.Stop;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import com.google.common.base.Splitter;
 
@@ -40,6 +42,8 @@ import edu.uci.ics.jung.graph.UndirectedGraph;
 public class GraphConverter
 {
 
+	final static Logger logger = LoggerFactory.getLogger(GraphConverter.class);
+
 	protected List<Line> linesList = new ArrayList<>();
 	protected List<Station> stationsList = new ArrayList<>();
 	protected List<Stop> stopsList = new ArrayList<>();
@@ -69,7 +73,7 @@ public class GraphConverter
 		List<String> allLines = new ArrayList<>(allLinesSet);
 		Collections.sort(allLines);
 
-		System.out.println("lines: " + allLines);
+		logger.info("lines: " + allLines);
 
 		Map<String, List<Edge>> lineToEdges = new HashMap<>();
 		for (String line : allLines) {
@@ -82,6 +86,63 @@ public class GraphConverter
 			}
 		}
 
+		Map<String, Line> idToLine = createLines(allLines, metadata);
+
+		for (String lineName : allLines) {
+			Line line = idToLine.get(lineName);
+
+			List<Edge> edges = lineToEdges.get(lineName);
+			lineFromEdges(line, edges);
+		}
+
+		return createModel();
+	}
+
+	/**
+	 * Convert a graph read with {@link StreamingGraphMLReader}. The lines are
+	 * reconstructed from the edge and adjacency arrays of the graph directly.
+	 */
+	public ModelData convert(CompactGraph graph)
+	{
+		Map<String, String> metadata = graph.getData();
+		List<String> lineIds = graph.getLineIds();
+
+		List<String> allLines = new ArrayList<>(lineIds);
+		Collections.sort(allLines);
+
+		logger.info("lines: " + allLines);
+
+		int[] counts = new int[lineIds.size()];
+		for (int e = 0; e < graph.getNumEdges(); e++) {
+			for (int i = 0; i < graph.getNumEdgeLines(e); i++) {
+				counts[graph.getEdgeLine(e, i)]++;
+			}
+		}
+		int[][] lineToEdges = new int[lineIds.size()][];
+		for (int l = 0; l < lineIds.size(); l++) {
+			lineToEdges[l] = new int[counts[l]];
+			counts[l] = 0;
+		}
+		for (int e = 0; e < graph.getNumEdges(); e++) {
+			for (int i = 0; i < graph.getNumEdgeLines(e); i++) {
+				int l = graph.getEdgeLine(e, i);
+				lineToEdges[l][counts[l]++] = e;
+			}
+		}
+
+		Map<String, Line> idToLine = createLines(allLines, metadata);
+
+		for (String lineId : allLines) {
+			Line line = idToLine.get(lineId);
+			lineFromEdges(graph, line, lineToEdges[lineIds.indexOf(lineId)]);
+		}
+
+		return createModel();
+	}
+
+	private Map<String, Line> createLines(List<String> allLines,
+			Map<String, String> metadata)
+	{
 		Map<String, Line> idToLine = new HashMap<>();
 
 		int id = 0;
@@ -108,13 +169,11 @@ public class GraphConverter
 			idToLine.put(lineId, line);
 		}
 
-		for (String lineName : allLines) {
-			Line line = idToLine.get(lineName);
-
-			List<Edge> edges = lineToEdges.get(lineName);
-			lineFromEdges(graph, line, edges);
-		}
+		return idToLine;
+	}
 
+	private ModelData createModel()
+	{
 		MapModelUtil.sortStationsByName(stationsList);
 
 		for (int i = 0; i < linesList.size(); i++) {
@@ -151,105 +210,117 @@ public class GraphConverter
 		return String.format("#%02X%02X%02X", r, g, b);
 	}
 
-	private void lineFromEdges(UndirectedGraph<Vertex, Edge> graph, Line line,
-			List<Edge> edges)
+	private void lineFromEdges(Line line, List<Edge> edges)
 	{
-		List<Stop> stops = new ArrayList<>();
-		line.setStops(stops);
-
-		if (edges.isEmpty()) {
-			return;
+		Map<Vertex, Integer> vertexToIndex = new HashMap<>();
+		List<Vertex> vertices = new ArrayList<>();
+
+		int[] sources = new int[edges.size()];
+		int[] targets = new int[edges.size()];
+		for (int i = 0; i < edges.size(); i++) {
+			Edge edge = edges.get(i);
+			sources[i] = index(edge.getSource(), vertexToIndex, vertices);
+			targets[i] = index(edge.getTarget(), vertexToIndex, vertices);
 		}
 
-		// add any of the edges to the line to initialize
-		Set<Edge> todo = new HashSet<>(edges);
-		Edge firstEdge = todo.iterator().next();
-		todo.remove(firstEdge);
-
-		Vertex start = firstEdge.getSource();
-		Vertex end = firstEdge.getTarget();
-
-		append(line, start);
-		append(line, end);
-
-		// determine edges that can be prepended
-		outer: while (!todo.isEmpty()) {
-			Collection<Edge> out = graph.getIncidentEdges(start);
-			for (Edge edge : out) {
-				if (todo.contains(edge)) {
-					todo.remove(edge);
-					start = prepend(line, start, edge);
-					continue outer;
-				}
-			}
-			break outer;
-		}
+		List<int[]> paths = LinePaths.decompose(vertices.size(), sources,
+				targets);
+		createStops(line, paths, v -> station(vertices.get(v)));
+	}
 
-		// determine edges that can be appended
-		outer: while (!todo.isEmpty()) {
-			Collection<Edge> out = graph.getIncidentEdges(end);
-			for (Edge edge : out) {
-				if (todo.contains(edge)) {
-					todo.remove(edge);
-					end = append(line, end, edge);
-					continue outer;
-				}
-			}
-			break outer;
+	private void lineFromEdges(CompactGraph graph, Line line, int[] edges)
+	{
+		Map<Integer, Integer> vertexToIndex = new HashMap<>();
+		List<Integer> vertices = new ArrayList<>();
+
+		int[] sources = new int[edges.length];
+		int[] targets = new int[edges.length];
+		for (int i = 0; i < edges.length; i++) {
+			int edge = edges[i];
+			sources[i] = index(graph.getSource(edge), vertexToIndex, vertices);
+			targets[i] = index(graph.getTarget(edge), vertexToIndex, vertices);
 		}
+
+		List<int[]> paths = LinePaths.decompose(vertices.size(), sources,
+				targets);
+		createStops(line, paths, v -> station(graph, vertices.get(v)));
 	}
 
-	private Vertex prepend(Line line, Vertex firstVertex, Edge edge)
+	private static <T> int index(T vertex, Map<T, Integer> vertexToIndex,
+			List<T> vertices)
 	{
-		if (edge.getSource() == firstVertex) {
-			prepend(line, edge.getTarget());
-			return edge.getTarget();
-		} else if (edge.getTarget() == firstVertex) {
-			prepend(line, edge.getSource());
-			return edge.getSource();
+		Integer index = vertexToIndex.get(vertex);
+		if (index == null) {
+			index = vertices.size();
+			vertices.add(vertex);
+			vertexToIndex.put(vertex, index);
 		}
-		throw new IllegalArgumentException(
-				"vertex is neither source nor target of the edge");
+		return index;
 	}
 
-	private Vertex append(Line line, Vertex lastVertex, Edge edge)
+	/*
+	 * Create the stops of the line from the longest path. If the edges of the
+	 * line do not form a single path, e.g. because the line has branches, each
+	 * remaining path is added as a separate line.
+	 */
+	private void createStops(Line line, List<int[]> paths,
+			IntFunction<Station> stations)
 	{
-		if (edge.getSource() == lastVertex) {
-			append(line, edge.getTarget());
-			return edge.getTarget();
-		} else if (edge.getTarget() == lastVertex) {
-			append(line, edge.getSource());
-			return edge.getSource();
+		if (paths.isEmpty()) {
+			line.setStops(new ArrayList<>());
+			return;
+		}
+
+		List<int[]> sorted = new ArrayList<>(paths);
+		sorted.sort((a, b) -> Integer.compare(b.length, a.length));
+
+		line.setStops(stops(line, sorted.get(0), stations));
+
+		if (sorted.size() == 1) {
+			return;
+		}
+
+		logger.warn(String.format(
+				"line %s does not form a single path, splitting into %d lines",
+				line.getName(), sorted.size()));
+
+		for (int i = 1; i < sorted.size(); i++) {
+			String name = String.format("%s (%d)", line.getName(), i + 1);
+			Line part = new Line(linesList.size(), name, line.getColor(),
+					false, null);
+			linesList.add(part);
+			part.setStops(stops(part, sorted.get(i), stations));
 		}
-		throw new IllegalArgumentException(
-				"vertex is neither source nor target of the edge");
 	}
 
-	private void prepend(Line line, Vertex vertex)
+	private List<Stop> stops(Line line, int[] path,
+			IntFunction<Station> stations)
 	{
-		Station station = station(vertex);
-		Stop stop = new Stop(station, line);
-
-		List<Stop> stops = line.getStops();
-		stops.add(0, stop);
+		List<Stop> stops = new ArrayList<>(path.length);
+		for (int vertex : path) {
+			stops.add(new Stop(stations.apply(vertex), line));
+		}
+		return stops;
 	}
 
-	private void append(Line line, Vertex vertex)
+	private Station station(Vertex vertex)
 	{
-		Station station = station(vertex);
-		Stop stop = new Stop(station, line);
+		return station(vertex.getLabel(), vertex.getX(), vertex.getY());
+	}
 
-		List<Stop> stops = line.getStops();
-		stops.add(stop);
+	private Station station(CompactGraph graph, int vertex)
+	{
+		// GraphML's y axis points downwards
+		return station(graph.getLabel(vertex), graph.getX(vertex),
+				graph.getY(vertex) * -1);
 	}
 
-	private Station station(Vertex vertex)
+	private Station station(String stopName, double x, double y)
 	{
-		String stopName = vertex.getLabel();
 		Station station = nameToStation.get(stopName);
 
 		if (station == null) {
-			Coordinate location = new Coordinate(vertex.getX(), vertex.getY());
+			Coordinate location = new Coordinate(x, y);
 			station = new Station(0, stopName, location, new ArrayList<>());
 			stationsList.add(station);
 			nameToStation.put(stopName, station);
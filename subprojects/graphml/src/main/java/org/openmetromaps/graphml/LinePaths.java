@@ -0,0 +1,113 @@
+// Copyright 2019 Sebastian Kuerten
+//
+// This file is part of OpenMetroMaps.
+//
+// OpenMetroMaps is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Lesser General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// OpenMetroMaps is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with OpenMetroMaps. If not, see <http://www.gnu.org/licenses/>.
+
+package org.openmetromaps.graphml;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Decomposes the edges of a line into paths in time linear in the number of
+ * edges. Vertices and edges are identified by indexes local to the line.
+ * Paths start at vertices of odd degree, i.e. at the endpoints of the line,
+ * so that a line forming a simple path or a circle yields a single path, the
+ * latter starting and ending at the same vertex. Lines with branches or
+ * disconnected parts yield multiple paths.
+ */
+class LinePaths
+{
+
+	static List<int[]> decompose(int numVertices, int[] sources,
+			int[] targets)
+	{
+		int numEdges = sources.length;
+
+		int[] offsets = new int[numVertices + 1];
+		for (int e = 0; e < numEdges; e++) {
+			offsets[sources[e] + 1]++;
+			offsets[targets[e] + 1]++;
+		}
+		for (int v = 0; v < numVertices; v++) {
+			offsets[v + 1] += offsets[v];
+		}
+		int[] adjacency = new int[offsets[numVertices]];
+		int[] next = Arrays.copyOf(offsets, numVertices);
+		for (int e = 0; e < numEdges; e++) {
+			adjacency[next[sources[e]]++] = e;
+			adjacency[next[targets[e]]++] = e;
+		}
+
+		int[] degrees = new int[numVertices];
+		for (int v = 0; v < numVertices; v++) {
+			degrees[v] = offsets[v + 1] - offsets[v];
+		}
+
+		// position of the next candidate edge in each adjacency list
+		int[] positions = Arrays.copyOf(offsets, numVertices);
+		boolean[] used = new boolean[numEdges];
+		int[] buffer = new int[numEdges + 1];
+
+		List<int[]> paths = new ArrayList<>();
+		for (int v = 0; v < numVertices; v++) {
+			while (degrees[v] % 2 == 1) {
+				paths.add(walk(v, sources, targets, offsets, adjacency,
+						positions, degrees, used, buffer));
+			}
+		}
+		for (int v = 0; v < numVertices; v++) {
+			while (degrees[v] > 0) {
+				paths.add(walk(v, sources, targets, offsets, adjacency,
+						positions, degrees, used, buffer));
+			}
+		}
+		return paths;
+	}
+
+	private static int[] walk(int start, int[] sources, int[] targets,
+			int[] offsets, int[] adjacency, int[] positions, int[] degrees,
+			boolean[] used, int[] path)
+	{
+		int length = 0;
+		path[length++] = start;
+
+		int current = start;
+		while (true) {
+			int edge = -1;
+			while (positions[current] < offsets[current + 1]) {
+				int candidate = adjacency[positions[current]++];
+				if (!used[candidate]) {
+					edge = candidate;
+					break;
+				}
+			}
+			if (edge < 0) {
+				break;
+			}
+			used[edge] = true;
+			int other = sources[edge] == current ? targets[edge]
+					: sources[edge];
+			degrees[current]--;
+			degrees[other]--;
+			current = other;
+			path[length++] = current;
+		}
+
+		return Arrays.copyOf(path, length);
+	}
+
+}
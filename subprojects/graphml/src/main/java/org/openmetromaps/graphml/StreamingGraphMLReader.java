@@ -0,0 +1,282 @@
+// Copyright 2019 Sebastian Kuerten
+//
+// This file is part of OpenMetroMaps.
+//
+// OpenMetroMaps is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Lesser General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// OpenMetroMaps is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with OpenMetroMaps. If not, see <http://www.gnu.org/licenses/>.
+
+package org.openmetromaps.graphml;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Reads GraphML files with a StAX parser directly into a {@link CompactGraph}
+ * without building an object graph. Nodes need to have the data keys 'x', 'y'
+ * and 'label', each key of an edge whose value is 'true' denotes a line the
+ * edge belongs to. Data elements of the graph are stored as the graph's data.
+ * Default values declared for keys are respected.
+ */
+public class StreamingGraphMLReader
+{
+
+	private Map<String, String> nodeDefaults = new HashMap<>();
+	private Map<String, String> edgeDefaults = new LinkedHashMap<>();
+	private Map<String, String> data = new HashMap<>();
+
+	private Map<String, Integer> idToVertex = new HashMap<>();
+	private BitSet defined = new BitSet();
+	private int numVertices = 0;
+	private String[] vertexIds = new String[64];
+	private String[] labels = new String[64];
+	private double[] xs = new double[64];
+	private double[] ys = new double[64];
+
+	private int numEdges = 0;
+	private int[] sources = new int[64];
+	private int[] targets = new int[64];
+	private int[] edgeLineOffsets = new int[65];
+	private int numEdgeLines = 0;
+	private int[] edgeLines = new int[64];
+
+	private Map<String, Integer> lineToIndex = new HashMap<>();
+	private List<String> lineIds = new ArrayList<>();
+
+	public CompactGraph read(Path path) throws IOException
+	{
+		try (InputStream input = Files.newInputStream(path)) {
+			return read(new BufferedInputStream(input));
+		}
+	}
+
+	public CompactGraph read(InputStream input) throws IOException
+	{
+		XMLInputFactory factory = XMLInputFactory.newInstance();
+		factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES,
+				false);
+
+		try {
+			XMLStreamReader reader = factory.createXMLStreamReader(input);
+			try {
+				parse(reader);
+			} finally {
+				reader.close();
+			}
+		} catch (XMLStreamException e) {
+			throw new IOException("Error while parsing GraphML", e);
+		}
+
+		int undefined = defined.nextClearBit(0);
+		if (undefined < numVertices) {
+			throw new IOException(String.format(
+					"Edge references undefined node '%s'",
+					vertexIds[undefined]));
+		}
+
+		return new CompactGraph(numVertices,
+				Arrays.copyOf(vertexIds, numVertices),
+				Arrays.copyOf(labels, numVertices),
+				Arrays.copyOf(xs, numVertices), Arrays.copyOf(ys, numVertices),
+				numEdges, Arrays.copyOf(sources, numEdges),
+				Arrays.copyOf(targets, numEdges),
+				Arrays.copyOf(edgeLineOffsets, numEdges + 1),
+				Arrays.copyOf(edgeLines, numEdgeLines), lineIds, data);
+	}
+
+	private void parse(XMLStreamReader reader)
+			throws XMLStreamException, IOException
+	{
+		while (reader.hasNext()) {
+			if (reader.next() != XMLStreamConstants.START_ELEMENT) {
+				continue;
+			}
+			switch (reader.getLocalName()) {
+			case "key":
+				key(reader);
+				break;
+			case "data":
+				String key = reader.getAttributeValue(null, "key");
+				data.put(key, reader.getElementText());
+				break;
+			case "node":
+				node(reader);
+				break;
+			case "edge":
+				edge(reader);
+				break;
+			default:
+				break;
+			}
+		}
+	}
+
+	private void key(XMLStreamReader reader) throws XMLStreamException
+	{
+		String id = reader.getAttributeValue(null, "id");
+		String domain = reader.getAttributeValue(null, "for");
+
+		Map<String, String> values = new HashMap<>();
+		children(reader, values, "default");
+
+		String value = values.get("default");
+		if (value == null) {
+			return;
+		}
+		if (domain == null || domain.equals("all")
+				|| domain.equals("node")) {
+			nodeDefaults.put(id, value);
+		}
+		if (domain == null || domain.equals("all")
+				|| domain.equals("edge")) {
+			edgeDefaults.put(id, value);
+		}
+	}
+
+	private void node(XMLStreamReader reader)
+			throws XMLStreamException, IOException
+	{
+		String id = reader.getAttributeValue(null, "id");
+
+		Map<String, String> values = new HashMap<>(nodeDefaults);
+		children(reader, values, null);
+
+		String x = values.get("x");
+		String y = values.get("y");
+		if (x == null || y == null) {
+			throw new IOException(
+					String.format("Node '%s' has no coordinates", id));
+		}
+
+		int vertex = vertex(id);
+		if (defined.get(vertex)) {
+			throw new IOException(String.format("Duplicate node '%s'", id));
+		}
+		defined.set(vertex);
+		try {
+			xs[vertex] = Double.parseDouble(x);
+			ys[vertex] = Double.parseDouble(y);
+		} catch (NumberFormatException e) {
+			throw new IOException(
+					String.format("Node '%s' has invalid coordinates", id), e);
+		}
+		labels[vertex] = values.get("label");
+	}
+
+	private void edge(XMLStreamReader reader) throws XMLStreamException
+	{
+		int source = vertex(reader.getAttributeValue(null, "source"));
+		int target = vertex(reader.getAttributeValue(null, "target"));
+
+		Map<String, String> values = new LinkedHashMap<>(edgeDefaults);
+		children(reader, values, null);
+
+		if (numEdges == sources.length) {
+			sources = Arrays.copyOf(sources, numEdges * 2);
+			targets = Arrays.copyOf(targets, numEdges * 2);
+			edgeLineOffsets = Arrays.copyOf(edgeLineOffsets, numEdges * 2 + 1);
+		}
+		sources[numEdges] = source;
+		targets[numEdges] = target;
+
+		for (Map.Entry<String, String> entry : values.entrySet()) {
+			if (!"true".equalsIgnoreCase(entry.getValue())) {
+				continue;
+			}
+			if (numEdgeLines == edgeLines.length) {
+				edgeLines = Arrays.copyOf(edgeLines, numEdgeLines * 2);
+			}
+			edgeLines[numEdgeLines++] = line(entry.getKey());
+		}
+
+		numEdges++;
+		edgeLineOffsets[numEdges] = numEdgeLines;
+	}
+
+	/*
+	 * Consume the children of the current element up to its end tag. The text
+	 * of 'data' children is stored by their key, the text of children named
+	 * like the specified name is stored with that name as the key. Any other
+	 * content is skipped.
+	 */
+	private void children(XMLStreamReader reader, Map<String, String> values,
+			String name) throws XMLStreamException
+	{
+		int depth = 0;
+		while (reader.hasNext()) {
+			int event = reader.next();
+			if (event == XMLStreamConstants.START_ELEMENT) {
+				String localName = reader.getLocalName();
+				if (depth == 0 && localName.equals("data")) {
+					String key = reader.getAttributeValue(null, "key");
+					values.put(key, reader.getElementText());
+				} else if (depth == 0 && localName.equals(name)) {
+					values.put(name, reader.getElementText());
+				} else {
+					depth++;
+				}
+			} else if (event == XMLStreamConstants.END_ELEMENT) {
+				if (depth == 0) {
+					return;
+				}
+				depth--;
+			}
+		}
+	}
+
+	private int vertex(String id)
+	{
+		Integer index = idToVertex.get(id);
+		if (index != null) {
+			return index;
+		}
+		if (numVertices == xs.length) {
+			int size = numVertices * 2;
+			vertexIds = Arrays.copyOf(vertexIds, size);
+			labels = Arrays.copyOf(labels, size);
+			xs = Arrays.copyOf(xs, size);
+			ys = Arrays.copyOf(ys, size);
+		}
+		int vertex = numVertices++;
+		vertexIds[vertex] = id;
+		idToVertex.put(id, vertex);
+		return vertex;
+	}
+
+	private int line(String id)
+	{
+		Integer index = lineToIndex.get(id);
+		if (index == null) {
+			index = lineIds.size();
+			lineIds.add(id);
+			lineToIndex.put(id, index);
+		}
+		return index;
+	}
+
+}
@@ -0,0 +1,148 @@
+// Copyright 2019 Sebastian Kuerten
+//
+// This file is part of OpenMetroMaps.
+//
+// OpenMetroMaps is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Lesser General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// OpenMetroMaps is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with OpenMetroMaps. If not, see <http://www.gnu.org/licenses/>.
+package org.openmetromaps.graphml;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+public class TestLinePaths
+{
+
+	@Test
+	public void testSimplePath()
+	{
+		int[] sources = { 0, 1, 2 };
+		int[] targets = { 1, 2, 3 };
+		List<int[]> paths = LinePaths.decompose(4, sources, targets);
+		assertEquals(1, paths.size());
+		assertArrayEquals(new int[] { 0, 1, 2, 3 }, paths.get(0));
+		assertCovers(sources, targets, paths);
+	}
+
+	@Test
+	public void testEdgeDirection()
+	{
+		// edges do not need to point along the path
+		int[] sources = { 1, 1, 3 };
+		int[] targets = { 0, 2, 2 };
+		List<int[]> paths = LinePaths.decompose(4, sources, targets);
+		assertEquals(1, paths.size());
+		assertArrayEquals(new int[] { 0, 1, 2, 3 }, paths.get(0));
+		assertCovers(sources, targets, paths);
+	}
+
+	@Test
+	public void testCircle()
+	{
+		int[] sources = { 0, 1, 2 };
+		int[] targets = { 1, 2, 0 };
+		List<int[]> paths = LinePaths.decompose(3, sources, targets);
+		assertEquals(1, paths.size());
+		assertArrayEquals(new int[] { 0, 1, 2, 0 }, paths.get(0));
+		assertCovers(sources, targets, paths);
+	}
+
+	@Test
+	public void testBranch()
+	{
+		// a Y: 0 - 1 - 2 with a branch 1 - 3
+		int[] sources = { 0, 1, 1 };
+		int[] targets = { 1, 2, 3 };
+		List<int[]> paths = LinePaths.decompose(4, sources, targets);
+		assertEquals(2, paths.size());
+		assertArrayEquals(new int[] { 0, 1, 2 }, paths.get(0));
+		assertArrayEquals(new int[] { 1, 3 }, paths.get(1));
+		assertCovers(sources, targets, paths);
+	}
+
+	@Test
+	public void testLollipop()
+	{
+		// a path 0 - 1 ending in a circle 1 - 2 - 3 - 1
+		int[] sources = { 0, 1, 2, 3 };
+		int[] targets = { 1, 2, 3, 1 };
+		List<int[]> paths = LinePaths.decompose(4, sources, targets);
+		assertEquals(1, paths.size());
+		assertArrayEquals(new int[] { 0, 1, 2, 3, 1 }, paths.get(0));
+		assertCovers(sources, targets, paths);
+	}
+
+	@Test
+	public void testSelfLoop()
+	{
+		int[] sources = { 0, 1 };
+		int[] targets = { 1, 1 };
+		List<int[]> paths = LinePaths.decompose(2, sources, targets);
+		assertEquals(1, paths.size());
+		assertArrayEquals(new int[] { 0, 1, 1 }, paths.get(0));
+		assertCovers(sources, targets, paths);
+	}
+
+	@Test
+	public void testDisconnected()
+	{
+		// a path 0 - 1 - 2 and a separate circle 3 - 4 - 5 - 3
+		int[] sources = { 0, 1, 3, 4, 5 };
+		int[] targets = { 1, 2, 4, 5, 3 };
+		List<int[]> paths = LinePaths.decompose(6, sources, targets);
+		assertEquals(2, paths.size());
+		assertArrayEquals(new int[] { 0, 1, 2 }, paths.get(0));
+		assertArrayEquals(new int[] { 3, 4, 5, 3 }, paths.get(1));
+		assertCovers(sources, targets, paths);
+	}
+
+	@Test
+	public void testNoEdges()
+	{
+		List<int[]> paths = LinePaths.decompose(3, new int[0], new int[0]);
+		assertTrue(paths.isEmpty());
+	}
+
+	/*
+	 * Check that the paths traverse every edge exactly once.
+	 */
+	private static void assertCovers(int[] sources, int[] targets,
+			List<int[]> paths)
+	{
+		List<String> expected = new ArrayList<>();
+		for (int e = 0; e < sources.length; e++) {
+			expected.add(edge(sources[e], targets[e]));
+		}
+		List<String> actual = new ArrayList<>();
+		for (int[] path : paths) {
+			for (int i = 1; i < path.length; i++) {
+				actual.add(edge(path[i - 1], path[i]));
+			}
+		}
+		Collections.sort(expected);
+		Collections.sort(actual);
+		assertEquals(expected, actual);
+	}
+
+	private static String edge(int a, int b)
+	{
+		return Math.min(a, b) + "-" + Math.max(a, b);
+	}
+
+}
@@ -0,0 +1,160 @@
+// Copyright 2019 Sebastian Kuerten
+//
+// This file is part of OpenMetroMaps.
+//
+// OpenMetroMaps is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Lesser General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// OpenMetroMaps is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with OpenMetroMaps. If not, see <http://www.gnu.org/licenses/>.
+
+package org.openmetromaps.gtfs;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A minimal reader for comma separated values as used in GTFS files. Fields may
+ * be quoted using double quotes, quoted fields may contain commas, escaped
+ * double quotes and line breaks. A byte order mark at the beginning of the
+ * input is skipped.
+ */
+public class CsvReader implements Closeable
+{
+
+	private static final char BOM = '\uFEFF';
+
+	private BufferedReader reader;
+
+	private int lineNumber = 0;
+	private int recordLineNumber = 0;
+
+	private List<String> fields = new ArrayList<>();
+	private StringBuilder buffer = new StringBuilder();
+
+	public CsvReader(BufferedReader reader)
+	{
+		this.reader = reader;
+	}
+
+	/**
+	 * @return the fields of the next record or null if the end of input has
+	 *         been reached.
+	 */
+	public String[] next() throws IOException
+	{
+		String line = readLine();
+		while (line != null && line.isEmpty()) {
+			line = readLine();
+		}
+		if (line == null) {
+			return null;
+		}
+		recordLineNumber = lineNumber;
+
+		fields.clear();
+		buffer.setLength(0);
+
+		boolean quoted = false;
+		while (true) {
+			int n = line.length();
+			for (int i = 0; i < n; i++) {
+				char c = line.charAt(i);
+				if (quoted) {
+					if (c == '"') {
+						if (i + 1 < n && line.charAt(i + 1) == '"') {
+							buffer.append('"');
+							i++;
+						} else {
+							quoted = false;
+						}
+					} else {
+						buffer.append(c);
+					}
+				} else if (c == '"') {
+					quoted = true;
+				} else if (c == ',') {
+					fields.add(buffer.toString());
+					buffer.setLength(0);
+				} else {
+					buffer.append(c);
+				}
+			}
+			if (!quoted) {
+				break;
+			}
+			// a quoted field continues on the next line
+			line = readLine();
+			if (line == null) {
+				break;
+			}
+			buffer.append('\n');
+		}
+		fields.add(buffer.toString());
+
+		return fields.toArray(new String[fields.size()]);
+	}
+
+	/**
+	 * @return the number of the line at which the record last returned by
+	 *         {@link #next()} starts, counting from 1.
+	 */
+	public int getLineNumber()
+	{
+		return recordLineNumber;
+	}
+
+	private String readLine() throws IOException
+	{
+		String line = reader.readLine();
+		if (line == null) {
+			return null;
+		}
+		lineNumber++;
+		if (lineNumber == 1 && !line.isEmpty() && line.charAt(0) == BOM) {
+			// a byte order mark decoded as a character, trim() does not
+			// remove it
+			return line.substring(1);
+		}
+		return line;
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		reader.close();
+	}
+
+	public static int index(String[] header, String column)
+	{
+		for (int i = 0; i < header.length; i++) {
+			if (header[i].trim().equals(column)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @return the value at the specified index or an empty string if the row
+	 *         is too short or the column does not exist.
+	 */
+	public static String value(String[] row, int index)
+	{
+		if (index < 0 || index >= row.length) {
+			return "";
+		}
+		return row[index];
+	}
+
+}
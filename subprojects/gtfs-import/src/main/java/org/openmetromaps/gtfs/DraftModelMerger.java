@@ -0,0 +1,137 @@
+// Copyright 2019 Sebastian Kuerten
+//
+// This file is part of OpenMetroMaps.
+//
+// OpenMetroMaps is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Lesser General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// OpenMetroMaps is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with OpenMetroMaps. If not, see <http://www.gnu.org/licenses/>.
+
+package org.openmetromaps.gtfs;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.openmetromaps.misc.PointIndex;
+
+/**
+ * Merges the models of several GTFS feeds into a single model. Stations of
+ * different feeds are merged if they are closer than a maximum distance and,
+ * optionally, have the same name. Candidates are looked up in a
+ * {@link PointIndex}, so that merging takes linear time in the number of
+ * stations for realistic data.
+ */
+public class DraftModelMerger
+{
+
+	private boolean requireSameName;
+
+	private PointIndex<DraftStation> index;
+
+	private DraftModel model = new DraftModel();
+
+	private int numStations = 0;
+	private int numMerged = 0;
+
+	/**
+	 * @param maxDistance
+	 *            the maximum distance in meters of stations to merge. If not
+	 *            positive, stations of different feeds are never merged.
+	 * @param requireSameName
+	 *            whether only stations with the same name may be merged.
+	 */
+	public DraftModelMerger(double maxDistance, boolean requireSameName)
+	{
+		this.requireSameName = requireSameName;
+		if (maxDistance > 0) {
+			index = new PointIndex<>(maxDistance);
+		}
+	}
+
+	public DraftModel getModel()
+	{
+		return model;
+	}
+
+	/**
+	 * @return the number of stations in the merged model.
+	 */
+	public int getNumStations()
+	{
+		return numStations;
+	}
+
+	/**
+	 * @return the number of stations that have been merged with a station of
+	 *         another feed.
+	 */
+	public int getNumMerged()
+	{
+		return numMerged;
+	}
+
+	/**
+	 * Add the lines and stations of a feed's model. Identifiers are made
+	 * unique by prepending the specified prefix.
+	 */
+	public void add(String prefix, DraftModel draft)
+	{
+		// stations merged or created for this feed, by original id
+		Map<String, DraftStation> idToStation = new HashMap<>();
+		List<DraftStation> created = new ArrayList<>();
+
+		for (DraftLine line : draft.getLines()) {
+			List<DraftStation> stations = new ArrayList<>();
+			for (DraftStation station : line.getStations()) {
+				DraftStation merged = idToStation.get(station.getId());
+				if (merged == null) {
+					merged = find(station);
+					if (merged != null) {
+						numMerged++;
+					} else {
+						merged = new DraftStation(prefix + station.getId(),
+								station.getName(), station.getSource(),
+								station.getLon(), station.getLat());
+						created.add(merged);
+						numStations++;
+					}
+					idToStation.put(station.getId(), merged);
+				}
+				stations.add(merged);
+			}
+			model.getLines().add(new DraftLine(prefix + line.getId(),
+					line.getSource(), stations, line.getColor()));
+		}
+
+		// make the stations of this feed available for merging with the
+		// following feeds only
+		if (index != null) {
+			for (DraftStation station : created) {
+				index.add(station.getLon(), station.getLat(), station);
+			}
+		}
+	}
+
+	private DraftStation find(DraftStation station)
+	{
+		if (index == null) {
+			return null;
+		}
+		if (!requireSameName) {
+			return index.nearest(station.getLon(), station.getLat());
+		}
+		return index.nearest(station.getLon(), station.getLat(),
+				candidate -> candidate.getName().equals(station.getName()));
+	}
+
+}
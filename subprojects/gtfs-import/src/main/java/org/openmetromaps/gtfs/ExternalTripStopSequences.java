@@ -0,0 +1,327 @@
+// Copyright 2019 Sebastian Kuerten
+//
+// This file is part of OpenMetroMaps.
+//
+// OpenMetroMaps is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Lesser General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// OpenMetroMaps is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with OpenMetroMaps. If not, see <http://www.gnu.org/licenses/>.
+
+package org.openmetromaps.gtfs;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Disk backed alternative to {@link TripStopSequences} for feeds whose stop
+ * times do not fit into memory. Stop times are buffered up to a configurable
+ * amount of memory, sorted by trip and sequence number and spilled to
+ * temporary run files as fixed-width (trip, sequence, stop) records. Finally
+ * the runs are merged and each trip's stops are streamed out in trip order.
+ * Only the memory for the stop times is bounded by this class, see
+ * {@link GtfsImporter#setSortMemory(long)}.
+ */
+public class ExternalTripStopSequences implements Closeable
+{
+
+	public static interface Handler
+	{
+
+		public void handle(int trip, int[] stops) throws IOException;
+
+	}
+
+	// a long key (trip and sequence) and an int value (stop) per entry
+	private static final int BYTES_PER_ENTRY = 12;
+
+	private static final int MIN_BUFFER_SIZE = 4 * 1024;
+	private static final int MAX_BUFFER_SIZE = 64 * 1024;
+
+	private Path directory;
+	private long maxMemory;
+
+	private long[] keys;
+	private int[] stops;
+	private int size = 0;
+
+	private List<Path> runs = new ArrayList<>();
+
+	/**
+	 * @param directory
+	 *            a temporary directory to store the sorted runs in.
+	 * @param maxMemory
+	 *            the maximum number of bytes to use for buffering entries.
+	 */
+	public ExternalTripStopSequences(Path directory, long maxMemory)
+	{
+		this.directory = directory;
+		this.maxMemory = maxMemory;
+		int capacity = (int) Math.min(Integer.MAX_VALUE - 8,
+				Math.max(1024, maxMemory / BYTES_PER_ENTRY));
+		keys = new long[capacity];
+		stops = new int[capacity];
+	}
+
+	public int getNumRuns()
+	{
+		return runs.size();
+	}
+
+	public void add(int trip, int sequence, int stop) throws IOException
+	{
+		if (size == keys.length) {
+			spill();
+		}
+		keys[size] = ((long) trip << 32) | (sequence & 0xffffffffL);
+		stops[size] = stop;
+		size++;
+	}
+
+	private void spill() throws IOException
+	{
+		sort(keys, stops, 0, size - 1);
+
+		Path run = directory.resolve(String.format("run-%d.bin", runs.size()));
+		try (DataOutputStream output = new DataOutputStream(
+				new BufferedOutputStream(Files.newOutputStream(run),
+						MAX_BUFFER_SIZE))) {
+			for (int i = 0; i < size; i++) {
+				output.writeLong(keys[i]);
+				output.writeInt(stops[i]);
+			}
+		}
+		runs.add(run);
+		size = 0;
+	}
+
+	/**
+	 * Merge all entries added so far and pass the stops of each trip, ordered
+	 * by sequence number, to the handler. Trips are reported in ascending
+	 * order.
+	 */
+	public void stream(Handler handler) throws IOException
+	{
+		if (runs.isEmpty()) {
+			sort(keys, stops, 0, size - 1);
+			streamBuffer(handler);
+			return;
+		}
+
+		if (size > 0) {
+			spill();
+		}
+		// the run buffers replace the entry buffer
+		keys = null;
+		stops = null;
+
+		int bufferSize = (int) Math.max(MIN_BUFFER_SIZE,
+				Math.min(MAX_BUFFER_SIZE, maxMemory / (runs.size() + 1)));
+
+		PriorityQueue<Run> queue = new PriorityQueue<>(runs.size());
+		List<Run> open = new ArrayList<>();
+		try {
+			for (Path path : runs) {
+				Run run = new Run(path, bufferSize);
+				open.add(run);
+				if (run.next()) {
+					queue.add(run);
+				}
+			}
+
+			Group group = new Group(handler);
+			while (!queue.isEmpty()) {
+				Run run = queue.poll();
+				group.add(run.key, run.stop);
+				if (run.next()) {
+					queue.add(run);
+				}
+			}
+			group.finish();
+		} finally {
+			for (Run run : open) {
+				run.close();
+			}
+		}
+	}
+
+	private void streamBuffer(Handler handler) throws IOException
+	{
+		Group group = new Group(handler);
+		for (int i = 0; i < size; i++) {
+			group.add(keys[i], stops[i]);
+		}
+		group.finish();
+	}
+
+	/**
+	 * Delete the temporary run files.
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		for (Path run : runs) {
+			Files.deleteIfExists(run);
+		}
+		runs.clear();
+	}
+
+	private static class Group
+	{
+
+		private Handler handler;
+
+		private int trip = -1;
+		private int[] tripStops = new int[64];
+		private int tripSize = 0;
+
+		Group(Handler handler)
+		{
+			this.handler = handler;
+		}
+
+		void add(long key, int stop) throws IOException
+		{
+			int entryTrip = (int) (key >>> 32);
+			if (entryTrip != trip) {
+				finish();
+				trip = entryTrip;
+			}
+			if (tripSize == tripStops.length) {
+				tripStops = Arrays.copyOf(tripStops, tripSize * 2);
+			}
+			tripStops[tripSize++] = stop;
+		}
+
+		void finish() throws IOException
+		{
+			if (tripSize > 0) {
+				handler.handle(trip, Arrays.copyOf(tripStops, tripSize));
+			}
+			tripSize = 0;
+		}
+
+	}
+
+	private static class Run implements Comparable<Run>, Closeable
+	{
+
+		private DataInputStream input;
+
+		private long key;
+		private int stop;
+
+		Run(Path path, int bufferSize) throws IOException
+		{
+			input = new DataInputStream(new BufferedInputStream(
+					Files.newInputStream(path), bufferSize));
+		}
+
+		boolean next() throws IOException
+		{
+			try {
+				key = input.readLong();
+			} catch (EOFException e) {
+				return false;
+			}
+			stop = input.readInt();
+			return true;
+		}
+
+		@Override
+		public int compareTo(Run o)
+		{
+			int cmp = Long.compare(key, o.key);
+			if (cmp != 0) {
+				return cmp;
+			}
+			return Integer.compare(stop, o.stop);
+		}
+
+		@Override
+		public void close() throws IOException
+		{
+			input.close();
+		}
+
+	}
+
+	/*
+	 * Sort the entries by key and stop, i.e. the same order the in-memory
+	 * variant produces. Quicksort on the parallel arrays, insertion sort for
+	 * short ranges.
+	 */
+	private static void sort(long[] keys, int[] values, int lo, int hi)
+	{
+		while (hi - lo > 16) {
+			int mid = (lo + hi) >>> 1;
+			long pivotKey = keys[mid];
+			int pivotValue = values[mid];
+			int i = lo;
+			int j = hi;
+			while (i <= j) {
+				while (compare(keys[i], values[i], pivotKey, pivotValue) < 0) {
+					i++;
+				}
+				while (compare(keys[j], values[j], pivotKey, pivotValue) > 0) {
+					j--;
+				}
+				if (i <= j) {
+					swap(keys, values, i++, j--);
+				}
+			}
+			// recurse into the smaller part to bound the stack depth
+			if (j - lo < hi - i) {
+				sort(keys, values, lo, j);
+				lo = i;
+			} else {
+				sort(keys, values, i, hi);
+				hi = j;
+			}
+		}
+		for (int i = lo + 1; i <= hi; i++) {
+			for (int j = i; j > lo && compare(keys[j - 1], values[j - 1],
+					keys[j], values[j]) > 0; j--) {
+				swap(keys, values, j - 1, j);
+			}
+		}
+	}
+
+	private static int compare(long key1, int value1, long key2, int value2)
+	{
+		int cmp = Long.compare(key1, key2);
+		if (cmp != 0) {
+			return cmp;
+		}
+		return Integer.compare(value1, value2);
+	}
+
+	private static void swap(long[] keys, int[] values, int i, int j)
+	{
+		long key = keys[i];
+		keys[i] = keys[j];
+		keys[j] = key;
+		int value = values[i];
+		values[i] = values[j];
+		values[j] = value;
+	}
+
+}
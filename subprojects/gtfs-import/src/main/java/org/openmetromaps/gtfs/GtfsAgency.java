@@ -1,4 +1,4 @@
-// Copyright 2017 Sebastian Kuerten
+// Copyright 2019 Sebastian Kuerten
 //
 // This file is part of OpenMetroMaps.
 //
@@ -17,32 +17,26 @@
 
 package org.openmetromaps.gtfs;
 
-public class StopRef implements Comparable<StopRef>
+public class GtfsAgency
 {
 
-	private int seq;
-	private String stopId;
+	private String id;
+	private String name;
 
-	public StopRef(int seq, String stopId)
+	public GtfsAgency(String id, String name)
 	{
-		this.seq = seq;
-		this.stopId = stopId;
+		this.id = id;
+		this.name = name;
 	}
 
-	public int getSequence()
+	public String getId()
 	{
-		return seq;
+		return id;
 	}
 
-	public String getStopId()
+	public String getName()
 	{
-		return stopId;
-	}
-
-	@Override
-	public int compareTo(StopRef other)
-	{
-		return Integer.compare(seq, other.seq);
+		return name;
 	}
 
 }
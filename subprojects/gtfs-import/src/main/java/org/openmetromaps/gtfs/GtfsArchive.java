@@ -0,0 +1,183 @@
+// Copyright 2019 Sebastian Kuerten
+//
+// This file is part of OpenMetroMaps.
+//
+// OpenMetroMaps is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Lesser General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// OpenMetroMaps is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with OpenMetroMaps. If not, see <http://www.gnu.org/licenses/>.
+
+package org.openmetromaps.gtfs;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Provides access to the files of a zipped GTFS feed. Byte order marks at the
+ * beginning of the individual files are skipped by {@link CsvReader} so that
+ * feeds containing them do not need to be rewritten in advance.
+ */
+public class GtfsArchive implements Closeable
+{
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private Path path;
+
+	private ZipFile zip;
+
+	public GtfsArchive(Path path) throws IOException
+	{
+		this.path = path;
+		zip = new ZipFile(path.toFile());
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		zip.close();
+	}
+
+	public boolean hasFile(String filename)
+	{
+		return zip.getEntry(filename) != null;
+	}
+
+	public InputStream open(String filename) throws IOException
+	{
+		ZipEntry entry = zip.getEntry(filename);
+		if (entry == null) {
+			throw new IOException("No entry '" + filename + "' in " + path);
+		}
+		return new BufferedInputStream(zip.getInputStream(entry), BUFFER_SIZE);
+	}
+
+	public CsvReader csv(String filename) throws IOException
+	{
+		BufferedReader reader = new BufferedReader(new InputStreamReader(
+				open(filename), StandardCharsets.UTF_8), BUFFER_SIZE);
+		return new CsvReader(reader);
+	}
+
+	public List<GtfsAgency> readAgency() throws IOException
+	{
+		List<GtfsAgency> agencies = new ArrayList<>();
+		try (CsvReader csv = csv("agency.txt")) {
+			String[] header = csv.next();
+			if (header == null) {
+				return agencies;
+			}
+			int idxId = CsvReader.index(header, "agency_id");
+			int idxName = CsvReader.index(header, "agency_name");
+
+			String[] row;
+			while ((row = csv.next()) != null) {
+				agencies.add(new GtfsAgency(CsvReader.value(row, idxId),
+						CsvReader.value(row, idxName)));
+			}
+		}
+		return agencies;
+	}
+
+	public List<GtfsRoute> readRoutes() throws IOException
+	{
+		List<GtfsRoute> routes = new ArrayList<>();
+		try (CsvReader csv = csv("routes.txt")) {
+			String[] header = csv.next();
+			if (header == null) {
+				return routes;
+			}
+			int idxId = required(header, "route_id", "routes.txt");
+			int idxShortName = CsvReader.index(header, "route_short_name");
+			int idxLongName = CsvReader.index(header, "route_long_name");
+			int idxColor = CsvReader.index(header, "route_color");
+
+			String[] row;
+			while ((row = csv.next()) != null) {
+				routes.add(new GtfsRoute(CsvReader.value(row, idxId),
+						CsvReader.value(row, idxShortName),
+						CsvReader.value(row, idxLongName),
+						CsvReader.value(row, idxColor)));
+			}
+		}
+		return routes;
+	}
+
+	public List<GtfsStop> readStops() throws IOException
+	{
+		List<GtfsStop> stops = new ArrayList<>();
+		try (CsvReader csv = csv("stops.txt")) {
+			String[] header = csv.next();
+			if (header == null) {
+				return stops;
+			}
+			int idxId = required(header, "stop_id", "stops.txt");
+			int idxName = CsvReader.index(header, "stop_name");
+			int idxLat = required(header, "stop_lat", "stops.txt");
+			int idxLon = required(header, "stop_lon", "stops.txt");
+			int idxType = CsvReader.index(header, "location_type");
+			int idxParent = CsvReader.index(header, "parent_station");
+
+			String[] row;
+			while ((row = csv.next()) != null) {
+				stops.add(new GtfsStop(CsvReader.value(row, idxId),
+						CsvReader.value(row, idxName),
+						CsvReader.value(row, idxLat),
+						CsvReader.value(row, idxLon),
+						CsvReader.value(row, idxType),
+						CsvReader.value(row, idxParent)));
+			}
+		}
+		return stops;
+	}
+
+	public List<GtfsTrip> readTrips() throws IOException
+	{
+		List<GtfsTrip> trips = new ArrayList<>();
+		try (CsvReader csv = csv("trips.txt")) {
+			String[] header = csv.next();
+			if (header == null) {
+				return trips;
+			}
+			int idxId = required(header, "trip_id", "trips.txt");
+			int idxRoute = required(header, "route_id", "trips.txt");
+
+			String[] row;
+			while ((row = csv.next()) != null) {
+				trips.add(new GtfsTrip(CsvReader.value(row, idxId),
+						CsvReader.value(row, idxRoute)));
+			}
+		}
+		return trips;
+	}
+
+	private static int required(String[] header, String column,
+			String filename) throws IOException
+	{
+		int index = CsvReader.index(header, column);
+		if (index < 0) {
+			throw new IOException(String.format(
+					"Missing required column '%s' in %s", column, filename));
+		}
+		return index;
+	}
+
+}
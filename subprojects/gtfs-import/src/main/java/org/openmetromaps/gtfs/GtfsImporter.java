@@ -18,6 +18,7 @@
 package org.openmetromaps.gtfs;
 
 import java.io.IOException;
+import java.io.PrintStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
@@ -25,53 +26,63 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
 import java.util.zip.ZipException;
 
-import org.openmetromaps.gtfs4j.csv.GtfsZip;
-import org.openmetromaps.gtfs4j.model.Agency;
-import org.openmetromaps.gtfs4j.model.Route;
-import org.openmetromaps.gtfs4j.model.Stop;
-import org.openmetromaps.gtfs4j.model.StopTime;
-import org.openmetromaps.gtfs4j.model.Trip;
+import org.openmetromaps.misc.ImportMetrics;
+import org.openmetromaps.misc.ImportPhase;
 import org.openmetromaps.misc.NameChanger;
 
-import com.google.common.collect.HashMultimap;
-import com.google.common.collect.HashMultiset;
-import com.google.common.collect.Lists;
+import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
-import com.google.common.collect.Multiset;
-import com.google.common.collect.Multisets;
-
-import de.topobyte.collections.util.ListUtil;
 
 public class GtfsImporter
 {
 
 	private Path path;
 	private NameChanger nameChanger;
-	private boolean removeBoms;
+	private boolean parallel = false;
+	private int numThreads = Runtime.getRuntime().availableProcessors();
+	private long sortMemory = 0;
+	private PrintStream out = System.out;
+	private ImportMetrics metrics = new ImportMetrics("gtfs");
+	private String phasePrefix = "";
 
-	private GtfsZip zip;
+	private GtfsArchive archive;
 
-	private Multimap<String, Route> nameToRoute = HashMultimap.create();
+	private Multimap<String, GtfsRoute> nameToRoute = ArrayListMultimap
+			.create();
 	private List<String> routeNames;
-	private Multimap<String, Trip> routeIdToTrips = HashMultimap.create();
-	private Multimap<String, StopRef> tripIdToStopRefs = HashMultimap.create();
-	private Map<String, StopIdList> tripIdToStopList = Maps.newHashMap();
-	private Map<String, Stop> stopIdToStop = Maps.newHashMap();
+	private Multimap<String, GtfsTrip> routeIdToTrips = ArrayListMultimap
+			.create();
+	private IdDictionary tripIds = new IdDictionary();
+	private IdDictionary stationIds = new IdDictionary();
+	private Map<String, Integer> stopIdToStationIndex = Maps.newHashMap();
+	private TripStopSequences tripStopSequences;
+	private ExternalTripStopSequences externalTripStopSequences;
+	private Path sortDirectory;
+	private TripPattern[] tripPatterns;
+	private IdDictionary stationNames = new IdDictionary();
+	private int[] stationToName;
+	private Map<String, GtfsStop> stopIdToStop = Maps.newHashMap();
 	private Map<String, StopIdList> selectedStopLists = Maps.newHashMap();
 
 	private DraftModel model = new DraftModel();
 
-	public GtfsImporter(Path path, NameChanger nameChanger, boolean removeBoms)
+	public GtfsImporter(Path path, NameChanger nameChanger)
 	{
 		this.path = path;
 		this.nameChanger = nameChanger;
-		this.removeBoms = removeBoms;
 	}
 
 	public DraftModel getModel()
@@ -79,53 +90,230 @@ public class GtfsImporter
 		return model;
 	}
 
+	public boolean isParallel()
+	{
+		return parallel;
+	}
+
+	/**
+	 * In parallel mode the independent files of the feed are read
+	 * concurrently and routes are analyzed on a fork-join pool. Output and
+	 * resulting model are the same as in sequential mode.
+	 */
+	public void setParallel(boolean parallel)
+	{
+		this.parallel = parallel;
+	}
+
+	public int getNumThreads()
+	{
+		return numThreads;
+	}
+
+	public void setNumThreads(int numThreads)
+	{
+		this.numThreads = numThreads;
+	}
+
+	/**
+	 * Set the stream to print information about the imported feed to. Defaults
+	 * to standard output.
+	 */
+	public void setOutput(PrintStream out)
+	{
+		this.out = out;
+	}
+
+	public ImportMetrics getMetrics()
+	{
+		return metrics;
+	}
+
+	public void setMetrics(ImportMetrics metrics)
+	{
+		this.metrics = metrics;
+	}
+
+	public String getPhasePrefix()
+	{
+		return phasePrefix;
+	}
+
+	/**
+	 * Set a prefix for the names of the phases recorded in the metrics, to
+	 * tell apart the phases of several importers sharing the same metrics.
+	 */
+	public void setPhasePrefix(String phasePrefix)
+	{
+		this.phasePrefix = phasePrefix;
+	}
+
+	public long getSortMemory()
+	{
+		return sortMemory;
+	}
+
+	/**
+	 * Set a limit in bytes for buffering stop times in memory. If positive,
+	 * stop times are sorted externally using temporary files, which allows
+	 * importing feeds whose stop times do not fit into memory. Zero (the
+	 * default) keeps all stop times in memory.
+	 * 
+	 * The limit applies to the stop times only. The other files of the feed
+	 * are still kept in memory, i.e. all stops and trips, the dictionaries of
+	 * trip and station ids, one pattern reference per trip and the distinct
+	 * stop sequences of the trips, so memory usage still grows linearly with
+	 * the number of trips and stops, but no longer with the number of stop
+	 * times.
+	 */
+	public void setSortMemory(long sortMemory)
+	{
+		this.sortMemory = sortMemory;
+	}
+
 	public void execute() throws ZipException, IOException
 	{
-		if (removeBoms) {
-			Path tmp = Files.createTempFile("gtfs", ".zip");
-			GtfsBomRemover bomRemover = new GtfsBomRemover(path, tmp);
-			bomRemover.execute();
+		// BOMs are skipped while reading the individual files, the archive
+		// itself is never rewritten
+		archive = new GtfsArchive(path);
+		try {
+			importArchive();
+		} finally {
+			archive.close();
+		}
+	}
 
-			zip = new GtfsZip(tmp);
-			tmp.toFile().deleteOnExit();
+	private void importArchive() throws IOException
+	{
+		if (sortMemory > 0) {
+			sortDirectory = Files.createTempDirectory("gtfs-sort");
+			externalTripStopSequences = new ExternalTripStopSequences(
+					sortDirectory, sortMemory);
 		} else {
-			zip = new GtfsZip(path);
+			tripStopSequences = new TripStopSequences();
 		}
 
-		printAgencyInfo();
+		try {
+			try (ImportPhase phase = metrics.start(phasePrefix + "read")) {
+				phase.addBytes(Files.size(path));
+				if (parallel) {
+					readParallel(phase);
+				} else {
+					readSequential(phase);
+				}
+			}
 
-		readRoutes();
+			try (ImportPhase phase = metrics
+					.start(phasePrefix + "build-trip-patterns")) {
+				buildTripPatterns();
+				phase.addEntities(tripPatterns.length);
+			}
+		} finally {
+			if (externalTripStopSequences != null) {
+				externalTripStopSequences.close();
+				externalTripStopSequences = null;
+				Files.deleteIfExists(sortDirectory);
+			}
+		}
 
-		printRouteInfo();
+		try (ImportPhase phase = metrics
+				.start(phasePrefix + "analyze-routes")) {
+			if (parallel) {
+				analyzeRoutesParallel();
+			} else {
+				analyzeRoutes();
+			}
+			phase.addEntities(routeNames.size());
+		}
 
-		readStops();
+		try (ImportPhase phase = metrics.start(phasePrefix + "create-model")) {
+			createModel();
+			phase.addEntities(model.getLines().size());
+		}
+	}
 
-		readTrips();
+	private void readSequential(ImportPhase phase) throws IOException
+	{
+		printAgencyInfo(archive.readAgency());
 
-		readStopTimes();
+		readRoutes(archive.readRoutes(), phase);
 
-		buildTripStopLists();
+		printRouteInfo();
 
-		analyzeRoutes();
+		readStops(archive.readStops(), phase);
+
+		readTrips(archive.readTrips(), phase);
+
+		readStopTimes(phase);
+	}
 
-		createModel();
+	/*
+	 * Agency, routes, stops and trips live in separate zip entries and are
+	 * parsed concurrently. Reading stop times needs the stops for mapping stop
+	 * ids to stations, so it starts as soon as they are available and runs
+	 * while routes and trips are indexed.
+	 */
+	private void readParallel(ImportPhase phase) throws IOException
+	{
+		ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+		try {
+			Future<List<GtfsAgency>> agencies = executor
+					.submit(() -> archive.readAgency());
+			Future<List<GtfsRoute>> routes = executor
+					.submit(() -> archive.readRoutes());
+			Future<List<GtfsStop>> stops = executor
+					.submit(() -> archive.readStops());
+			Future<List<GtfsTrip>> trips = executor
+					.submit(() -> archive.readTrips());
+
+			readStops(get(stops), phase);
+			Future<?> stopTimes = executor.submit(() -> {
+				readStopTimes(phase);
+				return null;
+			});
+
+			printAgencyInfo(get(agencies));
+			readRoutes(get(routes), phase);
+			printRouteInfo();
+			readTrips(get(trips), phase);
+
+			get(stopTimes);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
 
-		zip.close();
+	private static <T> T get(Future<T> future) throws IOException
+	{
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while reading feed", e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new IOException("Error while reading feed", cause);
+		}
 	}
 
-	private void printAgencyInfo() throws IOException
+	private void printAgencyInfo(List<GtfsAgency> agencies)
 	{
-		List<Agency> agencies = zip.readAgency();
-		for (Agency agency : agencies) {
-			System.out.println(String.format("agency: %s, %s", agency.getId(),
+		for (GtfsAgency agency : agencies) {
+			out.println(String.format("agency: %s, %s", agency.getId(),
 					agency.getName()));
 		}
 	}
 
-	private void readRoutes() throws IOException
+	private void readRoutes(List<GtfsRoute> routes, ImportPhase phase)
 	{
-		List<Route> routes = zip.readRoutes();
-		for (Route route : routes) {
+		phase.addEntities(routes.size());
+		for (GtfsRoute route : routes) {
 			String name = getName(route);
 			nameToRoute.put(name, route);
 		}
@@ -134,7 +322,7 @@ public class GtfsImporter
 		Collections.sort(routeNames);
 	}
 
-	private String getName(Route route)
+	private String getName(GtfsRoute route)
 	{
 		if (!route.getShortName().isEmpty()) {
 			return route.getShortName();
@@ -144,161 +332,297 @@ public class GtfsImporter
 
 	private void printRouteInfo()
 	{
-		System.out.println("route: <name> (<versions>)");
+		out.println("route: <name> (<versions>)");
 		for (String name : routeNames) {
-			Collection<Route> versions = nameToRoute.get(name);
-			System.out.println(
+			Collection<GtfsRoute> versions = nameToRoute.get(name);
+			out.println(
 					String.format("route: %s (%d)", name, versions.size()));
 		}
 	}
 
-	private void readTrips() throws IOException
+	private void readTrips(List<GtfsTrip> trips, ImportPhase phase)
 	{
-		List<Trip> trips = zip.readTrips();
-
-		for (Trip trip : trips) {
+		phase.addEntities(trips.size());
+		for (GtfsTrip trip : trips) {
 			routeIdToTrips.put(trip.getRouteId(), trip);
 		}
 	}
 
-	private void readStopTimes() throws IOException
+	/*
+	 * Stream stop_times.txt row by row instead of materializing a StopTime
+	 * object per row. Trip and station ids are dictionary encoded and each
+	 * trip's stops are collected in primitive arrays.
+	 */
+	private void readStopTimes(ImportPhase phase) throws IOException
 	{
-		List<StopTime> stopTimes = zip.readStopTimes();
-		for (StopTime stopTime : stopTimes) {
-			String tripId = stopTime.getTripId();
-			String valSeq = stopTime.getStopSequence();
-			int seq = Integer.parseInt(valSeq);
-			String stopId = stopTime.getStopId();
-			Stop stop = stopIdToStop.get(stopId);
-			String parentStation = stop.getParentStation();
-			String stationId = stop.getId();
-			if (parentStation != null && !parentStation.isEmpty()) {
-				stationId = parentStation;
+		StopTimesStreamer streamer = new StopTimesStreamer(archive);
+		streamer.stream((tripId, stopId, sequence) -> {
+			phase.addEntity();
+			int trip = tripIds.index(tripId);
+			int station = stationIndex(stopId);
+			if (externalTripStopSequences != null) {
+				externalTripStopSequences.add(trip, sequence, station);
+			} else {
+				tripStopSequences.add(trip, sequence, station);
 			}
-			StopRef stopRef = new StopRef(seq, stationId);
-			tripIdToStopRefs.put(tripId, stopRef);
+		});
+	}
+
+	private int stationIndex(String stopId)
+	{
+		Integer index = stopIdToStationIndex.get(stopId);
+		if (index != null) {
+			return index;
 		}
+		GtfsStop stop = stopIdToStop.get(stopId);
+		String parentStation = stop.getParentStation();
+		String stationId = stop.getId();
+		if (parentStation != null && !parentStation.isEmpty()) {
+			stationId = parentStation;
+		}
+		index = stationIds.index(stationId);
+		stopIdToStationIndex.put(stopId, index);
+		return index;
 	}
 
-	private void buildTripStopLists()
+	private void buildTripPatterns() throws IOException
 	{
-		Set<String> tripIds = tripIdToStopRefs.keySet();
-		for (String tripId : tripIds) {
-			List<StopRef> refs = Lists
-					.newArrayList(tripIdToStopRefs.get(tripId));
-			Collections.sort(refs);
-			StopIdList stops = new StopIdList(refs.size());
-			for (StopRef ref : refs) {
-				stops.add(ref.getStopId());
+		// Many trips share the same sequence of stops, use a single pattern
+		// instance for each distinct sequence
+		Map<TripPattern, TripPattern> distinct = new HashMap<>();
+		tripPatterns = new TripPattern[tripIds.size()];
+
+		if (externalTripStopSequences != null) {
+			out.println(String.format("merging %d sorted runs",
+					externalTripStopSequences.getNumRuns()));
+			externalTripStopSequences.stream((trip, stations) -> {
+				addTripPattern(distinct, trip, stations);
+			});
+		} else {
+			for (int trip = 0; trip < tripIds.size(); trip++) {
+				int[] stations = tripStopSequences.getStops(trip);
+				tripStopSequences.release(trip);
+				addTripPattern(distinct, trip, stations);
 			}
-			tripIdToStopList.put(tripId, stops);
+			tripStopSequences = null;
+		}
+		stopIdToStationIndex.clear();
+
+		// Patterns are compared by station name during analysis, encode the
+		// fixed names once per station
+		stationToName = new int[stationIds.size()];
+		for (int station = 0; station < stationIds.size(); station++) {
+			GtfsStop stop = stopIdToStop.get(stationIds.get(station));
+			String fixed = nameChanger.applyNameFixes(stop.getName());
+			stationToName[station] = stationNames.index(fixed);
 		}
-		tripIdToStopRefs.clear();
 	}
 
-	private void readStops() throws IOException
+	private void addTripPattern(Map<TripPattern, TripPattern> distinct,
+			int trip, int[] stations)
 	{
-		List<Stop> stops = zip.readStops();
+		TripPattern pattern = new TripPattern(stations);
+		TripPattern existing = distinct.putIfAbsent(pattern, pattern);
+		if (existing != null) {
+			pattern = existing;
+		}
+		tripPatterns[trip] = pattern;
+	}
 
-		for (Stop stop : stops) {
+	private void readStops(List<GtfsStop> stops, ImportPhase phase)
+	{
+		phase.addEntities(stops.size());
+		for (GtfsStop stop : stops) {
 			stopIdToStop.put(stop.getId(), stop);
 		}
 	}
 
+	private static class RouteAnalysis
+	{
+
+		private TripPattern selected;
+		private List<String> messages = new ArrayList<>();
+
+	}
+
 	private void analyzeRoutes()
 	{
 		for (String routeName : routeNames) {
-			Collection<Route> versions = nameToRoute.get(routeName);
-			List<Trip> trips = new ArrayList<>();
-			for (Route route : versions) {
-				trips.addAll(routeIdToTrips.get(route.getId()));
-			}
+			RouteAnalysis analysis = analyzeRoute(routeName);
+			apply(routeName, analysis);
+		}
+	}
 
-			if (trips.isEmpty()) {
-				System.out.println(
-						String.format("%s: no trips found", routeName));
-				continue;
+	/*
+	 * Routes are analyzed independently of each other. The results are
+	 * collected in the order of the route names and applied afterwards, which
+	 * yields the same output as the sequential analysis.
+	 */
+	private void analyzeRoutesParallel() throws IOException
+	{
+		ForkJoinPool pool = new ForkJoinPool(numThreads);
+		try {
+			List<RouteAnalysis> results = get(pool.submit(
+					() -> routeNames.parallelStream().map(this::analyzeRoute)
+							.collect(Collectors.toList())));
+			for (int i = 0; i < routeNames.size(); i++) {
+				apply(routeNames.get(i), results.get(i));
 			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	private void apply(String routeName, RouteAnalysis analysis)
+	{
+		for (String message : analysis.messages) {
+			out.println(message);
+		}
+		if (analysis.selected != null) {
+			selectedStopLists.put(routeName, toStopIdList(analysis.selected));
+		}
+	}
+
+	private RouteAnalysis analyzeRoute(String routeName)
+	{
+		RouteAnalysis analysis = new RouteAnalysis();
+		List<String> messages = analysis.messages;
 
-			System.out.println(
-					String.format("%s: %d trips", routeName, trips.size()));
-			Multiset<StopIdList> stopIdListSet = HashMultiset.create();
-			for (Trip trip : trips) {
-				StopIdList stopsIds = tripIdToStopList.get(trip.getId());
-				stopIdListSet.add(stopsIds);
+		Collection<GtfsRoute> versions = nameToRoute.get(routeName);
+		List<GtfsTrip> trips = new ArrayList<>();
+		for (GtfsRoute route : versions) {
+			trips.addAll(routeIdToTrips.get(route.getId()));
+		}
+
+		if (trips.isEmpty()) {
+			messages.add(String.format("%s: no trips found", routeName));
+			return analysis;
+		}
+
+		messages.add(String.format("%s: %d trips", routeName, trips.size()));
+
+		// Patterns are shared between trips, counting them is cheap due to
+		// their cached hash codes. A linked map keeps the order of first
+		// occurrence for patterns with equal counts.
+		Map<TripPattern, int[]> counts = new LinkedHashMap<>();
+		for (GtfsTrip trip : trips) {
+			int index = tripIds.lookup(trip.getId());
+			if (index < 0 || tripPatterns[index] == null) {
+				continue;
 			}
+			int[] count = counts.computeIfAbsent(tripPatterns[index],
+					k -> new int[1]);
+			count[0]++;
+		}
 
-			Multiset<StopIdList> histogram = Multisets
-					.copyHighestCountFirst(stopIdListSet);
+		List<TripPattern> histogram = new ArrayList<>(counts.keySet());
+		histogram.sort((a, b) -> Integer.compare(counts.get(b)[0],
+				counts.get(a)[0]));
 
-			StopIdList longest = null;
-			int maxStops = -1;
-			for (StopIdList stopIds : histogram.elementSet()) {
-				if (stopIds.size() > maxStops) {
-					maxStops = stopIds.size();
-					longest = stopIds;
-				}
+		TripPattern longest = null;
+		int maxStops = -1;
+		for (TripPattern pattern : histogram) {
+			if (pattern.size() > maxStops) {
+				maxStops = pattern.size();
+				longest = pattern;
 			}
+		}
 
-			selectedStopLists.put(routeName, longest);
+		if (longest == null || longest.size() == 0) {
+			messages.add(String.format("%s: no stops found", routeName));
+			return analysis;
+		}
 
-			List<String> stopsLongest = getStopNameList(longest);
-			List<String> stopsReverse = Lists.reverse(stopsLongest);
-			System.out.println("longest: " + stopInfo(stopsLongest));
+		analysis.selected = longest;
 
-			for (StopIdList stopIds : histogram.elementSet()) {
-				int count = stopIdListSet.count(stopIds);
-				List<String> stops = getStopNameList(stopIds);
+		int[] namesLongest = getNames(longest);
+		int[] namesReverse = reverse(namesLongest);
+		Map<Integer, Integer> positionsLongest = firstPositions(namesLongest);
+		Map<Integer, Integer> positionsReverse = firstPositions(namesReverse);
+		messages.add("longest: " + stopInfo(namesLongest));
 
-				if (isPart(stops, stopsLongest)) {
-					continue;
-				} else if (isPart(stops, stopsReverse)) {
-					continue;
-				}
+		for (TripPattern pattern : histogram) {
+			int count = counts.get(pattern)[0];
+			int[] names = getNames(pattern);
 
-				System.out.println(
-						String.format("%dx: %s", count, stopInfo(stops)));
+			if (names.length == 0) {
+				continue;
+			} else if (isPart(names, namesLongest, positionsLongest)) {
+				continue;
+			} else if (isPart(names, namesReverse, positionsReverse)) {
+				continue;
 			}
+
+			messages.add(String.format("%dx: %s", count, stopInfo(names)));
 		}
+		return analysis;
 	}
 
-	// Determine if 'stops' is a subsequence of 'reference'
-	private boolean isPart(List<String> stops, List<String> reference)
+	// Determine if 'names' is a contiguous part of 'reference', starting at the
+	// first occurrence of its first element in 'reference'
+	private boolean isPart(int[] names, int[] reference,
+			Map<Integer, Integer> positions)
 	{
-		String first = stops.get(0);
-		int pos = reference.indexOf(first);
-		if (pos < 0) {
+		Integer pos = positions.get(names[0]);
+		if (pos == null) {
 			return false;
 		}
 
-		int nStops = stops.size();
-		int nReference = reference.size();
-		if (pos + nStops > nReference) {
+		if (pos + names.length > reference.length) {
 			return false;
 		}
 
-		List<String> sub = reference.subList(pos, pos + nStops);
-		return stops.equals(sub);
+		for (int i = 0; i < names.length; i++) {
+			if (names[i] != reference[pos + i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private Map<Integer, Integer> firstPositions(int[] names)
+	{
+		Map<Integer, Integer> positions = new HashMap<>();
+		for (int i = 0; i < names.length; i++) {
+			positions.putIfAbsent(names[i], i);
+		}
+		return positions;
+	}
+
+	private int[] reverse(int[] values)
+	{
+		int n = values.length;
+		int[] reversed = new int[n];
+		for (int i = 0; i < n; i++) {
+			reversed[i] = values[n - 1 - i];
+		}
+		return reversed;
 	}
 
-	private String stopInfo(List<String> stops)
+	private String stopInfo(int[] names)
 	{
-		String first = stops.get(0);
-		String last = ListUtil.last(stops);
+		String first = stationNames.get(names[0]);
+		String last = stationNames.get(names[names.length - 1]);
 		return String.format("%s to %s via %d stops", first, last,
-				stops.size() - 2);
+				names.length - 2);
+	}
+
+	private int[] getNames(TripPattern pattern)
+	{
+		int[] names = new int[pattern.size()];
+		for (int i = 0; i < names.length; i++) {
+			names[i] = stationToName[pattern.get(i)];
+		}
+		return names;
 	}
 
-	private List<String> getStopNameList(StopIdList stopIds)
+	private StopIdList toStopIdList(TripPattern pattern)
 	{
-		List<String> stops = new ArrayList<>(stopIds.size());
-		for (String id : stopIds) {
-			Stop stop = stopIdToStop.get(id);
-			String name = stop.getName();
-			String fixed = nameChanger.applyNameFixes(name);
-			stops.add(fixed);
+		StopIdList stopIds = new StopIdList(pattern.size());
+		for (int i = 0; i < pattern.size(); i++) {
+			stopIds.add(stationIds.get(pattern.get(i)));
 		}
-		return stops;
+		return stopIds;
 	}
 
 	private void createModel()
@@ -321,7 +645,7 @@ public class GtfsImporter
 			for (String id : stopIds) {
 				DraftStation station = idToStation.get(id);
 				if (station == null) {
-					Stop stop = stopIdToStop.get(id);
+					GtfsStop stop = stopIdToStop.get(id);
 					String name = stop.getName();
 					String fixed = nameChanger.applyNameFixes(name);
 					double lat = Double.parseDouble(stop.getLat());
@@ -333,15 +657,15 @@ public class GtfsImporter
 				stations.add(station);
 			}
 
-			Collection<Route> routes = nameToRoute.get(routeName);
-			Route route = routes.iterator().next();
+			Collection<GtfsRoute> routes = nameToRoute.get(routeName);
+			GtfsRoute route = routes.iterator().next();
 			String color = route.getColor();
-			System.out.println(String.format(
+			out.println(String.format(
 					"route '%s', number of stops: %d, color: '%s'", routeName,
 					stopIds.size(), color));
 
 			lines.add(new DraftLine(route.getId(), routeName, stations, color));
 		}
-		System.out.println("Total number of stations: " + allStopIds.size());
+		out.println("Total number of stations: " + allStopIds.size());
 	}
 }
@@ -0,0 +1,161 @@
+// Copyright 2019 Sebastian Kuerten
+//
+// This file is part of OpenMetroMaps.
+//
+// OpenMetroMaps is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Lesser General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// OpenMetroMaps is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with OpenMetroMaps. If not, see <http://www.gnu.org/licenses/>.
+
+package org.openmetromaps.gtfs;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.openmetromaps.misc.ImportMetrics;
+import org.openmetromaps.misc.NameChanger;
+
+/**
+ * Imports several GTFS feeds concurrently, one {@link GtfsImporter} per feed,
+ * and merges the results into a single model. Feeds are merged in the order
+ * specified, the output of each importer is buffered and printed in that order
+ * too, so that results do not depend on the order in which imports finish.
+ */
+public class GtfsMultiImporter
+{
+
+	private List<Path> paths;
+	private NameChanger nameChanger;
+	private DraftModelMerger merger;
+
+	private int numThreads = Runtime.getRuntime().availableProcessors();
+	private ImportMetrics metrics = new ImportMetrics("gtfs");
+
+	private static class Result
+	{
+
+		private DraftModel model;
+		private String log;
+
+	}
+
+	public GtfsMultiImporter(List<Path> paths, NameChanger nameChanger,
+			DraftModelMerger merger)
+	{
+		this.paths = paths;
+		this.nameChanger = nameChanger;
+		this.merger = merger;
+	}
+
+	public DraftModel getModel()
+	{
+		return merger.getModel();
+	}
+
+	public int getNumThreads()
+	{
+		return numThreads;
+	}
+
+	public void setNumThreads(int numThreads)
+	{
+		this.numThreads = numThreads;
+	}
+
+	public ImportMetrics getMetrics()
+	{
+		return metrics;
+	}
+
+	/**
+	 * Set the metrics to record the phases of all imports in, the phases of
+	 * each feed are prefixed with the feed's number.
+	 */
+	public void setMetrics(ImportMetrics metrics)
+	{
+		this.metrics = metrics;
+	}
+
+	public void execute() throws IOException
+	{
+		ExecutorService executor = Executors
+				.newFixedThreadPool(Math.min(numThreads, paths.size()));
+		try {
+			List<Future<Result>> futures = new ArrayList<>();
+			for (int i = 0; i < paths.size(); i++) {
+				Path path = paths.get(i);
+				String prefix = String.format("feed %d: ", i + 1);
+				futures.add(executor.submit(() -> importFeed(path, prefix)));
+			}
+
+			for (int i = 0; i < paths.size(); i++) {
+				Result result = get(futures.get(i));
+				System.out.println(String.format("feed %d: %s", i + 1,
+						paths.get(i)));
+				System.out.print(result.log);
+				merger.add(String.format("%d:", i + 1), result.model);
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+
+		System.out.println(String.format(
+				"Merged %d feeds: %d stations, %d merged across feeds",
+				paths.size(), merger.getNumStations(), merger.getNumMerged()));
+	}
+
+	private Result importFeed(Path path, String prefix) throws IOException
+	{
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		PrintStream out = new PrintStream(buffer, true, "UTF-8");
+
+		GtfsImporter importer = new GtfsImporter(path, nameChanger);
+		importer.setOutput(out);
+		importer.setMetrics(metrics);
+		importer.setPhasePrefix(prefix);
+		importer.execute();
+		out.close();
+
+		Result result = new Result();
+		result.model = importer.getModel();
+		result.log = new String(buffer.toByteArray(), StandardCharsets.UTF_8);
+		return result;
+	}
+
+	private static <T> T get(Future<T> future) throws IOException
+	{
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while importing feeds", e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new IOException("Error while importing feeds", cause);
+		}
+	}
+
+}
@@ -0,0 +1,57 @@
+// Copyright 2019 Sebastian Kuerten
+//
+// This file is part of OpenMetroMaps.
+//
+// OpenMetroMaps is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Lesser General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// OpenMetroMaps is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with OpenMetroMaps. If not, see <http://www.gnu.org/licenses/>.
+
+package org.openmetromaps.gtfs;
+
+public class GtfsRoute
+{
+
+	private String id;
+	private String shortName;
+	private String longName;
+	private String color;
+
+	public GtfsRoute(String id, String shortName, String longName,
+			String color)
+	{
+		this.id = id;
+		this.shortName = shortName;
+		this.longName = longName;
+		this.color = color;
+	}
+
+	public String getId()
+	{
+		return id;
+	}
+
+	public String getShortName()
+	{
+		return shortName;
+	}
+
+	public String getLongName()
+	{
+		return longName;
+	}
+
+	public String getColor()
+	{
+		return color;
+	}
+
+}
@@ -0,0 +1,71 @@
+// Copyright 2019 Sebastian Kuerten
+//
+// This file is part of OpenMetroMaps.
+//
+// OpenMetroMaps is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Lesser General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// OpenMetroMaps is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with OpenMetroMaps. If not, see <http://www.gnu.org/licenses/>.
+
+package org.openmetromaps.gtfs;
+
+public class GtfsStop
+{
+
+	private String id;
+	private String name;
+	private String lat;
+	private String lon;
+	private String locationType;
+	private String parentStation;
+
+	public GtfsStop(String id, String name, String lat, String lon,
+			String locationType, String parentStation)
+	{
+		this.id = id;
+		this.name = name;
+		this.lat = lat;
+		this.lon = lon;
+		this.locationType = locationType;
+		this.parentStation = parentStation;
+	}
+
+	public String getId()
+	{
+		return id;
+	}
+
+	public String getName()
+	{
+		return name;
+	}
+
+	public String getLat()
+	{
+		return lat;
+	}
+
+	public String getLon()
+	{
+		return lon;
+	}
+
+	public String getLocationType()
+	{
+		return locationType;
+	}
+
+	public String getParentStation()
+	{
+		return parentStation;
+	}
+
+}
@@ -0,0 +1,61 @@
+// Copyright 2019 Sebastian Kuerten
+//
+// This file is part of OpenMetroMaps.
+//
+// OpenMetroMaps is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Lesser General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// OpenMetroMaps is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with OpenMetroMaps. If not, see <http://www.gnu.org/licenses/>.
+
+package org.openmetromaps.gtfs;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Maps string identifiers to consecutive int indices starting with 0.
+ */
+public class IdDictionary
+{
+
+	private Map<String, Integer> indices = new HashMap<>();
+	private List<String> values = new ArrayList<>();
+
+	public int index(String value)
+	{
+		Integer index = indices.get(value);
+		if (index == null) {
+			index = values.size();
+			indices.put(value, index);
+			values.add(value);
+		}
+		return index;
+	}
+
+	public int lookup(String value)
+	{
+		Integer index = indices.get(value);
+		return index == null ? -1 : index;
+	}
+
+	public String get(int index)
+	{
+		return values.get(index);
+	}
+
+	public int size()
+	{
+		return values.size();
+	}
+
+}
@@ -0,0 +1,98 @@
+// Copyright 2019 Sebastian Kuerten
+//
+// This file is part of OpenMetroMaps.
+//
+// OpenMetroMaps is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Lesser General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// OpenMetroMaps is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with OpenMetroMaps. If not, see <http://www.gnu.org/licenses/>.
+
+package org.openmetromaps.gtfs;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads the 'stop_times.txt' file of a GTFS zip row by row without creating
+ * objects for the individual stop times.
+ */
+public class StopTimesStreamer
+{
+
+	public static final String FILENAME = "stop_times.txt";
+
+	public static interface Handler
+	{
+
+		public void handle(String tripId, String stopId, int sequence)
+				throws IOException;
+
+	}
+
+	private GtfsArchive archive;
+
+	public StopTimesStreamer(GtfsArchive archive)
+	{
+		this.archive = archive;
+	}
+
+	public void stream(Handler handler) throws IOException
+	{
+		try (CsvReader csv = archive.csv(FILENAME)) {
+			stream(csv, handler);
+		}
+	}
+
+	public static void stream(InputStream input, Handler handler)
+			throws IOException
+	{
+		BufferedReader reader = new BufferedReader(
+				new InputStreamReader(input, StandardCharsets.UTF_8),
+				64 * 1024);
+		stream(new CsvReader(reader), handler);
+	}
+
+	private static void stream(CsvReader csv, Handler handler)
+			throws IOException
+	{
+		String[] header = csv.next();
+		if (header == null) {
+			return;
+		}
+
+		int idxTrip = CsvReader.index(header, "trip_id");
+		int idxStop = CsvReader.index(header, "stop_id");
+		int idxSequence = CsvReader.index(header, "stop_sequence");
+		if (idxTrip < 0 || idxStop < 0 || idxSequence < 0) {
+			throw new IOException("Missing required column in " + FILENAME);
+		}
+
+		String[] row;
+		while ((row = csv.next()) != null) {
+			String tripId = CsvReader.value(row, idxTrip);
+			String stopId = CsvReader.value(row, idxStop);
+			String value = CsvReader.value(row, idxSequence).trim();
+			int sequence;
+			try {
+				sequence = Integer.parseInt(value);
+			} catch (NumberFormatException e) {
+				throw new IOException(String.format(
+						"Invalid stop_sequence '%s' in %s, line %d", value,
+						FILENAME, csv.getLineNumber()), e);
+			}
+			handler.handle(tripId, stopId, sequence);
+		}
+	}
+
+}
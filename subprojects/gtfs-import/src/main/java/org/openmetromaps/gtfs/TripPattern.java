@@ -0,0 +1,68 @@
+// Copyright 2019 Sebastian Kuerten
+//
+// This file is part of OpenMetroMaps.
+//
+// OpenMetroMaps is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Lesser General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// OpenMetroMaps is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with OpenMetroMaps. If not, see <http://www.gnu.org/licenses/>.
+
+package org.openmetromaps.gtfs;
+
+import java.util.Arrays;
+
+/**
+ * An immutable sequence of dictionary encoded stops. The hash code is computed
+ * once on construction, so that patterns can be used as keys in hash based
+ * collections cheaply.
+ */
+public class TripPattern
+{
+
+	private final int[] stops;
+	private final int hash;
+
+	public TripPattern(int[] stops)
+	{
+		this.stops = stops;
+		this.hash = Arrays.hashCode(stops);
+	}
+
+	public int size()
+	{
+		return stops.length;
+	}
+
+	public int get(int index)
+	{
+		return stops[index];
+	}
+
+	@Override
+	public int hashCode()
+	{
+		return hash;
+	}
+
+	@Override
+	public boolean equals(Object obj)
+	{
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof TripPattern)) {
+			return false;
+		}
+		TripPattern other = (TripPattern) obj;
+		return hash == other.hash && Arrays.equals(stops, other.stops);
+	}
+
+}
@@ -0,0 +1,103 @@
+// Copyright 2019 Sebastian Kuerten
+//
+// This file is part of OpenMetroMaps.
+//
+// OpenMetroMaps is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Lesser General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// OpenMetroMaps is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with OpenMetroMaps. If not, see <http://www.gnu.org/licenses/>.
+
+package org.openmetromaps.gtfs;
+
+import java.util.Arrays;
+
+/**
+ * Collects the stops of trips from an unordered stream of stop times. Each
+ * trip's (sequence, stop) pairs are stored in a growable array of primitive
+ * longs, so that memory usage does not depend on per stop time objects.
+ */
+public class TripStopSequences
+{
+
+	private static final int INITIAL_TRIP_CAPACITY = 8;
+
+	private long[][] entries = new long[1024][];
+	private int[] sizes = new int[1024];
+	private int numTrips = 0;
+
+	public void add(int trip, int sequence, int stop)
+	{
+		ensureTrip(trip);
+
+		long[] tripEntries = entries[trip];
+		int size = sizes[trip];
+		if (tripEntries == null) {
+			tripEntries = new long[INITIAL_TRIP_CAPACITY];
+			entries[trip] = tripEntries;
+		} else if (size == tripEntries.length) {
+			tripEntries = Arrays.copyOf(tripEntries, size * 2);
+			entries[trip] = tripEntries;
+		}
+
+		// sequence numbers are non-negative, so that sorting the packed values
+		// sorts by sequence first
+		tripEntries[size] = ((long) sequence << 32) | (stop & 0xffffffffL);
+		sizes[trip] = size + 1;
+	}
+
+	private void ensureTrip(int trip)
+	{
+		if (trip >= entries.length) {
+			int capacity = Math.max(entries.length * 2, trip + 1);
+			entries = Arrays.copyOf(entries, capacity);
+			sizes = Arrays.copyOf(sizes, capacity);
+		}
+		if (trip >= numTrips) {
+			numTrips = trip + 1;
+		}
+	}
+
+	public int getNumTrips()
+	{
+		return numTrips;
+	}
+
+	/**
+	 * @return the stops of the specified trip ordered by their sequence number.
+	 */
+	public int[] getStops(int trip)
+	{
+		if (trip >= numTrips || entries[trip] == null) {
+			return new int[0];
+		}
+		int size = sizes[trip];
+		long[] tripEntries = entries[trip];
+		Arrays.sort(tripEntries, 0, size);
+
+		int[] stops = new int[size];
+		for (int i = 0; i < size; i++) {
+			stops[i] = (int) tripEntries[i];
+		}
+		return stops;
+	}
+
+	/**
+	 * Release the memory used for the specified trip.
+	 */
+	public void release(int trip)
+	{
+		if (trip < numTrips) {
+			entries[trip] = null;
+			sizes[trip] = 0;
+		}
+	}
+
+}
@@ -0,0 +1,155 @@
+// Copyright 2019 Sebastian Kuerten
+//
+// This file is part of OpenMetroMaps.
+//
+// OpenMetroMaps is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Lesser General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// OpenMetroMaps is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with OpenMetroMaps. If not, see <http://www.gnu.org/licenses/>.
+
+package org.openmetromaps.gtfs;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestCsvReader
+{
+
+	private static List<String[]> read(String input) throws IOException
+	{
+		List<String[]> records = new ArrayList<>();
+		try (CsvReader csv = new CsvReader(
+				new BufferedReader(new StringReader(input)))) {
+			String[] record;
+			while ((record = csv.next()) != null) {
+				records.add(record);
+			}
+		}
+		return records;
+	}
+
+	@Test
+	public void testSimple() throws IOException
+	{
+		List<String[]> records = read("a,b,c\n1,2,3\n");
+		Assert.assertEquals(2, records.size());
+		Assert.assertArrayEquals(new String[] { "a", "b", "c" },
+				records.get(0));
+		Assert.assertArrayEquals(new String[] { "1", "2", "3" },
+				records.get(1));
+	}
+
+	@Test
+	public void testQuotedComma() throws IOException
+	{
+		List<String[]> records = read("1,\"Alexanderplatz, Berlin\",3\n");
+		Assert.assertArrayEquals(
+				new String[] { "1", "Alexanderplatz, Berlin", "3" },
+				records.get(0));
+	}
+
+	@Test
+	public void testEscapedQuotes() throws IOException
+	{
+		List<String[]> records = read("1,\"the \"\"U2\"\" line\",\"\"\"\"\n");
+		Assert.assertArrayEquals(new String[] { "1", "the \"U2\" line", "\"" },
+				records.get(0));
+	}
+
+	@Test
+	public void testEmptyFields() throws IOException
+	{
+		List<String[]> records = read("1,,\"\",\n");
+		Assert.assertArrayEquals(new String[] { "1", "", "", "" },
+				records.get(0));
+	}
+
+	@Test
+	public void testNewlineInField() throws IOException
+	{
+		List<String[]> records = read("1,\"first\nsecond\",3\n4,5,6\n");
+		Assert.assertEquals(2, records.size());
+		Assert.assertArrayEquals(new String[] { "1", "first\nsecond", "3" },
+				records.get(0));
+		Assert.assertArrayEquals(new String[] { "4", "5", "6" },
+				records.get(1));
+	}
+
+	@Test
+	public void testCrLf() throws IOException
+	{
+		List<String[]> records = read("a,b\r\n1,\"x\r\ny\"\r\n\r\n2,3\r\n");
+		Assert.assertEquals(3, records.size());
+		Assert.assertArrayEquals(new String[] { "a", "b" }, records.get(0));
+		Assert.assertArrayEquals(new String[] { "1", "x\ny" }, records.get(1));
+		Assert.assertArrayEquals(new String[] { "2", "3" }, records.get(2));
+	}
+
+	@Test
+	public void testNoTrailingNewline() throws IOException
+	{
+		List<String[]> records = read("a,b\n1,2");
+		Assert.assertEquals(2, records.size());
+		Assert.assertArrayEquals(new String[] { "1", "2" }, records.get(1));
+	}
+
+	@Test
+	public void testBom() throws IOException
+	{
+		List<String[]> records = read("\uFEFFstop_id,stop_name\n1,A\n");
+		String[] header = records.get(0);
+		Assert.assertEquals("stop_id", header[0]);
+		Assert.assertEquals(0, CsvReader.index(header, "stop_id"));
+		Assert.assertEquals(1, CsvReader.index(header, "stop_name"));
+	}
+
+	@Test
+	public void testNoBom() throws IOException
+	{
+		List<String[]> records = read("stop_id,stop_name\n\uFEFF1,A\n");
+		Assert.assertEquals(0, CsvReader.index(records.get(0), "stop_id"));
+		// only a mark at the beginning of the input is removed
+		Assert.assertEquals("\uFEFF1", records.get(1)[0]);
+	}
+
+	@Test
+	public void testShortRows() throws IOException
+	{
+		List<String[]> records = read("a,b,c\n1\n");
+		String[] row = records.get(1);
+		Assert.assertEquals(1, row.length);
+		Assert.assertEquals("1", CsvReader.value(row, 0));
+		Assert.assertEquals("", CsvReader.value(row, 2));
+		Assert.assertEquals("", CsvReader.value(row, -1));
+	}
+
+	@Test
+	public void testLineNumbers() throws IOException
+	{
+		try (CsvReader csv = new CsvReader(new BufferedReader(
+				new StringReader("a,b\n\"x\ny\",1\n\n2,3\n")))) {
+			csv.next();
+			Assert.assertEquals(1, csv.getLineNumber());
+			csv.next();
+			Assert.assertEquals(2, csv.getLineNumber());
+			csv.next();
+			Assert.assertEquals(5, csv.getLineNumber());
+			Assert.assertNull(csv.next());
+		}
+	}
+
+}
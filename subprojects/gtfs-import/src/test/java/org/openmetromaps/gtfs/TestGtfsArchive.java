@@ -0,0 +1,118 @@
+// Copyright 2019 Sebastian Kuerten
+//
+// This file is part of OpenMetroMaps.
+//
+// OpenMetroMaps is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Lesser General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// OpenMetroMaps is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with OpenMetroMaps. If not, see <http://www.gnu.org/licenses/>.
+
+package org.openmetromaps.gtfs;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TestGtfsArchive
+{
+
+	private static final String BOM = "\uFEFF";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private Path zip(String stops, String stopTimes) throws IOException
+	{
+		Path path = folder.newFile("gtfs.zip").toPath();
+		try (OutputStream output = Files.newOutputStream(path);
+				ZipOutputStream zip = new ZipOutputStream(output)) {
+			zip.putNextEntry(new ZipEntry("stops.txt"));
+			zip.write(stops.getBytes(StandardCharsets.UTF_8));
+			zip.closeEntry();
+			zip.putNextEntry(new ZipEntry(StopTimesStreamer.FILENAME));
+			zip.write(stopTimes.getBytes(StandardCharsets.UTF_8));
+			zip.closeEntry();
+		}
+		return path;
+	}
+
+	private static final String STOPS = "stop_id,stop_name,stop_lat,stop_lon,"
+			+ "location_type,parent_station\r\n"
+			+ "1,\"Zoologischer Garten, Berlin\",52.5,13.3,1,\r\n"
+			+ "2,Zoo,52.5,13.3,0,1\r\n" + "3,Short,52.4,13.2\r\n";
+
+	private static final String STOP_TIMES = "trip_id,arrival_time,"
+			+ "departure_time,stop_id,stop_sequence\r\n"
+			+ "t1,08:00:00,08:00:00,2,1\r\n" + "t1,08:02:00,08:02:00,3,2\r\n";
+
+	private void assertStops(List<GtfsStop> stops)
+	{
+		Assert.assertEquals(3, stops.size());
+		GtfsStop station = stops.get(0);
+		Assert.assertEquals("1", station.getId());
+		Assert.assertEquals("Zoologischer Garten, Berlin", station.getName());
+		Assert.assertEquals("1", station.getLocationType());
+		Assert.assertEquals("", station.getParentStation());
+		Assert.assertEquals("1", stops.get(1).getParentStation());
+		Assert.assertEquals("", stops.get(2).getLocationType());
+		Assert.assertEquals("", stops.get(2).getParentStation());
+	}
+
+	@Test
+	public void testWithoutBom() throws IOException
+	{
+		Path path = zip(STOPS, STOP_TIMES);
+		try (GtfsArchive archive = new GtfsArchive(path)) {
+			assertStops(archive.readStops());
+		}
+	}
+
+	@Test
+	public void testBom() throws IOException
+	{
+		Path path = zip(BOM + STOPS, BOM + STOP_TIMES);
+		try (GtfsArchive archive = new GtfsArchive(path)) {
+			assertStops(archive.readStops());
+
+			StringBuilder buffer = new StringBuilder();
+			new StopTimesStreamer(archive).stream((trip, stop,
+					sequence) -> buffer.append(String.format("%s:%s:%d;", trip,
+							stop, sequence)));
+			Assert.assertEquals("t1:2:1;t1:3:2;", buffer.toString());
+		}
+	}
+
+	@Test
+	public void testInvalidSequence() throws IOException
+	{
+		Path path = zip(STOPS, "trip_id,stop_id,stop_sequence\n"
+				+ "t1,2,1\n" + "t1,3\n");
+		try (GtfsArchive archive = new GtfsArchive(path)) {
+			new StopTimesStreamer(archive).stream((trip, stop, sequence) -> {
+			});
+			Assert.fail("expected an exception for the short row");
+		} catch (IOException e) {
+			Assert.assertTrue(e.getMessage(),
+					e.getMessage().contains("line 3"));
+		}
+	}
+
+}
@@ -0,0 +1,158 @@
+// Copyright 2019 Sebastian Kuerten
+//
+// This file is part of OpenMetroMaps.
+//
+// OpenMetroMaps is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Lesser General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// OpenMetroMaps is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with OpenMetroMaps. If not, see <http://www.gnu.org/licenses/>.
+
+package org.openmetromaps.gtfs;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.openmetromaps.misc.NameChanger;
+import org.openmetromaps.synthetic.GtfsFeedGenerator;
+import org.openmetromaps.synthetic.NetworkConfig;
+import org.openmetromaps.synthetic.SyntheticNetwork;
+
+/**
+ * Imports generated GTFS feeds and compares the resulting lines with the
+ * generated network.
+ */
+public class TestImportSynthetic
+{
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static SyntheticNetwork network()
+	{
+		NetworkConfig config = new NetworkConfig();
+		config.setSeed(42);
+		config.setNumLines(8);
+		config.setTripsPerLine(20);
+		return new SyntheticNetwork(config);
+	}
+
+	private Path feed(SyntheticNetwork network, boolean boms)
+			throws IOException
+	{
+		Path path = folder.newFile(boms ? "gtfs-boms.zip" : "gtfs.zip")
+				.toPath();
+		GtfsFeedGenerator generator = new GtfsFeedGenerator(network);
+		generator.setWriteBoms(boms);
+		generator.write(path);
+		return path;
+	}
+
+	private static DraftModel importFeed(Path path, boolean parallel,
+			long sortMemory) throws IOException
+	{
+		NameChanger nameChanger = new NameChanger(Collections.emptyList(),
+				Collections.emptyList());
+		GtfsImporter importer = new GtfsImporter(path, nameChanger);
+		importer.setParallel(parallel);
+		importer.setNumThreads(2);
+		importer.setSortMemory(sortMemory);
+		importer.setOutput(new PrintStream(OutputStream.nullOutputStream()));
+		importer.execute();
+		return importer.getModel();
+	}
+
+	private static List<String> names(int[] stations, SyntheticNetwork network)
+	{
+		List<String> names = new ArrayList<>();
+		for (int station : stations) {
+			names.add(network.getStations().get(station).getName());
+		}
+		return names;
+	}
+
+	private static List<String> names(DraftLine line)
+	{
+		List<String> names = new ArrayList<>();
+		for (DraftStation station : line.getStations()) {
+			names.add(station.getName());
+		}
+		return names;
+	}
+
+	private static void assertLines(SyntheticNetwork network, DraftModel model)
+	{
+		List<SyntheticNetwork.Line> expected = network.getLines();
+		Assert.assertEquals(expected.size(), model.getLines().size());
+
+		for (SyntheticNetwork.Line line : expected) {
+			DraftLine imported = null;
+			for (DraftLine candidate : model.getLines()) {
+				if (candidate.getSource().equals(line.getName())) {
+					imported = candidate;
+				}
+			}
+			Assert.assertNotNull(line.getName(), imported);
+
+			// the full variant is the longest one, it may be selected in
+			// either direction
+			List<String> names = names(line.getStations(), network);
+			List<String> reversed = new ArrayList<>(names);
+			Collections.reverse(reversed);
+			List<String> actual = names(imported);
+			Assert.assertTrue(line.getName() + ": " + actual,
+					actual.equals(names) || actual.equals(reversed));
+		}
+	}
+
+	@Test
+	public void testSequential() throws IOException
+	{
+		SyntheticNetwork network = network();
+		DraftModel model = importFeed(feed(network, false), false, 0);
+		assertLines(network, model);
+	}
+
+	@Test
+	public void testParallel() throws IOException
+	{
+		SyntheticNetwork network = network();
+		DraftModel model = importFeed(feed(network, false), true, 0);
+		assertLines(network, model);
+	}
+
+	@Test
+	public void testExternalSort() throws IOException
+	{
+		SyntheticNetwork network = network();
+		// small enough to produce several sorted runs
+		DraftModel model = importFeed(feed(network, false), false,
+				16 * 1024);
+		assertLines(network, model);
+	}
+
+	@Test
+	public void testBoms() throws IOException
+	{
+		SyntheticNetwork network = network();
+		DraftModel model = importFeed(feed(network, true), false, 0);
+		assertLines(network, model);
+	}
+
+}
@@ -95,6 +95,18 @@ public class HeavyUtil
 		return lines;
 	}
 
+	/**
+	 * Look up the interesting lines in a precomputed index, which yields the
+	 * same lines as
+	 * {@link #determineInterestingLines(Multimap, NetworkLine, Node)}, ordered
+	 * by their position in the line network.
+	 */
+	public static List<Line> determineInterestingLines(InterchangeIndex index,
+			NetworkLine line, Node node)
+	{
+		return index.getTransferLines(line.line, node);
+	}
+
 	private static List<Line> collect(Node node)
 	{
 		List<Line> result = new ArrayList<>();
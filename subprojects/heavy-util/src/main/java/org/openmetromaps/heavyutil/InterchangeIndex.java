@@ -0,0 +1,216 @@
+// Copyright 2019 Sebastian Kuerten
+//
+// This file is part of OpenMetroMaps.
+//
+// OpenMetroMaps is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Lesser General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// OpenMetroMaps is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with OpenMetroMaps. If not, see <http://www.gnu.org/licenses/>.
+
+package org.openmetromaps.heavyutil;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.openmetromaps.maps.graph.Edge;
+import org.openmetromaps.maps.graph.LineNetwork;
+import org.openmetromaps.maps.graph.NetworkLine;
+import org.openmetromaps.maps.graph.Node;
+import org.openmetromaps.maps.model.Line;
+import org.openmetromaps.maps.model.Station;
+import org.openmetromaps.maps.model.Stop;
+
+import com.google.common.collect.Multimap;
+
+/**
+ * Precomputes the result of
+ * {@link HeavyUtil#determineInterestingLines(Multimap, NetworkLine, Node)} for
+ * all lines at all nodes of a line network. For each node, the lines present
+ * at the node's station are stored and for each line passing the node, the
+ * lines that continue through the node in parallel and the remaining lines
+ * that are true transfers. Sets of lines are stored as bitsets over the
+ * indexes of the lines.
+ */
+public class InterchangeIndex
+{
+
+	private List<Line> lines = new ArrayList<>();
+	private Map<Line, Integer> lineToIndex = new HashMap<>();
+
+	private Map<Node, Interchange> interchanges = new HashMap<>();
+
+	private static class Interchange
+	{
+
+		private BitSet present;
+		private BitSet stopping;
+		private Map<Line, BitSet> continuing = new HashMap<>();
+		private Map<Line, BitSet> transfers = new HashMap<>();
+
+	}
+
+	public InterchangeIndex(LineNetwork lineNetwork,
+			Multimap<Station, Line> stationToLines)
+	{
+		for (NetworkLine line : lineNetwork.lines) {
+			index(line.line);
+		}
+		for (Line line : stationToLines.values()) {
+			index(line);
+		}
+
+		for (Node node : lineNetwork.nodes) {
+			Interchange interchange = new Interchange();
+			interchange.present = bits(stationToLines.get(node.station));
+			interchange.stopping = new BitSet(lines.size());
+			for (Stop stop : node.station.getStops()) {
+				interchange.stopping.set(index(stop.getLine()));
+			}
+			interchanges.put(node, interchange);
+		}
+
+		for (Node node : lineNetwork.nodes) {
+			build(node, interchanges.get(node));
+		}
+	}
+
+	private void build(Node node, Interchange interchange)
+	{
+		Map<Line, Set<Edge>> lineToEdges = new LinkedHashMap<>();
+		for (Edge edge : node.edges) {
+			for (NetworkLine netLine : edge.lines) {
+				lineToEdges.computeIfAbsent(netLine.line,
+						k -> new LinkedHashSet<>()).add(edge);
+			}
+		}
+
+		for (Map.Entry<Line, Set<Edge>> entry : lineToEdges.entrySet()) {
+			Line line = entry.getKey();
+			Set<Edge> relevant = entry.getValue();
+
+			BitSet continuing = new BitSet(lines.size());
+			if (relevant.size() == 2) {
+				List<Node> neighbors = new ArrayList<>();
+				for (Edge edge : relevant) {
+					if (edge.n1 != node) {
+						neighbors.add(edge.n1);
+					}
+					if (edge.n2 != node) {
+						neighbors.add(edge.n2);
+					}
+				}
+				if (neighbors.size() == 2) {
+					continuing.or(stopping(neighbors.get(0)));
+					continuing.and(stopping(neighbors.get(1)));
+				}
+			}
+
+			BitSet transfers = (BitSet) interchange.present.clone();
+			transfers.clear(lineToIndex.get(line));
+			transfers.andNot(continuing);
+
+			interchange.continuing.put(line, continuing);
+			interchange.transfers.put(line, transfers);
+		}
+	}
+
+	private int index(Line line)
+	{
+		Integer index = lineToIndex.get(line);
+		if (index == null) {
+			index = lines.size();
+			lines.add(line);
+			lineToIndex.put(line, index);
+		}
+		return index;
+	}
+
+	private BitSet bits(Iterable<Line> lines)
+	{
+		BitSet bits = new BitSet(this.lines.size());
+		for (Line line : lines) {
+			bits.set(lineToIndex.get(line));
+		}
+		return bits;
+	}
+
+	private BitSet stopping(Node node)
+	{
+		Interchange interchange = interchanges.get(node);
+		if (interchange != null) {
+			return interchange.stopping;
+		}
+		BitSet bits = new BitSet(lines.size());
+		for (Stop stop : node.station.getStops()) {
+			Integer index = lineToIndex.get(stop.getLine());
+			if (index != null) {
+				bits.set(index);
+			}
+		}
+		return bits;
+	}
+
+	private List<Line> lines(BitSet bits)
+	{
+		List<Line> result = new ArrayList<>(bits.cardinality());
+		for (int i = bits.nextSetBit(0); i >= 0; i = bits.nextSetBit(i + 1)) {
+			result.add(lines.get(i));
+		}
+		return result;
+	}
+
+	/**
+	 * Get the lines present at the node's station.
+	 */
+	public List<Line> getLines(Node node)
+	{
+		return lines(interchanges.get(node).present);
+	}
+
+	/**
+	 * Get the lines that serve both neighbors of the node along the specified
+	 * line and hence continue through the node in parallel to it.
+	 */
+	public List<Line> getContinuingLines(Line line, Node node)
+	{
+		BitSet continuing = interchanges.get(node).continuing.get(line);
+		if (continuing == null) {
+			return new ArrayList<>();
+		}
+		return lines(continuing);
+	}
+
+	/**
+	 * Get the lines that are worth changing to from the specified line at the
+	 * node, i.e. all other lines present except those continuing in parallel.
+	 * The returned list is a new list that may be modified by the caller.
+	 */
+	public List<Line> getTransferLines(Line line, Node node)
+	{
+		Interchange interchange = interchanges.get(node);
+		BitSet transfers = interchange.transfers.get(line);
+		if (transfers == null) {
+			transfers = (BitSet) interchange.present.clone();
+			Integer index = lineToIndex.get(line);
+			if (index != null) {
+				transfers.clear(index);
+			}
+		}
+		return lines(transfers);
+	}
+
+}
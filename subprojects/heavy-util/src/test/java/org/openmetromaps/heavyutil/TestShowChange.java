@@ -55,20 +55,23 @@ public class TestShowChange
 		Multimap<Station, Line> stationToLines = HashMultimap.create();
 		HeavyUtil.fillStationToLines(stationToLines, model);
 
-		test(stationToLines, network, "U8", "Hermannplatz");
-		test(stationToLines, network, "S41", "Schöneberg");
-		test(stationToLines, network, "S41", "Südkreuz");
-		test(stationToLines, network, "S41", "Hermannstraße");
-		test(stationToLines, network, "S41", "Neukölln");
-		test(stationToLines, network, "U7", "Rudow");
-		test(stationToLines, network, "S8", "Eichwalde");
-		test(stationToLines, network, "S8", "Zeuthen");
-		test(stationToLines, network, "U1", "Nollendorfplatz");
-		test(stationToLines, network, "U1", "Wittenbergplatz");
+		InterchangeIndex index = new InterchangeIndex(network, stationToLines);
+
+		test(stationToLines, index, network, "U8", "Hermannplatz");
+		test(stationToLines, index, network, "S41", "Schöneberg");
+		test(stationToLines, index, network, "S41", "Südkreuz");
+		test(stationToLines, index, network, "S41", "Hermannstraße");
+		test(stationToLines, index, network, "S41", "Neukölln");
+		test(stationToLines, index, network, "U7", "Rudow");
+		test(stationToLines, index, network, "S8", "Eichwalde");
+		test(stationToLines, index, network, "S8", "Zeuthen");
+		test(stationToLines, index, network, "U1", "Nollendorfplatz");
+		test(stationToLines, index, network, "U1", "Wittenbergplatz");
 	}
 
 	private static void test(Multimap<Station, Line> stationToLines,
-			LineNetwork network, String nameLine, String nameStation)
+			InterchangeIndex index, LineNetwork network, String nameLine,
+			String nameStation)
 	{
 		System.out.println(String.format("%s %s", nameLine, nameStation));
 
@@ -81,6 +84,13 @@ public class TestShowChange
 
 		System.out.println(
 				"found: " + Collections2.transform(lines, e -> e.getName()));
+
+		List<Line> indexed = HeavyUtil.determineInterestingLines(index, line,
+				node);
+		MapModelUtil.sortLinesByName(indexed);
+
+		System.out.println("indexed: "
+				+ Collections2.transform(indexed, e -> e.getName()));
 	}
 
 	private static NetworkLine findLine(LineNetwork network, String name)
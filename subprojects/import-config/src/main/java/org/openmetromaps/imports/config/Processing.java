@@ -26,6 +26,9 @@ public class Processing
 	private List<String> prefixes = new ArrayList<>();
 	private List<String> suffixes = new ArrayList<>();
 
+	private double mergeDistance = 0;
+	private double mergeNameSimilarity = 1;
+
 	public List<String> getPrefixes()
 	{
 		return prefixes;
@@ -46,4 +49,32 @@ public class Processing
 		this.suffixes = suffixes;
 	}
 
+	/**
+	 * @return the maximum distance in meters of stops to merge into a single
+	 *         station. If not positive, stops are merged by name only.
+	 */
+	public double getMergeDistance()
+	{
+		return mergeDistance;
+	}
+
+	public void setMergeDistance(double mergeDistance)
+	{
+		this.mergeDistance = mergeDistance;
+	}
+
+	/**
+	 * @return the minimum similarity of the normalized names of stops to merge
+	 *         by distance, between 0 (any names) and 1 (equal names).
+	 */
+	public double getMergeNameSimilarity()
+	{
+		return mergeNameSimilarity;
+	}
+
+	public void setMergeNameSimilarity(double mergeNameSimilarity)
+	{
+		this.mergeNameSimilarity = mergeNameSimilarity;
+	}
+
 }
@@ -173,6 +173,20 @@ public class ImportConfigReader
 				processing.getSuffixes().add(suffix.getAttribute("value"));
 			}
 		}
+
+		INodeList listMerging = stations.getChildElementsByTagName("merging");
+		if (listMerging.getLength() != 0) {
+			IElement merging = listMerging.element(0);
+			String distance = merging.getAttribute("distance");
+			String similarity = merging.getAttribute("name-similarity");
+			if (distance != null && !distance.isEmpty()) {
+				processing.setMergeDistance(Double.parseDouble(distance));
+			}
+			if (similarity != null && !similarity.isEmpty()) {
+				processing.setMergeNameSimilarity(
+						Double.parseDouble(similarity));
+			}
+		}
 	}
 
 }
@@ -53,6 +53,10 @@ public class ConfigTests
 		for (String suffix : processing.getSuffixes()) {
 			System.out.println("    suffix: '" + suffix + "'");
 		}
+
+		System.out.println("    merge distance: " + processing.getMergeDistance());
+		System.out.println("    merge name similarity: "
+				+ processing.getMergeNameSimilarity());
 	}
 
 }
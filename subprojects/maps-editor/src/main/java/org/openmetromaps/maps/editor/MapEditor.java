@@ -30,6 +30,7 @@ import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 import javax.imageio.ImageIO;
@@ -84,6 +85,8 @@ import org.openmetromaps.maps.editor.config.PermanentConfiguration;
 import org.openmetromaps.maps.editor.config.VolatileConfigReader;
 import org.openmetromaps.maps.editor.config.VolatileConfiguration;
 import org.openmetromaps.maps.editor.dockables.DockableHelper;
+import org.openmetromaps.maps.editor.journal.EditJournal;
+import org.openmetromaps.maps.editor.journal.JournalRecovery;
 import org.openmetromaps.maps.graph.LineNetwork;
 import org.openmetromaps.maps.graph.NetworkLine;
 import org.openmetromaps.maps.graph.Node;
@@ -122,6 +125,7 @@ public class MapEditor
 	private MapViewStatus mapViewStatus;
 
 	private Path source;
+	private EditJournal journal;
 
 	private ViewConfig viewConfig;
 
@@ -218,14 +222,39 @@ public class MapEditor
 			}
 		}
 
+		boolean recovered = false;
+		if (source != null) {
+			JournalRecovery recovery = new JournalRecovery(source);
+			model = recovery.recover(model);
+			recovered = recovery.isRecovered();
+		}
+
 		init(model);
 
 		dataChangeListeners = new ArrayList<>();
+
+		if (source != null) {
+			journal = new EditJournal(source);
+			if (recovered) {
+				journal.start(model, view);
+			} else {
+				journal.start();
+			}
+		}
 	}
 
 	public void setSource(Path source)
 	{
 		this.source = source;
+
+		if (journal != null) {
+			journal.close(true);
+			journal = null;
+		}
+		if (source != null) {
+			journal = new EditJournal(source);
+			journal.start();
+		}
 	}
 
 	public Path getSource()
@@ -402,6 +431,46 @@ public class MapEditor
 		}
 	}
 
+	/**
+	 * Record the current locations of the specified nodes in the edit journal.
+	 * Edit operations that move nodes should call this on the UI thread once
+	 * they are done.
+	 */
+	public void recordMoves(String operation, Collection<Node> nodes)
+	{
+		if (journal == null) {
+			return;
+		}
+		journal.appendMoves(operation, nodes);
+		checkCompaction();
+	}
+
+	public void recordRename(String oldName, String newName)
+	{
+		if (journal == null) {
+			return;
+		}
+		journal.appendRename(oldName, newName);
+		checkCompaction();
+	}
+
+	private void checkCompaction()
+	{
+		if (!journal.isCompactionDue()) {
+			return;
+		}
+		// records are appended on the UI thread, hence the model is in a
+		// consistent state for taking the snapshot here
+		journal.compact(model, view);
+	}
+
+	public void documentSaved()
+	{
+		if (journal != null) {
+			journal.saved();
+		}
+	}
+
 	public void show()
 	{
 		frame = new JFrame("Map Editor");
@@ -782,6 +851,9 @@ public class MapEditor
 				"Confirm Exit", JOptionPane.DEFAULT_OPTION,
 				JOptionPane.QUESTION_MESSAGE, null, options, cancel);
 		if (status == JOptionPane.YES_OPTION) {
+			if (journal != null) {
+				journal.close(true);
+			}
 			System.exit(0);
 		}
 	}
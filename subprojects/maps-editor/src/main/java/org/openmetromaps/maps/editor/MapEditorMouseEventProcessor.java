@@ -85,6 +85,10 @@ public class MapEditorMouseEventProcessor
 	{
 		super.mouseReleased(e);
 		if (e.getButton() == MouseEvent.BUTTON1) {
+			if (draggingNodes) {
+				mapEditor.recordMoves("move", mapEditor.getMapViewStatus()
+						.getSelectedNodes());
+			}
 			draggingNodes = false;
 		}
 	}
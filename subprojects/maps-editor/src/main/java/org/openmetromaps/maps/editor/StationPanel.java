@@ -22,6 +22,7 @@ import java.awt.GridBagLayout;
 import java.awt.event.FocusAdapter;
 import java.awt.event.FocusEvent;
 import java.awt.event.FocusListener;
+import java.util.Arrays;
 
 import javax.swing.JLabel;
 import javax.swing.JPanel;
@@ -157,13 +158,18 @@ public class StationPanel extends JPanel
 		String valX = inputX.getText();
 		String valY = inputY.getText();
 
-		node.station.setName(valName);
+		String oldName = node.station.getName();
+		if (!oldName.equals(valName)) {
+			node.station.setName(valName);
+			mapEditor.recordRename(oldName, valName);
+		}
 
 		try {
 			double parsedX = Double.parseDouble(valX);
 			double parsedY = Double.parseDouble(valY);
 			node.location = new Point(parsedX, parsedY);
 			LineNetworkUtil.updateEdges(node);
+			mapEditor.recordMoves("set-location", Arrays.asList(node));
 			mapEditor.getMap().repaint();
 		} catch (NumberFormatException e) {
 			logger.warn("Error while parsing value. " + e.getMessage());
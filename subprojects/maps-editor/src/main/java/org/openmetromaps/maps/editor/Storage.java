@@ -19,7 +19,6 @@ package org.openmetromaps.maps.editor;
 
 import java.awt.Window;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.util.Arrays;
@@ -44,12 +43,11 @@ public class Storage
 	public static void save(File file, MapEditor mapEditor)
 	{
 		try {
-			FileOutputStream os = new FileOutputStream(file);
 			MapModel model = mapEditor.getModel();
 			MapView view = mapEditor.getView();
 			List<MapView> views = Arrays.asList(view);
-			new XmlModelWriter().write(os, model.getData(), views);
-			os.close();
+			new XmlModelWriter().write(file.toPath(), model.getData(), views);
+			mapEditor.documentSaved();
 		} catch (ParserConfigurationException | IOException e) {
 			logger.error("Error while saving file", e);
 			// TODO: display an error dialog
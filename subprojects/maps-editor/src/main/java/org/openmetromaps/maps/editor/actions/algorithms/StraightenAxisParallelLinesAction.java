@@ -46,6 +46,8 @@ public class StraightenAxisParallelLinesAction extends MapEditorAction
 		StraightenAxisParallelLinesOptimization optimization = new StraightenAxisParallelLinesOptimization();
 		optimization.runOptimization(mapEditor, 2);
 
+		mapEditor.recordMoves("straighten-axis-parallel-lines",
+				mapEditor.getView().getLineNetwork().getNodes());
 		mapEditor.getMap().repaint();
 	}
 
@@ -66,6 +66,7 @@ public class AlignHorizontallyAction extends MapEditorAction
 			LineNetworkUtil.updateEdges(node);
 		}
 
+		mapEditor.recordMoves("align-horizontally", nodes);
 		mapEditor.getMap().repaint();
 	}
 
@@ -66,6 +66,7 @@ public class AlignVerticallyAction extends MapEditorAction
 			LineNetworkUtil.updateEdges(node);
 		}
 
+		mapEditor.recordMoves("align-vertically", nodes);
 		mapEditor.getMap().repaint();
 	}
 
@@ -148,6 +148,9 @@ public class AutoLayoutBetweenAction  extends MapEditorAction
 			LineNetworkUtil.updateEdges(node);
 		}
 
+		List<Node> moved = new ArrayList<>(between);
+		moved.add(endNode);
+		mapEditor.recordMoves("auto-layout-between", moved);
 		mapEditor.getMap().repaint();
     }
 }
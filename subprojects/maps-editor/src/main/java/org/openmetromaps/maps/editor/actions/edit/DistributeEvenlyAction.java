@@ -127,6 +127,7 @@ public class DistributeEvenlyAction extends MapEditorAction
 			LineNetworkUtil.updateEdges(node);
 		}
 
+		mapEditor.recordMoves("distribute-evenly", between);
 		mapEditor.getMap().repaint();
 	}
 
@@ -18,9 +18,11 @@
 package org.openmetromaps.maps.editor.algorithms;
 
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
+import java.util.Set;
 
 import javax.swing.SwingUtilities;
 
@@ -51,6 +53,8 @@ public class HeavyComputationOptimization
 	private int numSteps;
 	private int lengthPause;
 
+	private Set<Node> moved = new LinkedHashSet<>();
+
 	public void runOptimization(MapEditor mapEditor, int numSteps,
 			int lengthPause)
 	{
@@ -89,6 +93,12 @@ public class HeavyComputationOptimization
 				mapEditor.getMap().repaint();
 			});
 		}
+		// record all moves at once on the UI thread like the edit actions do
+		List<Node> nodes = new ArrayList<>(moved);
+		moved.clear();
+		SwingUtilities.invokeLater(() -> {
+			mapEditor.recordMoves("heavy-computation", nodes);
+		});
 	}
 
 	/*
@@ -182,6 +192,7 @@ public class HeavyComputationOptimization
 
 		node.location = new Point(x, y);
 		LineNetworkUtil.updateEdges(node);
+		moved.add(node);
 	}
 
 }
@@ -0,0 +1,490 @@
+// Copyright 2019 Sebastian Kuerten
+//
+// This file is part of OpenMetroMaps.
+//
+// OpenMetroMaps is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Lesser General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// OpenMetroMaps is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with OpenMetroMaps. If not, see <http://www.gnu.org/licenses/>.
+
+package org.openmetromaps.maps.editor.journal;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.openmetromaps.maps.Edges;
+import org.openmetromaps.maps.Interval;
+import org.openmetromaps.maps.MapModel;
+import org.openmetromaps.maps.MapView;
+import org.openmetromaps.maps.graph.LineNetwork;
+import org.openmetromaps.maps.graph.Node;
+import org.openmetromaps.maps.model.Line;
+import org.openmetromaps.maps.model.ModelData;
+import org.openmetromaps.maps.model.Station;
+import org.openmetromaps.maps.model.Stop;
+import org.openmetromaps.maps.xml.XmlModelWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An append-only journal of edit operations performed on a document. Records
+ * are encoded on the calling thread and written by a background thread that
+ * syncs them to disk in small batches. From time to time the journal is
+ * compacted by writing the complete document to an autosave file next to the
+ * source file and starting over with an empty journal.
+ * 
+ * The journal file consists of a header (magic, version, base file and the
+ * base file's modification time) followed by length-prefixed records that are
+ * each protected by a CRC32 checksum. See {@link JournalRecovery} for reading
+ * it back after a crash.
+ */
+public class EditJournal
+{
+
+	final static Logger logger = LoggerFactory.getLogger(EditJournal.class);
+
+	static final int MAGIC = 0x4f4d4d4a;
+	static final int VERSION = 1;
+
+	static final byte BASE_SOURCE = 0;
+	static final byte BASE_AUTOSAVE = 1;
+
+	static final byte TYPE_MOVE = 1;
+	static final byte TYPE_RENAME = 2;
+
+	private static final int MAX_BATCH_SIZE = 256;
+	private static final int COMPACTION_THRESHOLD = 1000;
+
+	public static Path journalPath(Path source)
+	{
+		return source.resolveSibling(source.getFileName() + ".journal");
+	}
+
+	public static Path autosavePath(Path source)
+	{
+		return source.resolveSibling(source.getFileName() + ".autosave");
+	}
+
+	private Path source;
+	private Path pathJournal;
+	private Path pathAutosave;
+
+	private BlockingQueue<Task> queue = new LinkedBlockingQueue<>();
+	/*
+	 * Guards the order of records and snapshots in the queue: a snapshot is
+	 * taken and enqueued atomically with respect to appending records, so that
+	 * every record written before a compaction is covered by its snapshot.
+	 */
+	private final Object lock = new Object();
+	private Thread thread;
+	private FileChannel channel = null;
+
+	private AtomicInteger numRecords = new AtomicInteger();
+	private AtomicBoolean compactionPending = new AtomicBoolean();
+	private volatile boolean failed = false;
+
+	public EditJournal(Path source)
+	{
+		this.source = source;
+		pathJournal = journalPath(source);
+		pathAutosave = autosavePath(source);
+	}
+
+	/**
+	 * Start the writer thread with an empty journal based on the source file.
+	 */
+	public void start()
+	{
+		queue.add(new Reset(BASE_SOURCE));
+		startThread();
+	}
+
+	/**
+	 * Start the writer thread by compacting the specified (recovered) document
+	 * state before any new records get appended.
+	 */
+	public void start(MapModel model, MapView view)
+	{
+		compactionPending.set(true);
+		synchronized (lock) {
+			queue.add(snapshot(model, view));
+		}
+		startThread();
+	}
+
+	private void startThread()
+	{
+		thread = new Thread(this::processTasks, "edit-journal");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	public void appendMoves(String operation, Collection<Node> nodes)
+	{
+		if (failed || nodes.isEmpty()) {
+			return;
+		}
+		try {
+			ByteArrayOutputStream baos = new ByteArrayOutputStream();
+			DataOutputStream dos = new DataOutputStream(baos);
+			dos.writeByte(TYPE_MOVE);
+			dos.writeUTF(operation);
+			dos.writeInt(nodes.size());
+			for (Node node : nodes) {
+				dos.writeUTF(node.station.getName());
+				dos.writeDouble(node.location.getX());
+				dos.writeDouble(node.location.getY());
+			}
+			append(baos.toByteArray());
+		} catch (IOException e) {
+			// cannot happen with an in-memory stream
+			logger.error("Error while encoding journal record", e);
+		}
+	}
+
+	public void appendRename(String oldName, String newName)
+	{
+		if (failed) {
+			return;
+		}
+		try {
+			ByteArrayOutputStream baos = new ByteArrayOutputStream();
+			DataOutputStream dos = new DataOutputStream(baos);
+			dos.writeByte(TYPE_RENAME);
+			dos.writeUTF(oldName);
+			dos.writeUTF(newName);
+			append(baos.toByteArray());
+		} catch (IOException e) {
+			// cannot happen with an in-memory stream
+			logger.error("Error while encoding journal record", e);
+		}
+	}
+
+	private void append(byte[] payload)
+	{
+		CRC32 crc = new CRC32();
+		crc.update(payload);
+
+		ByteBuffer record = ByteBuffer.allocate(payload.length + 8);
+		record.putInt(payload.length);
+		record.put(payload);
+		record.putInt((int) crc.getValue());
+		record.flip();
+
+		synchronized (lock) {
+			queue.add(new Append(record));
+			numRecords.incrementAndGet();
+		}
+	}
+
+	/**
+	 * @return whether enough records have been appended since the last
+	 *         compaction so that the caller should provide a snapshot using
+	 *         {@link #compact(MapModel, MapView)}.
+	 */
+	public boolean isCompactionDue()
+	{
+		return !failed && numRecords.get() >= COMPACTION_THRESHOLD
+				&& !compactionPending.get();
+	}
+
+	/**
+	 * Schedule a compaction of the journal into a full save of the document.
+	 * This needs to be called on the thread that modifies the model; a copy of
+	 * the document is created here while the serialization happens on the
+	 * writer thread. Records appended concurrently end up
+	 * either before the snapshot, which then contains their changes, or after
+	 * it in the new journal.
+	 */
+	public void compact(MapModel model, MapView view)
+	{
+		if (failed || !compactionPending.compareAndSet(false, true)) {
+			return;
+		}
+		synchronized (lock) {
+			queue.add(snapshot(model, view));
+		}
+	}
+
+	/**
+	 * Discard the journal content after the document has been saved to the
+	 * source file explicitly.
+	 */
+	public void saved()
+	{
+		synchronized (lock) {
+			numRecords.set(0);
+			queue.add(new Reset(BASE_SOURCE));
+		}
+	}
+
+	/**
+	 * Stop the writer thread after all pending records have been written.
+	 * 
+	 * @param discard
+	 *            whether to delete the journal and autosave files afterwards.
+	 */
+	public void close(boolean discard)
+	{
+		if (thread == null) {
+			return;
+		}
+		queue.add(new Close(discard));
+		try {
+			thread.join(5000);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/*
+	 * Copy the parts of the document that are written to the autosave file,
+	 * as stations get renamed and nodes moved while the writer thread is
+	 * serializing the snapshot. Coordinates and points are immutable, node
+	 * locations are replaced rather than modified while editing, so that
+	 * copying their references is enough.
+	 */
+	Compact snapshot(MapModel model, MapView view)
+	{
+		ModelData data = model.getData();
+
+		Map<Station, Station> stations = new HashMap<>();
+		List<Station> copyStations = new ArrayList<>(data.stations.size());
+		for (Station station : data.stations) {
+			Station copyStation = new Station(station.getId(),
+					station.getName(), station.getLocation(),
+					new ArrayList<>());
+			stations.put(station, copyStation);
+			copyStations.add(copyStation);
+		}
+
+		List<Line> copyLines = new ArrayList<>(data.lines.size());
+		for (Line line : data.lines) {
+			Line copyLine = new Line(line.getId(), line.getName(),
+					line.getColor(), line.isCircular(), new ArrayList<>());
+			for (Stop stop : line.getStops()) {
+				Station copyStation = stations.get(stop.getStation());
+				Stop copyStop = new Stop(copyStation, copyLine);
+				copyStop.setLocation(stop.getLocation());
+				copyStation.getStops().add(copyStop);
+				copyLine.getStops().add(copyStop);
+			}
+			copyLines.add(copyLine);
+		}
+		ModelData copy = new ModelData(copyLines, copyStations);
+
+		LineNetwork network = new LineNetwork();
+		for (Node node : view.getLineNetwork().getNodes()) {
+			Node copyNode = new Node(stations.get(node.station));
+			copyNode.location = node.location;
+			network.nodes.add(copyNode);
+		}
+
+		List<Edges> copyEdges = new ArrayList<>();
+		for (Edges edges : view.getEdges()) {
+			Edges copyEdgesDef = new Edges(edges.getLine());
+			for (Interval interval : edges.getIntervals()) {
+				copyEdgesDef.addInterval(
+						new Interval(interval.getFrom(), interval.getTo()));
+			}
+			copyEdges.add(copyEdgesDef);
+		}
+
+		MapView copyView = new MapView(view.getName(), copyEdges, network,
+				view.getConfig());
+
+		int count = numRecords.getAndSet(0);
+		logger.debug(String.format("compacting journal after %d records",
+				count));
+		return new Compact(copy, Arrays.asList(copyView));
+	}
+
+	private void processTasks()
+	{
+		List<ByteBuffer> batch = new ArrayList<>();
+		try {
+			while (true) {
+				Task task = queue.take();
+				if (task instanceof Append) {
+					batch.add(((Append) task).record);
+					while (batch.size() < MAX_BATCH_SIZE
+							&& queue.peek() instanceof Append) {
+						batch.add(((Append) queue.poll()).record);
+					}
+					writeBatch(batch);
+					batch.clear();
+				} else if (task instanceof Compact) {
+					Compact compact = (Compact) task;
+					writeAutosave(compact.data, compact.views);
+					reset(BASE_AUTOSAVE);
+					compactionPending.set(false);
+				} else if (task instanceof Reset) {
+					if (((Reset) task).base == BASE_SOURCE) {
+						Files.deleteIfExists(pathAutosave);
+					}
+					reset(((Reset) task).base);
+				} else if (task instanceof Close) {
+					closeChannel();
+					if (((Close) task).discard) {
+						Files.deleteIfExists(pathJournal);
+						Files.deleteIfExists(pathAutosave);
+					}
+					return;
+				}
+			}
+		} catch (InterruptedException e) {
+			logger.warn("Journal writer interrupted");
+		} catch (IOException | ParserConfigurationException e) {
+			logger.error("Error while writing journal, disabling journal", e);
+			failed = true;
+			queue.clear();
+			try {
+				closeChannel();
+			} catch (IOException e2) {
+				logger.warn("Error while closing journal", e2);
+			}
+		}
+	}
+
+	private void writeBatch(List<ByteBuffer> batch) throws IOException
+	{
+		if (channel == null) {
+			return;
+		}
+		ByteBuffer[] buffers = batch.toArray(new ByteBuffer[0]);
+		long remaining = 0;
+		for (ByteBuffer buffer : buffers) {
+			remaining += buffer.remaining();
+		}
+		while (remaining > 0) {
+			remaining -= channel.write(buffers);
+		}
+		channel.force(false);
+	}
+
+	private void writeAutosave(ModelData data, List<MapView> views)
+			throws IOException, ParserConfigurationException
+	{
+		Path tmp = pathAutosave
+				.resolveSibling(pathAutosave.getFileName() + ".tmp");
+		new XmlModelWriter().write(tmp, data, views);
+		try (FileChannel fc = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+			fc.force(true);
+		}
+		Files.move(tmp, pathAutosave, StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	private void reset(byte base) throws IOException
+	{
+		closeChannel();
+
+		Path pathBase = base == BASE_AUTOSAVE ? pathAutosave : source;
+		long modified = Files.getLastModifiedTime(pathBase).toMillis();
+
+		channel = FileChannel.open(pathJournal, StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+
+		ByteBuffer header = ByteBuffer.allocate(17);
+		header.putInt(MAGIC);
+		header.putInt(VERSION);
+		header.put(base);
+		header.putLong(modified);
+		header.flip();
+		while (header.hasRemaining()) {
+			channel.write(header);
+		}
+		channel.force(true);
+	}
+
+	private void closeChannel() throws IOException
+	{
+		if (channel != null) {
+			channel.close();
+			channel = null;
+		}
+	}
+
+	private static interface Task
+	{
+	}
+
+	private static class Append implements Task
+	{
+
+		final ByteBuffer record;
+
+		Append(ByteBuffer record)
+		{
+			this.record = record;
+		}
+
+	}
+
+	static class Compact implements Task
+	{
+
+		final ModelData data;
+		final List<MapView> views;
+
+		Compact(ModelData data, List<MapView> views)
+		{
+			this.data = data;
+			this.views = views;
+		}
+
+	}
+
+	private static class Reset implements Task
+	{
+
+		final byte base;
+
+		Reset(byte base)
+		{
+			this.base = base;
+		}
+
+	}
+
+	private static class Close implements Task
+	{
+
+		final boolean discard;
+
+		Close(boolean discard)
+		{
+			this.discard = discard;
+		}
+
+	}
+
+}
@@ -0,0 +1,211 @@
+// Copyright 2019 Sebastian Kuerten
+//
+// This file is part of OpenMetroMaps.
+//
+// OpenMetroMaps is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Lesser General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// OpenMetroMaps is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with OpenMetroMaps. If not, see <http://www.gnu.org/licenses/>.
+
+package org.openmetromaps.maps.editor.journal;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+import org.openmetromaps.maps.CoordinateConversionType;
+import org.openmetromaps.maps.MapModel;
+import org.openmetromaps.maps.MapView;
+import org.openmetromaps.maps.ModelUtil;
+import org.openmetromaps.maps.graph.LineNetworkUtil;
+import org.openmetromaps.maps.graph.Node;
+import org.openmetromaps.maps.xml.DesktopXmlModelReader;
+import org.openmetromaps.maps.xml.XmlModel;
+import org.openmetromaps.maps.xml.XmlModelConverter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.topobyte.lightgeom.lina.Point;
+import de.topobyte.xml.domabstraction.iface.ParsingException;
+
+/**
+ * Restores the state of a document from the journal and autosave files left
+ * behind by an {@link EditJournal} that has not been closed properly.
+ */
+public class JournalRecovery
+{
+
+	final static Logger logger = LoggerFactory.getLogger(JournalRecovery.class);
+
+	private static final int MAX_RECORD_LENGTH = 64 * 1024 * 1024;
+
+	private Path source;
+
+	private boolean recovered = false;
+	private int numReplayed = 0;
+
+	public JournalRecovery(Path source)
+	{
+		this.source = source;
+	}
+
+	public boolean isRecovered()
+	{
+		return recovered;
+	}
+
+	public int getNumReplayed()
+	{
+		return numReplayed;
+	}
+
+	/**
+	 * @return the recovered model, or the specified model if there is nothing
+	 *         to recover.
+	 */
+	public MapModel recover(MapModel model)
+	{
+		Path pathJournal = EditJournal.journalPath(source);
+		if (!Files.exists(pathJournal)) {
+			return model;
+		}
+
+		try (DataInputStream input = new DataInputStream(
+				new BufferedInputStream(Files.newInputStream(pathJournal)))) {
+			int magic = input.readInt();
+			int version = input.readInt();
+			if (magic != EditJournal.MAGIC
+					|| version != EditJournal.VERSION) {
+				logger.warn("Ignoring journal with unknown format: "
+						+ pathJournal);
+				return model;
+			}
+			byte base = input.readByte();
+			long modified = input.readLong();
+
+			Path pathBase = base == EditJournal.BASE_AUTOSAVE
+					? EditJournal.autosavePath(source)
+					: source;
+			if (!Files.exists(pathBase) || Files.getLastModifiedTime(pathBase)
+					.toMillis() != modified) {
+				logger.info("Ignoring outdated journal: " + pathJournal);
+				return model;
+			}
+
+			MapModel result = model;
+			if (base == EditJournal.BASE_AUTOSAVE) {
+				XmlModel xmlModel = DesktopXmlModelReader.read(pathBase);
+				result = new XmlModelConverter().convert(xmlModel);
+				recovered = true;
+			}
+
+			ModelUtil.ensureView(result, CoordinateConversionType.WGS84);
+			MapView view = result.getViews().get(0);
+			replay(input, view);
+
+			if (numReplayed > 0) {
+				recovered = true;
+			}
+			if (recovered) {
+				logger.info(String.format(
+						"Recovered unsaved changes from %s (%d operations)",
+						pathJournal, numReplayed));
+			}
+			return result;
+		} catch (EOFException e) {
+			logger.warn("Ignoring journal with incomplete header: "
+					+ pathJournal);
+		} catch (IOException | ParsingException e) {
+			logger.warn("Error while recovering from journal", e);
+		}
+		return model;
+	}
+
+	private void replay(DataInputStream input, MapView view)
+			throws IOException
+	{
+		Map<String, Node> nameToNode = new HashMap<>();
+		for (Node node : view.getLineNetwork().getNodes()) {
+			nameToNode.put(node.station.getName(), node);
+		}
+
+		Set<Node> changed = new HashSet<>();
+		CRC32 crc = new CRC32();
+
+		while (true) {
+			byte[] payload;
+			try {
+				int length = input.readInt();
+				if (length <= 0 || length > MAX_RECORD_LENGTH) {
+					logger.warn("Stopping replay at corrupt journal record");
+					break;
+				}
+				payload = new byte[length];
+				input.readFully(payload);
+				int checksum = input.readInt();
+				crc.reset();
+				crc.update(payload);
+				if ((int) crc.getValue() != checksum) {
+					logger.warn("Stopping replay at corrupt journal record");
+					break;
+				}
+			} catch (EOFException e) {
+				// regular end of the journal or a record that has not been
+				// written completely
+				break;
+			}
+
+			DataInputStream record = new DataInputStream(
+					new ByteArrayInputStream(payload));
+			byte type = record.readByte();
+			if (type == EditJournal.TYPE_MOVE) {
+				record.readUTF(); // name of the operation
+				int num = record.readInt();
+				for (int i = 0; i < num; i++) {
+					String name = record.readUTF();
+					double x = record.readDouble();
+					double y = record.readDouble();
+					Node node = nameToNode.get(name);
+					if (node == null) {
+						logger.warn("Journal references unknown station: "
+								+ name);
+						continue;
+					}
+					node.location = new Point(x, y);
+					changed.add(node);
+				}
+			} else if (type == EditJournal.TYPE_RENAME) {
+				String oldName = record.readUTF();
+				String newName = record.readUTF();
+				Node node = nameToNode.remove(oldName);
+				if (node != null) {
+					node.station.setName(newName);
+					nameToNode.put(newName, node);
+				}
+			}
+			numReplayed++;
+		}
+
+		for (Node node : changed) {
+			LineNetworkUtil.updateEdges(node);
+		}
+	}
+
+}
@@ -0,0 +1,283 @@
+// Copyright 2019 Sebastian Kuerten
+//
+// This file is part of OpenMetroMaps.
+//
+// OpenMetroMaps is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Lesser General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// OpenMetroMaps is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with OpenMetroMaps. If not, see <http://www.gnu.org/licenses/>.
+
+package org.openmetromaps.maps.editor.journal;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.openmetromaps.maps.CoordinateConversionType;
+import org.openmetromaps.maps.MapModel;
+import org.openmetromaps.maps.MapView;
+import org.openmetromaps.maps.ModelUtil;
+import org.openmetromaps.maps.TestData;
+import org.openmetromaps.maps.graph.Node;
+import org.openmetromaps.maps.model.Line;
+import org.openmetromaps.maps.model.Stop;
+import org.openmetromaps.maps.xml.XmlModelConverter;
+
+import de.topobyte.lightgeom.lina.Point;
+import de.topobyte.xml.domabstraction.iface.ParsingException;
+
+public class TestEditJournal
+{
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private Path source;
+
+	@Before
+	public void setUp() throws IOException
+	{
+		source = folder.newFile("map.xml").toPath();
+	}
+
+	private static MapModel model() throws ParsingException
+	{
+		MapModel model = new XmlModelConverter().convert(TestData.berlinXml());
+		ModelUtil.ensureView(model, CoordinateConversionType.WGS84);
+		return model;
+	}
+
+	private static MapView view(MapModel model)
+	{
+		return model.getViews().get(0);
+	}
+
+	private static Node node(MapModel model, int index)
+	{
+		return view(model).getLineNetwork().getNodes().get(index);
+	}
+
+	private static Node find(MapModel model, String name)
+	{
+		for (Node node : view(model).getLineNetwork().getNodes()) {
+			if (node.station.getName().equals(name)) {
+				return node;
+			}
+		}
+		return null;
+	}
+
+	private static void move(EditJournal journal, Node node, double x,
+			double y)
+	{
+		node.location = new Point(x, y);
+		journal.appendMoves("test", Arrays.asList(node));
+	}
+
+	private static void assertLocation(Node node, double x, double y)
+	{
+		Assert.assertNotNull(node);
+		Assert.assertEquals(x, node.location.getX(), 1e-6);
+		Assert.assertEquals(y, node.location.getY(), 1e-6);
+	}
+
+	@Test
+	public void testAppendAndRecover() throws IOException, ParsingException
+	{
+		MapModel model = model();
+		Node node1 = node(model, 0);
+		Node node2 = node(model, 1);
+		String name1 = node1.station.getName();
+		String name2 = node2.station.getName();
+
+		EditJournal journal = new EditJournal(source);
+		journal.start();
+		move(journal, node1, 100.5, 200.25);
+		move(journal, node1, 101.5, 201.25);
+		journal.appendRename(name2, "Renamed");
+		journal.close(false);
+
+		JournalRecovery recovery = new JournalRecovery(source);
+		MapModel recovered = recovery.recover(model());
+
+		Assert.assertTrue(recovery.isRecovered());
+		Assert.assertEquals(3, recovery.getNumReplayed());
+		assertLocation(find(recovered, name1), 101.5, 201.25);
+		Assert.assertNull(find(recovered, name2));
+		Assert.assertNotNull(find(recovered, "Renamed"));
+	}
+
+	@Test
+	public void testNothingToRecover() throws IOException, ParsingException
+	{
+		EditJournal journal = new EditJournal(source);
+		journal.start();
+		journal.appendMoves("test", Collections.emptyList());
+		journal.close(false);
+
+		MapModel model = model();
+		JournalRecovery recovery = new JournalRecovery(source);
+		Assert.assertSame(model, recovery.recover(model));
+		Assert.assertFalse(recovery.isRecovered());
+		Assert.assertEquals(0, recovery.getNumReplayed());
+	}
+
+	@Test
+	public void testDiscard() throws IOException
+	{
+		EditJournal journal = new EditJournal(source);
+		journal.start();
+		journal.close(true);
+
+		Assert.assertFalse(Files.exists(EditJournal.journalPath(source)));
+		Assert.assertFalse(Files.exists(EditJournal.autosavePath(source)));
+	}
+
+	@Test
+	public void testTornTail() throws IOException, ParsingException
+	{
+		MapModel model = model();
+		Node node = node(model, 0);
+		String name = node.station.getName();
+
+		EditJournal journal = new EditJournal(source);
+		journal.start();
+		move(journal, node, 100.5, 200.25);
+		move(journal, node, 101.5, 201.25);
+		journal.close(false);
+
+		// cut off the checksum and part of the payload of the last record
+		Path pathJournal = EditJournal.journalPath(source);
+		byte[] bytes = Files.readAllBytes(pathJournal);
+		Files.write(pathJournal, Arrays.copyOf(bytes, bytes.length - 6));
+
+		JournalRecovery recovery = new JournalRecovery(source);
+		MapModel recovered = recovery.recover(model());
+
+		Assert.assertEquals(1, recovery.getNumReplayed());
+		assertLocation(find(recovered, name), 100.5, 200.25);
+	}
+
+	@Test
+	public void testBadChecksum() throws IOException, ParsingException
+	{
+		MapModel model = model();
+		Node node = node(model, 0);
+		String name = node.station.getName();
+
+		EditJournal journal = new EditJournal(source);
+		journal.start();
+		move(journal, node, 100.5, 200.25);
+		move(journal, node, 101.5, 201.25);
+		journal.close(false);
+
+		// corrupt the checksum of the last record
+		Path pathJournal = EditJournal.journalPath(source);
+		byte[] bytes = Files.readAllBytes(pathJournal);
+		bytes[bytes.length - 1] ^= 0xff;
+		Files.write(pathJournal, bytes);
+
+		JournalRecovery recovery = new JournalRecovery(source);
+		MapModel recovered = recovery.recover(model());
+
+		Assert.assertEquals(1, recovery.getNumReplayed());
+		assertLocation(find(recovered, name), 100.5, 200.25);
+	}
+
+	@Test
+	public void testCompaction() throws IOException, ParsingException
+	{
+		MapModel model = model();
+		Node node1 = node(model, 0);
+		Node node2 = node(model, 1);
+		String name1 = node1.station.getName();
+		String name2 = node2.station.getName();
+
+		EditJournal journal = new EditJournal(source);
+		journal.start();
+		move(journal, node1, 100.5, 200.25);
+		journal.compact(model, view(model));
+		move(journal, node2, 300.5, 400.25);
+		journal.close(false);
+
+		Assert.assertTrue(Files.exists(EditJournal.autosavePath(source)));
+
+		JournalRecovery recovery = new JournalRecovery(source);
+		MapModel recovered = recovery.recover(model());
+
+		// the first move is contained in the autosave file, only the second
+		// one is replayed from the new journal
+		Assert.assertTrue(recovery.isRecovered());
+		Assert.assertEquals(1, recovery.getNumReplayed());
+		assertLocation(find(recovered, name1), 100.5, 200.25);
+		assertLocation(find(recovered, name2), 300.5, 400.25);
+	}
+
+	@Test
+	public void testSnapshotIsIndependent() throws ParsingException
+	{
+		MapModel model = model();
+		Node node = node(model, 0);
+		String name = node.station.getName();
+		Point location = node.location;
+
+		EditJournal journal = new EditJournal(source);
+		EditJournal.Compact compact = journal.snapshot(model, view(model));
+
+		// edits on the model after taking the snapshot
+		node.station.setName("Renamed");
+		node.location = new Point(100.5, 200.25);
+
+		MapView copy = compact.views.get(0);
+		Node copyNode = copy.getLineNetwork().getNodes().get(0);
+		Assert.assertEquals(name, copyNode.station.getName());
+		Assert.assertSame(location, copyNode.location);
+		Assert.assertNotSame(node.station, copyNode.station);
+
+		// stops of the copied lines refer to the copied stations
+		for (Line line : compact.data.lines) {
+			for (Stop stop : line.getStops()) {
+				Assert.assertTrue(compact.data.stations
+						.contains(stop.getStation()));
+				Assert.assertSame(line, stop.getLine());
+			}
+		}
+	}
+
+	@Test
+	public void testOutdatedJournal() throws IOException, ParsingException
+	{
+		MapModel model = model();
+		Node node = node(model, 0);
+
+		EditJournal journal = new EditJournal(source);
+		journal.start();
+		move(journal, node, 100.5, 200.25);
+		journal.close(false);
+
+		// the source file has been modified since the journal was started
+		long modified = Files.getLastModifiedTime(source).toMillis();
+		Files.setLastModifiedTime(source, FileTime.fromMillis(modified + 10000));
+
+		JournalRecovery recovery = new JournalRecovery(source);
+		recovery.recover(model());
+		Assert.assertFalse(recovery.isRecovered());
+	}
+
+}
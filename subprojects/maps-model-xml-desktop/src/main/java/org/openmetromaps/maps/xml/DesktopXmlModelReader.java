@@ -17,7 +17,11 @@
 
 package org.openmetromaps.maps.xml;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Path;
+
+import org.openmetromaps.misc.Compression;
 
 import de.topobyte.xml.domabstraction.desktopimpl.DesktopDocumentFactory;
 import de.topobyte.xml.domabstraction.iface.ParsingException;
@@ -27,7 +31,20 @@ public class DesktopXmlModelReader
 
 	public static XmlModel read(InputStream is) throws ParsingException
 	{
-		return XmlModelReader.read(new DesktopDocumentFactory(), is);
+		try {
+			InputStream input = Compression.decompressing(is);
+			return XmlModelReader.read(new DesktopDocumentFactory(), input);
+		} catch (IOException e) {
+			throw new ParsingException(e);
+		}
+	}
+
+	public static XmlModel read(Path path)
+			throws ParsingException, IOException
+	{
+		try (InputStream input = Compression.newInputStream(path)) {
+			return XmlModelReader.read(new DesktopDocumentFactory(), input);
+		}
 	}
 
 }
@@ -19,6 +19,7 @@ package org.openmetromaps.maps.xml;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
@@ -40,6 +41,7 @@ import org.openmetromaps.maps.model.Line;
 import org.openmetromaps.maps.model.ModelData;
 import org.openmetromaps.maps.model.Station;
 import org.openmetromaps.maps.model.Stop;
+import org.openmetromaps.misc.Compression;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 
@@ -50,6 +52,18 @@ import de.topobyte.xml4jah.dom.DocumentWriter;
 public class XmlModelWriter
 {
 
+	/**
+	 * Write the model to the specified file, compressing the output if the
+	 * file name ends with '.gz' or '.deflate'.
+	 */
+	public void write(Path path, ModelData data, List<MapView> views)
+			throws ParserConfigurationException, IOException
+	{
+		try (OutputStream os = Compression.newOutputStream(path)) {
+			write(os, data, views);
+		}
+	}
+
 	public void write(OutputStream os, ModelData data, List<MapView> views)
 			throws ParserConfigurationException, IOException
 	{
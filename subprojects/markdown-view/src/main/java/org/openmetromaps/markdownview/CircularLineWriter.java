@@ -31,13 +31,9 @@ public class CircularLineWriter extends LineWriter
 	}
 
 	@Override
-	public void write() throws IOException
+	protected void writeContent() throws IOException
 	{
-		output = new MarkdownWriter(file);
-
 		writeStops(line.line.getStops());
-
-		output.close();
 	}
 
 }
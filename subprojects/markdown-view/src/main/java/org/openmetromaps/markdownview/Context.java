@@ -17,6 +17,7 @@
 
 package org.openmetromaps.markdownview;
 
+import org.openmetromaps.heavyutil.InterchangeIndex;
 import org.openmetromaps.maps.graph.LineNetwork;
 import org.openmetromaps.maps.model.Line;
 import org.openmetromaps.maps.model.Station;
@@ -34,12 +35,14 @@ public class Context
 
 	private Multimap<Station, Line> stationToLines;
 	private LineNetwork lineNetwork;
+	private InterchangeIndex interchangeIndex;
 
 	public Context(Multimap<Station, Line> stationToLines,
-			LineNetwork lineNetwork)
+			LineNetwork lineNetwork, InterchangeIndex interchangeIndex)
 	{
 		this.stationToLines = stationToLines;
 		this.lineNetwork = lineNetwork;
+		this.interchangeIndex = interchangeIndex;
 	}
 
 	public WebPath getSubpathLines()
@@ -77,4 +80,9 @@ public class Context
 		return lineNetwork;
 	}
 
+	public InterchangeIndex getInterchangeIndex()
+	{
+		return interchangeIndex;
+	}
+
 }
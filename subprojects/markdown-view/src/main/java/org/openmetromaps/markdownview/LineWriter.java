@@ -18,6 +18,7 @@
 package org.openmetromaps.markdownview;
 
 import java.io.IOException;
+import java.io.StringWriter;
 import java.nio.file.Path;
 import java.util.Iterator;
 import java.util.List;
@@ -51,7 +52,32 @@ public abstract class LineWriter
 		path = context.path(line.line);
 	}
 
-	public abstract void write() throws IOException;
+	public void write() throws IOException
+	{
+		try (MarkdownWriter output = new MarkdownWriter(file)) {
+			write(output);
+		}
+	}
+
+	/**
+	 * Render the page into a string instead of writing it to the file.
+	 */
+	public String render() throws IOException
+	{
+		StringWriter buffer = new StringWriter();
+		try (MarkdownWriter output = new MarkdownWriter(buffer)) {
+			write(output);
+		}
+		return buffer.toString();
+	}
+
+	public void write(MarkdownWriter output) throws IOException
+	{
+		this.output = output;
+		writeContent();
+	}
+
+	protected abstract void writeContent() throws IOException;
 
 	protected void writeStops(List<Stop> stops) throws IOException
 	{
@@ -67,7 +93,7 @@ public abstract class LineWriter
 			text.append(linkStation);
 
 			List<Line> lines = HeavyUtil.determineInterestingLines(
-					context.getStationToLines(), line, node);
+					context.getInterchangeIndex(), line, node);
 			MapModelUtil.sortLinesByName(lines);
 
 			if (!lines.isEmpty()) {
@@ -0,0 +1,106 @@
+// Copyright 2019 Sebastian Kuerten
+//
+// This file is part of OpenMetroMaps.
+//
+// OpenMetroMaps is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Lesser General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// OpenMetroMaps is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with OpenMetroMaps. If not, see <http://www.gnu.org/licenses/>.
+
+package org.openmetromaps.markdownview;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Records the pages generated into an output directory together with a hash
+ * of their content. The manifest is stored as a text file with one line per
+ * page consisting of the hash and the page's path relative to the output
+ * directory, separated by a tab character.
+ */
+public class Manifest
+{
+
+	private Map<String, String> pathToHash = new TreeMap<>();
+
+	public static Manifest read(Path file) throws IOException
+	{
+		Manifest manifest = new Manifest();
+		if (!Files.exists(file)) {
+			return manifest;
+		}
+		try (BufferedReader reader = Files.newBufferedReader(file)) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				int index = line.indexOf('\t');
+				if (index < 0) {
+					continue;
+				}
+				manifest.put(line.substring(index + 1),
+						line.substring(0, index));
+			}
+		}
+		return manifest;
+	}
+
+	public void write(Path file) throws IOException
+	{
+		try (BufferedWriter writer = Files.newBufferedWriter(file)) {
+			for (Map.Entry<String, String> entry : pathToHash.entrySet()) {
+				writer.write(entry.getValue());
+				writer.write('\t');
+				writer.write(entry.getKey());
+				writer.newLine();
+			}
+		}
+	}
+
+	public String get(String path)
+	{
+		return pathToHash.get(path);
+	}
+
+	public void put(String path, String hash)
+	{
+		pathToHash.put(path, hash);
+	}
+
+	public Set<String> getPaths()
+	{
+		return pathToHash.keySet();
+	}
+
+	public static String hash(String content)
+	{
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+		byte[] hash = digest.digest(content.getBytes(StandardCharsets.UTF_8));
+		StringBuilder buffer = new StringBuilder();
+		for (byte b : hash) {
+			buffer.append(String.format("%02x", b));
+		}
+		return buffer.toString();
+	}
+
+}
@@ -20,8 +20,17 @@ package org.openmetromaps.markdownview;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.openmetromaps.heavyutil.HeavyUtil;
+import org.openmetromaps.heavyutil.InterchangeIndex;
 import org.openmetromaps.maps.MapModel;
 import org.openmetromaps.maps.MapModelUtil;
 import org.openmetromaps.maps.graph.LineNetwork;
@@ -37,6 +46,7 @@ import com.google.common.collect.Multimap;
 
 import de.topobyte.webpaths.NioPaths;
 import de.topobyte.webpaths.WebPath;
+import de.topobyte.webpaths.WebPaths;
 
 public class MarkdownViewCreator
 {
@@ -44,6 +54,8 @@ public class MarkdownViewCreator
 	final static Logger logger = LoggerFactory
 			.getLogger(MarkdownViewCreator.class);
 
+	public static final String MANIFEST_FILE = ".manifest";
+
 	private Context context;
 
 	private Multimap<Station, Line> stationToLines = HashMultimap.create();
@@ -51,6 +63,11 @@ public class MarkdownViewCreator
 	private MapModel model;
 	private LineNetwork lineNetwork;
 
+	private boolean incremental = false;
+
+	private AtomicInteger numWritten = new AtomicInteger();
+	private AtomicInteger numUnchanged = new AtomicInteger();
+
 	public MarkdownViewCreator(MapModel model)
 	{
 		this.model = model;
@@ -59,9 +76,34 @@ public class MarkdownViewCreator
 				MapModelUtil.allEdges(model));
 		lineNetwork = builder.getGraph();
 
-		context = new Context(stationToLines, lineNetwork);
+		HeavyUtil.fillStationToLines(stationToLines, model);
+		InterchangeIndex interchangeIndex = new InterchangeIndex(lineNetwork,
+				stationToLines);
+
+		context = new Context(stationToLines, lineNetwork, interchangeIndex);
+	}
+
+	public boolean isIncremental()
+	{
+		return incremental;
+	}
+
+	/**
+	 * In incremental mode, pages whose content did not change since the last
+	 * run according to the manifest in the output directory are not written
+	 * again.
+	 */
+	public void setIncremental(boolean incremental)
+	{
+		this.incremental = incremental;
 	}
 
+	/**
+	 * Create the pages in the specified directory. The pages are rendered and
+	 * written concurrently. A manifest of the generated pages is stored in the
+	 * directory and pages generated by a previous run that do not exist
+	 * anymore are deleted.
+	 */
 	public void create(Path pathOutput) throws IOException
 	{
 		Files.createDirectories(pathOutput);
@@ -72,38 +114,112 @@ public class MarkdownViewCreator
 		Files.createDirectories(dirLines);
 		Files.createDirectories(dirStations);
 
-		HeavyUtil.fillStationToLines(stationToLines, model);
+		Map<WebPath, Callable<String>> pages = new LinkedHashMap<>();
 
 		for (NetworkLine line : lineNetwork.lines) {
 			WebPath pathLine = context.path(line.line);
 			Path path = NioPaths.resolve(pathOutput, pathLine);
-			createLine(path, line);
+			pages.put(pathLine, () -> createLine(path, line).render());
 		}
 
 		for (Station station : model.getData().stations) {
 			WebPath pathStation = context.path(station);
 			Path path = NioPaths.resolve(pathOutput, pathStation);
-			createStation(path, station);
+			pages.put(pathStation,
+					() -> new StationWriter(context, path, station).render());
 		}
+
+		Path pathManifest = pathOutput.resolve(MANIFEST_FILE);
+		Manifest previous = Manifest.read(pathManifest);
+		Manifest manifest = new Manifest();
+
+		numWritten.set(0);
+		numUnchanged.set(0);
+
+		Map<WebPath, Future<String>> hashes = new LinkedHashMap<>();
+		ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+		try {
+			for (Map.Entry<WebPath, Callable<String>> page : pages
+					.entrySet()) {
+				WebPath path = page.getKey();
+				Callable<String> renderer = page.getValue();
+				hashes.put(path, executor.submit(
+						() -> update(pathOutput, path, renderer, previous)));
+			}
+			for (Map.Entry<WebPath, Future<String>> entry : hashes
+					.entrySet()) {
+				manifest.put(entry.getKey().toString(), get(entry.getValue()));
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+
+		int numDeleted = 0;
+		Path normalizedOutput = pathOutput.normalize();
+		for (String path : previous.getPaths()) {
+			if (manifest.get(path) != null) {
+				continue;
+			}
+			Path file = NioPaths.resolve(pathOutput, WebPaths.get(path))
+					.normalize();
+			if (!file.startsWith(normalizedOutput)) {
+				logger.warn("ignoring manifest entry outside of output: "
+						+ path);
+				continue;
+			}
+			logger.debug("deleting file: " + file);
+			if (Files.deleteIfExists(file)) {
+				numDeleted++;
+			}
+		}
+
+		manifest.write(pathManifest);
+
+		logger.info(String.format(
+				"pages: %d written, %d unchanged, %d deleted",
+				numWritten.get(), numUnchanged.get(), numDeleted));
 	}
 
-	private void createStation(Path file, Station station) throws IOException
+	private String update(Path pathOutput, WebPath path,
+			Callable<String> renderer, Manifest previous) throws Exception
 	{
-		logger.info("creating file : " + file);
-		StationWriter writer = new StationWriter(context, file, station);
-		writer.write();
+		String content = renderer.call();
+		String hash = Manifest.hash(content);
+
+		Path file = NioPaths.resolve(pathOutput, path);
+		if (incremental && hash.equals(previous.get(path.toString()))
+				&& Files.exists(file)) {
+			numUnchanged.incrementAndGet();
+			return hash;
+		}
+
+		logger.debug("creating file: " + file);
+		Files.writeString(file, content);
+		numWritten.incrementAndGet();
+		return hash;
 	}
 
-	private void createLine(Path file, NetworkLine line) throws IOException
+	private LineWriter createLine(Path file, NetworkLine line)
 	{
-		logger.info("creating file : " + file);
 		if (line.line.isCircular()) {
-			CircularLineWriter writer = new CircularLineWriter(context, file,
-					line);
-			writer.write();
+			return new CircularLineWriter(context, file, line);
 		} else {
-			NormalLineWriter writer = new NormalLineWriter(context, file, line);
-			writer.write();
+			return new NormalLineWriter(context, file, line);
+		}
+	}
+
+	private static <T> T get(Future<T> future) throws IOException
+	{
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			throw new IOException(e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new IOException(cause);
 		}
 	}
 
@@ -20,6 +20,7 @@ package org.openmetromaps.markdownview;
 import java.io.BufferedWriter;
 import java.io.Closeable;
 import java.io.IOException;
+import java.io.Writer;
 import java.nio.file.Files;
 import java.nio.file.Path;
 
@@ -33,6 +34,11 @@ public class MarkdownWriter implements Closeable
 		output = Files.newBufferedWriter(file);
 	}
 
+	public MarkdownWriter(Writer writer)
+	{
+		output = new BufferedWriter(writer);
+	}
+
 	@Override
 	public void close() throws IOException
 	{
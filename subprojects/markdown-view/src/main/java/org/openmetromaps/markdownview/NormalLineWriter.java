@@ -37,10 +37,8 @@ public class NormalLineWriter extends LineWriter
 	}
 
 	@Override
-	public void write() throws IOException
+	protected void writeContent() throws IOException
 	{
-		output = new MarkdownWriter(file);
-
 		Stop firstStop = line.line.getStops().get(0);
 		Stop lastStop = ListUtil.last(line.line.getStops());
 
@@ -54,8 +52,6 @@ public class NormalLineWriter extends LineWriter
 
 		output.heading(1, line.line.getName() + " → " + first.getName());
 		writeStops(Lists.reverse(line.line.getStops()));
-
-		output.close();
 	}
 
 }
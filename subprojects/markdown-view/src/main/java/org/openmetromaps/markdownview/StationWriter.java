@@ -18,6 +18,7 @@
 package org.openmetromaps.markdownview;
 
 import java.io.IOException;
+import java.io.StringWriter;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
@@ -44,8 +45,25 @@ public class StationWriter
 
 	public void write() throws IOException
 	{
-		MarkdownWriter output = new MarkdownWriter(file);
+		try (MarkdownWriter output = new MarkdownWriter(file)) {
+			write(output);
+		}
+	}
+
+	/**
+	 * Render the page into a string instead of writing it to the file.
+	 */
+	public String render() throws IOException
+	{
+		StringWriter buffer = new StringWriter();
+		try (MarkdownWriter output = new MarkdownWriter(buffer)) {
+			write(output);
+		}
+		return buffer.toString();
+	}
 
+	public void write(MarkdownWriter output) throws IOException
+	{
 		output.heading(1, station.getName());
 
 		List<Line> lines = new ArrayList<>(
@@ -60,8 +78,6 @@ public class StationWriter
 					relative.toString());
 			output.unordered(link);
 		}
-
-		output.close();
 	}
 
 }
@@ -0,0 +1,133 @@
+// Copyright 2019 Sebastian Kuerten
+//
+// This file is part of OpenMetroMaps.
+//
+// OpenMetroMaps is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Lesser General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// OpenMetroMaps is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with OpenMetroMaps. If not, see <http://www.gnu.org/licenses/>.
+
+package org.openmetromaps.misc;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Input streams are inspected for the gzip and zlib magic bytes so that callers
+ * do not need to know whether a file is compressed. For output, compression is
+ * chosen from the file name extension ('.gz' or '.deflate').
+ */
+public class Compression
+{
+
+	public static final String EXTENSION_GZIP = ".gz";
+	public static final String EXTENSION_DEFLATE = ".deflate";
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	public enum Type {
+		NONE,
+		GZIP,
+		DEFLATE
+	}
+
+	public static Type typeFromFileName(Path path)
+	{
+		Path fileName = path.getFileName();
+		if (fileName == null) {
+			return Type.NONE;
+		}
+		String name = fileName.toString();
+		if (name.endsWith(EXTENSION_GZIP)) {
+			return Type.GZIP;
+		} else if (name.endsWith(EXTENSION_DEFLATE)) {
+			return Type.DEFLATE;
+		}
+		return Type.NONE;
+	}
+
+	/**
+	 * Determine the compression type of a stream by its first bytes. The stream
+	 * must support mark/reset and is reset to its initial position afterwards.
+	 */
+	public static Type detect(InputStream is) throws IOException
+	{
+		is.mark(2);
+		int b0 = is.read();
+		int b1 = is.read();
+		is.reset();
+
+		if (b0 < 0 || b1 < 0) {
+			return Type.NONE;
+		}
+		if (b0 == 0x1f && b1 == 0x8b) {
+			return Type.GZIP;
+		}
+		// zlib header: CM = 8 (deflate), CINFO <= 7 and the header checksum
+		if ((b0 & 0x0f) == 8 && (b0 >> 4) <= 7 && ((b0 << 8) | b1) % 31 == 0) {
+			return Type.DEFLATE;
+		}
+		return Type.NONE;
+	}
+
+	public static InputStream decompressing(InputStream is) throws IOException
+	{
+		BufferedInputStream bis = new BufferedInputStream(is, BUFFER_SIZE);
+		Type type = detect(bis);
+		switch (type) {
+		default:
+		case NONE:
+			return bis;
+		case GZIP:
+			return new BufferedInputStream(
+					new GZIPInputStream(bis, BUFFER_SIZE), BUFFER_SIZE);
+		case DEFLATE:
+			return new BufferedInputStream(
+					new InflaterInputStream(bis), BUFFER_SIZE);
+		}
+	}
+
+	public static OutputStream compressing(OutputStream os, Type type)
+			throws IOException
+	{
+		switch (type) {
+		default:
+		case NONE:
+			return new BufferedOutputStream(os, BUFFER_SIZE);
+		case GZIP:
+			return new BufferedOutputStream(
+					new GZIPOutputStream(os, BUFFER_SIZE), BUFFER_SIZE);
+		case DEFLATE:
+			return new BufferedOutputStream(new DeflaterOutputStream(os),
+					BUFFER_SIZE);
+		}
+	}
+
+	public static InputStream newInputStream(Path path) throws IOException
+	{
+		return decompressing(Files.newInputStream(path));
+	}
+
+	public static OutputStream newOutputStream(Path path) throws IOException
+	{
+		return compressing(Files.newOutputStream(path), typeFromFileName(path));
+	}
+
+}
@@ -0,0 +1,203 @@
+// Copyright 2019 Sebastian Kuerten
+//
+// This file is part of OpenMetroMaps.
+//
+// OpenMetroMaps is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Lesser General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// OpenMetroMaps is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with OpenMetroMaps. If not, see <http://www.gnu.org/licenses/>.
+
+package org.openmetromaps.misc;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Consumer;
+
+/**
+ * Collects timings and throughput of the phases of an import. Phases are
+ * started with {@link #start(String)} and may overlap, e.g. when run
+ * concurrently. While a phase is running, its progress is reported every few
+ * seconds and when it ends, its totals are reported. At the end of an
+ * import, a summary can be obtained as JSON with {@link #toJson()} for
+ * comparing the performance of different runs.
+ */
+public class ImportMetrics
+{
+
+	private String name;
+	private Instant started;
+	private long start;
+
+	private List<ImportPhase> phases = new ArrayList<>();
+
+	private long progressInterval = 5000;
+	private Consumer<String> progressListener = System.out::println;
+
+	public ImportMetrics(String name)
+	{
+		this.name = name;
+		started = Instant.now();
+		start = System.nanoTime();
+	}
+
+	public String getName()
+	{
+		return name;
+	}
+
+	public long getProgressInterval()
+	{
+		return progressInterval;
+	}
+
+	/**
+	 * Set the minimum time in milliseconds between two progress reports of a
+	 * phase.
+	 */
+	public void setProgressInterval(long progressInterval)
+	{
+		this.progressInterval = progressInterval;
+	}
+
+	public Consumer<String> getProgressListener()
+	{
+		return progressListener;
+	}
+
+	/**
+	 * Set where progress messages go, by default they are printed to standard
+	 * output.
+	 */
+	public void setProgressListener(Consumer<String> progressListener)
+	{
+		this.progressListener = progressListener;
+	}
+
+	public ImportPhase start(String phaseName)
+	{
+		ImportPhase phase = new ImportPhase(this, phaseName);
+		synchronized (phases) {
+			phases.add(phase);
+		}
+		return phase;
+	}
+
+	public List<ImportPhase> getPhases()
+	{
+		synchronized (phases) {
+			return new ArrayList<>(phases);
+		}
+	}
+
+	/**
+	 * @return the time in milliseconds since this object has been created.
+	 */
+	public long getDuration()
+	{
+		return (System.nanoTime() - start) / 1000000;
+	}
+
+	/**
+	 * @return the maximum heap usage in bytes observed during any phase.
+	 */
+	public long getPeakHeap()
+	{
+		long peak = 0;
+		for (ImportPhase phase : getPhases()) {
+			peak = Math.max(peak, phase.getPeakHeap());
+		}
+		return peak;
+	}
+
+	void report(String message)
+	{
+		progressListener.accept(message);
+	}
+
+	static long usedHeap()
+	{
+		Runtime runtime = Runtime.getRuntime();
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	public String toJson()
+	{
+		StringBuilder json = new StringBuilder();
+		json.append("{\n");
+		json.append("  \"name\": " + quote(name) + ",\n");
+		json.append("  \"started\": " + quote(started.toString()) + ",\n");
+		json.append("  \"durationMs\": " + getDuration() + ",\n");
+		json.append("  \"peakHeapBytes\": " + getPeakHeap() + ",\n");
+		json.append("  \"phases\": [");
+
+		List<ImportPhase> phases = getPhases();
+		for (int i = 0; i < phases.size(); i++) {
+			ImportPhase phase = phases.get(i);
+			json.append(i == 0 ? "\n" : ",\n");
+			json.append("    {\n");
+			json.append("      \"name\": " + quote(phase.getName()) + ",\n");
+			json.append("      \"durationMs\": " + phase.getDuration() + ",\n");
+			json.append("      \"entities\": " + phase.getEntities() + ",\n");
+			json.append("      \"entitiesPerSecond\": "
+					+ number(phase.getEntitiesPerSecond()) + ",\n");
+			json.append("      \"bytesRead\": " + phase.getBytes() + ",\n");
+			json.append("      \"bytesPerSecond\": "
+					+ number(phase.getBytesPerSecond()) + ",\n");
+			json.append("      \"peakHeapBytes\": " + phase.getPeakHeap()
+					+ "\n");
+			json.append("    }");
+		}
+
+		json.append(phases.isEmpty() ? "]\n" : "\n  ]\n");
+		json.append("}");
+		return json.toString();
+	}
+
+	public void writeJson(Path file) throws IOException
+	{
+		try (BufferedWriter writer = Files.newBufferedWriter(file,
+				StandardCharsets.UTF_8)) {
+			writer.write(toJson());
+			writer.newLine();
+		}
+	}
+
+	private static String number(double value)
+	{
+		return String.format(Locale.ROOT, "%.1f", value);
+	}
+
+	private static String quote(String value)
+	{
+		StringBuilder buffer = new StringBuilder();
+		buffer.append('"');
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '"' || c == '\\') {
+				buffer.append('\\').append(c);
+			} else if (c < 0x20) {
+				buffer.append(String.format("\\u%04x", (int) c));
+			} else {
+				buffer.append(c);
+			}
+		}
+		buffer.append('"');
+		return buffer.toString();
+	}
+
+}
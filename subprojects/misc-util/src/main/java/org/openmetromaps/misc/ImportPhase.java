@@ -0,0 +1,175 @@
+// Copyright 2019 Sebastian Kuerten
+//
+// This file is part of OpenMetroMaps.
+//
+// OpenMetroMaps is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Lesser General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// OpenMetroMaps is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with OpenMetroMaps. If not, see <http://www.gnu.org/licenses/>.
+
+package org.openmetromaps.misc;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A phase of an import as started with {@link ImportMetrics#start(String)}.
+ * Counters may be updated from multiple threads. The heap usage is sampled
+ * when the phase starts and ends and after every 1024 entities, so the peak
+ * heap usage is that of the whole process while the phase has been running.
+ * Use it with try-with-resources to end the phase:
+ *
+ * <pre>
+ * try (ImportPhase phase = metrics.start("reading")) {
+ * 	for (Entity entity : entities) {
+ * 		phase.addEntity();
+ * 	}
+ * }
+ * </pre>
+ */
+public class ImportPhase implements AutoCloseable
+{
+
+	private ImportMetrics metrics;
+	private String name;
+
+	private long start;
+	private volatile long end;
+	private volatile boolean ended = false;
+
+	private AtomicLong entities = new AtomicLong();
+	private AtomicLong bytes = new AtomicLong();
+	private AtomicLong peakHeap = new AtomicLong();
+
+	private volatile long nextReport;
+
+	ImportPhase(ImportMetrics metrics, String name)
+	{
+		this.metrics = metrics;
+		this.name = name;
+		start = System.nanoTime();
+		nextReport = start + metrics.getProgressInterval() * 1000000;
+		sampleHeap();
+	}
+
+	public String getName()
+	{
+		return name;
+	}
+
+	public void addEntity()
+	{
+		addEntities(1);
+	}
+
+	public void addEntities(long n)
+	{
+		long after = entities.addAndGet(n);
+		if (((after - n) >> 10) != (after >> 10)) {
+			sampleHeap();
+			long now = System.nanoTime();
+			if (now >= nextReport) {
+				nextReport = now + metrics.getProgressInterval() * 1000000;
+				metrics.report(String.format(Locale.ROOT,
+						"%s: %,d entities (%,.0f/s)", name, after,
+						getEntitiesPerSecond()));
+			}
+		}
+	}
+
+	public void addBytes(long n)
+	{
+		bytes.addAndGet(n);
+	}
+
+	/**
+	 * End this phase and report its totals. Subsequent calls have no effect.
+	 */
+	public synchronized void end()
+	{
+		if (ended) {
+			return;
+		}
+		sampleHeap();
+		end = System.nanoTime();
+		ended = true;
+		metrics.report(String.format(Locale.ROOT,
+				"%s: %,d entities, %,d bytes in %.1fs (%,.0f entities/s), peak heap %,d MB",
+				name, getEntities(), getBytes(), getDuration() / 1000.0,
+				getEntitiesPerSecond(), getPeakHeap() / 1024 / 1024));
+	}
+
+	@Override
+	public void close()
+	{
+		end();
+	}
+
+	public boolean isEnded()
+	{
+		return ended;
+	}
+
+	private void sampleHeap()
+	{
+		long used = ImportMetrics.usedHeap();
+		peakHeap.accumulateAndGet(used, Math::max);
+	}
+
+	/**
+	 * @return the duration of this phase in milliseconds, up to now if it has
+	 *         not ended yet.
+	 */
+	public long getDuration()
+	{
+		return (nanos() - start) / 1000000;
+	}
+
+	public long getEntities()
+	{
+		return entities.get();
+	}
+
+	public long getBytes()
+	{
+		return bytes.get();
+	}
+
+	public long getPeakHeap()
+	{
+		return peakHeap.get();
+	}
+
+	public double getEntitiesPerSecond()
+	{
+		return perSecond(entities.get());
+	}
+
+	public double getBytesPerSecond()
+	{
+		return perSecond(bytes.get());
+	}
+
+	private double perSecond(long value)
+	{
+		long nanos = nanos() - start;
+		if (nanos <= 0) {
+			return 0;
+		}
+		return value * 1e9 / nanos;
+	}
+
+	private long nanos()
+	{
+		return ended ? end : System.nanoTime();
+	}
+
+}
@@ -0,0 +1,226 @@
+// Copyright 2019 Sebastian Kuerten
+//
+// This file is part of OpenMetroMaps.
+//
+// OpenMetroMaps is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Lesser General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// OpenMetroMaps is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with OpenMetroMaps. If not, see <http://www.gnu.org/licenses/>.
+
+package org.openmetromaps.misc;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * A grid based index of objects at geographic locations for finding the
+ * objects within a fixed radius of a location. The grid's cells are squares
+ * in degrees with the radius as edge length at the equator, so that a query
+ * only needs to inspect the neighboring rows and a number of columns that
+ * depends on the latitude. Exact distances are computed for the candidates
+ * from these cells only.
+ */
+public class PointIndex<T>
+{
+
+	private static final double EARTH_RADIUS = 6378137;
+
+	// slightly less than the length of a degree of latitude on the sphere used
+	// for computing distances (111319.5 m), so that cells are never smaller
+	// than the radius
+	private static final double METERS_PER_DEGREE = 111000;
+
+	private static class Entry<T>
+	{
+
+		final int index;
+		final double lon;
+		final double lat;
+		final T object;
+
+		Entry(int index, double lon, double lat, T object)
+		{
+			this.index = index;
+			this.lon = lon;
+			this.lat = lat;
+			this.object = object;
+		}
+
+	}
+
+	private double radius;
+	private double cellSize;
+	private Map<Long, List<Entry<T>>> grid = new HashMap<>();
+	private int size = 0;
+
+	/**
+	 * @param radius
+	 *            the radius in meters of the queries to answer.
+	 */
+	public PointIndex(double radius)
+	{
+		this.radius = radius;
+		cellSize = radius / METERS_PER_DEGREE;
+	}
+
+	public double getRadius()
+	{
+		return radius;
+	}
+
+	public int size()
+	{
+		return size;
+	}
+
+	public void add(double lon, double lat, T object)
+	{
+		long key = key(row(lat), col(lon));
+		List<Entry<T>> cell = grid.get(key);
+		if (cell == null) {
+			cell = new ArrayList<>(2);
+			grid.put(key, cell);
+		}
+		cell.add(new Entry<>(size++, lon, lat, object));
+	}
+
+	/**
+	 * @return the object added first among those closer to the location than
+	 *         the radius or null if there is no such object.
+	 */
+	public T first(double lon, double lat)
+	{
+		Entry<T> first = null;
+		for (Entry<T> entry : candidates(lon, lat)) {
+			if (first != null && entry.index > first.index) {
+				continue;
+			}
+			if (distance(lon, lat, entry) < radius) {
+				first = entry;
+			}
+		}
+		return first == null ? null : first.object;
+	}
+
+	/**
+	 * @return the object closest to the location among those closer than the
+	 *         radius or null if there is no such object.
+	 */
+	public T nearest(double lon, double lat)
+	{
+		return nearest(lon, lat, object -> true);
+	}
+
+	/**
+	 * @return the object closest to the location among those closer than the
+	 *         radius that match the filter or null if there is no such object.
+	 */
+	public T nearest(double lon, double lat, Predicate<? super T> filter)
+	{
+		Entry<T> nearest = null;
+		double best = radius;
+		for (Entry<T> entry : candidates(lon, lat)) {
+			if (!filter.test(entry.object)) {
+				continue;
+			}
+			double distance = distance(lon, lat, entry);
+			if (distance < best) {
+				best = distance;
+				nearest = entry;
+			}
+		}
+		return nearest == null ? null : nearest.object;
+	}
+
+	/**
+	 * @return the objects closer to the location than the radius in the order
+	 *         they have been added.
+	 */
+	public List<T> within(double lon, double lat)
+	{
+		List<Entry<T>> entries = new ArrayList<>();
+		for (Entry<T> entry : candidates(lon, lat)) {
+			if (distance(lon, lat, entry) < radius) {
+				entries.add(entry);
+			}
+		}
+		entries.sort((a, b) -> Integer.compare(a.index, b.index));
+		List<T> results = new ArrayList<>(entries.size());
+		for (Entry<T> entry : entries) {
+			results.add(entry.object);
+		}
+		return results;
+	}
+
+	private List<Entry<T>> candidates(double lon, double lat)
+	{
+		List<Entry<T>> candidates = new ArrayList<>();
+		if (grid.isEmpty()) {
+			return candidates;
+		}
+		int row = row(lat);
+		int col = col(lon);
+		// towards the poles a degree of longitude gets shorter, so that more
+		// columns need to be inspected
+		double cos = Math.cos(
+				Math.toRadians(Math.min(89, Math.abs(lat) + cellSize)));
+		int cols = (int) Math.ceil(1 / cos);
+
+		for (int r = row - 1; r <= row + 1; r++) {
+			for (int c = col - cols; c <= col + cols; c++) {
+				List<Entry<T>> cell = grid.get(key(r, c));
+				if (cell != null) {
+					candidates.addAll(cell);
+				}
+			}
+		}
+		return candidates;
+	}
+
+	private int row(double lat)
+	{
+		return (int) Math.floor(lat / cellSize);
+	}
+
+	private int col(double lon)
+	{
+		return (int) Math.floor(lon / cellSize);
+	}
+
+	private static long key(int row, int col)
+	{
+		return ((long) row << 32) | (col & 0xffffffffL);
+	}
+
+	private static double distance(double lon, double lat, Entry<?> entry)
+	{
+		return distance(lon, lat, entry.lon, entry.lat);
+	}
+
+	/**
+	 * @return the great-circle distance in meters between two locations.
+	 */
+	public static double distance(double lon1, double lat1, double lon2,
+			double lat2)
+	{
+		double phi1 = Math.toRadians(lat1);
+		double phi2 = Math.toRadians(lat2);
+		double dLat = phi2 - phi1;
+		double dLon = Math.toRadians(lon2 - lon1);
+		double h = Math.sin(dLat / 2) * Math.sin(dLat / 2) + Math.cos(phi1)
+				* Math.cos(phi2) * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+		return 2 * EARTH_RADIUS * Math.atan2(Math.sqrt(h), Math.sqrt(1 - h));
+	}
+
+}
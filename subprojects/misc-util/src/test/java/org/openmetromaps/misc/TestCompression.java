@@ -0,0 +1,186 @@
+// Copyright 2019 Sebastian Kuerten
+//
+// This file is part of OpenMetroMaps.
+//
+// OpenMetroMaps is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Lesser General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// OpenMetroMaps is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with OpenMetroMaps. If not, see <http://www.gnu.org/licenses/>.
+package org.openmetromaps.misc;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.openmetromaps.misc.Compression.Type;
+
+public class TestCompression
+{
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static byte[] data()
+	{
+		StringBuilder buffer = new StringBuilder();
+		buffer.append("<?xml version='1.0' encoding='UTF-8'?>\n<omm-file>\n");
+		for (int i = 0; i < 1000; i++) {
+			buffer.append(String.format(
+					"  <station name=\"Station %d\" lon=\"%d\" lat=\"%d\"/>\n",
+					i, i * 7, i * 13));
+		}
+		buffer.append("</omm-file>\n");
+		byte[] text = buffer.toString().getBytes(StandardCharsets.UTF_8);
+
+		// some incompressible bytes so that the data spans several buffers
+		byte[] random = new byte[100 * 1024];
+		new Random(1).nextBytes(random);
+
+		byte[] data = new byte[text.length + random.length];
+		System.arraycopy(text, 0, data, 0, text.length);
+		System.arraycopy(random, 0, data, text.length, random.length);
+		return data;
+	}
+
+	private static byte[] readAll(InputStream is) throws IOException
+	{
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		byte[] bytes = new byte[4096];
+		int n;
+		while ((n = is.read(bytes)) >= 0) {
+			buffer.write(bytes, 0, n);
+		}
+		return buffer.toByteArray();
+	}
+
+	private static Type detect(byte[] bytes) throws IOException
+	{
+		InputStream is = new BufferedInputStream(
+				new ByteArrayInputStream(bytes));
+		Type type = Compression.detect(is);
+		// detection must not consume any bytes
+		Assert.assertArrayEquals(bytes, readAll(is));
+		return type;
+	}
+
+	private void roundTrip(String filename, Type type) throws IOException
+	{
+		byte[] data = data();
+		Path path = folder.getRoot().toPath().resolve(filename);
+		Assert.assertEquals(type, Compression.typeFromFileName(path));
+
+		try (OutputStream os = Compression.newOutputStream(path)) {
+			os.write(data);
+		}
+
+		byte[] raw = Files.readAllBytes(path);
+		Assert.assertEquals(type, detect(raw));
+		if (type == Type.NONE) {
+			Assert.assertArrayEquals(data, raw);
+		} else {
+			Assert.assertTrue(raw.length < data.length);
+		}
+
+		try (InputStream is = Compression.newInputStream(path)) {
+			Assert.assertArrayEquals(data, readAll(is));
+		}
+	}
+
+	@Test
+	public void testRoundTripGzip() throws IOException
+	{
+		roundTrip("model.xml.gz", Type.GZIP);
+	}
+
+	@Test
+	public void testRoundTripDeflate() throws IOException
+	{
+		roundTrip("model.xml.deflate", Type.DEFLATE);
+	}
+
+	@Test
+	public void testRoundTripPlain() throws IOException
+	{
+		roundTrip("model.xml", Type.NONE);
+	}
+
+	@Test
+	public void testTypeFromFileName()
+	{
+		Assert.assertEquals(Type.GZIP,
+				Compression.typeFromFileName(Paths.get("dir", "a.xml.gz")));
+		Assert.assertEquals(Type.DEFLATE, Compression
+				.typeFromFileName(Paths.get("dir", "a.xml.deflate")));
+		Assert.assertEquals(Type.NONE,
+				Compression.typeFromFileName(Paths.get("dir", "a.xml")));
+		Assert.assertEquals(Type.NONE,
+				Compression.typeFromFileName(Paths.get("dir.gz", "a.xml")));
+		Assert.assertEquals(Type.NONE,
+				Compression.typeFromFileName(Paths.get("/")));
+	}
+
+	@Test
+	public void testDetectIgnoresExtension() throws IOException
+	{
+		byte[] data = data();
+		for (Type type : Type.values()) {
+			// the file name does not tell about the compression
+			Path path = folder.newFile("model-" + type + ".xml").toPath();
+			try (OutputStream os = Compression
+					.compressing(Files.newOutputStream(path), type)) {
+				os.write(data);
+			}
+
+			Assert.assertEquals(type, detect(Files.readAllBytes(path)));
+			try (InputStream is = Compression.newInputStream(path)) {
+				Assert.assertArrayEquals(data, readAll(is));
+			}
+		}
+	}
+
+	@Test
+	public void testDetectShortInput() throws IOException
+	{
+		Assert.assertEquals(Type.NONE, detect(new byte[0]));
+		Assert.assertEquals(Type.NONE, detect(new byte[] { 0x1f }));
+		Assert.assertEquals(Type.NONE, detect(new byte[] { 0x78 }));
+		Assert.assertEquals(Type.GZIP,
+				detect(new byte[] { 0x1f, (byte) 0x8b }));
+
+		byte[] single = new byte[] { 0x1f };
+		try (InputStream is = Compression
+				.decompressing(new ByteArrayInputStream(single))) {
+			Assert.assertArrayEquals(single, readAll(is));
+		}
+	}
+
+	@Test
+	public void testDetectPlainText() throws IOException
+	{
+		for (String text : new String[] { "<?xml", "x<y", "stop_id,name" }) {
+			Assert.assertEquals(text, Type.NONE,
+					detect(text.getBytes(StandardCharsets.UTF_8)));
+		}
+	}
+
+}
@@ -0,0 +1,147 @@
+// Copyright 2019 Sebastian Kuerten
+//
+// This file is part of OpenMetroMaps.
+//
+// OpenMetroMaps is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Lesser General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// OpenMetroMaps is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with OpenMetroMaps. If not, see <http://www.gnu.org/licenses/>.
+package org.openmetromaps.misc;
+
+import java.time.Instant;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestImportMetrics
+{
+
+	private static ImportMetrics metrics(String name)
+	{
+		ImportMetrics metrics = new ImportMetrics(name);
+		metrics.setProgressListener(message -> {
+		});
+		return metrics;
+	}
+
+	/**
+	 * Replace the values that depend on timing and heap usage so that the
+	 * remaining document can be compared literally.
+	 */
+	private static String normalize(String json)
+	{
+		json = json.replaceAll("\"(durationMs|peakHeapBytes)\": \\d+",
+				"\"$1\": 0");
+		json = json.replaceAll("\"(entitiesPerSecond|bytesPerSecond)\": "
+				+ "\\d+\\.\\d", "\"$1\": 0.0");
+		return json.replaceAll("\"started\": \"[^\"]*\"",
+				"\"started\": \"\"");
+	}
+
+	@Test
+	public void testEmpty()
+	{
+		ImportMetrics metrics = metrics("import");
+		String json = metrics.toJson();
+
+		Matcher matcher = Pattern.compile("\"started\": \"([^\"]*)\"")
+				.matcher(json);
+		Assert.assertTrue(json, matcher.find());
+		Instant.parse(matcher.group(1));
+
+		Assert.assertEquals("{\n" + "  \"name\": \"import\",\n"
+				+ "  \"started\": \"\",\n" + "  \"durationMs\": 0,\n"
+				+ "  \"peakHeapBytes\": 0,\n" + "  \"phases\": []\n" + "}",
+				normalize(json));
+	}
+
+	@Test
+	public void testPhases()
+	{
+		ImportMetrics metrics = metrics("import");
+		try (ImportPhase phase = metrics.start("read")) {
+			phase.addEntities(3000);
+			phase.addBytes(1024);
+		}
+		try (ImportPhase phase = metrics.start("write")) {
+			phase.addEntity();
+		}
+
+		String phase = "    {\n" + "      \"name\": \"%s\",\n"
+				+ "      \"durationMs\": 0,\n" + "      \"entities\": %d,\n"
+				+ "      \"entitiesPerSecond\": 0.0,\n"
+				+ "      \"bytesRead\": %d,\n"
+				+ "      \"bytesPerSecond\": 0.0,\n"
+				+ "      \"peakHeapBytes\": 0\n" + "    }";
+		Assert.assertEquals("{\n" + "  \"name\": \"import\",\n"
+				+ "  \"started\": \"\",\n" + "  \"durationMs\": 0,\n"
+				+ "  \"peakHeapBytes\": 0,\n" + "  \"phases\": [\n"
+				+ String.format(phase, "read", 3000, 1024) + ",\n"
+				+ String.format(phase, "write", 1, 0) + "\n" + "  ]\n"
+				+ "}", normalize(metrics.toJson()));
+	}
+
+	@Test
+	public void testEscaping()
+	{
+		String name = "a \"quoted\" \\ name\n\twith Straße";
+		String quoted = "\"a \\\"quoted\\\" \\\\ name\\u000a\\u0009with Straße\"";
+
+		ImportMetrics metrics = metrics(name);
+		metrics.start(name).end();
+
+		String json = metrics.toJson();
+		Assert.assertTrue(json, json.contains("  \"name\": " + quoted + ",\n"));
+		Assert.assertTrue(json,
+				json.contains("      \"name\": " + quoted + ",\n"));
+		Assert.assertFalse(json, json.contains("\n\t"));
+	}
+
+	@Test
+	public void testZeroDuration()
+	{
+		Locale locale = Locale.getDefault();
+		// rates must not depend on the default locale's decimal separator
+		Locale.setDefault(Locale.GERMANY);
+		try {
+			ImportMetrics metrics = metrics("import");
+			metrics.start("empty").end();
+			try (ImportPhase phase = metrics.start("instant")) {
+				phase.addEntities(5);
+			}
+
+			String json = metrics.toJson();
+			Assert.assertFalse(json, json.contains("NaN"));
+			Assert.assertFalse(json, json.contains("Infinity"));
+
+			Matcher matcher = Pattern
+					.compile("\"(entities|bytes)PerSecond\": ([^,\n]*)")
+					.matcher(json);
+			int count = 0;
+			while (matcher.find()) {
+				String rate = matcher.group(2);
+				Assert.assertTrue(rate, rate.matches("\\d+\\.\\d"));
+				// the phase without entities or bytes has zero rates
+				if (count < 2) {
+					Assert.assertEquals("0.0", rate);
+				}
+				count++;
+			}
+			Assert.assertEquals(4, count);
+		} finally {
+			Locale.setDefault(locale);
+		}
+	}
+
+}
@@ -0,0 +1,126 @@
+// Copyright 2019 Sebastian Kuerten
+//
+// This file is part of OpenMetroMaps.
+//
+// OpenMetroMaps is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Lesser General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// OpenMetroMaps is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with OpenMetroMaps. If not, see <http://www.gnu.org/licenses/>.
+
+package org.openmetromaps.misc;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Compares the results of the index with a brute force search over random
+ * points at different latitudes.
+ */
+public class TestPointIndex
+{
+
+	private static final int NUM_POINTS = 2000;
+	private static final int NUM_QUERIES = 2000;
+
+	private static void check(double radius, double centerLon,
+			double centerLat, double extent, long seed)
+	{
+		Random random = new Random(seed);
+		PointIndex<Integer> index = new PointIndex<>(radius);
+		double[] lons = new double[NUM_POINTS];
+		double[] lats = new double[NUM_POINTS];
+		for (int i = 0; i < NUM_POINTS; i++) {
+			lons[i] = centerLon + (random.nextDouble() - 0.5) * extent;
+			lats[i] = centerLat + (random.nextDouble() - 0.5) * extent;
+			index.add(lons[i], lats[i], i);
+		}
+		Assert.assertEquals(NUM_POINTS, index.size());
+
+		for (int q = 0; q < NUM_QUERIES; q++) {
+			double lon = centerLon + (random.nextDouble() - 0.5) * extent;
+			double lat = centerLat + (random.nextDouble() - 0.5) * extent;
+
+			List<Integer> within = new ArrayList<>();
+			Integer nearest = null;
+			Integer nearestEven = null;
+			double best = radius;
+			double bestEven = radius;
+			for (int i = 0; i < NUM_POINTS; i++) {
+				double distance = PointIndex.distance(lon, lat, lons[i],
+						lats[i]);
+				if (distance >= radius) {
+					continue;
+				}
+				within.add(i);
+				if (distance < best) {
+					best = distance;
+					nearest = i;
+				}
+				if (i % 2 == 0 && distance < bestEven) {
+					bestEven = distance;
+					nearestEven = i;
+				}
+			}
+
+			String message = String.format("query %.6f,%.6f", lon, lat);
+			Assert.assertEquals(message, within, index.within(lon, lat));
+			Assert.assertEquals(message, within.isEmpty() ? null
+					: within.get(0), index.first(lon, lat));
+			Assert.assertEquals(message, nearest, index.nearest(lon, lat));
+			Assert.assertEquals(message, nearestEven,
+					index.nearest(lon, lat, i -> i % 2 == 0));
+		}
+	}
+
+	@Test
+	public void testMidLatitude()
+	{
+		check(200, 13.4, 52.5, 0.1, 1);
+	}
+
+	@Test
+	public void testEquator()
+	{
+		check(500, -60, 0, 0.2, 2);
+	}
+
+	@Test
+	public void testSouthernHemisphere()
+	{
+		check(300, 151.2, -33.9, 0.1, 3);
+	}
+
+	@Test
+	public void testHighLatitude()
+	{
+		check(1000, 25, 78, 1, 4);
+	}
+
+	@Test
+	public void testPrimeMeridian()
+	{
+		check(2000, 0, 10, 0.5, 5);
+	}
+
+	@Test
+	public void testEmpty()
+	{
+		PointIndex<Integer> index = new PointIndex<>(100);
+		Assert.assertNull(index.first(0, 0));
+		Assert.assertNull(index.nearest(0, 0));
+		Assert.assertTrue(index.within(0, 0).isEmpty());
+	}
+
+}
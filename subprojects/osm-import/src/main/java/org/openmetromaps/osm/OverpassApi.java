@@ -0,0 +1,184 @@
+// Copyright 2019 Sebastian Kuerten
+//
+// This file is part of OpenMetroMaps.
+//
+// OpenMetroMaps is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Lesser General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// OpenMetroMaps is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with OpenMetroMaps. If not, see <http://www.gnu.org/licenses/>.
+
+package org.openmetromaps.osm;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.apache.commons.compress.utils.IOUtils;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.ClientProtocolException;
+import org.apache.http.client.ResponseHandler;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs queries against the Overpass API, optionally through a local
+ * {@link OverpassCache}. With a cache, responses are replayed from the cache
+ * if available and recorded to the cache while being downloaded otherwise. In
+ * offline mode, only cached responses are available.
+ */
+public class OverpassApi
+{
+
+	final static Logger logger = LoggerFactory.getLogger(OverpassApi.class);
+
+	public static final String URL = "http://www.overpass-api.de/api/interpreter";
+
+	private OverpassCache cache = null;
+	private boolean offline = false;
+
+	public OverpassApi()
+	{
+		// online only, without a cache
+	}
+
+	public OverpassApi(OverpassCache cache, boolean offline)
+	{
+		this.cache = cache;
+		this.offline = offline;
+	}
+
+	public OverpassCache getCache()
+	{
+		return cache;
+	}
+
+	public boolean isOffline()
+	{
+		return offline;
+	}
+
+	/**
+	 * Write the response to the specified query to the output.
+	 */
+	public void query(String q, OutputStream output) throws IOException
+	{
+		if (cache != null && cache.contains(q)) {
+			logger.info("Replaying response from cache: " + cache.getPath(q));
+			try (InputStream input = cache.open(q)) {
+				IOUtils.copy(input, output);
+			}
+			return;
+		}
+
+		if (offline) {
+			throw new IOException(
+					"Offline mode, but the query's response is not cached");
+		}
+
+		if (cache == null) {
+			download(q, output);
+			return;
+		}
+
+		logger.info("Recording response to cache: " + cache.getPath(q));
+		boolean success = false;
+		try {
+			try (OutputStream recording = cache.record(q)) {
+				download(q, new TeeOutputStream(output, recording));
+			}
+			cache.commit(q);
+			success = true;
+		} finally {
+			if (!success) {
+				cache.discard(q);
+			}
+		}
+	}
+
+	private void download(String q, final OutputStream output)
+			throws IOException
+	{
+		HttpPost post = new HttpPost(URL);
+
+		post.setEntity(new StringEntity(q));
+
+		CloseableHttpClient httpclient = HttpClients.createDefault();
+
+		ResponseHandler<Void> handler = new ResponseHandler<Void>() {
+
+			@Override
+			public Void handleResponse(HttpResponse response)
+					throws ClientProtocolException, IOException
+			{
+
+				int status = response.getStatusLine().getStatusCode();
+				if (status == 200) {
+					HttpEntity entity = response.getEntity();
+					InputStream input = entity.getContent();
+
+					IOUtils.copy(input, output);
+					return null;
+				} else {
+					throw new ClientProtocolException(
+							"Unexpected response status: " + status);
+				}
+			}
+
+		};
+
+		try {
+			httpclient.execute(post, handler);
+		} finally {
+			httpclient.close();
+		}
+	}
+
+	private static class TeeOutputStream extends OutputStream
+	{
+
+		private OutputStream a;
+		private OutputStream b;
+
+		TeeOutputStream(OutputStream a, OutputStream b)
+		{
+			this.a = a;
+			this.b = b;
+		}
+
+		@Override
+		public void write(int c) throws IOException
+		{
+			a.write(c);
+			b.write(c);
+		}
+
+		@Override
+		public void write(byte[] buffer, int off, int len) throws IOException
+		{
+			a.write(buffer, off, len);
+			b.write(buffer, off, len);
+		}
+
+		@Override
+		public void flush() throws IOException
+		{
+			a.flush();
+			b.flush();
+		}
+
+	}
+
+}
@@ -18,25 +18,26 @@
 package org.openmetromaps.osm;
 
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.MalformedURLException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 
-import org.apache.commons.compress.utils.IOUtils;
-import org.apache.http.HttpEntity;
-import org.apache.http.HttpResponse;
-import org.apache.http.client.ClientProtocolException;
-import org.apache.http.client.ResponseHandler;
-import org.apache.http.client.methods.HttpPost;
-import org.apache.http.entity.StringEntity;
-import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClients;
-
 public class OverpassApiDownloader
 {
 
+	private OverpassApi api;
+
+	public OverpassApiDownloader()
+	{
+		this(new OverpassApi());
+	}
+
+	public OverpassApiDownloader(OverpassApi api)
+	{
+		this.api = api;
+	}
+
 	public void execute(String q, Path path)
 			throws MalformedURLException, IOException
 	{
@@ -48,36 +49,7 @@ public class OverpassApiDownloader
 	public void execute(String q, final OutputStream output)
 			throws MalformedURLException, IOException
 	{
-		HttpPost post = new HttpPost(
-				"http://www.overpass-api.de/api/interpreter");
-
-		post.setEntity(new StringEntity(q));
-
-		CloseableHttpClient httpclient = HttpClients.createDefault();
-
-		ResponseHandler<Void> handler = new ResponseHandler<Void>() {
-
-			@Override
-			public Void handleResponse(HttpResponse response)
-					throws ClientProtocolException, IOException
-			{
-
-				int status = response.getStatusLine().getStatusCode();
-				if (status == 200) {
-					HttpEntity entity = response.getEntity();
-					InputStream input = entity.getContent();
-
-					IOUtils.copy(input, output);
-					return null;
-				} else {
-					throw new ClientProtocolException(
-							"Unexpected response status: " + status);
-				}
-			}
-
-		};
-
-		httpclient.execute(post, handler);
+		api.query(q, output);
 	}
 
 }
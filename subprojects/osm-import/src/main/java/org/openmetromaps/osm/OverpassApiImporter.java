@@ -18,82 +18,93 @@
 package org.openmetromaps.osm;
 
 import java.io.IOException;
-import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.MalformedURLException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.List;
 
-import org.apache.http.HttpEntity;
-import org.apache.http.HttpResponse;
-import org.apache.http.client.ClientProtocolException;
-import org.apache.http.client.ResponseHandler;
-import org.apache.http.client.methods.HttpPost;
-import org.apache.http.entity.StringEntity;
-import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClients;
 import org.openmetromaps.maps.model.ModelData;
+import org.openmetromaps.misc.ImportMetrics;
+import org.openmetromaps.misc.ImportPhase;
 import org.openmetromaps.model.osm.DraftModel;
 import org.openmetromaps.model.osm.DraftModelConverter;
 import org.openmetromaps.model.osm.Fix;
-import org.openmetromaps.model.osm.ModelBuilder;
+import org.openmetromaps.model.osm.StreamingModelBuilder;
 import org.openmetromaps.model.osm.filter.RouteFilter;
 
-import de.topobyte.osm4j.core.access.OsmIterator;
-import de.topobyte.osm4j.core.dataset.InMemoryMapDataSet;
-import de.topobyte.osm4j.core.dataset.MapDataSetLoader;
-import de.topobyte.osm4j.xml.dynsax.OsmXmlIterator;
+import de.topobyte.osm4j.utils.FileFormat;
+import de.topobyte.osm4j.utils.OsmFile;
 
 public class OverpassApiImporter
 {
 
-	public ModelData execute(String q, RouteFilter routeFilter,
-			List<String> prefixes, List<String> suffixes, List<Fix> fixes)
-			throws MalformedURLException, IOException
-	{
-		HttpPost post = new HttpPost(
-				"http://www.overpass-api.de/api/interpreter");
+	private OverpassApi api;
+	private DraftModelConverter converter = new DraftModelConverter();
+	private ImportMetrics metrics = new ImportMetrics("overpass");
 
-		post.setEntity(new StringEntity(q));
+	public OverpassApiImporter()
+	{
+		this(new OverpassApi());
+	}
 
-		CloseableHttpClient httpclient = HttpClients.createDefault();
+	public OverpassApiImporter(OverpassApi api)
+	{
+		this.api = api;
+	}
 
-		ResponseHandler<InMemoryMapDataSet> handler = new ResponseHandler<InMemoryMapDataSet>() {
+	public DraftModelConverter getConverter()
+	{
+		return converter;
+	}
 
-			@Override
-			public InMemoryMapDataSet handleResponse(HttpResponse response)
-					throws ClientProtocolException, IOException
-			{
+	public void setConverter(DraftModelConverter converter)
+	{
+		this.converter = converter;
+	}
 
-				int status = response.getStatusLine().getStatusCode();
-				if (status == 200) {
-					HttpEntity entity = response.getEntity();
-					InputStream input = entity.getContent();
+	public ImportMetrics getMetrics()
+	{
+		return metrics;
+	}
 
-					OsmIterator iterator = new OsmXmlIterator(input, true);
-					InMemoryMapDataSet data = MapDataSetLoader.read(iterator,
-							true, true, true);
+	public void setMetrics(ImportMetrics metrics)
+	{
+		this.metrics = metrics;
+	}
 
-					return data;
-				} else {
-					throw new ClientProtocolException(
-							"Unexpected response status: " + status);
+	public ModelData execute(String q, RouteFilter routeFilter,
+			List<String> prefixes, List<String> suffixes, List<Fix> fixes)
+			throws MalformedURLException, IOException
+	{
+		// Store the response in a temporary file so that the model builder
+		// can stream it twice instead of loading all of it into memory.
+		Path file = Files.createTempFile("overpass", ".osm");
+
+		try {
+			try (ImportPhase phase = metrics.start("download")) {
+				try (OutputStream output = Files.newOutputStream(file)) {
+					api.query(q, output);
 				}
+				phase.addBytes(Files.size(file));
 			}
 
-		};
-
-		InMemoryMapDataSet data = httpclient.execute(post, handler);
+			StreamingModelBuilder modelBuilder = new StreamingModelBuilder(
+					new OsmFile(file, FileFormat.XML), routeFilter, prefixes,
+					suffixes, fixes);
+			modelBuilder.setMetrics(metrics);
+			modelBuilder.run(true, true);
 
-		System.out.println(String.format("%d, %d, %d", data.getNodes().size(),
-				data.getWays().size(), data.getRelations().size()));
-
-		ModelBuilder modelBuilder = new ModelBuilder(data, routeFilter,
-				prefixes, suffixes, fixes);
-		modelBuilder.run(true, true);
-
-		DraftModel draftModel = modelBuilder.getModel();
-		ModelData model = new DraftModelConverter().convert(draftModel);
+			DraftModel draftModel = modelBuilder.getModel();
+			ModelData model;
+			try (ImportPhase phase = metrics.start("convert")) {
+				model = converter.convert(draftModel);
+			}
 
-		return model;
+			return model;
+		} finally {
+			Files.deleteIfExists(file);
+		}
 	}
 
 }
@@ -0,0 +1,142 @@
+// Copyright 2019 Sebastian Kuerten
+//
+// This file is part of OpenMetroMaps.
+//
+// OpenMetroMaps is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Lesser General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// OpenMetroMaps is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with OpenMetroMaps. If not, see <http://www.gnu.org/licenses/>.
+
+package org.openmetromaps.osm;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A local cache of Overpass API responses. Responses are stored gzip
+ * compressed in a directory, addressed by a hash of the normalized query
+ * text. Responses are recorded to a temporary file first and only become
+ * visible in the cache once committed, so that failed downloads do not leave
+ * incomplete entries.
+ */
+public class OverpassCache
+{
+
+	private Path dir;
+
+	public OverpassCache(Path dir)
+	{
+		this.dir = dir;
+	}
+
+	public Path getDirectory()
+	{
+		return dir;
+	}
+
+	/**
+	 * Normalize a query so that insignificant differences in formatting do not
+	 * lead to different cache entries: line endings are unified, lines are
+	 * trimmed and blank lines removed.
+	 */
+	public static String normalize(String query)
+	{
+		StringBuilder buffer = new StringBuilder();
+		for (String line : query.split("\r\n|\r|\n")) {
+			String trimmed = line.trim();
+			if (trimmed.isEmpty()) {
+				continue;
+			}
+			if (buffer.length() > 0) {
+				buffer.append('\n');
+			}
+			buffer.append(trimmed);
+		}
+		return buffer.toString();
+	}
+
+	public static String key(String query)
+	{
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+		byte[] hash = digest
+				.digest(normalize(query).getBytes(StandardCharsets.UTF_8));
+		StringBuilder buffer = new StringBuilder();
+		for (byte b : hash) {
+			buffer.append(String.format("%02x", b));
+		}
+		return buffer.toString();
+	}
+
+	public Path getPath(String query)
+	{
+		return dir.resolve(key(query) + ".osm.gz");
+	}
+
+	private Path getTemporaryPath(String query)
+	{
+		return dir.resolve(key(query) + ".osm.gz.tmp");
+	}
+
+	public boolean contains(String query)
+	{
+		return Files.exists(getPath(query));
+	}
+
+	/**
+	 * Open the cached response for the specified query.
+	 */
+	public InputStream open(String query) throws IOException
+	{
+		InputStream input = Files.newInputStream(getPath(query));
+		return new GZIPInputStream(new BufferedInputStream(input));
+	}
+
+	/**
+	 * Open a stream for recording the response to the specified query. Once
+	 * the stream has been closed, the response needs to be committed with
+	 * {@link #commit(String)} or discarded with {@link #discard(String)}.
+	 */
+	public OutputStream record(String query) throws IOException
+	{
+		Files.createDirectories(dir);
+		OutputStream output = Files.newOutputStream(getTemporaryPath(query));
+		return new GZIPOutputStream(new BufferedOutputStream(output));
+	}
+
+	public void commit(String query) throws IOException
+	{
+		Files.move(getTemporaryPath(query), getPath(query),
+				StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	public void discard(String query) throws IOException
+	{
+		Files.deleteIfExists(getTemporaryPath(query));
+	}
+
+}
@@ -19,8 +19,11 @@ package org.openmetromaps.model.osm;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.openmetromaps.maps.MapModelUtil;
 import org.openmetromaps.maps.model.Coordinate;
@@ -28,6 +31,8 @@ import org.openmetromaps.maps.model.Line;
 import org.openmetromaps.maps.model.ModelData;
 import org.openmetromaps.maps.model.Station;
 import org.openmetromaps.maps.model.Stop;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import de.topobyte.osm4j.core.model.iface.OsmNode;
 import de.topobyte.osm4j.core.model.util.OsmModelUtil;
@@ -35,6 +40,9 @@ import de.topobyte.osm4j.core.model.util.OsmModelUtil;
 public class DraftModelConverter
 {
 
+	final static Logger logger = LoggerFactory
+			.getLogger(DraftModelConverter.class);
+
 	protected List<Line> linesList = new ArrayList<>();
 	protected List<Station> stationsList = new ArrayList<>();
 	protected List<Stop> stopsList = new ArrayList<>();
@@ -43,12 +51,48 @@ public class DraftModelConverter
 	protected Map<Station, Integer> stationToIndex = new HashMap<>();
 	protected Map<Stop, Integer> stopToIndex = new HashMap<>();
 
+	protected double mergeDistance = 0;
+	protected double nameSimilarity = 1;
+
+	public double getMergeDistance()
+	{
+		return mergeDistance;
+	}
+
+	/**
+	 * Set the maximum distance in meters of stops to merge into a single
+	 * station. If not positive, all stops with the same name are merged
+	 * regardless of their location.
+	 */
+	public void setMergeDistance(double mergeDistance)
+	{
+		this.mergeDistance = mergeDistance;
+	}
+
+	public double getNameSimilarity()
+	{
+		return nameSimilarity;
+	}
+
+	/**
+	 * Set the minimum similarity of the normalized names of stops to merge if
+	 * a merge distance is set, see {@link StationClusterer}.
+	 */
+	public void setNameSimilarity(double nameSimilarity)
+	{
+		this.nameSimilarity = nameSimilarity;
+	}
+
 	public ModelData convert(DraftModel draftModel)
 	{
 		List<DraftLine> draftLines = draftModel.getLines();
 
 		Map<DraftLine, Line> draftToLine = new HashMap<>();
 		Map<String, Station> nameToStation = new HashMap<>();
+		Map<Long, Station> nodeToStation = null;
+		if (mergeDistance > 0) {
+			nodeToStation = clusterStations(draftLines);
+		}
 
 		int id = 0;
 		for (DraftLine draftLine : draftLines) {
@@ -70,7 +114,13 @@ public class DraftModelConverter
 			for (DraftStation draftStation : draftLine.getStations()) {
 				String stopName = draftStation.getName();
 
-				Station station = nameToStation.get(stopName);
+				Station station;
+				if (nodeToStation != null) {
+					station = nodeToStation
+							.get(draftStation.getSource().getId());
+				} else {
+					station = nameToStation.get(stopName);
+				}
 				if (station == null) {
 					OsmNode node = draftStation.getSource();
 					Coordinate location = new Coordinate(node.getLongitude(),
@@ -110,4 +160,85 @@ public class DraftModelConverter
 		return new ModelData(linesList, stationsList);
 	}
 
+	/*
+	 * Cluster the distinct stop nodes by proximity and name similarity and
+	 * create a station for each cluster. A station gets the name that occurs
+	 * most often among its stops and the location of its first stop.
+	 */
+	private Map<Long, Station> clusterStations(List<DraftLine> draftLines)
+	{
+		Map<Long, DraftStation> nodeToStop = new LinkedHashMap<>();
+		Map<String, Integer> nameCounts = new HashMap<>();
+		for (DraftLine draftLine : draftLines) {
+			for (DraftStation draftStation : draftLine.getStations()) {
+				nodeToStop.putIfAbsent(draftStation.getSource().getId(),
+						draftStation);
+				nameCounts.merge(draftStation.getName(), 1, Integer::sum);
+			}
+		}
+
+		StationClusterer clusterer = new StationClusterer(mergeDistance,
+				nameSimilarity);
+		List<List<DraftStation>> clusters = clusterer
+				.cluster(new ArrayList<>(nodeToStop.values()));
+
+		List<String> names = new ArrayList<>();
+		for (List<DraftStation> cluster : clusters) {
+			String name = cluster.get(0).getName();
+			for (DraftStation stop : cluster) {
+				if (nameCounts.get(stop.getName()) > nameCounts.get(name)) {
+					name = stop.getName();
+				}
+			}
+			names.add(name);
+		}
+		names = uniqueNames(names);
+
+		Map<Long, Station> nodeToStation = new HashMap<>();
+		for (int i = 0; i < clusters.size(); i++) {
+			List<DraftStation> cluster = clusters.get(i);
+			String name = names.get(i);
+
+			OsmNode node = cluster.get(0).getSource();
+			Coordinate location = new Coordinate(node.getLongitude(),
+					node.getLatitude());
+			Station station = new Station(0, name, location,
+					new ArrayList<Stop>());
+			stationsList.add(station);
+
+			for (DraftStation stop : cluster) {
+				nodeToStation.put(stop.getSource().getId(), station);
+			}
+		}
+		return nodeToStation;
+	}
+
+	/*
+	 * Stops with the same name that are too far apart end up in different
+	 * clusters, while station names need to be unique. The first station of
+	 * each name keeps it, the others get a number appended.
+	 */
+	private static List<String> uniqueNames(List<String> names)
+	{
+		Set<String> used = new HashSet<>(names);
+		Set<String> assigned = new HashSet<>();
+		List<String> result = new ArrayList<>(names.size());
+		for (String name : names) {
+			String unique = name;
+			int k = 1;
+			while (assigned.contains(unique)
+					|| (k > 1 && used.contains(unique))) {
+				unique = String.format("%s (%d)", name, ++k);
+			}
+			assigned.add(unique);
+			if (!unique.equals(name)) {
+				logger.warn(String.format(
+						"Distant stations named '%s', renaming to '%s'", name,
+						unique));
+			}
+			result.add(unique);
+		}
+		return result;
+	}
+
 }
@@ -0,0 +1,170 @@
+// Copyright 2019 Sebastian Kuerten
+//
+// This file is part of OpenMetroMaps.
+//
+// OpenMetroMaps is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Lesser General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// OpenMetroMaps is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with OpenMetroMaps. If not, see <http://www.gnu.org/licenses/>.
+
+package org.openmetromaps.model.osm;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.openmetromaps.misc.PointIndex;
+
+import de.topobyte.osm4j.core.model.iface.OsmNode;
+
+/**
+ * Clusters stops into stations by proximity and name similarity. Two stops
+ * end up in the same cluster if they are closer than a maximum distance and
+ * the similarity of their normalized names is at least a minimum similarity,
+ * or if they are connected by a chain of such stops. Candidates are looked up
+ * in a {@link PointIndex}, so that clustering takes near-linear time for
+ * realistic data.
+ */
+public class StationClusterer
+{
+
+	private double maxDistance;
+	private double minNameSimilarity;
+
+	/**
+	 * @param maxDistance
+	 *            the maximum distance in meters of stops to merge.
+	 * @param minNameSimilarity
+	 *            the minimum similarity of the normalized names of stops to
+	 *            merge, between 0 (any names) and 1 (equal names).
+	 */
+	public StationClusterer(double maxDistance, double minNameSimilarity)
+	{
+		this.maxDistance = maxDistance;
+		this.minNameSimilarity = minNameSimilarity;
+	}
+
+	/**
+	 * @param stops
+	 *            a list of stops with distinct source nodes.
+	 * @return the clusters of stops, ordered by their first stop in the input
+	 *         with each cluster in input order.
+	 */
+	public List<List<DraftStation>> cluster(List<DraftStation> stops)
+	{
+		int n = stops.size();
+		String[] names = new String[n];
+		int[] parent = new int[n];
+		PointIndex<Integer> index = new PointIndex<>(maxDistance);
+
+		for (int i = 0; i < n; i++) {
+			DraftStation stop = stops.get(i);
+			names[i] = normalize(stop.getName());
+			parent[i] = i;
+
+			OsmNode node = stop.getSource();
+			double lon = node.getLongitude();
+			double lat = node.getLatitude();
+			for (int k : index.within(lon, lat)) {
+				if (similarity(names[i], names[k]) >= minNameSimilarity) {
+					union(parent, i, k);
+				}
+			}
+			index.add(lon, lat, i);
+		}
+
+		Map<Integer, List<DraftStation>> rootToCluster = new HashMap<>();
+		List<List<DraftStation>> clusters = new ArrayList<>();
+		for (int i = 0; i < n; i++) {
+			int root = find(parent, i);
+			List<DraftStation> cluster = rootToCluster.get(root);
+			if (cluster == null) {
+				cluster = new ArrayList<>();
+				rootToCluster.put(root, cluster);
+				clusters.add(cluster);
+			}
+			cluster.add(stops.get(i));
+		}
+		return clusters;
+	}
+
+	private static int find(int[] parent, int i)
+	{
+		while (parent[i] != i) {
+			parent[i] = parent[parent[i]];
+			i = parent[i];
+		}
+		return i;
+	}
+
+	private static void union(int[] parent, int a, int b)
+	{
+		int ra = find(parent, a);
+		int rb = find(parent, b);
+		// keep the smaller index as root
+		if (ra < rb) {
+			parent[rb] = ra;
+		} else if (rb < ra) {
+			parent[ra] = rb;
+		}
+	}
+
+	/**
+	 * Normalize a name for comparison: lower case, without diacritics and with
+	 * punctuation replaced by single spaces.
+	 */
+	public static String normalize(String name)
+	{
+		String decomposed = Normalizer.normalize(name, Normalizer.Form.NFD);
+		String stripped = decomposed.replaceAll("\\p{M}+", "");
+		String lower = stripped.toLowerCase(Locale.ROOT);
+		return lower.replaceAll("[^\\p{L}\\p{N}]+", " ").trim();
+	}
+
+	/**
+	 * @return the similarity of two strings based on their edit distance,
+	 *         between 0 (completely different) and 1 (equal).
+	 */
+	public static double similarity(String a, String b)
+	{
+		if (a.equals(b)) {
+			return 1;
+		}
+		int max = Math.max(a.length(), b.length());
+		return 1 - (double) distance(a, b) / max;
+	}
+
+	private static int distance(String a, String b)
+	{
+		int[] previous = new int[b.length() + 1];
+		int[] current = new int[b.length() + 1];
+		for (int j = 0; j <= b.length(); j++) {
+			previous[j] = j;
+		}
+		for (int i = 1; i <= a.length(); i++) {
+			current[0] = i;
+			for (int j = 1; j <= b.length(); j++) {
+				int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+				current[j] = Math.min(
+						Math.min(current[j - 1] + 1, previous[j] + 1),
+						previous[j - 1] + cost);
+			}
+			int[] swap = previous;
+			previous = current;
+			current = swap;
+		}
+		return previous[b.length()];
+	}
+
+}
@@ -0,0 +1,103 @@
+// Copyright 2019 Sebastian Kuerten
+//
+// This file is part of OpenMetroMaps.
+//
+// OpenMetroMaps is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Lesser General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// OpenMetroMaps is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with OpenMetroMaps. If not, see <http://www.gnu.org/licenses/>.
+
+package org.openmetromaps.model.osm;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openmetromaps.maps.model.ModelData;
+import org.openmetromaps.maps.model.Station;
+
+import de.topobyte.osm4j.core.model.impl.Node;
+import de.topobyte.osm4j.core.model.impl.Relation;
+import de.topobyte.osm4j.core.model.impl.RelationMember;
+import de.topobyte.osm4j.core.model.impl.Tag;
+
+public class TestDraftModelConverter
+{
+
+	private static DraftStation stop(long id, String name, double lat)
+	{
+		Node node = new Node(id, 13.4, lat,
+				Arrays.asList(new Tag("name", name)));
+		return new DraftStation(name, node);
+	}
+
+	private static DraftLine line(long id, String ref, DraftStation... stops)
+	{
+		Relation relation = new Relation(id,
+				Collections.<RelationMember> emptyList(),
+				Arrays.asList(new Tag("ref", ref)));
+		return new DraftLine(relation, Arrays.asList(stops));
+	}
+
+	private static List<String> names(ModelData data)
+	{
+		List<String> names = new ArrayList<>();
+		for (Station station : data.stations) {
+			names.add(station.getName());
+		}
+		return names;
+	}
+
+	@Test
+	public void testDistantStationsWithSameName()
+	{
+		// two unrelated stations called 'Central' several kilometers apart
+		// and one that happens to be called like the renamed one
+		DraftModel model = new DraftModel();
+		model.getLines().add(line(1, "U1", stop(1, "Central", 52.50),
+				stop(2, "Market", 52.51)));
+		model.getLines().add(line(2, "U2", stop(3, "Central", 52.60),
+				stop(4, "Central (2)", 52.70), stop(5, "Central", 52.5001)));
+
+		DraftModelConverter converter = new DraftModelConverter();
+		converter.setMergeDistance(100);
+		ModelData data = converter.convert(model);
+
+		Assert.assertEquals(
+				Arrays.asList("Central", "Central (2)", "Central (3)",
+						"Market"),
+				names(data));
+
+		// stops 1 and 5 are merged, stop 3 became a station of its own
+		Station first = data.lines.get(0).getStops().get(0).getStation();
+		Assert.assertEquals("Central", first.getName());
+		Assert.assertSame(first,
+				data.lines.get(1).getStops().get(2).getStation());
+		Assert.assertEquals("Central (3)",
+				data.lines.get(1).getStops().get(0).getStation().getName());
+	}
+
+	@Test
+	public void testWithoutMerging()
+	{
+		DraftModel model = new DraftModel();
+		model.getLines().add(line(1, "U1", stop(1, "Central", 52.50),
+				stop(2, "Market", 52.51)));
+		model.getLines().add(line(2, "U2", stop(3, "Central", 52.60)));
+
+		ModelData data = new DraftModelConverter().convert(model);
+		Assert.assertEquals(Arrays.asList("Central", "Market"), names(data));
+	}
+
+}
@@ -0,0 +1,170 @@
+// Copyright 2019 Sebastian Kuerten
+//
+// This file is part of OpenMetroMaps.
+//
+// OpenMetroMaps is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Lesser General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// OpenMetroMaps is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with OpenMetroMaps. If not, see <http://www.gnu.org/licenses/>.
+
+package org.openmetromaps.model.osm;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.topobyte.osm4j.core.model.impl.Node;
+import de.topobyte.osm4j.core.model.impl.Tag;
+
+public class TestStationClusterer
+{
+
+	private static final double LON = 13.4;
+	private static final double LAT = 52.5;
+
+	// about 111 meters
+	private static final double METERS_100 = 0.001;
+
+	private static DraftStation stop(long id, String name, double lat)
+	{
+		Node node = new Node(id, LON, lat,
+				Arrays.asList(new Tag("name", name)));
+		return new DraftStation(name, node);
+	}
+
+	private static List<List<Long>> ids(List<List<DraftStation>> clusters)
+	{
+		List<List<Long>> ids = new ArrayList<>();
+		for (List<DraftStation> cluster : clusters) {
+			List<Long> clusterIds = new ArrayList<>();
+			for (DraftStation stop : cluster) {
+				clusterIds.add(stop.getSource().getId());
+			}
+			ids.add(clusterIds);
+		}
+		return ids;
+	}
+
+	@Test
+	public void testChain()
+	{
+		// each stop is close to the next one only, yet all end up in the
+		// same cluster
+		List<DraftStation> stops = new ArrayList<>();
+		for (int i = 0; i < 5; i++) {
+			stops.add(stop(i + 1, "Central", LAT + i * 0.8 * METERS_100));
+		}
+		stops.add(stop(6, "Central", LAT + 10 * METERS_100));
+
+		StationClusterer clusterer = new StationClusterer(100, 1);
+		Assert.assertEquals(
+				Arrays.asList(Arrays.asList(1L, 2L, 3L, 4L, 5L),
+						Arrays.asList(6L)),
+				ids(clusterer.cluster(stops)));
+	}
+
+	@Test
+	public void testChainJoinsClusters()
+	{
+		// the last stop connects two clusters created before, the merged
+		// cluster keeps the input order
+		List<DraftStation> stops = new ArrayList<>();
+		stops.add(stop(1, "Central", LAT));
+		stops.add(stop(2, "Central", LAT + 1.6 * METERS_100));
+		stops.add(stop(3, "Central", LAT + 3.2 * METERS_100));
+		stops.add(stop(4, "Central", LAT + 2.4 * METERS_100));
+		stops.add(stop(5, "Central", LAT + 0.8 * METERS_100));
+
+		StationClusterer clusterer = new StationClusterer(100, 1);
+		List<List<DraftStation>> clusters = clusterer.cluster(stops);
+		Assert.assertEquals(
+				Arrays.asList(Arrays.asList(1L, 2L, 3L, 4L, 5L)),
+				ids(clusters));
+	}
+
+	@Test
+	public void testDistance()
+	{
+		List<DraftStation> stops = new ArrayList<>();
+		stops.add(stop(1, "Central", LAT));
+		stops.add(stop(2, "Central", LAT + 0.5 * METERS_100));
+		stops.add(stop(3, "Central", LAT + 2 * METERS_100));
+
+		StationClusterer clusterer = new StationClusterer(100, 1);
+		Assert.assertEquals(
+				Arrays.asList(Arrays.asList(1L, 2L), Arrays.asList(3L)),
+				ids(clusterer.cluster(stops)));
+	}
+
+	@Test
+	public void testNameSimilarity()
+	{
+		// 'hauptbahnhof' and 'hauptbahnhof nord' have a similarity of
+		// 1 - 5 / 17 = 0.706
+		List<DraftStation> stops = new ArrayList<>();
+		stops.add(stop(1, "Hauptbahnhof", LAT));
+		stops.add(stop(2, "Hauptbahnhof Nord", LAT + 0.2 * METERS_100));
+		stops.add(stop(3, "Messe", LAT + 0.4 * METERS_100));
+
+		StationClusterer lenient = new StationClusterer(100, 0.7);
+		Assert.assertEquals(
+				Arrays.asList(Arrays.asList(1L, 2L), Arrays.asList(3L)),
+				ids(lenient.cluster(stops)));
+
+		StationClusterer strict = new StationClusterer(100, 0.72);
+		Assert.assertEquals(
+				Arrays.asList(Arrays.asList(1L), Arrays.asList(2L),
+						Arrays.asList(3L)),
+				ids(strict.cluster(stops)));
+
+		StationClusterer any = new StationClusterer(100, 0);
+		Assert.assertEquals(Arrays.asList(Arrays.asList(1L, 2L, 3L)),
+				ids(any.cluster(stops)));
+	}
+
+	@Test
+	public void testNormalizedNames()
+	{
+		List<DraftStation> stops = new ArrayList<>();
+		stops.add(stop(1, "Bahnhof Zoo", LAT));
+		stops.add(stop(2, "bahnhof-zoo", LAT + 0.2 * METERS_100));
+		stops.add(stop(3, "Zoo", LAT + 0.4 * METERS_100));
+
+		StationClusterer clusterer = new StationClusterer(100, 1);
+		Assert.assertEquals(
+				Arrays.asList(Arrays.asList(1L, 2L), Arrays.asList(3L)),
+				ids(clusterer.cluster(stops)));
+	}
+
+	@Test
+	public void testNormalize()
+	{
+		Assert.assertEquals("sudkreuz",
+				StationClusterer.normalize("Südkreuz"));
+		Assert.assertEquals("s u bahnhof",
+				StationClusterer.normalize(" S+U  Bahnhof. "));
+	}
+
+	@Test
+	public void testSimilarity()
+	{
+		Assert.assertEquals(1, StationClusterer.similarity("abc", "abc"), 0);
+		Assert.assertEquals(0, StationClusterer.similarity("abc", "xyz"), 0);
+		Assert.assertEquals(0.75,
+				StationClusterer.similarity("abcd", "abxd"), 1e-9);
+		Assert.assertEquals(0.5, StationClusterer.similarity("ab", "abcd"),
+				1e-9);
+	}
+
+}
@@ -20,15 +20,12 @@ package org.openmetromaps.model.osm;
 import java.io.IOException;
 import java.util.List;
 
+import org.openmetromaps.misc.ImportMetrics;
 import org.openmetromaps.model.osm.filter.RouteFilter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import de.topobyte.osm4j.core.access.OsmIteratorInput;
-import de.topobyte.osm4j.core.dataset.InMemoryMapDataSet;
-import de.topobyte.osm4j.core.dataset.MapDataSetLoader;
 import de.topobyte.osm4j.utils.OsmFile;
-import de.topobyte.osm4j.utils.OsmFileInput;
 
 public class FileModelBuilder
 {
@@ -42,7 +39,9 @@ public class FileModelBuilder
 	private List<String> suffixes;
 	private List<Fix> fixes;
 
-	private ModelBuilder modelBuilder = null;
+	private StreamingModelBuilder modelBuilder = null;
+
+	private ImportMetrics metrics = new ImportMetrics("model");
 
 	public FileModelBuilder(OsmFile fileInput, RouteFilter routeFilter,
 			List<String> prefixes, List<String> suffixes, List<Fix> fixes)
@@ -59,16 +58,22 @@ public class FileModelBuilder
 		return modelBuilder.getModel();
 	}
 
+	public ImportMetrics getMetrics()
+	{
+		return metrics;
+	}
+
+	public void setMetrics(ImportMetrics metrics)
+	{
+		this.metrics = metrics;
+	}
+
 	public void run(boolean applyFixes, boolean removeReverse)
 			throws IOException
 	{
-		OsmIteratorInput iterator = new OsmFileInput(fileInput)
-				.createIterator(true, false);
-		InMemoryMapDataSet dataSet = MapDataSetLoader.read(iterator, true, true,
-				true);
-
-		modelBuilder = new ModelBuilder(dataSet, routeFilter, prefixes,
-				suffixes, fixes);
+		modelBuilder = new StreamingModelBuilder(fileInput, routeFilter,
+				prefixes, suffixes, fixes);
+		modelBuilder.setMetrics(metrics);
 		modelBuilder.run(applyFixes, removeReverse);
 	}
 
@@ -23,13 +23,17 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
+import org.openmetromaps.misc.ImportMetrics;
+import org.openmetromaps.misc.ImportPhase;
 import org.openmetromaps.misc.NameUtil;
+import org.openmetromaps.misc.PointIndex;
 import org.openmetromaps.model.osm.filter.RouteFilter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.slimjars.dist.gnu.trove.map.TLongObjectMap;
+
 import de.topobyte.formatting.Formatting;
-import de.topobyte.geomath.WGS84;
 import de.topobyte.lineprinter.sfl4j.LogLevel;
 import de.topobyte.lineprinter.sfl4j.LoggerPrinter;
 import de.topobyte.osm4j.core.dataset.InMemoryMapDataSet;
@@ -45,22 +49,47 @@ public class ModelBuilder
 
 	final static Logger logger = LoggerFactory.getLogger(ModelBuilder.class);
 
-	private InMemoryMapDataSet dataSet;
+	/**
+	 * The maximum distance in meters of an unnamed stop to a fix for applying
+	 * the fix's name.
+	 */
+	public static final double FIX_DISTANCE = 200;
+
+	private TLongObjectMap<OsmRelation> relations;
+	private TLongObjectMap<OsmNode> nodes;
 	private RouteFilter routeFilter;
 	private List<String> prefixes;
 	private List<String> suffixes;
-	private List<Fix> fixes;
+	private PointIndex<Fix> fixIndex = new PointIndex<>(FIX_DISTANCE);
 
 	private DraftModel model = new DraftModel();
 
+	private ImportMetrics metrics = new ImportMetrics("model");
+
 	public ModelBuilder(InMemoryMapDataSet dataSet, RouteFilter routeFilter,
 			List<String> prefixes, List<String> suffixes, List<Fix> fixes)
 	{
-		this.dataSet = dataSet;
+		this(dataSet.getRelations(), dataSet.getNodes(), routeFilter, prefixes,
+				suffixes, fixes);
+	}
+
+	/**
+	 * Create a model builder for the specified relations and nodes. The nodes
+	 * need to contain the stops of the routes only, all other data is not
+	 * required.
+	 */
+	public ModelBuilder(TLongObjectMap<OsmRelation> relations,
+			TLongObjectMap<OsmNode> nodes, RouteFilter routeFilter,
+			List<String> prefixes, List<String> suffixes, List<Fix> fixes)
+	{
+		this.relations = relations;
+		this.nodes = nodes;
 		this.routeFilter = routeFilter;
 		this.prefixes = prefixes;
 		this.suffixes = suffixes;
-		this.fixes = fixes;
+		for (Fix fix : fixes) {
+			fixIndex.add(fix.getLon(), fix.getLat(), fix);
+		}
 	}
 
 	public DraftModel getModel()
@@ -68,109 +97,118 @@ public class ModelBuilder
 		return model;
 	}
 
+	public ImportMetrics getMetrics()
+	{
+		return metrics;
+	}
+
+	public void setMetrics(ImportMetrics metrics)
+	{
+		this.metrics = metrics;
+	}
+
 	public void run(boolean applyFixes, boolean removeReverse)
 			throws IOException
 	{
 		List<DraftLine> lines = model.getLines();
 
-		List<OsmRelation> relationsList = new ArrayList<>();
+		try (ImportPhase phase = metrics.start("build-model")) {
+			List<OsmRelation> relationsList = new ArrayList<>();
 
-		relationsList.addAll(dataSet.getRelations().valueCollection());
-		Collections.sort(relationsList, new IdComparator());
+			relationsList.addAll(relations.valueCollection());
+			Collections.sort(relationsList, new IdComparator());
 
-		int nBugsNotFound = 0;
-		int nBugsNoName = 0;
+			int nBugsNotFound = 0;
+			int nBugsNoName = 0;
 
-		for (OsmRelation relation : relationsList) {
-			Map<String, String> rTags = OsmModelUtil.getTagsAsMap(relation);
+			for (OsmRelation relation : relationsList) {
+				phase.addEntity();
+				Map<String, String> rTags = OsmModelUtil.getTagsAsMap(relation);
 
-			if (!routeFilter.useRoute(relation)) {
-				continue;
-			}
+				if (!routeFilter.useRoute(relation)) {
+					continue;
+				}
 
-			String name = rTags.get("name");
-			String ref = rTags.get("ref");
-			logger.info(Formatting.format("Name: '%s', Ref: '%s'", name, ref));
+				String name = rTags.get("name");
+				String ref = rTags.get("ref");
+				logger.info(
+						Formatting.format("Name: '%s', Ref: '%s'", name, ref));
 
-			List<DraftStation> stations = new ArrayList<>();
+				List<DraftStation> stations = new ArrayList<>();
 
-			for (int i = 0; i < relation.getNumberOfMembers(); i++) {
-				OsmRelationMember member = relation.getMember(i);
-				if (member.getType() != EntityType.Node) {
-					continue;
-				}
-				String role = member.getRole();
-				boolean isStop = role.equals("stop");
-				isStop |= role.equals("stop_entry_only");
-				isStop |= role.equals("stop_exit_only");
-				if (!isStop) {
-					continue;
-				}
-				OsmNode node = dataSet.getNodes().get(member.getId());
-				if (node == null) {
-					logger.info("not found: " + member.getId());
-					nBugsNotFound += 1;
-					continue;
-				}
-				Map<String, String> nTags = OsmModelUtil.getTagsAsMap(node);
-				String sName = nTags.get("name");
-				if (sName == null) {
-					sName = nTags.get("description");
-				}
-				if (sName == null && applyFixes) {
-					sName = determineFix(node);
-				}
-				// ignore nodes without any tags
-				if (sName == null) {
-					if (nTags.size() == 0) {
+				for (int i = 0; i < relation.getNumberOfMembers(); i++) {
+					OsmRelationMember member = relation.getMember(i);
+					if (member.getType() != EntityType.Node) {
+						continue;
+					}
+					if (!isStop(member)) {
+						continue;
+					}
+					OsmNode node = nodes.get(member.getId());
+					if (node == null) {
+						logger.info("not found: " + member.getId());
+						nBugsNotFound += 1;
+						continue;
+					}
+					Map<String, String> nTags = OsmModelUtil.getTagsAsMap(node);
+					String sName = nTags.get("name");
+					if (sName == null) {
+						sName = nTags.get("description");
+					}
+					if (sName == null && applyFixes) {
+						sName = determineFix(node);
+					}
+					// ignore nodes without any tags
+					if (sName == null) {
+						if (nTags.size() == 0) {
+							continue;
+						}
+					}
+					if (sName == null) {
+						nBugsNoName += 1;
+						logger.info("tags: " + nTags);
 						continue;
 					}
-				}
-				if (sName == null) {
-					nBugsNoName += 1;
-					logger.info("tags: " + nTags);
-					continue;
-				}
 
-				sName = NameUtil.stripPrefix(sName, prefixes);
-				sName = NameUtil.stripSuffix(sName, suffixes);
+					sName = NameUtil.stripPrefix(sName, prefixes);
+					sName = NameUtil.stripSuffix(sName, suffixes);
 
-				logger.info(sName);
-				DraftStation station = new DraftStation(sName, node);
-				stations.add(station);
-			}
+					logger.info(sName);
+					DraftStation station = new DraftStation(sName, node);
+					stations.add(station);
+				}
 
-			lines.add(new DraftLine(relation, stations));
-		}
+				lines.add(new DraftLine(relation, stations));
+			}
 
-		logger.info("# Bugs (not found): " + nBugsNotFound);
-		logger.info("# Bugs (no name): " + nBugsNoName);
+			logger.info("# Bugs (not found): " + nBugsNotFound);
+			logger.info("# Bugs (no name): " + nBugsNoName);
 
-		LinesAnalyzer linesAnalyzer = new LinesAnalyzer(model);
-		linesAnalyzer.analyze(new LoggerPrinter(logger, LogLevel.INFO),
-				removeReverse);
+			LinesAnalyzer linesAnalyzer = new LinesAnalyzer(model);
+			linesAnalyzer.analyze(new LoggerPrinter(logger, LogLevel.INFO),
+					removeReverse);
+		}
 	}
 
-	private String determineFix(OsmNode node)
+	static boolean isStop(OsmRelationMember member)
 	{
-		for (Fix fix : fixes) {
-			double distance = distance(node, fix);
-			logger.debug(Formatting.format("distance to %.6f,%.6f: %.2f",
-					node.getLatitude(), node.getLongitude(), distance));
-			if (distance < 200) {
-				return fix.getName();
-			}
-		}
-		return null;
+		String role = member.getRole();
+		boolean isStop = role.equals("stop");
+		isStop |= role.equals("stop_entry_only");
+		isStop |= role.equals("stop_exit_only");
+		return isStop;
 	}
 
-	private double distance(OsmNode node, Fix fix)
+	private String determineFix(OsmNode node)
 	{
-		double lon1 = node.getLongitude();
-		double lat1 = node.getLatitude();
-		double lon2 = fix.getLon();
-		double lat2 = fix.getLat();
-		return WGS84.haversineDistance(lon1, lat1, lon2, lat2);
+		// the first matching fix in the list of fixes wins
+		Fix fix = fixIndex.first(node.getLongitude(), node.getLatitude());
+		if (fix == null) {
+			return null;
+		}
+		logger.debug(Formatting.format("fix for %.6f,%.6f: %s",
+				node.getLatitude(), node.getLongitude(), fix.getName()));
+		return fix.getName();
 	}
 
 }
@@ -0,0 +1,78 @@
+// Copyright 2019 Sebastian Kuerten
+//
+// This file is part of OpenMetroMaps.
+//
+// OpenMetroMaps is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Lesser General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// OpenMetroMaps is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with OpenMetroMaps. If not, see <http://www.gnu.org/licenses/>.
+
+package org.openmetromaps.model.osm;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import de.topobyte.osm4j.core.model.iface.OsmNode;
+import de.topobyte.osm4j.core.model.iface.OsmRelation;
+
+/**
+ * The node and relation changes of an osmChange document. For each entity,
+ * only the last change is kept. Deleted entities are mapped to null. Ways are
+ * not needed for building models and are only counted.
+ */
+public class OsmChange
+{
+
+	private Map<Long, OsmNode> nodes = new LinkedHashMap<>();
+	private Map<Long, OsmRelation> relations = new LinkedHashMap<>();
+	private int numWays = 0;
+
+	public Map<Long, OsmNode> getNodes()
+	{
+		return nodes;
+	}
+
+	public Map<Long, OsmRelation> getRelations()
+	{
+		return relations;
+	}
+
+	public int getNumWays()
+	{
+		return numWays;
+	}
+
+	public void put(OsmNode node)
+	{
+		nodes.put(node.getId(), node);
+	}
+
+	public void put(OsmRelation relation)
+	{
+		relations.put(relation.getId(), relation);
+	}
+
+	public void deleteNode(long id)
+	{
+		nodes.put(id, null);
+	}
+
+	public void deleteRelation(long id)
+	{
+		relations.put(id, null);
+	}
+
+	void countWay()
+	{
+		numWays++;
+	}
+
+}
@@ -0,0 +1,217 @@
+// Copyright 2019 Sebastian Kuerten
+//
+// This file is part of OpenMetroMaps.
+//
+// OpenMetroMaps is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Lesser General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// OpenMetroMaps is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with OpenMetroMaps. If not, see <http://www.gnu.org/licenses/>.
+
+package org.openmetromaps.model.osm;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import de.topobyte.osm4j.core.model.iface.EntityType;
+import de.topobyte.osm4j.core.model.iface.OsmRelationMember;
+import de.topobyte.osm4j.core.model.iface.OsmTag;
+import de.topobyte.osm4j.core.model.impl.Node;
+import de.topobyte.osm4j.core.model.impl.Relation;
+import de.topobyte.osm4j.core.model.impl.RelationMember;
+import de.topobyte.osm4j.core.model.impl.Tag;
+
+/**
+ * Reads osmChange (.osc) documents with a streaming XML parser. Files ending
+ * with .gz are decompressed on the fly.
+ */
+public class OsmChangeReader
+{
+
+	public static OsmChange read(Path path) throws IOException
+	{
+		OsmChange change = new OsmChange();
+		read(path, change);
+		return change;
+	}
+
+	/**
+	 * Read the changes from the file into the specified change set, changes
+	 * from the file replace earlier changes of the same entities.
+	 */
+	public static void read(Path path, OsmChange change) throws IOException
+	{
+		try (InputStream input = open(path)) {
+			read(input, change);
+		}
+	}
+
+	private static InputStream open(Path path) throws IOException
+	{
+		InputStream input = new BufferedInputStream(
+				Files.newInputStream(path));
+		if (path.getFileName().toString().endsWith(".gz")) {
+			input = new GZIPInputStream(input);
+		}
+		return input;
+	}
+
+	public static void read(InputStream input, OsmChange change)
+			throws IOException
+	{
+		try {
+			XMLStreamReader reader = XMLInputFactory.newInstance()
+					.createXMLStreamReader(input);
+			new OsmChangeReader(reader, change).read();
+			reader.close();
+		} catch (XMLStreamException e) {
+			throw new IOException("Error while reading osmChange", e);
+		}
+	}
+
+	private XMLStreamReader reader;
+	private OsmChange change;
+
+	private boolean delete = false;
+
+	// state of the current entity
+	private long id;
+	private double lon;
+	private double lat;
+	private List<OsmTag> tags = new ArrayList<>();
+	private List<OsmRelationMember> members = new ArrayList<>();
+
+	private OsmChangeReader(XMLStreamReader reader, OsmChange change)
+	{
+		this.reader = reader;
+		this.change = change;
+	}
+
+	private void read() throws XMLStreamException, IOException
+	{
+		while (reader.hasNext()) {
+			int event = reader.next();
+			if (event == XMLStreamConstants.START_ELEMENT) {
+				start(reader.getLocalName());
+			} else if (event == XMLStreamConstants.END_ELEMENT) {
+				end(reader.getLocalName());
+			}
+		}
+	}
+
+	private void start(String name) throws IOException
+	{
+		switch (name) {
+		case "create":
+		case "modify":
+			delete = false;
+			break;
+		case "delete":
+			delete = true;
+			break;
+		case "node":
+			id = parseLong("id");
+			lon = parseDouble("lon");
+			lat = parseDouble("lat");
+			tags = new ArrayList<>();
+			break;
+		case "way":
+			// the tags and nodes of ways are not needed, but the tags must not
+			// end up in the list of the previous node
+			tags = new ArrayList<>();
+			break;
+		case "relation":
+			id = parseLong("id");
+			tags = new ArrayList<>();
+			members = new ArrayList<>();
+			break;
+		case "tag":
+			tags.add(new Tag(attribute("k"), attribute("v")));
+			break;
+		case "member":
+			members.add(new RelationMember(parseLong("ref"),
+					type(attribute("type")), attribute("role")));
+			break;
+		}
+	}
+
+	private void end(String name)
+	{
+		switch (name) {
+		case "node":
+			if (delete) {
+				change.deleteNode(id);
+			} else {
+				change.put(new Node(id, lon, lat, tags));
+			}
+			break;
+		case "way":
+			change.countWay();
+			break;
+		case "relation":
+			if (delete) {
+				change.deleteRelation(id);
+			} else {
+				change.put(new Relation(id, members, tags));
+			}
+			break;
+		}
+	}
+
+	private String attribute(String name)
+	{
+		String value = reader.getAttributeValue(null, name);
+		return value == null ? "" : value;
+	}
+
+	private long parseLong(String name) throws IOException
+	{
+		String value = reader.getAttributeValue(null, name);
+		if (value == null) {
+			throw new IOException(String.format(
+					"Missing attribute '%s' at line %d", name,
+					reader.getLocation().getLineNumber()));
+		}
+		return Long.parseLong(value);
+	}
+
+	private double parseDouble(String name)
+	{
+		// deleted nodes do not necessarily carry coordinates
+		String value = reader.getAttributeValue(null, name);
+		return value == null ? 0 : Double.parseDouble(value);
+	}
+
+	private static EntityType type(String type) throws IOException
+	{
+		switch (type) {
+		case "node":
+			return EntityType.Node;
+		case "way":
+			return EntityType.Way;
+		case "relation":
+			return EntityType.Relation;
+		default:
+			throw new IOException("Invalid member type: " + type);
+		}
+	}
+
+}
@@ -0,0 +1,351 @@
+// Copyright 2019 Sebastian Kuerten
+//
+// This file is part of OpenMetroMaps.
+//
+// OpenMetroMaps is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Lesser General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// OpenMetroMaps is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with OpenMetroMaps. If not, see <http://www.gnu.org/licenses/>.
+
+package org.openmetromaps.model.osm;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Map;
+
+import org.openmetromaps.misc.ImportMetrics;
+import org.openmetromaps.misc.ImportPhase;
+import org.openmetromaps.model.osm.filter.RouteFilter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.slimjars.dist.gnu.trove.map.TLongObjectMap;
+import com.slimjars.dist.gnu.trove.map.hash.TLongObjectHashMap;
+import com.slimjars.dist.gnu.trove.set.TLongSet;
+import com.slimjars.dist.gnu.trove.set.hash.TLongHashSet;
+
+import de.topobyte.osm4j.core.access.OsmIteratorInput;
+import de.topobyte.osm4j.core.access.OsmOutputStream;
+import de.topobyte.osm4j.core.model.iface.EntityContainer;
+import de.topobyte.osm4j.core.model.iface.EntityType;
+import de.topobyte.osm4j.core.model.iface.OsmNode;
+import de.topobyte.osm4j.core.model.iface.OsmRelation;
+import de.topobyte.osm4j.core.model.iface.OsmRelationMember;
+import de.topobyte.osm4j.utils.FileFormat;
+import de.topobyte.osm4j.utils.OsmFile;
+import de.topobyte.osm4j.utils.OsmFileInput;
+import de.topobyte.osm4j.utils.OsmIoUtils;
+import de.topobyte.osm4j.utils.OsmOutputConfig;
+
+/**
+ * The data required for building a model: the route relations accepted by a
+ * route filter and their stop nodes. An index can be extracted from a full
+ * OSM file, stored in a compact file and kept up to date by applying
+ * osmChange diffs, so that models can be rebuilt without processing the full
+ * data again.
+ */
+public class RouteIndex
+{
+
+	final static Logger logger = LoggerFactory.getLogger(RouteIndex.class);
+
+	private TLongObjectMap<OsmRelation> relations = new TLongObjectHashMap<>();
+	private TLongObjectMap<OsmNode> nodes = new TLongObjectHashMap<>();
+	// ids of the relations referencing each stop node
+	private TLongObjectMap<TLongSet> stopToRelations = new TLongObjectHashMap<>();
+
+	public TLongObjectMap<OsmRelation> getRelations()
+	{
+		return relations;
+	}
+
+	public TLongObjectMap<OsmNode> getNodes()
+	{
+		return nodes;
+	}
+
+	/**
+	 * Extract an index from the specified file in two passes. The first pass
+	 * keeps the route relations accepted by the route filter and records the
+	 * ids of their stop nodes, the second pass keeps these nodes only.
+	 */
+	public static RouteIndex read(OsmFile file, RouteFilter routeFilter)
+			throws IOException
+	{
+		return read(file, routeFilter, new ImportMetrics("route-index"));
+	}
+
+	/**
+	 * Like {@link #read(OsmFile, RouteFilter)}, recording the two passes as
+	 * phases of the specified metrics.
+	 */
+	public static RouteIndex read(OsmFile file, RouteFilter routeFilter,
+			ImportMetrics metrics) throws IOException
+	{
+		RouteIndex index = new RouteIndex();
+
+		try (ImportPhase phase = metrics.start("read-routes")) {
+			phase.addBytes(Files.size(file.getPath()));
+			OsmIteratorInput iterator = new OsmFileInput(file)
+					.createIterator(true, false);
+			for (EntityContainer container : iterator.getIterator()) {
+				phase.addEntity();
+				if (container.getType() != EntityType.Relation) {
+					continue;
+				}
+				OsmRelation relation = (OsmRelation) container.getEntity();
+				if (routeFilter.useRoute(relation)) {
+					index.add(relation);
+				}
+			}
+			iterator.close();
+		}
+
+		logger.info(String.format("Found %d routes with %d stops",
+				index.relations.size(), index.stopToRelations.size()));
+
+		try (ImportPhase phase = metrics.start("read-stops")) {
+			phase.addBytes(Files.size(file.getPath()));
+			OsmIteratorInput iterator = new OsmFileInput(file)
+					.createIterator(true, false);
+			for (EntityContainer container : iterator.getIterator()) {
+				phase.addEntity();
+				if (container.getType() != EntityType.Node) {
+					continue;
+				}
+				OsmNode node = (OsmNode) container.getEntity();
+				if (index.stopToRelations.containsKey(node.getId())) {
+					index.nodes.put(node.getId(), node);
+				}
+			}
+			iterator.close();
+		}
+
+		logger.info(String.format("Found %d of %d stop nodes",
+				index.nodes.size(), index.stopToRelations.size()));
+
+		return index;
+	}
+
+	/**
+	 * Load an index stored with {@link #write(Path)}.
+	 */
+	public static RouteIndex load(Path path) throws IOException
+	{
+		RouteIndex index = new RouteIndex();
+		OsmIteratorInput iterator = new OsmFileInput(
+				new OsmFile(path, FileFormat.TBO)).createIterator(true, false);
+		for (EntityContainer container : iterator.getIterator()) {
+			if (container.getType() == EntityType.Node) {
+				OsmNode node = (OsmNode) container.getEntity();
+				index.nodes.put(node.getId(), node);
+			} else if (container.getType() == EntityType.Relation) {
+				index.add((OsmRelation) container.getEntity());
+			}
+		}
+		iterator.close();
+		return index;
+	}
+
+	/**
+	 * Store the index as a TBO file with nodes and relations sorted by id. The
+	 * index is written to a temporary file next to the target which then
+	 * replaces the target, so that an existing index is left intact if writing
+	 * fails.
+	 */
+	public void write(Path path) throws IOException
+	{
+		Path dir = path.toAbsolutePath().getParent();
+		Path temp = Files.createTempFile(dir,
+				path.getFileName().toString() + ".", ".tmp");
+		try {
+			try (OutputStream os = new BufferedOutputStream(
+					Files.newOutputStream(temp))) {
+				OsmOutputStream output = OsmIoUtils.setupOsmOutput(os,
+						new OsmOutputConfig(FileFormat.TBO, false));
+				long[] nodeIds = nodes.keys();
+				Arrays.sort(nodeIds);
+				for (long id : nodeIds) {
+					output.write(nodes.get(id));
+				}
+				long[] relationIds = relations.keys();
+				Arrays.sort(relationIds);
+				for (long id : relationIds) {
+					output.write(relations.get(id));
+				}
+				output.complete();
+			}
+			Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE,
+					StandardCopyOption.REPLACE_EXISTING);
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+	}
+
+	public static class Update
+	{
+
+		private TLongSet affectedRelations = new TLongHashSet();
+		private TLongSet missingNodes = new TLongHashSet();
+		private int numChangedStops = 0;
+
+		/**
+		 * @return the ids of the routes that have been added, modified or
+		 *         removed or whose stops have been changed.
+		 */
+		public TLongSet getAffectedRelations()
+		{
+			return affectedRelations;
+		}
+
+		/**
+		 * @return the ids of stop nodes of affected routes that are neither in
+		 *         the index nor in the diff. These are nodes that have been
+		 *         added to routes without being changed themselves; building
+		 *         an exact model requires a full import in this case.
+		 */
+		public TLongSet getMissingNodes()
+		{
+			return missingNodes;
+		}
+
+		public int getNumChangedStops()
+		{
+			return numChangedStops;
+		}
+
+	}
+
+	/**
+	 * Apply the changes of an osmChange diff. The work done is proportional to
+	 * the size of the diff and the affected routes.
+	 */
+	public Update apply(OsmChange change, RouteFilter routeFilter)
+	{
+		Update update = new Update();
+		// stops of removed or replaced relations, these are removed from the
+		// index if no other relation references them anymore
+		TLongSet released = new TLongHashSet();
+
+		for (Map.Entry<Long, OsmRelation> entry : change.getRelations()
+				.entrySet()) {
+			long id = entry.getKey();
+			OsmRelation relation = entry.getValue();
+			OsmRelation old = relations.get(id);
+			if (old != null) {
+				remove(old, released);
+				update.affectedRelations.add(id);
+			}
+			if (relation != null && routeFilter.useRoute(relation)) {
+				add(relation);
+				update.affectedRelations.add(id);
+			}
+		}
+
+		for (Map.Entry<Long, OsmNode> entry : change.getNodes().entrySet()) {
+			long id = entry.getKey();
+			TLongSet references = stopToRelations.get(id);
+			if (references == null) {
+				continue;
+			}
+			OsmNode node = entry.getValue();
+			if (node == null) {
+				nodes.remove(id);
+			} else {
+				nodes.put(id, node);
+			}
+			update.numChangedStops++;
+			update.affectedRelations.addAll(references);
+		}
+
+		released.forEach(id -> {
+			if (!stopToRelations.containsKey(id)) {
+				nodes.remove(id);
+			}
+			return true;
+		});
+
+		// stops of new or modified routes that have not been in the index
+		update.affectedRelations.forEach(id -> {
+			OsmRelation relation = relations.get(id);
+			if (relation == null) {
+				return true;
+			}
+			for (int i = 0; i < relation.getNumberOfMembers(); i++) {
+				OsmRelationMember member = relation.getMember(i);
+				if (!isStop(member) || nodes.containsKey(member.getId())) {
+					continue;
+				}
+				Map<Long, OsmNode> changed = change.getNodes();
+				if (changed.containsKey(member.getId())) {
+					OsmNode node = changed.get(member.getId());
+					if (node != null) {
+						nodes.put(member.getId(), node);
+					}
+				} else {
+					update.missingNodes.add(member.getId());
+				}
+			}
+			return true;
+		});
+
+		return update;
+	}
+
+	private static boolean isStop(OsmRelationMember member)
+	{
+		return member.getType() == EntityType.Node
+				&& ModelBuilder.isStop(member);
+	}
+
+	private void add(OsmRelation relation)
+	{
+		relations.put(relation.getId(), relation);
+		for (int i = 0; i < relation.getNumberOfMembers(); i++) {
+			OsmRelationMember member = relation.getMember(i);
+			if (!isStop(member)) {
+				continue;
+			}
+			TLongSet references = stopToRelations.get(member.getId());
+			if (references == null) {
+				references = new TLongHashSet(2);
+				stopToRelations.put(member.getId(), references);
+			}
+			references.add(relation.getId());
+		}
+	}
+
+	private void remove(OsmRelation relation, TLongSet released)
+	{
+		relations.remove(relation.getId());
+		for (int i = 0; i < relation.getNumberOfMembers(); i++) {
+			OsmRelationMember member = relation.getMember(i);
+			if (!isStop(member)) {
+				continue;
+			}
+			TLongSet references = stopToRelations.get(member.getId());
+			if (references == null) {
+				continue;
+			}
+			references.remove(relation.getId());
+			if (references.isEmpty()) {
+				stopToRelations.remove(member.getId());
+			}
+			released.add(member.getId());
+		}
+	}
+
+}
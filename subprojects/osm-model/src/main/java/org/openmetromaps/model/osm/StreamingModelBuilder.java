@@ -0,0 +1,89 @@
+// Copyright 2019 Sebastian Kuerten
+//
+// This file is part of OpenMetroMaps.
+//
+// OpenMetroMaps is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Lesser General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// OpenMetroMaps is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with OpenMetroMaps. If not, see <http://www.gnu.org/licenses/>.
+
+package org.openmetromaps.model.osm;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.openmetromaps.misc.ImportMetrics;
+import org.openmetromaps.model.osm.filter.RouteFilter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.topobyte.osm4j.utils.OsmFile;
+
+/**
+ * Builds a model from a file without loading the whole file into memory. The
+ * route relations and their stop nodes are extracted in two passes, see
+ * {@link RouteIndex#read(OsmFile, RouteFilter)}. Memory usage is hence
+ * proportional to the number of routes and stops, not to the size of the
+ * input.
+ */
+public class StreamingModelBuilder
+{
+
+	final static Logger logger = LoggerFactory
+			.getLogger(StreamingModelBuilder.class);
+
+	private OsmFile fileInput;
+	private RouteFilter routeFilter;
+	private List<String> prefixes;
+	private List<String> suffixes;
+	private List<Fix> fixes;
+
+	private ModelBuilder modelBuilder = null;
+
+	private ImportMetrics metrics = new ImportMetrics("model");
+
+	public StreamingModelBuilder(OsmFile fileInput, RouteFilter routeFilter,
+			List<String> prefixes, List<String> suffixes, List<Fix> fixes)
+	{
+		this.fileInput = fileInput;
+		this.routeFilter = routeFilter;
+		this.prefixes = prefixes;
+		this.suffixes = suffixes;
+		this.fixes = fixes;
+	}
+
+	public DraftModel getModel()
+	{
+		return modelBuilder.getModel();
+	}
+
+	public ImportMetrics getMetrics()
+	{
+		return metrics;
+	}
+
+	public void setMetrics(ImportMetrics metrics)
+	{
+		this.metrics = metrics;
+	}
+
+	public void run(boolean applyFixes, boolean removeReverse)
+			throws IOException
+	{
+		RouteIndex index = RouteIndex.read(fileInput, routeFilter, metrics);
+
+		modelBuilder = new ModelBuilder(index.getRelations(),
+				index.getNodes(), routeFilter, prefixes, suffixes, fixes);
+		modelBuilder.setMetrics(metrics);
+		modelBuilder.run(applyFixes, removeReverse);
+	}
+
+}
@@ -0,0 +1,395 @@
+// Copyright 2019 Sebastian Kuerten
+//
+// This file is part of OpenMetroMaps.
+//
+// OpenMetroMaps is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Lesser General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// OpenMetroMaps is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with OpenMetroMaps. If not, see <http://www.gnu.org/licenses/>.
+
+package org.openmetromaps.model.osm;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.openmetromaps.model.osm.filter.RouteFilter;
+import org.openmetromaps.model.osm.filter.RouteTypeFilter;
+
+import de.topobyte.osm4j.core.access.OsmOutputStream;
+import de.topobyte.osm4j.core.model.iface.EntityType;
+import de.topobyte.osm4j.core.model.iface.OsmNode;
+import de.topobyte.osm4j.core.model.iface.OsmRelation;
+import de.topobyte.osm4j.core.model.iface.OsmRelationMember;
+import de.topobyte.osm4j.core.model.impl.Node;
+import de.topobyte.osm4j.core.model.impl.Relation;
+import de.topobyte.osm4j.core.model.impl.RelationMember;
+import de.topobyte.osm4j.core.model.impl.Tag;
+import de.topobyte.osm4j.utils.FileFormat;
+import de.topobyte.osm4j.utils.OsmFile;
+import de.topobyte.osm4j.utils.OsmIoUtils;
+import de.topobyte.osm4j.utils.OsmOutputConfig;
+
+/**
+ * Applies osmChange documents to a route index and compares the resulting
+ * models with models built from the full data with the changes applied.
+ */
+public class TestRouteIndexUpdate
+{
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private RouteFilter routeFilter = new RouteTypeFilter("subway",
+			"light_rail");
+
+	/*
+	 * Two subway lines sharing station 3, a bus line that is not used and a
+	 * node that is not a stop of any route.
+	 */
+	private static void fixture(Map<Long, OsmNode> nodes,
+			Map<Long, OsmRelation> relations)
+	{
+		put(nodes, node(1, 13.40, 52.50, "name", "Alpha"));
+		put(nodes, node(2, 13.41, 52.50, "name", "Beta"));
+		put(nodes, node(3, 13.42, 52.50, "name", "Gamma"));
+		put(nodes, node(4, 13.42, 52.51, "name", "Delta"));
+		put(nodes, node(5, 13.42, 52.52, "name", "Epsilon"));
+		put(nodes, node(6, 13.43, 52.53, "name", "Bus Stop"));
+		put(nodes, node(7, 13.44, 52.54, "name", "Zeta"));
+		put(nodes, node(8, 13.45, 52.55, "highway", "crossing"));
+
+		put(relations, route(101, "subway", "U1", 1, 2, 3));
+		put(relations, route(102, "subway", "U2", 3, 4, 5));
+		put(relations, route(103, "bus", "100", 6, 7));
+	}
+
+	private static final String HEADER = "<?xml version='1.0'?>\n"
+			+ "<osmChange version=\"0.6\" generator=\"test\">\n";
+
+	private static final String FOOTER = "</osmChange>\n";
+
+	// rename and move a shared stop, extend U1 by a new stop, delete U2,
+	// create a light rail line from existing and new stops, change an
+	// unrelated node and a tagged way that directly follows a stop
+	private static final String CHANGE = HEADER
+			+ "<modify>\n"
+			+ "  <node id=\"3\" lon=\"13.425\" lat=\"52.505\" version=\"2\">\n"
+			+ "    <tag k=\"name\" v=\"Gamma Square\"/>\n"
+			+ "  </node>\n"
+			+ "  <way id=\"1\" version=\"2\">\n"
+			+ "    <nd ref=\"1\"/>\n"
+			+ "    <nd ref=\"2\"/>\n"
+			+ "    <tag k=\"highway\" v=\"primary\"/>\n"
+			+ "    <tag k=\"name\" v=\"Main Street\"/>\n"
+			+ "  </way>\n"
+			+ "  <node id=\"8\" lon=\"13.46\" lat=\"52.56\" version=\"2\"/>\n"
+			+ "</modify>\n"
+			+ "<create>\n"
+			+ "  <node id=\"9\" lon=\"13.39\" lat=\"52.49\" version=\"1\">\n"
+			+ "    <tag k=\"name\" v=\"Omega\"/>\n"
+			+ "  </node>\n"
+			+ "  <node id=\"10\" lon=\"13.50\" lat=\"52.60\" version=\"1\">\n"
+			+ "    <tag k=\"name\" v=\"Theta\"/>\n"
+			+ "  </node>\n"
+			+ "</create>\n"
+			+ "<modify>\n"
+			+ "  <relation id=\"101\" version=\"2\">\n"
+			+ "    <member type=\"node\" ref=\"9\" role=\"stop\"/>\n"
+			+ "    <member type=\"node\" ref=\"1\" role=\"stop\"/>\n"
+			+ "    <member type=\"node\" ref=\"2\" role=\"stop_exit_only\"/>\n"
+			+ "    <member type=\"node\" ref=\"3\" role=\"stop\"/>\n"
+			+ "    <tag k=\"type\" v=\"route\"/>\n"
+			+ "    <tag k=\"route\" v=\"subway\"/>\n"
+			+ "    <tag k=\"ref\" v=\"U1\"/>\n"
+			+ "  </relation>\n"
+			+ "</modify>\n"
+			+ "<create>\n"
+			+ "  <relation id=\"104\" version=\"1\">\n"
+			+ "    <member type=\"node\" ref=\"3\" role=\"stop\"/>\n"
+			+ "    <member type=\"node\" ref=\"10\" role=\"stop\"/>\n"
+			+ "    <member type=\"way\" ref=\"1\" role=\"\"/>\n"
+			+ "    <tag k=\"type\" v=\"route\"/>\n"
+			+ "    <tag k=\"route\" v=\"light_rail\"/>\n"
+			+ "    <tag k=\"ref\" v=\"T1\"/>\n"
+			+ "  </relation>\n"
+			+ "</create>\n"
+			+ "<delete>\n"
+			+ "  <relation id=\"102\" version=\"2\"/>\n"
+			+ "  <node id=\"5\" version=\"2\"/>\n"
+			+ "</delete>\n"
+			+ FOOTER;
+
+	// add the former bus stop 7 to U1, the node is not changed itself
+	private static final String CHANGE_MISSING = HEADER
+			+ "<modify>\n"
+			+ "  <relation id=\"101\" version=\"3\">\n"
+			+ "    <member type=\"node\" ref=\"1\" role=\"stop\"/>\n"
+			+ "    <member type=\"node\" ref=\"7\" role=\"stop\"/>\n"
+			+ "    <tag k=\"type\" v=\"route\"/>\n"
+			+ "    <tag k=\"route\" v=\"subway\"/>\n"
+			+ "    <tag k=\"ref\" v=\"U1\"/>\n"
+			+ "  </relation>\n"
+			+ "</modify>\n"
+			+ FOOTER;
+
+	private static Node node(long id, double lon, double lat,
+			String... keysAndValues)
+	{
+		List<Tag> tags = new ArrayList<>();
+		for (int i = 0; i + 1 < keysAndValues.length; i += 2) {
+			tags.add(new Tag(keysAndValues[i], keysAndValues[i + 1]));
+		}
+		return new Node(id, lon, lat, tags);
+	}
+
+	private static Relation route(long id, String route, String ref,
+			long... stops)
+	{
+		List<RelationMember> members = new ArrayList<>();
+		for (long stop : stops) {
+			members.add(new RelationMember(stop, EntityType.Node, "stop"));
+		}
+		List<Tag> tags = Arrays.asList(new Tag("type", "route"),
+				new Tag("route", route), new Tag("ref", ref));
+		return new Relation(id, members, tags);
+	}
+
+	private static void put(Map<Long, OsmNode> nodes, OsmNode node)
+	{
+		nodes.put(node.getId(), node);
+	}
+
+	private static void put(Map<Long, OsmRelation> relations,
+			OsmRelation relation)
+	{
+		relations.put(relation.getId(), relation);
+	}
+
+	private OsmFile write(String name, Map<Long, OsmNode> nodes,
+			Map<Long, OsmRelation> relations) throws IOException
+	{
+		Path path = folder.getRoot().toPath().resolve(name);
+		OutputStream os = new BufferedOutputStream(
+				Files.newOutputStream(path));
+		OsmOutputStream output = OsmIoUtils.setupOsmOutput(os,
+				new OsmOutputConfig(FileFormat.TBO, false));
+		for (OsmNode node : nodes.values()) {
+			output.write(node);
+		}
+		for (OsmRelation relation : relations.values()) {
+			output.write(relation);
+		}
+		output.complete();
+		os.close();
+		return new OsmFile(path, FileFormat.TBO);
+	}
+
+	private static OsmChange change(String document) throws IOException
+	{
+		OsmChange change = new OsmChange();
+		OsmChangeReader.read(new ByteArrayInputStream(
+				document.getBytes(StandardCharsets.UTF_8)), change);
+		return change;
+	}
+
+	private static <T> void apply(Map<Long, T> entities, Map<Long, T> changes)
+	{
+		for (Map.Entry<Long, T> entry : changes.entrySet()) {
+			if (entry.getValue() == null) {
+				entities.remove(entry.getKey());
+			} else {
+				entities.put(entry.getKey(), entry.getValue());
+			}
+		}
+	}
+
+	/*
+	 * A comparable representation of a model: one line per route with the
+	 * names, ids and locations of its stations.
+	 */
+	private static List<String> describe(DraftModel model)
+	{
+		List<String> lines = new ArrayList<>();
+		for (DraftLine line : model.getLines()) {
+			StringBuilder buffer = new StringBuilder();
+			buffer.append(line.getSource().getId());
+			buffer.append(" ");
+			buffer.append(line.getName());
+			buffer.append(":");
+			for (DraftStation station : line.getStations()) {
+				OsmNode node = station.getSource();
+				buffer.append(String.format(" %s@%d(%.5f,%.5f)",
+						station.getName(), node.getId(), node.getLongitude(),
+						node.getLatitude()));
+			}
+			lines.add(buffer.toString());
+		}
+		Collections.sort(lines);
+		return lines;
+	}
+
+	private DraftModel build(RouteIndex index) throws IOException
+	{
+		ModelBuilder builder = new ModelBuilder(index.getRelations(),
+				index.getNodes(), routeFilter, Collections.emptyList(),
+				Collections.emptyList(), Collections.emptyList());
+		builder.run(true, true);
+		return builder.getModel();
+	}
+
+	private DraftModel buildFull(OsmFile file) throws IOException
+	{
+		StreamingModelBuilder builder = new StreamingModelBuilder(file,
+				routeFilter, Collections.emptyList(), Collections.emptyList(),
+				Collections.emptyList());
+		builder.run(true, true);
+		return builder.getModel();
+	}
+
+	@Test
+	public void testReadChange() throws IOException
+	{
+		OsmChange change = change(CHANGE);
+		Assert.assertEquals(Arrays.asList(3L, 8L, 9L, 10L, 5L),
+				new ArrayList<>(change.getNodes().keySet()));
+		Assert.assertEquals(Arrays.asList(101L, 104L, 102L),
+				new ArrayList<>(change.getRelations().keySet()));
+		Assert.assertEquals(1, change.getNumWays());
+
+		Assert.assertNull(change.getNodes().get(5L));
+		Assert.assertNull(change.getRelations().get(102L));
+
+		OsmNode node = change.getNodes().get(3L);
+		Assert.assertEquals(13.425, node.getLongitude(), 1e-9);
+		Assert.assertEquals(52.505, node.getLatitude(), 1e-9);
+		Assert.assertEquals(1, node.getNumberOfTags());
+		Assert.assertEquals("Gamma Square", node.getTag(0).getValue());
+		Assert.assertEquals(0, change.getNodes().get(8L).getNumberOfTags());
+
+		OsmRelation relation = change.getRelations().get(104L);
+		Assert.assertEquals(3, relation.getNumberOfMembers());
+		OsmRelationMember member = relation.getMember(2);
+		Assert.assertEquals(EntityType.Way, member.getType());
+		Assert.assertEquals(1, member.getId());
+		Assert.assertEquals("", member.getRole());
+	}
+
+	@Test
+	public void testLaterChangesReplaceEarlierOnes() throws IOException
+	{
+		OsmChange change = change(CHANGE);
+		OsmChangeReader.read(new ByteArrayInputStream(
+				CHANGE_MISSING.getBytes(StandardCharsets.UTF_8)), change);
+		Assert.assertEquals(2,
+				change.getRelations().get(101L).getNumberOfMembers());
+	}
+
+	@Test
+	public void testApplyMatchesFullImport() throws IOException
+	{
+		Map<Long, OsmNode> nodes = new TreeMap<>();
+		Map<Long, OsmRelation> relations = new TreeMap<>();
+		fixture(nodes, relations);
+		OsmFile base = write("base.tbo", nodes, relations);
+
+		RouteIndex index = RouteIndex.read(base, routeFilter);
+		Assert.assertEquals(2, index.getRelations().size());
+		Assert.assertEquals(5, index.getNodes().size());
+		Assert.assertEquals(describe(buildFull(base)), describe(build(index)));
+
+		OsmChange change = change(CHANGE);
+		RouteIndex.Update update = index.apply(change, routeFilter);
+		Assert.assertTrue(update.getMissingNodes().isEmpty());
+		Assert.assertEquals(3, update.getAffectedRelations().size());
+		// node 3 is modified and 9, 10 are new stops of changed routes, 5 is
+		// not a stop anymore when its deletion is applied
+		Assert.assertEquals(3, update.getNumChangedStops());
+
+		apply(nodes, change.getNodes());
+		apply(relations, change.getRelations());
+		OsmFile updated = write("updated.tbo", nodes, relations);
+
+		List<String> expected = describe(buildFull(updated));
+		Assert.assertEquals(expected, describe(build(index)));
+
+		// stops that are not referenced anymore are dropped from the index
+		RouteIndex full = RouteIndex.read(updated, routeFilter);
+		Assert.assertEquals(full.getNodes().size(), index.getNodes().size());
+		Assert.assertEquals(full.getRelations().size(),
+				index.getRelations().size());
+
+		// the stored index yields the same model
+		Path pathIndex = folder.getRoot().toPath().resolve("index.tbo");
+		index.write(pathIndex);
+		Assert.assertEquals(expected,
+				describe(build(RouteIndex.load(pathIndex))));
+	}
+
+	@Test
+	public void testWriteReplacesIndex() throws IOException
+	{
+		Map<Long, OsmNode> nodes = new TreeMap<>();
+		Map<Long, OsmRelation> relations = new TreeMap<>();
+		fixture(nodes, relations);
+		RouteIndex index = RouteIndex.read(write("base.tbo", nodes, relations),
+				routeFilter);
+
+		Path dir = folder.newFolder().toPath();
+		Path pathIndex = dir.resolve("index.tbo");
+		Files.write(pathIndex, new byte[] { 1, 2, 3 });
+		index.write(pathIndex);
+
+		RouteIndex loaded = RouteIndex.load(pathIndex);
+		Assert.assertEquals(index.getNodes().size(),
+				loaded.getNodes().size());
+		Assert.assertEquals(index.getRelations().size(),
+				loaded.getRelations().size());
+
+		// the temporary file has been moved into place
+		try (Stream<Path> files = Files.list(dir)) {
+			Assert.assertEquals(Arrays.asList(pathIndex),
+					files.collect(Collectors.toList()));
+		}
+	}
+
+	@Test
+	public void testMissingNodes() throws IOException
+	{
+		Map<Long, OsmNode> nodes = new TreeMap<>();
+		Map<Long, OsmRelation> relations = new TreeMap<>();
+		fixture(nodes, relations);
+		OsmFile base = write("base.tbo", nodes, relations);
+
+		RouteIndex index = RouteIndex.read(base, routeFilter);
+		RouteIndex.Update update = index.apply(change(CHANGE_MISSING),
+				routeFilter);
+		Assert.assertEquals(1, update.getMissingNodes().size());
+		Assert.assertTrue(update.getMissingNodes().contains(7));
+	}
+
+}
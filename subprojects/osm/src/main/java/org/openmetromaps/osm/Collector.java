@@ -19,10 +19,17 @@ package org.openmetromaps.osm;
 
 import java.io.IOException;
 import java.io.OutputStream;
-import java.nio.file.Path;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.List;
-
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+
+import org.openmetromaps.misc.ImportMetrics;
+import org.openmetromaps.misc.ImportPhase;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -32,7 +39,6 @@ import com.slimjars.dist.gnu.trove.set.hash.TLongHashSet;
 import de.topobyte.adt.graph.Graph;
 import de.topobyte.melon.io.StreamUtil;
 import de.topobyte.osm4j.core.access.OsmIterator;
-import de.topobyte.osm4j.core.access.OsmIteratorInput;
 import de.topobyte.osm4j.core.access.OsmOutputStream;
 import de.topobyte.osm4j.core.dataset.InMemoryListDataSet;
 import de.topobyte.osm4j.core.dataset.ListDataSetLoader;
@@ -48,7 +54,6 @@ import de.topobyte.osm4j.core.util.WayIterator;
 import de.topobyte.osm4j.extra.relations.RelationGraph;
 import de.topobyte.osm4j.utils.FileFormat;
 import de.topobyte.osm4j.utils.OsmFile;
-import de.topobyte.osm4j.utils.OsmFileInput;
 import de.topobyte.osm4j.utils.OsmIoUtils;
 import de.topobyte.osm4j.utils.OsmOutputConfig;
 import de.topobyte.osm4j.utils.merge.sorted.SortedMerge;
@@ -58,13 +63,13 @@ public class Collector
 
 	final static Logger logger = LoggerFactory.getLogger(Collector.class);
 
-	private OsmFile fileNodes;
-	private OsmFile fileWays;
-	private OsmFile fileRelations;
+	private IntermediateFile fileNodes;
+	private IntermediateFile fileWays;
+	private IntermediateFile fileRelations;
 
-	private OsmFile fileNodesFiltered;
-	private OsmFile fileWaysFiltered;
-	private OsmFile fileRelationsFiltered;
+	private IntermediateFile fileNodesFiltered;
+	private IntermediateFile fileWaysFiltered;
+	private IntermediateFile fileRelationsFiltered;
 
 	private OsmFile output;
 
@@ -74,9 +79,17 @@ public class Collector
 	private OsmOutputConfig outputConfigIntermediate;
 	private OsmOutputConfig outputConfigTarget;
 
-	public Collector(OsmFile fileNodes, OsmFile fileWays, OsmFile fileRelations,
-			OsmFile fileNodesFiltered, OsmFile fileWaysFiltered,
-			OsmFile fileRelationsFiltered, OsmFile output,
+	private TLongSet wayNodeIds = null;
+
+	private int numThreads = Math.max(3,
+			Runtime.getRuntime().availableProcessors());
+
+	private ImportMetrics metrics = new ImportMetrics("collect");
+
+	public Collector(IntermediateFile fileNodes, IntermediateFile fileWays,
+			IntermediateFile fileRelations, IntermediateFile fileNodesFiltered,
+			IntermediateFile fileWaysFiltered,
+			IntermediateFile fileRelationsFiltered, OsmFile output,
 			OsmOutputConfig outputConfig)
 	{
 		this.fileNodes = fileNodes;
@@ -97,30 +110,165 @@ public class Collector
 				useMetadata);
 	}
 
-	public void execute(Path dir) throws IOException
+	/**
+	 * Set the ids of the nodes referenced by the filtered ways if they are
+	 * known already, so that the filtered ways do not need to be read again.
+	 */
+	public void setWayNodeIds(TLongSet wayNodeIds)
+	{
+		this.wayNodeIds = wayNodeIds;
+	}
+
+	public int getNumThreads()
+	{
+		return numThreads;
+	}
+
+	public void setNumThreads(int numThreads)
+	{
+		this.numThreads = numThreads;
+	}
+
+	public ImportMetrics getMetrics()
+	{
+		return metrics;
+	}
+
+	public void setMetrics(ImportMetrics metrics)
+	{
+		this.metrics = metrics;
+	}
+
+	/*
+	 * The passes over the intermediate files are organized as a small task
+	 * graph. Tasks that only depend on the input files (building the relation
+	 * graph, reading the filtered relations and collecting the node ids of the
+	 * filtered ways) run concurrently, each with its own iterator. The
+	 * following tasks start as soon as their dependencies are complete.
+	 */
+	public void execute(IntermediateStorage storage) throws IOException
 	{
 		// The ways referenced by relations
-		OsmFile fileRelationWays = new OsmFile(dir.resolve("relation-ways.tbo"),
-				formatIntermediate);
+		IntermediateFile fileRelationWays = storage.create("relation-ways");
 		// The nodes from ways, relations, and relation ways
-		OsmFile fileAdditionalNodes = new OsmFile(
-				dir.resolve("additional-nodes.tbo"), formatIntermediate);
+		IntermediateFile fileAdditionalNodes = storage
+				.create("additional-nodes");
+
+		ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+		try {
+			CompletableFuture<RelationGraph> relationGraph = async(executor,
+					() -> buildRelationGraph());
+			CompletableFuture<InMemoryListDataSet> relations = async(executor,
+					() -> readFilteredRelations());
+			CompletableFuture<TLongSet> filteredWayNodeIds;
+			if (wayNodeIds != null) {
+				filteredWayNodeIds = CompletableFuture
+						.completedFuture(wayNodeIds);
+			} else {
+				filteredWayNodeIds = async(executor,
+						() -> collectWayNodeIds(fileWaysFiltered));
+			}
+
+			CompletableFuture<MemberIds> members = relationGraph
+					.thenCombine(relations, this::selectRelations)
+					.thenApplyAsync(unchecked(this::extractRelations), executor);
+
+			CompletableFuture<TLongSet> relationWayNodeIds = members
+					.thenApplyAsync(unchecked(
+							m -> extractRelationWays(fileRelationWays, m)),
+							executor);
+
+			CompletableFuture<?> additionalNodes = members
+					.thenCombine(filteredWayNodeIds, (m, ids) -> {
+						m.nodeIds.addAll(ids);
+						return m;
+					}).thenCombine(relationWayNodeIds, (m, ids) -> {
+						m.nodeIds.addAll(ids);
+						return m.nodeIds;
+					}).thenApplyAsync(unchecked(nodeIds -> {
+						logger.info("Extracting additional nodes...");
+						try (ImportPhase phase = metrics
+								.start("extract-additional-nodes")) {
+							filter(fileNodes, fileAdditionalNodes,
+									EntityType.Node, nodeIds, phase);
+						}
+						return null;
+					}), executor);
+
+			join(additionalNodes);
+		} finally {
+			executor.shutdownNow();
+		}
+
+		logger.info("Merging...");
+
+		List<IntermediateFile> files = new ArrayList<>();
+		files.add(fileNodesFiltered);
+		files.add(fileAdditionalNodes);
+		files.add(fileWaysFiltered);
+		files.add(fileRelationWays);
+		files.add(fileRelationsFiltered);
+
+		List<IntermediateFile.Input> inputs = new ArrayList<>();
+		List<OsmIterator> iterators = new ArrayList<>();
+		for (IntermediateFile file : files) {
+			IntermediateFile.Input input = file.createInput(useMetadata);
+			inputs.add(input);
+			iterators.add(input.getIterator());
+		}
+
+		OutputStream os = StreamUtil.bufferedOutputStream(output.getPath());
+		OsmOutputStream output = OsmIoUtils.setupOsmOutput(os,
+				outputConfigTarget);
+
+		try (ImportPhase phase = metrics.start("merge")) {
+			SortedMerge merge = new SortedMerge(output, iterators);
+			merge.run();
+		}
+
+		for (IntermediateFile.Input input : inputs) {
+			input.close();
+		}
+	}
+
+	private static class MemberIds
+	{
 
-		OsmFileInput inputFilteredRelations = new OsmFileInput(
-				fileRelationsFiltered);
+		private TLongSet nodeIds = new TLongHashSet();
+		private TLongSet wayIds = new TLongHashSet();
 
+	}
+
+	private RelationGraph buildRelationGraph() throws IOException
+	{
 		logger.info("Building relation graph...");
-		RelationGraph relationGraph = new RelationGraph(true, false);
-		OsmIteratorInput relationIterator = new OsmFileInput(fileRelations)
-				.createIterator(false, false);
-		relationGraph.build(relationIterator.getIterator());
-		relationIterator.close();
+		try (ImportPhase phase = metrics.start("relation-graph")) {
+			RelationGraph relationGraph = new RelationGraph(true, false);
+			IntermediateFile.Input relationIterator = fileRelations
+					.createInput(false);
+			relationGraph.build(relationIterator.getIterator());
+			relationIterator.close();
+			return relationGraph;
+		}
+	}
 
-		logger.info("Selecting additional relations...");
+	private InMemoryListDataSet readFilteredRelations() throws IOException
+	{
+		try (ImportPhase phase = metrics.start("read-filtered-relations")) {
+			IntermediateFile.Input iterator = fileRelationsFiltered
+					.createInput(useMetadata);
+			InMemoryListDataSet relations = ListDataSetLoader
+					.read(iterator.getIterator(), true, true, true);
+			iterator.close();
+			phase.addEntities(relations.getRelations().size());
+			return relations;
+		}
+	}
 
-		InMemoryListDataSet relations = ListDataSetLoader.read(
-				inputFilteredRelations.createIterator(true, useMetadata), true,
-				true, true);
+	private TLongSet selectRelations(RelationGraph relationGraph,
+			InMemoryListDataSet relations)
+	{
+		logger.info("Selecting additional relations...");
 
 		TLongSet all = new TLongHashSet();
 		Graph<Long> graph = relationGraph.getGraph();
@@ -136,77 +284,159 @@ public class Collector
 		logger.info("Original number of relations: "
 				+ relations.getRelations().size());
 		logger.info("Final number of relations: " + all.size());
+		return all;
+	}
 
+	/*
+	 * Extract the extended relation set and collect the ids of their members
+	 * in the same pass.
+	 */
+	private MemberIds extractRelations(TLongSet ids) throws IOException
+	{
 		logger.info("Extracting extended relation set...");
-		filter(fileRelations, fileRelationsFiltered, EntityType.Relation, all);
 
-		logger.info("Collecting relation member ids...");
-		TLongSet nodeIds = new TLongHashSet();
-		TLongSet wayIds = new TLongHashSet();
+		MemberIds members = new MemberIds();
 
-		collectMemberIds(inputFilteredRelations, nodeIds, wayIds);
+		try (ImportPhase phase = metrics.start("extract-relations")) {
+			IntermediateFile.Input iterator = fileRelations
+					.createInput(useMetadata);
+			IntermediateFile.Output output = fileRelationsFiltered
+					.createOutput(outputConfigIntermediate);
 
-		logger.info("Extracting relation ways...");
-		filter(fileWays, fileRelationWays, EntityType.Way, wayIds);
+			for (OsmRelation relation : new RelationIterator(
+					iterator.getIterator())) {
+				phase.addEntity();
+				if (!ids.contains(relation.getId())) {
+					continue;
+				}
+				output.getOutput().write(relation);
+				for (OsmRelationMember member : OsmModelUtil
+						.membersAsList(relation)) {
+					if (member.getType() == EntityType.Node) {
+						members.nodeIds.add(member.getId());
+					} else if (member.getType() == EntityType.Way) {
+						members.wayIds.add(member.getId());
+					}
+				}
+			}
 
-		logger.info("Extracting way nodes...");
-		collectWayNodeIds(new OsmFileInput(fileWaysFiltered), nodeIds);
-		collectWayNodeIds(new OsmFileInput(fileRelationWays), nodeIds);
+			output.close();
+			iterator.close();
+		}
+		return members;
+	}
 
-		logger.info("Extracting additional nodes...");
-		filter(fileNodes, fileAdditionalNodes, EntityType.Node, nodeIds);
+	/*
+	 * Extract the ways referenced by relations and collect their node ids in
+	 * the same pass.
+	 */
+	private TLongSet extractRelationWays(IntermediateFile fileRelationWays,
+			MemberIds members) throws IOException
+	{
+		logger.info("Extracting relation ways...");
 
-		logger.info("Merging...");
+		TLongSet nodeIds = new TLongHashSet();
 
-		List<OsmFile> files = new ArrayList<>();
-		files.add(fileNodesFiltered);
-		files.add(fileAdditionalNodes);
-		files.add(fileWaysFiltered);
-		files.add(fileRelationWays);
-		files.add(fileRelationsFiltered);
+		try (ImportPhase phase = metrics.start("extract-relation-ways")) {
+			IntermediateFile.Input iterator = fileWays.createInput(useMetadata);
+			IntermediateFile.Output output = fileRelationWays
+					.createOutput(outputConfigIntermediate);
 
-		List<OsmIterator> iterators = new ArrayList<>();
-		for (OsmFile file : files) {
-			OsmIteratorInput input = new OsmFileInput(file).createIterator(true,
-					useMetadata);
-			iterators.add(input.getIterator());
+			for (OsmWay way : new WayIterator(iterator.getIterator())) {
+				phase.addEntity();
+				if (members.wayIds.contains(way.getId())) {
+					output.getOutput().write(way);
+					nodeIds.addAll(OsmModelUtil.nodesAsList(way));
+				}
+			}
+
+			output.close();
+			iterator.close();
 		}
+		return nodeIds;
+	}
 
-		OutputStream os = StreamUtil.bufferedOutputStream(output.getPath());
-		OsmOutputStream output = OsmIoUtils.setupOsmOutput(os,
-				outputConfigTarget);
+	private static interface IOFunction<T, R>
+	{
+
+		public R apply(T t) throws IOException;
 
-		SortedMerge merge = new SortedMerge(output, iterators);
-		merge.run();
 	}
 
-	private void filter(OsmFile fileInput, OsmFile fileOutput, EntityType type,
-			TLongSet ids) throws IOException
+	private static interface IOSupplier<T>
 	{
-		OsmIteratorInput iterator = new OsmFileInput(fileInput)
-				.createIterator(true, useMetadata);
 
-		OutputStream os = StreamUtil.bufferedOutputStream(fileOutput.getPath());
-		OsmOutputStream output = OsmIoUtils.setupOsmOutput(os,
-				outputConfigIntermediate);
+		public T get() throws IOException;
+
+	}
+
+	private static <T> CompletableFuture<T> async(ExecutorService executor,
+			IOSupplier<T> supplier)
+	{
+		return CompletableFuture.supplyAsync(() -> {
+			try {
+				return supplier.get();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}, executor);
+	}
+
+	private static <T, R> Function<T, R> unchecked(IOFunction<T, R> function)
+	{
+		return t -> {
+			try {
+				return function.apply(t);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		};
+	}
+
+	private static <T> T join(CompletableFuture<T> future) throws IOException
+	{
+		try {
+			return future.join();
+		} catch (CompletionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof UncheckedIOException) {
+				throw ((UncheckedIOException) cause).getCause();
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new IOException(cause);
+		}
+	}
+
+	private void filter(IntermediateFile fileInput,
+			IntermediateFile fileOutput, EntityType type, TLongSet ids,
+			ImportPhase phase) throws IOException
+	{
+		IntermediateFile.Input input = fileInput.createInput(useMetadata);
+		IntermediateFile.Output output = fileOutput
+				.createOutput(outputConfigIntermediate);
 
 		if (type == EntityType.Node) {
-			filterNodes(iterator.getIterator(), output, ids);
+			filterNodes(input.getIterator(), output.getOutput(), ids,
+					phase);
 		} else if (type == EntityType.Way) {
-			filterWays(iterator.getIterator(), output, ids);
+			filterWays(input.getIterator(), output.getOutput(), ids,
+					phase);
 		} else if (type == EntityType.Relation) {
-			filterRelations(iterator.getIterator(), output, ids);
+			filterRelations(input.getIterator(), output.getOutput(), ids,
+					phase);
 		}
 
-		output.complete();
-		os.close();
-		iterator.close();
+		output.close();
+		input.close();
 	}
 
 	private void filterNodes(OsmIterator iterator, OsmOutputStream output,
-			TLongSet ids) throws IOException
+			TLongSet ids, ImportPhase phase) throws IOException
 	{
 		for (OsmNode node : new NodeIterator(iterator)) {
+			phase.addEntity();
 			if (ids.contains(node.getId())) {
 				output.write(node);
 			}
@@ -214,9 +444,10 @@ public class Collector
 	}
 
 	private void filterWays(OsmIterator iterator, OsmOutputStream output,
-			TLongSet ids) throws IOException
+			TLongSet ids, ImportPhase phase) throws IOException
 	{
 		for (OsmWay way : new WayIterator(iterator)) {
+			phase.addEntity();
 			if (ids.contains(way.getId())) {
 				output.write(way);
 			}
@@ -224,41 +455,29 @@ public class Collector
 	}
 
 	private void filterRelations(OsmIterator iterator, OsmOutputStream output,
-			TLongSet ids) throws IOException
+			TLongSet ids, ImportPhase phase) throws IOException
 	{
 		for (OsmRelation relation : new RelationIterator(iterator)) {
+			phase.addEntity();
 			if (ids.contains(relation.getId())) {
 				output.write(relation);
 			}
 		}
 	}
 
-	private void collectMemberIds(OsmFileInput input, TLongSet nodeIds,
-			TLongSet wayIds) throws IOException
+	private TLongSet collectWayNodeIds(IntermediateFile file) throws IOException
 	{
-		OsmIteratorInput iterator = input.createIterator(false, false);
-		for (OsmRelation relation : new RelationIterator(
-				iterator.getIterator())) {
-			for (OsmRelationMember member : OsmModelUtil
-					.membersAsList(relation)) {
-				if (member.getType() == EntityType.Node) {
-					nodeIds.add(member.getId());
-				} else if (member.getType() == EntityType.Way) {
-					wayIds.add(member.getId());
-				}
+		logger.info("Extracting way nodes...");
+		try (ImportPhase phase = metrics.start("way-nodes")) {
+			TLongSet nodeIds = new TLongHashSet();
+			IntermediateFile.Input iterator = file.createInput(false);
+			for (OsmWay way : new WayIterator(iterator.getIterator())) {
+				phase.addEntity();
+				nodeIds.addAll(OsmModelUtil.nodesAsList(way));
 			}
+			iterator.close();
+			return nodeIds;
 		}
-		iterator.close();
-	}
-
-	private void collectWayNodeIds(OsmFileInput input, TLongSet nodeIds)
-			throws IOException
-	{
-		OsmIteratorInput iterator = input.createIterator(false, false);
-		for (OsmWay way : new WayIterator(iterator.getIterator())) {
-			nodeIds.addAll(OsmModelUtil.nodesAsList(way));
-		}
-		iterator.close();
 	}
 
 }
@@ -0,0 +1,139 @@
+// Copyright 2019 Sebastian Kuerten
+//
+// This file is part of OpenMetroMaps.
+//
+// OpenMetroMaps is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Lesser General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// OpenMetroMaps is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with OpenMetroMaps. If not, see <http://www.gnu.org/licenses/>.
+
+package org.openmetromaps.osm;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A growable sequence of bytes stored in fixed-size direct (off-heap) byte
+ * buffers. Data is written once through {@link #outputStream()} and may then
+ * be read any number of times, also concurrently, through
+ * {@link #inputStream()}.
+ */
+class DirectByteBlocks
+{
+
+	private static final int BLOCK_SIZE = 1024 * 1024;
+
+	private List<ByteBuffer> blocks = new ArrayList<>();
+
+	void clear()
+	{
+		blocks = new ArrayList<>();
+	}
+
+	OutputStream outputStream()
+	{
+		return new OutputStream() {
+
+			private ByteBuffer current = null;
+
+			@Override
+			public void write(int b)
+			{
+				if (current == null || !current.hasRemaining()) {
+					next();
+				}
+				current.put((byte) b);
+			}
+
+			@Override
+			public void write(byte[] b, int off, int len)
+			{
+				while (len > 0) {
+					if (current == null || !current.hasRemaining()) {
+						next();
+					}
+					int n = Math.min(len, current.remaining());
+					current.put(b, off, n);
+					off += n;
+					len -= n;
+				}
+			}
+
+			private void next()
+			{
+				current = ByteBuffer.allocateDirect(BLOCK_SIZE);
+				blocks.add(current);
+			}
+
+		};
+	}
+
+	InputStream inputStream()
+	{
+		// read through independent views of the written parts of the blocks
+		List<ByteBuffer> views = new ArrayList<>(blocks.size());
+		for (ByteBuffer block : blocks) {
+			ByteBuffer view = block.duplicate();
+			view.flip();
+			views.add(view);
+		}
+
+		return new InputStream() {
+
+			private int index = 0;
+
+			private ByteBuffer current()
+			{
+				while (index < views.size() && !views.get(index).hasRemaining()) {
+					index++;
+				}
+				return index < views.size() ? views.get(index) : null;
+			}
+
+			@Override
+			public int read()
+			{
+				ByteBuffer current = current();
+				if (current == null) {
+					return -1;
+				}
+				return current.get() & 0xff;
+			}
+
+			@Override
+			public int read(byte[] b, int off, int len)
+			{
+				if (len == 0) {
+					return 0;
+				}
+				ByteBuffer current = current();
+				if (current == null) {
+					return -1;
+				}
+				int n = Math.min(len, current.remaining());
+				current.get(b, off, n);
+				return n;
+			}
+
+			@Override
+			public int available()
+			{
+				ByteBuffer current = current();
+				return current == null ? 0 : current.remaining();
+			}
+
+		};
+	}
+
+}
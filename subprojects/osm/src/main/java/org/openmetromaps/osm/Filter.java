@@ -18,32 +18,32 @@
 package org.openmetromaps.osm;
 
 import java.io.IOException;
-import java.io.OutputStream;
-import java.nio.file.Path;
+import java.nio.file.Files;
 
-import org.apache.commons.io.FileUtils;
+import org.openmetromaps.misc.ImportMetrics;
+import org.openmetromaps.misc.ImportPhase;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.google.common.io.Files;
+import com.slimjars.dist.gnu.trove.set.TLongSet;
+import com.slimjars.dist.gnu.trove.set.hash.TLongHashSet;
 
-import de.topobyte.melon.io.StreamUtil;
 import de.topobyte.osm4j.core.access.OsmIterator;
 import de.topobyte.osm4j.core.access.OsmIteratorInput;
 import de.topobyte.osm4j.core.access.OsmOutputStream;
+import de.topobyte.osm4j.core.model.iface.EntityContainer;
 import de.topobyte.osm4j.core.model.iface.EntityType;
 import de.topobyte.osm4j.core.model.iface.OsmNode;
 import de.topobyte.osm4j.core.model.iface.OsmRelation;
 import de.topobyte.osm4j.core.model.iface.OsmWay;
+import de.topobyte.osm4j.core.model.util.OsmModelUtil;
 import de.topobyte.osm4j.core.util.NodeIterator;
 import de.topobyte.osm4j.core.util.RelationIterator;
 import de.topobyte.osm4j.core.util.WayIterator;
 import de.topobyte.osm4j.utils.FileFormat;
 import de.topobyte.osm4j.utils.OsmFile;
 import de.topobyte.osm4j.utils.OsmFileInput;
-import de.topobyte.osm4j.utils.OsmIoUtils;
 import de.topobyte.osm4j.utils.OsmOutputConfig;
-import de.topobyte.osm4j.utils.split.EntitySplitter;
 
 /**
  * This is a pretty nice fully-fledged filter base class that could be moved to
@@ -68,6 +68,10 @@ public abstract class Filter
 	private OsmOutputConfig outputConfigIntermediate;
 	private OsmOutputConfig outputConfigTarget;
 
+	private boolean singlePass = false;
+	private IntermediateStorageConfig storageConfig = new IntermediateStorageConfig();
+	private ImportMetrics metrics = new ImportMetrics("filter");
+
 	public Filter(OsmFile input, OsmFile output, OsmOutputConfig outputConfig)
 	{
 		this.input = input;
@@ -87,101 +91,273 @@ public abstract class Filter
 
 	protected abstract boolean take(OsmRelation relation);
 
+	public boolean isSinglePass()
+	{
+		return singlePass;
+	}
+
+	/**
+	 * In single pass mode, the input is split into one file per entity type
+	 * and filtered at the same time, instead of splitting first and reading
+	 * the split files again for filtering. The node ids of the selected ways
+	 * are collected in the same pass and handed to the {@link Collector}, so
+	 * that it does not need to read the filtered ways either. This requires the
+	 * input to be sorted by type (nodes, ways, relations) as is standard for
+	 * OSM files.
+	 * 
+	 * The collector still reads the split files for resolving references,
+	 * since the referenced entities are only known once the selected
+	 * relations have been read: the relations twice (for the relation graph
+	 * and for extracting relations), the ways and the nodes once each.
+	 */
+	public void setSinglePass(boolean singlePass)
+	{
+		this.singlePass = singlePass;
+	}
+
+	public IntermediateStorageConfig getIntermediateStorageConfig()
+	{
+		return storageConfig;
+	}
+
+	/**
+	 * Configure where intermediate files are stored, i.e. in which directory,
+	 * whether compressed or in memory.
+	 */
+	public void setIntermediateStorageConfig(
+			IntermediateStorageConfig storageConfig)
+	{
+		this.storageConfig = storageConfig;
+	}
+
+	public ImportMetrics getMetrics()
+	{
+		return metrics;
+	}
+
+	/**
+	 * Set the metrics to record the phases of filtering in.
+	 */
+	public void setMetrics(ImportMetrics metrics)
+	{
+		this.metrics = metrics;
+	}
+
 	public void execute() throws IOException
 	{
-		Path dir = Files.createTempDir().toPath();
+		IntermediateStorage storage = IntermediateStorage.create(storageConfig,
+				input);
+		logger.info("Intermediate storage: " + storage);
+
+		try {
+			execute(storage);
+		} finally {
+			logger.info("Deleting intermediate files...");
+			storage.close();
+		}
+	}
 
+	private void execute(IntermediateStorage storage) throws IOException
+	{
 		// These are the original entities from the input, for faster access
 		// store them in temporary files, one per entity type.
-		OsmFile fileNodes = new OsmFile(dir.resolve("nodes.tbo"),
-				formatIntermediate);
-		OsmFile fileWays = new OsmFile(dir.resolve("ways.tbo"),
-				formatIntermediate);
-		OsmFile fileRelations = new OsmFile(dir.resolve("relations.tbo"),
-				formatIntermediate);
+		IntermediateFile fileNodes = storage.create("nodes");
+		IntermediateFile fileWays = storage.create("ways");
+		IntermediateFile fileRelations = storage.create("relations");
 
 		// These store the entities selected with the take() methods.
-		OsmFile fileNodesFiltered = new OsmFile(
-				dir.resolve("nodes-filtered.tbo"), formatIntermediate);
-		OsmFile fileWaysFiltered = new OsmFile(dir.resolve("ways-filtered.tbo"),
-				formatIntermediate);
-		OsmFile fileRelationsFiltered = new OsmFile(
-				dir.resolve("relations-filtered.tbo"), formatIntermediate);
-
-		logger.info("Splitting to separate files...");
-
-		OsmIteratorInput iterator = new OsmFileInput(input).createIterator(true,
-				useMetadata);
-		EntitySplitter splitter = new EntitySplitter(iterator.getIterator(),
-				fileNodes.getPath(), fileWays.getPath(),
-				fileRelations.getPath(), outputConfigIntermediate);
-		splitter.execute();
-		iterator.close();
+		IntermediateFile fileNodesFiltered = storage.create("nodes-filtered");
+		IntermediateFile fileWaysFiltered = storage.create("ways-filtered");
+		IntermediateFile fileRelationsFiltered = storage
+				.create("relations-filtered");
+
+		TLongSet wayNodeIds = null;
+
+		if (singlePass) {
+			logger.info("Splitting and filtering in a single pass...");
+
+			wayNodeIds = new TLongHashSet();
+			try (ImportPhase phase = metrics.start("split-and-filter")) {
+				phase.addBytes(Files.size(input.getPath()));
+				splitAndFilter(fileNodes, fileWays, fileRelations,
+						fileNodesFiltered, fileWaysFiltered,
+						fileRelationsFiltered, wayNodeIds, phase);
+			}
+		} else {
+			logger.info("Splitting to separate files...");
+
+			try (ImportPhase phase = metrics.start("split")) {
+				phase.addBytes(Files.size(input.getPath()));
+				OsmIteratorInput iterator = new OsmFileInput(input)
+						.createIterator(true, useMetadata);
+				IntermediateFile.split(iterator.getIterator(), fileNodes,
+						fileWays, fileRelations, outputConfigIntermediate,
+						phase);
+				iterator.close();
+			}
 
-		logger.info("Filtering...");
+			logger.info("Filtering...");
 
-		filter(fileNodes, fileNodesFiltered, EntityType.Node);
-		filter(fileWays, fileWaysFiltered, EntityType.Way);
-		filter(fileRelations, fileRelationsFiltered, EntityType.Relation);
+			try (ImportPhase phase = metrics.start("filter")) {
+				filter(fileNodes, fileNodesFiltered, EntityType.Node, phase);
+				filter(fileWays, fileWaysFiltered, EntityType.Way, phase);
+				filter(fileRelations, fileRelationsFiltered,
+						EntityType.Relation, phase);
+			}
+		}
 
 		logger.info("Collecting references...");
 
 		Collector collector = new Collector(fileNodes, fileWays, fileRelations,
 				fileNodesFiltered, fileWaysFiltered, fileRelationsFiltered,
 				output, outputConfigTarget);
-		collector.execute(dir);
+		collector.setWayNodeIds(wayNodeIds);
+		collector.setMetrics(metrics);
+		collector.execute(storage);
+	}
+
+	/*
+	 * Write each entity to the file of its type and, if selected, to the
+	 * filtered file of its type. The node ids of selected ways are collected
+	 * on the way, so that the collector does not need to read the filtered
+	 * ways again. Outputs of a type are completed as soon as the input moves
+	 * on to the next type.
+	 */
+	private void splitAndFilter(IntermediateFile fileNodes,
+			IntermediateFile fileWays, IntermediateFile fileRelations,
+			IntermediateFile fileNodesFiltered,
+			IntermediateFile fileWaysFiltered,
+			IntermediateFile fileRelationsFiltered, TLongSet wayNodeIds,
+			ImportPhase phase) throws IOException
+	{
+		OsmIteratorInput iterator = new OsmFileInput(input).createIterator(true,
+				useMetadata);
+
+		EntityType[] types = { EntityType.Node, EntityType.Way,
+				EntityType.Relation };
+		IntermediateFile[] files = { fileNodes, fileWays, fileRelations };
+		IntermediateFile[] filesFiltered = { fileNodesFiltered,
+				fileWaysFiltered, fileRelationsFiltered };
+
+		int current = 0;
+		IntermediateFile.Output all = files[0]
+				.createOutput(outputConfigIntermediate);
+		IntermediateFile.Output filtered = filesFiltered[0]
+				.createOutput(outputConfigIntermediate);
+
+		for (EntityContainer container : iterator.getIterator()) {
+			phase.addEntity();
+			EntityType type = container.getType();
+			int index = index(type);
+			if (index < current) {
+				throw new IOException(String.format(
+						"Input is not sorted, found %s after %s", type,
+						types[current]));
+			}
+			while (index > current) {
+				all.close();
+				filtered.close();
+				current++;
+				all = files[current].createOutput(outputConfigIntermediate);
+				filtered = filesFiltered[current]
+						.createOutput(outputConfigIntermediate);
+			}
+
+			switch (type) {
+			case Node:
+				OsmNode node = (OsmNode) container.getEntity();
+				all.getOutput().write(node);
+				if (take(node)) {
+					filtered.getOutput().write(node);
+				}
+				break;
+			case Way:
+				OsmWay way = (OsmWay) container.getEntity();
+				all.getOutput().write(way);
+				if (take(way)) {
+					filtered.getOutput().write(way);
+					wayNodeIds.addAll(OsmModelUtil.nodesAsList(way));
+				}
+				break;
+			case Relation:
+				OsmRelation relation = (OsmRelation) container.getEntity();
+				all.getOutput().write(relation);
+				if (take(relation)) {
+					filtered.getOutput().write(relation);
+				}
+				break;
+			}
+		}
 
-		logger.info("Deleting intermediate files...");
-		FileUtils.deleteDirectory(dir.toFile());
+		all.close();
+		filtered.close();
+		// create the files of types not present in the input
+		while (++current < types.length) {
+			files[current].createOutput(outputConfigIntermediate).close();
+			filesFiltered[current].createOutput(outputConfigIntermediate)
+					.close();
+		}
+
+		iterator.close();
 	}
 
-	private void filter(OsmFile fileInput, OsmFile fileOutput, EntityType type)
-			throws IOException
+	private static int index(EntityType type)
 	{
-		OsmIteratorInput iterator = new OsmFileInput(fileInput)
-				.createIterator(true, useMetadata);
+		if (type == EntityType.Way) {
+			return 1;
+		} else if (type == EntityType.Relation) {
+			return 2;
+		}
+		return 0;
+	}
 
-		OutputStream os = StreamUtil.bufferedOutputStream(fileOutput.getPath());
-		OsmOutputStream output = OsmIoUtils.setupOsmOutput(os,
-				outputConfigIntermediate);
+	private void filter(IntermediateFile fileInput,
+			IntermediateFile fileOutput, EntityType type, ImportPhase phase)
+			throws IOException
+	{
+		IntermediateFile.Input input = fileInput.createInput(useMetadata);
+		IntermediateFile.Output output = fileOutput
+				.createOutput(outputConfigIntermediate);
 
 		if (type == EntityType.Node) {
-			filterNodes(iterator.getIterator(), output);
+			filterNodes(input.getIterator(), output.getOutput(), phase);
 		} else if (type == EntityType.Way) {
-			filterWays(iterator.getIterator(), output);
+			filterWays(input.getIterator(), output.getOutput(), phase);
 		} else if (type == EntityType.Relation) {
-			filterRelations(iterator.getIterator(), output);
+			filterRelations(input.getIterator(), output.getOutput(), phase);
 		}
 
-		output.complete();
-		os.close();
-		iterator.close();
+		output.close();
+		input.close();
 	}
 
-	private void filterNodes(OsmIterator iterator, OsmOutputStream output)
-			throws IOException
+	private void filterNodes(OsmIterator iterator, OsmOutputStream output,
+			ImportPhase phase) throws IOException
 	{
 		for (OsmNode node : new NodeIterator(iterator)) {
+			phase.addEntity();
 			if (take(node)) {
 				output.write(node);
 			}
 		}
 	}
 
-	private void filterWays(OsmIterator iterator, OsmOutputStream output)
-			throws IOException
+	private void filterWays(OsmIterator iterator, OsmOutputStream output,
+			ImportPhase phase) throws IOException
 	{
 		for (OsmWay way : new WayIterator(iterator)) {
+			phase.addEntity();
 			if (take(way)) {
 				output.write(way);
 			}
 		}
 	}
 
-	private void filterRelations(OsmIterator iterator, OsmOutputStream output)
-			throws IOException
+	private void filterRelations(OsmIterator iterator, OsmOutputStream output,
+			ImportPhase phase) throws IOException
 	{
 		for (OsmRelation relation : new RelationIterator(iterator)) {
+			phase.addEntity();
 			if (take(relation)) {
 				output.write(relation);
 			}
@@ -19,16 +19,15 @@ package org.openmetromaps.osm;
 
 import java.io.IOException;
 import java.io.OutputStream;
-import java.nio.file.Path;
+import java.nio.file.Files;
 
-import org.apache.commons.io.FileUtils;
+import org.openmetromaps.misc.ImportMetrics;
+import org.openmetromaps.misc.ImportPhase;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.google.common.io.Files;
 import com.vividsolutions.jts.geom.Geometry;
 
-import de.topobyte.melon.io.StreamUtil;
 import de.topobyte.osm4j.core.access.OsmIteratorInput;
 import de.topobyte.osm4j.core.access.OsmOutputStream;
 import de.topobyte.osm4j.utils.FileFormat;
@@ -36,8 +35,6 @@ import de.topobyte.osm4j.utils.OsmFile;
 import de.topobyte.osm4j.utils.OsmFileInput;
 import de.topobyte.osm4j.utils.OsmIoUtils;
 import de.topobyte.osm4j.utils.OsmOutputConfig;
-import de.topobyte.osm4j.utils.areafilter.RegionFilter;
-import de.topobyte.osm4j.utils.split.EntitySplitter;
 
 public class FilterRegion
 {
@@ -54,6 +51,13 @@ public class FilterRegion
 	private OsmOutputConfig outputConfigTarget;
 	private OsmOutputConfig outputConfigIntermediate;
 
+	private IntermediateStorageConfig storageConfig = new IntermediateStorageConfig();
+
+	private int gridSize = 256;
+	private int numThreads = Runtime.getRuntime().availableProcessors();
+
+	private ImportMetrics metrics = new ImportMetrics("filter-region");
+
 	public FilterRegion(OsmFile input, OsmFile output, Geometry region,
 			OsmOutputConfig outputConfig)
 	{
@@ -69,76 +73,138 @@ public class FilterRegion
 				useMetadata);
 	}
 
+	public IntermediateStorageConfig getIntermediateStorageConfig()
+	{
+		return storageConfig;
+	}
+
+	public void setIntermediateStorageConfig(
+			IntermediateStorageConfig storageConfig)
+	{
+		this.storageConfig = storageConfig;
+	}
+
+	public int getGridSize()
+	{
+		return gridSize;
+	}
+
+	/**
+	 * Set the number of rows and columns of the grid used to avoid exact point
+	 * in polygon tests for nodes not close to the region's boundary.
+	 */
+	public void setGridSize(int gridSize)
+	{
+		this.gridSize = gridSize;
+	}
+
+	public int getNumThreads()
+	{
+		return numThreads;
+	}
+
+	public void setNumThreads(int numThreads)
+	{
+		this.numThreads = numThreads;
+	}
+
+	public ImportMetrics getMetrics()
+	{
+		return metrics;
+	}
+
+	public void setMetrics(ImportMetrics metrics)
+	{
+		this.metrics = metrics;
+	}
+
 	public void execute() throws IOException
 	{
-		Path dir = Files.createTempDir().toPath();
+		IntermediateStorage storage = IntermediateStorage.create(storageConfig,
+				input);
+		logger.info("Intermediate storage: " + storage);
+
+		try {
+			execute(storage);
+		} finally {
+			logger.info("Deleting intermediate files...");
+			storage.close();
+		}
+	}
 
-		OsmFile fileFiltered = new OsmFile(dir.resolve("filtered.tbo"),
-				formatIntermediate);
+	private void execute(IntermediateStorage storage) throws IOException
+	{
+		IntermediateFile fileFiltered = storage.create("filtered");
 
 		// These are the original entities from the input, for faster access
 		// store them in temporary files, one per entity type.
-		OsmFile fileNodes = new OsmFile(dir.resolve("nodes.tbo"),
-				formatIntermediate);
-		OsmFile fileWays = new OsmFile(dir.resolve("ways.tbo"),
-				formatIntermediate);
-		OsmFile fileRelations = new OsmFile(dir.resolve("relations.tbo"),
-				formatIntermediate);
+		IntermediateFile fileNodes = storage.create("nodes");
+		IntermediateFile fileWays = storage.create("ways");
+		IntermediateFile fileRelations = storage.create("relations");
 
 		// These are the filtered entities, for faster access store them in
 		// temporary files, one per entity type.
-		OsmFile fileNodesFiltered = new OsmFile(
-				dir.resolve("nodes-filtered.tbo"), formatIntermediate);
-		OsmFile fileWaysFiltered = new OsmFile(dir.resolve("ways-filtered.tbo"),
-				formatIntermediate);
-		OsmFile fileRelationsFiltered = new OsmFile(
-				dir.resolve("relations-filtered.tbo"), formatIntermediate);
+		IntermediateFile fileNodesFiltered = storage.create("nodes-filtered");
+		IntermediateFile fileWaysFiltered = storage.create("ways-filtered");
+		IntermediateFile fileRelationsFiltered = storage
+				.create("relations-filtered");
 
 		logger.info("Filtering by area...");
 
-		OutputStream os = StreamUtil
-				.bufferedOutputStream(fileFiltered.getPath());
-		OsmOutputStream outputFiltered = OsmIoUtils.setupOsmOutput(os,
-				outputConfigIntermediate);
+		try (ImportPhase phase = metrics.start("filter-region");
+				OutputStream os = fileFiltered.openOutputStream()) {
+			phase.addBytes(Files.size(input.getPath()));
 
-		OsmIteratorInput iterator = new OsmFileInput(input).createIterator(true,
-				useMetadata);
+			OsmOutputStream outputFiltered = OsmIoUtils.setupOsmOutput(os,
+					outputConfigIntermediate);
 
-		RegionFilter filter = new RegionFilter(outputFiltered,
-				iterator.getIterator(), region, false);
-		filter.run();
+			OsmIteratorInput iterator = new OsmFileInput(input)
+					.createIterator(true, useMetadata);
+			try {
+				GridRegionFilter filter = new GridRegionFilter(outputFiltered,
+						iterator.getIterator(), region, gridSize, numThreads);
+				filter.run(phase);
+			} finally {
+				iterator.close();
+			}
+		}
 
 		logger.info("Splitting original to separate files...");
 
-		OsmIteratorInput iteratorOriginal = new OsmFileInput(input)
-				.createIterator(true, useMetadata);
-		EntitySplitter splitterOriginal = new EntitySplitter(
-				iteratorOriginal.getIterator(), fileNodes.getPath(),
-				fileWays.getPath(), fileRelations.getPath(),
-				outputConfigIntermediate);
-		splitterOriginal.execute();
-		iteratorOriginal.close();
+		try (ImportPhase phase = metrics.start("split-original")) {
+			phase.addBytes(Files.size(input.getPath()));
+			OsmIteratorInput iteratorOriginal = new OsmFileInput(input)
+					.createIterator(true, useMetadata);
+			try {
+				IntermediateFile.split(iteratorOriginal.getIterator(),
+						fileNodes, fileWays, fileRelations,
+						outputConfigIntermediate, phase);
+			} finally {
+				iteratorOriginal.close();
+			}
+		}
 
 		logger.info("Splitting filtered to separate files...");
 
-		OsmIteratorInput iteratorFiltered = new OsmFileInput(fileFiltered)
-				.createIterator(true, useMetadata);
-		EntitySplitter splitterFiltered = new EntitySplitter(
-				iteratorFiltered.getIterator(), fileNodesFiltered.getPath(),
-				fileWaysFiltered.getPath(), fileRelationsFiltered.getPath(),
-				outputConfigIntermediate);
-		splitterFiltered.execute();
-		iteratorFiltered.close();
+		try (ImportPhase phase = metrics.start("split-filtered")) {
+			IntermediateFile.Input iteratorFiltered = fileFiltered
+					.createInput(useMetadata);
+			try {
+				IntermediateFile.split(iteratorFiltered.getIterator(),
+						fileNodesFiltered, fileWaysFiltered,
+						fileRelationsFiltered, outputConfigIntermediate, phase);
+			} finally {
+				iteratorFiltered.close();
+			}
+		}
 
 		logger.info("Collecting references...");
 
 		Collector collector = new Collector(fileNodes, fileWays, fileRelations,
 				fileNodesFiltered, fileWaysFiltered, fileRelationsFiltered,
 				output, outputConfigTarget);
-		collector.execute(dir);
-
-		logger.info("Deleting intermediate files...");
-		FileUtils.deleteDirectory(dir.toFile());
+		collector.setMetrics(metrics);
+		collector.execute(storage);
 	}
 
 }
@@ -0,0 +1,302 @@
+// Copyright 2019 Sebastian Kuerten
+//
+// This file is part of OpenMetroMaps.
+//
+// OpenMetroMaps is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Lesser General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// OpenMetroMaps is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with OpenMetroMaps. If not, see <http://www.gnu.org/licenses/>.
+
+package org.openmetromaps.osm;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.openmetromaps.misc.ImportPhase;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.slimjars.dist.gnu.trove.set.TLongSet;
+import com.slimjars.dist.gnu.trove.set.hash.TLongHashSet;
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.prep.PreparedGeometry;
+import com.vividsolutions.jts.geom.prep.PreparedGeometryFactory;
+
+import de.topobyte.osm4j.core.access.OsmIterator;
+import de.topobyte.osm4j.core.access.OsmOutputStream;
+import de.topobyte.osm4j.core.model.iface.EntityContainer;
+import de.topobyte.osm4j.core.model.iface.EntityType;
+import de.topobyte.osm4j.core.model.iface.OsmNode;
+import de.topobyte.osm4j.core.model.iface.OsmRelation;
+import de.topobyte.osm4j.core.model.iface.OsmRelationMember;
+import de.topobyte.osm4j.core.model.iface.OsmWay;
+
+/**
+ * Extracts the nodes within a region plus the ways and relations referencing
+ * them, like osm4j's RegionFilter, but avoids most exact point-in-polygon
+ * tests: nodes outside the region's envelope are rejected right away, the
+ * others are looked up in a grid of cells that have been classified as
+ * inside, outside or on the boundary of the region. Only nodes in boundary
+ * cells are tested against the (prepared) region. Nodes are processed in
+ * batches that are partitioned across threads.
+ */
+public class GridRegionFilter
+{
+
+	final static Logger logger = LoggerFactory
+			.getLogger(GridRegionFilter.class);
+
+	private static final byte OUTSIDE = 0;
+	private static final byte INSIDE = 1;
+	private static final byte BOUNDARY = 2;
+
+	private static final int BATCH_SIZE = 64 * 1024;
+
+	private OsmOutputStream output;
+	private OsmIterator iterator;
+
+	private GeometryFactory factory = new GeometryFactory();
+	private PreparedGeometry region;
+	private Envelope envelope;
+
+	private int gridSize;
+	private double cellWidth;
+	private double cellHeight;
+	private byte[] cells;
+
+	private int numThreads;
+
+	private TLongSet nodeIds = new TLongHashSet();
+	private TLongSet wayIds = new TLongHashSet();
+	private TLongSet relationIds = new TLongHashSet();
+
+	private List<OsmNode> batch = new ArrayList<>(BATCH_SIZE);
+
+	private long numExactTests = 0;
+
+	public GridRegionFilter(OsmOutputStream output, OsmIterator iterator,
+			Geometry region, int gridSize, int numThreads)
+	{
+		this.output = output;
+		this.iterator = iterator;
+		this.region = PreparedGeometryFactory.prepare(region);
+		this.envelope = region.getEnvelopeInternal();
+		this.gridSize = gridSize;
+		this.numThreads = numThreads;
+	}
+
+	public void run(ImportPhase phase) throws IOException
+	{
+		ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+		try {
+			buildGrid(executor);
+
+			for (EntityContainer container : iterator) {
+				phase.addEntity();
+				if (container.getType() == EntityType.Node) {
+					batch.add((OsmNode) container.getEntity());
+					if (batch.size() == BATCH_SIZE) {
+						flush(executor);
+					}
+					continue;
+				}
+				flush(executor);
+				if (container.getType() == EntityType.Way) {
+					handle((OsmWay) container.getEntity());
+				} else if (container.getType() == EntityType.Relation) {
+					handle((OsmRelation) container.getEntity());
+				}
+			}
+			flush(executor);
+		} finally {
+			executor.shutdownNow();
+		}
+
+		output.complete();
+
+		logger.info(String.format("Selected %d nodes, %d ways, %d relations",
+				nodeIds.size(), wayIds.size(), relationIds.size()));
+		logger.info("Exact point in polygon tests: " + numExactTests);
+	}
+
+	private void buildGrid(ExecutorService executor) throws IOException
+	{
+		cellWidth = envelope.getWidth() / gridSize;
+		cellHeight = envelope.getHeight() / gridSize;
+		cells = new byte[gridSize * gridSize];
+
+		// classify the cells row by row
+		List<Future<?>> futures = new ArrayList<>();
+		for (int y = 0; y < gridSize; y++) {
+			final int row = y;
+			futures.add(executor.submit(() -> {
+				for (int x = 0; x < gridSize; x++) {
+					cells[row * gridSize + x] = classify(x, row);
+				}
+			}));
+		}
+		for (Future<?> future : futures) {
+			get(future);
+		}
+
+		int[] counts = new int[3];
+		for (byte cell : cells) {
+			counts[cell]++;
+		}
+		logger.info(String.format(
+				"Grid of %dx%d cells: %d inside, %d outside, %d boundary",
+				gridSize, gridSize, counts[INSIDE], counts[OUTSIDE],
+				counts[BOUNDARY]));
+	}
+
+	private byte classify(int x, int y)
+	{
+		double minX = envelope.getMinX() + x * cellWidth;
+		double minY = envelope.getMinY() + y * cellHeight;
+		Envelope cellEnvelope = new Envelope(minX, minX + cellWidth, minY,
+				minY + cellHeight);
+		Geometry cell = factory.toGeometry(cellEnvelope);
+		// containsProperly guarantees that all points of the cell are in the
+		// region's interior and hence are contained in the region
+		if (region.containsProperly(cell)) {
+			return INSIDE;
+		} else if (!region.intersects(cell)) {
+			return OUTSIDE;
+		}
+		return BOUNDARY;
+	}
+
+	private void flush(ExecutorService executor) throws IOException
+	{
+		if (batch.isEmpty()) {
+			return;
+		}
+
+		boolean[] take = new boolean[batch.size()];
+		int sliceSize = (batch.size() + numThreads - 1) / numThreads;
+		List<Future<Integer>> futures = new ArrayList<>();
+		for (int start = 0; start < batch.size(); start += sliceSize) {
+			int from = start;
+			int to = Math.min(batch.size(), start + sliceSize);
+			futures.add(executor.submit(() -> test(take, from, to)));
+		}
+		for (Future<Integer> future : futures) {
+			numExactTests += get(future);
+		}
+
+		for (int i = 0; i < take.length; i++) {
+			if (take[i]) {
+				OsmNode node = batch.get(i);
+				nodeIds.add(node.getId());
+				output.write(node);
+			}
+		}
+		batch.clear();
+	}
+
+	/*
+	 * Test the nodes in the specified range of the batch and return the number
+	 * of exact tests performed.
+	 */
+	private int test(boolean[] take, int from, int to)
+	{
+		int exact = 0;
+		for (int i = from; i < to; i++) {
+			OsmNode node = batch.get(i);
+			double lon = node.getLongitude();
+			double lat = node.getLatitude();
+			if (!envelope.contains(lon, lat)) {
+				continue;
+			}
+			byte cell = cell(lon, lat);
+			if (cell == INSIDE) {
+				take[i] = true;
+			} else if (cell == BOUNDARY) {
+				exact++;
+				take[i] = region.contains(
+						factory.createPoint(new Coordinate(lon, lat)));
+			}
+		}
+		return exact;
+	}
+
+	private byte cell(double lon, double lat)
+	{
+		int x = cellWidth == 0 ? 0
+				: (int) ((lon - envelope.getMinX()) / cellWidth);
+		int y = cellHeight == 0 ? 0
+				: (int) ((lat - envelope.getMinY()) / cellHeight);
+		x = Math.min(x, gridSize - 1);
+		y = Math.min(y, gridSize - 1);
+		return cells[y * gridSize + x];
+	}
+
+	private void handle(OsmWay way) throws IOException
+	{
+		for (int i = 0; i < way.getNumberOfNodes(); i++) {
+			if (nodeIds.contains(way.getNodeId(i))) {
+				wayIds.add(way.getId());
+				output.write(way);
+				return;
+			}
+		}
+	}
+
+	private void handle(OsmRelation relation) throws IOException
+	{
+		for (int i = 0; i < relation.getNumberOfMembers(); i++) {
+			OsmRelationMember member = relation.getMember(i);
+			if (contains(member)) {
+				relationIds.add(relation.getId());
+				output.write(relation);
+				return;
+			}
+		}
+	}
+
+	private boolean contains(OsmRelationMember member)
+	{
+		switch (member.getType()) {
+		case Node:
+			return nodeIds.contains(member.getId());
+		case Way:
+			return wayIds.contains(member.getId());
+		case Relation:
+			return relationIds.contains(member.getId());
+		default:
+			return false;
+		}
+	}
+
+	private static <T> T get(Future<T> future) throws IOException
+	{
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			throw new IOException(e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new IOException(cause);
+		}
+	}
+
+}
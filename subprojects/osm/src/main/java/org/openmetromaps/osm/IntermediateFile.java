@@ -0,0 +1,161 @@
+// Copyright 2019 Sebastian Kuerten
+//
+// This file is part of OpenMetroMaps.
+//
+// OpenMetroMaps is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Lesser General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// OpenMetroMaps is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with OpenMetroMaps. If not, see <http://www.gnu.org/licenses/>.
+
+package org.openmetromaps.osm;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.openmetromaps.misc.ImportPhase;
+
+import de.topobyte.osm4j.core.access.OsmIterator;
+import de.topobyte.osm4j.core.access.OsmOutputStream;
+import de.topobyte.osm4j.core.model.iface.EntityContainer;
+import de.topobyte.osm4j.core.model.iface.OsmNode;
+import de.topobyte.osm4j.core.model.iface.OsmRelation;
+import de.topobyte.osm4j.core.model.iface.OsmWay;
+import de.topobyte.osm4j.utils.FileFormat;
+import de.topobyte.osm4j.utils.OsmIoUtils;
+import de.topobyte.osm4j.utils.OsmOutputConfig;
+
+/**
+ * An intermediate file in TBO format within an {@link IntermediateStorage}.
+ */
+public abstract class IntermediateFile
+{
+
+	private String name;
+
+	public IntermediateFile(String name)
+	{
+		this.name = name;
+	}
+
+	public String getName()
+	{
+		return name;
+	}
+
+	public abstract OutputStream openOutputStream() throws IOException;
+
+	public abstract InputStream openInputStream() throws IOException;
+
+	public Output createOutput(OsmOutputConfig config) throws IOException
+	{
+		OutputStream os = openOutputStream();
+		OsmOutputStream output = OsmIoUtils.setupOsmOutput(os, config);
+		return new Output(os, output);
+	}
+
+	public Input createInput(boolean readMetadata) throws IOException
+	{
+		InputStream is = openInputStream();
+		OsmIterator iterator = OsmIoUtils.setupOsmIterator(is, FileFormat.TBO,
+				readMetadata);
+		return new Input(is, iterator);
+	}
+
+	public static class Output
+	{
+
+		private OutputStream os;
+		private OsmOutputStream output;
+
+		Output(OutputStream os, OsmOutputStream output)
+		{
+			this.os = os;
+			this.output = output;
+		}
+
+		public OsmOutputStream getOutput()
+		{
+			return output;
+		}
+
+		public void close() throws IOException
+		{
+			output.complete();
+			os.close();
+		}
+
+	}
+
+	public static class Input
+	{
+
+		private InputStream is;
+		private OsmIterator iterator;
+
+		Input(InputStream is, OsmIterator iterator)
+		{
+			this.is = is;
+			this.iterator = iterator;
+		}
+
+		public OsmIterator getIterator()
+		{
+			return iterator;
+		}
+
+		public void close() throws IOException
+		{
+			is.close();
+		}
+
+	}
+
+	/**
+	 * Write the entities from the iterator to one file per entity type.
+	 */
+	public static void split(OsmIterator iterator, IntermediateFile nodes,
+			IntermediateFile ways, IntermediateFile relations,
+			OsmOutputConfig config, ImportPhase phase) throws IOException
+	{
+		Output outputNodes = nodes.createOutput(config);
+		Output outputWays = ways.createOutput(config);
+		Output outputRelations = relations.createOutput(config);
+
+		for (EntityContainer container : iterator) {
+			phase.addEntity();
+			switch (container.getType()) {
+			case Node:
+				outputNodes.getOutput()
+						.write((OsmNode) container.getEntity());
+				break;
+			case Way:
+				outputWays.getOutput().write((OsmWay) container.getEntity());
+				break;
+			case Relation:
+				outputRelations.getOutput()
+						.write((OsmRelation) container.getEntity());
+				break;
+			}
+		}
+
+		outputNodes.close();
+		outputWays.close();
+		outputRelations.close();
+	}
+
+	@Override
+	public String toString()
+	{
+		return name;
+	}
+
+}
@@ -0,0 +1,253 @@
+// Copyright 2019 Sebastian Kuerten
+//
+// This file is part of OpenMetroMaps.
+//
+// OpenMetroMaps is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Lesser General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// OpenMetroMaps is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with OpenMetroMaps. If not, see <http://www.gnu.org/licenses/>.
+
+package org.openmetromaps.osm;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.openmetromaps.osm.IntermediateStorageConfig.Mode;
+
+import com.sun.management.HotSpotDiagnosticMXBean;
+import com.sun.management.VMOption;
+
+import de.topobyte.osm4j.utils.FileFormat;
+import de.topobyte.osm4j.utils.OsmFile;
+
+/**
+ * A place to store the intermediate files created while filtering OSM data.
+ * Files are either stored in a temporary directory, optionally compressed, or
+ * in off-heap memory. Closing the storage releases all of its files.
+ */
+public abstract class IntermediateStorage implements Closeable
+{
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	/*
+	 * The filters keep up to three full copies of the data: the split files,
+	 * the filtered files and, when filtering a region, the filtered input.
+	 */
+	private static final int NUM_COPIES = 3;
+
+	/**
+	 * Create the storage for filtering the specified input. In
+	 * {@link Mode#AUTO}, the size of the intermediate files is estimated from
+	 * the size and format of the input and they are kept in memory only if the
+	 * estimate is below the configured threshold and fits into half of the
+	 * direct memory available to the JVM.
+	 */
+	public static IntermediateStorage create(IntermediateStorageConfig config,
+			OsmFile input) throws IOException
+	{
+		Mode mode = config.getMode();
+		if (mode == Mode.AUTO) {
+			long estimate = estimateSize(Files.size(input.getPath()),
+					input.getFileFormat());
+			mode = selectMode(config, estimate, maxDirectMemory());
+		}
+		if (mode == Mode.MEMORY) {
+			return new MemoryStorage();
+		}
+		Path dir;
+		if (config.getDirectory() != null) {
+			Files.createDirectories(config.getDirectory());
+			dir = Files.createTempDirectory(config.getDirectory(), "osm");
+		} else {
+			dir = Files.createTempDirectory("osm");
+		}
+		return new DiskStorage(dir, config.isCompress());
+	}
+
+	static Mode selectMode(IntermediateStorageConfig config, long estimate,
+			long maxDirectMemory)
+	{
+		if (estimate < config.getMemoryThreshold()
+				&& estimate < maxDirectMemory / 2) {
+			return Mode.MEMORY;
+		}
+		return Mode.DISK;
+	}
+
+	/**
+	 * @return the estimated total size in bytes of the intermediate files
+	 *         created while filtering an input of the specified size and
+	 *         format.
+	 */
+	static long estimateSize(long inputSize, FileFormat format)
+	{
+		// rough ratios of the size of the data in uncompressed TBO format to
+		// the size in the input format
+		double expansion;
+		switch (format) {
+		case TBO:
+			expansion = 1;
+			break;
+		case XML:
+			expansion = 0.25;
+			break;
+		case PBF:
+		default:
+			expansion = 3;
+			break;
+		}
+		return (long) (inputSize * expansion * NUM_COPIES);
+	}
+
+	/**
+	 * @return the maximum size in bytes of the direct buffers that may be
+	 *         allocated by this JVM.
+	 */
+	static long maxDirectMemory()
+	{
+		HotSpotDiagnosticMXBean bean = ManagementFactory
+				.getPlatformMXBean(HotSpotDiagnosticMXBean.class);
+		if (bean != null) {
+			try {
+				VMOption option = bean.getVMOption("MaxDirectMemorySize");
+				long value = Long.parseLong(option.getValue());
+				if (value > 0) {
+					return value;
+				}
+			} catch (IllegalArgumentException e) {
+				// option not supported by this VM
+			}
+		}
+		// without an explicit limit, it is the maximum heap size
+		return Runtime.getRuntime().maxMemory();
+	}
+
+	/**
+	 * Create a new, empty intermediate file.
+	 */
+	public abstract IntermediateFile create(String name) throws IOException;
+
+	private static class DiskStorage extends IntermediateStorage
+	{
+
+		private Path dir;
+		private boolean compress;
+
+		DiskStorage(Path dir, boolean compress)
+		{
+			this.dir = dir;
+			this.compress = compress;
+		}
+
+		@Override
+		public IntermediateFile create(String name)
+		{
+			Path path = dir.resolve(compress ? name + ".tbo.z" : name + ".tbo");
+			return new IntermediateFile(name) {
+
+				@Override
+				public OutputStream openOutputStream() throws IOException
+				{
+					OutputStream os = Files.newOutputStream(path);
+					if (compress) {
+						os = new DeflaterOutputStream(os,
+								new Deflater(Deflater.BEST_SPEED), BUFFER_SIZE);
+					}
+					return new BufferedOutputStream(os, BUFFER_SIZE);
+				}
+
+				@Override
+				public InputStream openInputStream() throws IOException
+				{
+					InputStream is = Files.newInputStream(path);
+					if (compress) {
+						is = new InflaterInputStream(is);
+					}
+					return new BufferedInputStream(is, BUFFER_SIZE);
+				}
+
+			};
+		}
+
+		@Override
+		public void close() throws IOException
+		{
+			FileUtils.deleteDirectory(dir.toFile());
+		}
+
+		@Override
+		public String toString()
+		{
+			return dir + (compress ? " (compressed)" : "");
+		}
+
+	}
+
+	private static class MemoryStorage extends IntermediateStorage
+	{
+
+		private List<DirectByteBlocks> files = new ArrayList<>();
+
+		@Override
+		public synchronized IntermediateFile create(String name)
+		{
+			DirectByteBlocks blocks = new DirectByteBlocks();
+			files.add(blocks);
+			return new IntermediateFile(name) {
+
+				@Override
+				public OutputStream openOutputStream()
+				{
+					blocks.clear();
+					return blocks.outputStream();
+				}
+
+				@Override
+				public InputStream openInputStream()
+				{
+					return blocks.inputStream();
+				}
+
+			};
+		}
+
+		@Override
+		public synchronized void close()
+		{
+			for (DirectByteBlocks blocks : files) {
+				blocks.clear();
+			}
+			files.clear();
+		}
+
+		@Override
+		public String toString()
+		{
+			return "memory";
+		}
+
+	}
+
+}
@@ -0,0 +1,104 @@
+// Copyright 2019 Sebastian Kuerten
+//
+// This file is part of OpenMetroMaps.
+//
+// OpenMetroMaps is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Lesser General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// OpenMetroMaps is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with OpenMetroMaps. If not, see <http://www.gnu.org/licenses/>.
+
+package org.openmetromaps.osm;
+
+import java.nio.file.Path;
+
+/**
+ * Describes where the intermediate files created while filtering OSM data are
+ * stored.
+ */
+public class IntermediateStorageConfig
+{
+
+	public static enum Mode {
+		/**
+		 * Store intermediate files in a directory.
+		 */
+		DISK,
+		/**
+		 * Keep intermediate files in off-heap memory.
+		 */
+		MEMORY,
+		/**
+		 * Keep intermediate files in memory if their size estimated from the
+		 * input is below the memory threshold and fits into the direct memory
+		 * of the JVM, store them on disk otherwise.
+		 */
+		AUTO
+	}
+
+	public static final long DEFAULT_MEMORY_THRESHOLD = 256 * 1024 * 1024;
+
+	private Mode mode = Mode.DISK;
+	private Path directory = null;
+	private boolean compress = false;
+	private long memoryThreshold = DEFAULT_MEMORY_THRESHOLD;
+
+	public Mode getMode()
+	{
+		return mode;
+	}
+
+	public void setMode(Mode mode)
+	{
+		this.mode = mode;
+	}
+
+	/**
+	 * @return the directory to create temporary directories in or null for the
+	 *         system's default temporary directory.
+	 */
+	public Path getDirectory()
+	{
+		return directory;
+	}
+
+	public void setDirectory(Path directory)
+	{
+		this.directory = directory;
+	}
+
+	/**
+	 * @return whether to compress intermediate files stored on disk.
+	 */
+	public boolean isCompress()
+	{
+		return compress;
+	}
+
+	public void setCompress(boolean compress)
+	{
+		this.compress = compress;
+	}
+
+	/**
+	 * @return the estimated total size in bytes of the intermediate files
+	 *         below which they are kept in memory in {@link Mode#AUTO}.
+	 */
+	public long getMemoryThreshold()
+	{
+		return memoryThreshold;
+	}
+
+	public void setMemoryThreshold(long memoryThreshold)
+	{
+		this.memoryThreshold = memoryThreshold;
+	}
+
+}
@@ -0,0 +1,204 @@
+// Copyright 2019 Sebastian Kuerten
+//
+// This file is part of OpenMetroMaps.
+//
+// OpenMetroMaps is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Lesser General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// OpenMetroMaps is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with OpenMetroMaps. If not, see <http://www.gnu.org/licenses/>.
+
+package org.openmetromaps.osm;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.openmetromaps.synthetic.NetworkConfig;
+import org.openmetromaps.synthetic.OsmDataGenerator;
+import org.openmetromaps.synthetic.SyntheticNetwork;
+
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+
+import de.topobyte.osm4j.core.access.OsmIteratorInput;
+import de.topobyte.osm4j.core.model.iface.EntityContainer;
+import de.topobyte.osm4j.core.model.iface.EntityType;
+import de.topobyte.osm4j.core.model.iface.OsmEntity;
+import de.topobyte.osm4j.core.model.iface.OsmNode;
+import de.topobyte.osm4j.core.model.util.OsmModelUtil;
+import de.topobyte.osm4j.utils.FileFormat;
+import de.topobyte.osm4j.utils.OsmFile;
+import de.topobyte.osm4j.utils.OsmFileInput;
+import de.topobyte.osm4j.utils.OsmOutputConfig;
+
+/**
+ * Runs the filters on generated OSM data and checks the extracted entities
+ * against the generated network.
+ */
+public class TestFilterSynthetic
+{
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private SyntheticNetwork network;
+	private OsmFile input;
+
+	@Before
+	public void setUp() throws IOException
+	{
+		NetworkConfig config = new NetworkConfig();
+		config.setSeed(42);
+		config.setNumLines(8);
+		network = new SyntheticNetwork(config);
+
+		Path path = folder.newFile("data.tbo").toPath();
+		OsmDataGenerator generator = new OsmDataGenerator(network);
+		generator.setNoiseWaysPerStation(5);
+		generator.write(path, FileFormat.TBO);
+		input = new OsmFile(path, FileFormat.TBO);
+	}
+
+	private static class Data
+	{
+
+		private List<String> ids = new ArrayList<>();
+		private List<OsmEntity> nodes = new ArrayList<>();
+		private List<OsmEntity> ways = new ArrayList<>();
+		private List<OsmEntity> relations = new ArrayList<>();
+
+		private int count(List<OsmEntity> entities, String key, String value)
+		{
+			int count = 0;
+			for (OsmEntity entity : entities) {
+				Map<String, String> tags = OsmModelUtil.getTagsAsMap(entity);
+				if (value.equals(tags.get(key))) {
+					count++;
+				}
+			}
+			return count;
+		}
+
+	}
+
+	private static Data read(OsmFile file) throws IOException
+	{
+		Data data = new Data();
+		OsmIteratorInput iterator = new OsmFileInput(file).createIterator(true,
+				false);
+		for (EntityContainer container : iterator.getIterator()) {
+			OsmEntity entity = container.getEntity();
+			data.ids.add(container.getType() + ":" + entity.getId());
+			if (container.getType() == EntityType.Node) {
+				data.nodes.add(entity);
+			} else if (container.getType() == EntityType.Way) {
+				data.ways.add(entity);
+			} else {
+				data.relations.add(entity);
+			}
+		}
+		iterator.close();
+		Collections.sort(data.ids);
+		return data;
+	}
+
+	private OsmFile output(String name)
+	{
+		return new OsmFile(folder.getRoot().toPath().resolve(name),
+				FileFormat.TBO);
+	}
+
+	private static OsmOutputConfig outputConfig()
+	{
+		return new OsmOutputConfig(FileFormat.TBO, false);
+	}
+
+	private Data filterRelevantData(boolean singlePass) throws IOException
+	{
+		OsmFile output = output(singlePass ? "single.tbo" : "split.tbo");
+		FilterRelevantData filter = new FilterRelevantData(input, output,
+				outputConfig());
+		filter.setSinglePass(singlePass);
+		filter.execute();
+		return read(output);
+	}
+
+	private void assertRelevantData(Data original, Data data)
+	{
+		int numLines = network.getLines().size();
+		Assert.assertEquals(network.getStations().size(),
+				data.count(data.nodes, "railway", "station"));
+		Assert.assertEquals(2 * numLines, data.count(data.relations, "type",
+				"route"));
+		Assert.assertEquals(0, data.count(data.relations, "type",
+				"route_master"));
+		// all tracks are route members, noise ways are not
+		Assert.assertEquals(original.count(original.ways, "railway", "subway"),
+				data.ways.size());
+		Assert.assertEquals(0, data.count(data.ways, "highway", "residential"));
+		Assert.assertEquals(0, data.count(data.nodes, "amenity", "bench"));
+	}
+
+	@Test
+	public void testFilterRelevantData() throws IOException
+	{
+		Data original = read(input);
+		Data split = filterRelevantData(false);
+		Data single = filterRelevantData(true);
+
+		assertRelevantData(original, split);
+		Assert.assertEquals(split.ids, single.ids);
+	}
+
+	private Data filterRegion(Envelope envelope, String name)
+			throws IOException
+	{
+		Geometry region = new GeometryFactory().toGeometry(envelope);
+		OsmFile output = output(name);
+		FilterRegion filter = new FilterRegion(input, output, region,
+				outputConfig());
+		filter.setGridSize(16);
+		filter.setNumThreads(2);
+		filter.execute();
+		return read(output);
+	}
+
+	@Test
+	public void testFilterRegion() throws IOException
+	{
+		Data original = read(input);
+
+		Envelope envelope = new Envelope();
+		for (OsmEntity entity : original.nodes) {
+			OsmNode node = (OsmNode) entity;
+			envelope.expandToInclude(node.getLongitude(), node.getLatitude());
+		}
+		envelope.expandBy(0.01);
+
+		Data all = filterRegion(envelope, "all.tbo");
+		Assert.assertEquals(original.ids, all.ids);
+
+		Envelope outside = new Envelope(envelope.getMaxX() + 1,
+				envelope.getMaxX() + 2, envelope.getMinY(), envelope.getMaxY());
+		Data none = filterRegion(outside, "none.tbo");
+		Assert.assertTrue(none.ids.isEmpty());
+	}
+
+}
@@ -0,0 +1,222 @@
+// Copyright 2019 Sebastian Kuerten
+//
+// This file is part of OpenMetroMaps.
+//
+// OpenMetroMaps is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Lesser General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// OpenMetroMaps is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with OpenMetroMaps. If not, see <http://www.gnu.org/licenses/>.
+package org.openmetromaps.osm;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.openmetromaps.osm.IntermediateStorageConfig.Mode;
+
+import de.topobyte.osm4j.utils.FileFormat;
+import de.topobyte.osm4j.utils.OsmFile;
+
+/**
+ * Writes data to the different kinds of intermediate storage and reads it
+ * back.
+ */
+public class TestIntermediateStorage
+{
+
+	private static final int MB = 1024 * 1024;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/*
+	 * Somewhat compressible data spanning several blocks of direct memory.
+	 */
+	private static byte[] data(int size, long seed)
+	{
+		Random random = new Random(seed);
+		byte[] data = new byte[size];
+		for (int i = 0; i < size; i++) {
+			data[i] = (byte) random.nextInt(16);
+		}
+		return data;
+	}
+
+	/*
+	 * Write single bytes and chunks of varying length.
+	 */
+	private static void write(OutputStream os, byte[] data) throws IOException
+	{
+		Random random = new Random(1);
+		int pos = 0;
+		while (pos < data.length) {
+			if (random.nextInt(4) == 0) {
+				os.write(data[pos++]);
+			} else {
+				int n = Math.min(data.length - pos, random.nextInt(100000));
+				os.write(data, pos, n);
+				pos += n;
+			}
+		}
+		os.close();
+	}
+
+	private static byte[] read(InputStream is) throws IOException
+	{
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+		int n;
+		while ((n = is.read(buffer)) >= 0) {
+			baos.write(buffer, 0, n);
+		}
+		is.close();
+		return baos.toByteArray();
+	}
+
+	private static void assertRoundTrip(IntermediateStorage storage)
+			throws IOException
+	{
+		byte[] data1 = data(2 * MB + 12345, 1);
+		byte[] data2 = data(1000, 2);
+
+		IntermediateFile file1 = storage.create("file1");
+		IntermediateFile file2 = storage.create("file2");
+		write(file1.openOutputStream(), data1);
+		write(file2.openOutputStream(), data2);
+
+		Assert.assertArrayEquals(data1, read(file1.openInputStream()));
+		Assert.assertArrayEquals(data2, read(file2.openInputStream()));
+		// files may be read several times
+		Assert.assertArrayEquals(data1, read(file1.openInputStream()));
+
+		// and written again
+		write(file1.openOutputStream(), data2);
+		Assert.assertArrayEquals(data2, read(file1.openInputStream()));
+
+		IntermediateFile empty = storage.create("empty");
+		write(empty.openOutputStream(), new byte[0]);
+		Assert.assertEquals(0, read(empty.openInputStream()).length);
+	}
+
+	private IntermediateStorage create(Mode mode, boolean compress)
+			throws IOException
+	{
+		IntermediateStorageConfig config = new IntermediateStorageConfig();
+		config.setMode(mode);
+		config.setDirectory(folder.getRoot().toPath());
+		config.setCompress(compress);
+		// the input is only looked at in automatic mode
+		OsmFile input = new OsmFile(folder.getRoot().toPath().resolve("input"),
+				FileFormat.PBF);
+		return IntermediateStorage.create(config, input);
+	}
+
+	@Test
+	public void testDiskStorage() throws IOException
+	{
+		IntermediateStorage storage = create(Mode.DISK, false);
+		assertRoundTrip(storage);
+		File[] dirs = folder.getRoot().listFiles();
+		Assert.assertEquals(1, dirs.length);
+		Assert.assertTrue(new File(dirs[0], "file1.tbo").exists());
+
+		storage.close();
+		Assert.assertEquals(0, folder.getRoot().listFiles().length);
+	}
+
+	@Test
+	public void testDiskStorageCompressed() throws IOException
+	{
+		IntermediateStorage storage = create(Mode.DISK, true);
+		assertRoundTrip(storage);
+		File[] dirs = folder.getRoot().listFiles();
+		Assert.assertEquals(1, dirs.length);
+		File file = new File(dirs[0], "file2.tbo.z");
+		Assert.assertTrue(file.exists());
+		Assert.assertTrue(file.length() < 1000);
+
+		storage.close();
+		Assert.assertEquals(0, folder.getRoot().listFiles().length);
+	}
+
+	@Test
+	public void testMemoryStorage() throws IOException
+	{
+		IntermediateStorage storage = create(Mode.MEMORY, false);
+		assertRoundTrip(storage);
+		// nothing is written to disk
+		Assert.assertEquals(0, folder.getRoot().listFiles().length);
+		storage.close();
+	}
+
+	@Test
+	public void testDirectByteBlocks() throws IOException
+	{
+		byte[] data = data(3 * MB, 3);
+		DirectByteBlocks blocks = new DirectByteBlocks();
+		Assert.assertEquals(-1, blocks.inputStream().read());
+
+		write(blocks.outputStream(), data);
+		// concurrent readers do not affect each other
+		InputStream is1 = blocks.inputStream();
+		InputStream is2 = blocks.inputStream();
+		Assert.assertEquals(data[0] & 0xff, is1.read());
+		Assert.assertArrayEquals(data, read(is2));
+		byte[] rest = read(is1);
+		Assert.assertEquals(data.length - 1, rest.length);
+		Assert.assertEquals(data[data.length - 1], rest[rest.length - 1]);
+
+		blocks.clear();
+		Assert.assertEquals(-1, blocks.inputStream().read());
+	}
+
+	@Test
+	public void testEstimateSize()
+	{
+		long size = 200 * MB;
+		Assert.assertTrue(IntermediateStorage.estimateSize(size,
+				FileFormat.PBF) > IntermediateStorage.estimateSize(size,
+						FileFormat.TBO));
+		Assert.assertTrue(IntermediateStorage.estimateSize(size,
+				FileFormat.TBO) > IntermediateStorage.estimateSize(size,
+						FileFormat.XML));
+	}
+
+	@Test
+	public void testSelectMode()
+	{
+		IntermediateStorageConfig config = new IntermediateStorageConfig();
+		config.setMode(Mode.AUTO);
+		long threshold = config.getMemoryThreshold();
+		long maxDirect = 4096L * MB;
+
+		Assert.assertEquals(Mode.MEMORY,
+				IntermediateStorage.selectMode(config, 10 * MB, maxDirect));
+		Assert.assertEquals(Mode.DISK,
+				IntermediateStorage.selectMode(config, threshold, maxDirect));
+		// a PBF file below the threshold expands beyond it
+		long estimate = IntermediateStorage.estimateSize(200 * MB,
+				FileFormat.PBF);
+		Assert.assertEquals(Mode.DISK,
+				IntermediateStorage.selectMode(config, estimate, maxDirect));
+		// not enough direct memory
+		Assert.assertEquals(Mode.DISK,
+				IntermediateStorage.selectMode(config, 100 * MB, 128 * MB));
+	}
+
+}
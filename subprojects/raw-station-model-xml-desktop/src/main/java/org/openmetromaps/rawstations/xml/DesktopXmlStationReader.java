@@ -17,8 +17,11 @@
 
 package org.openmetromaps.rawstations.xml;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Path;
 
+import org.openmetromaps.misc.Compression;
 import org.openmetromaps.rawstations.RawStationModel;
 import org.openmetromaps.rawstations.xml.XmlStationReader;
 
@@ -30,7 +33,20 @@ public class DesktopXmlStationReader
 
 	public static RawStationModel read(InputStream is) throws ParsingException
 	{
-		return XmlStationReader.read(new DesktopDocumentFactory(), is);
+		try {
+			InputStream input = Compression.decompressing(is);
+			return XmlStationReader.read(new DesktopDocumentFactory(), input);
+		} catch (IOException e) {
+			throw new ParsingException(e);
+		}
+	}
+
+	public static RawStationModel read(Path path)
+			throws ParsingException, IOException
+	{
+		try (InputStream input = Compression.newInputStream(path)) {
+			return XmlStationReader.read(new DesktopDocumentFactory(), input);
+		}
 	}
 
 }
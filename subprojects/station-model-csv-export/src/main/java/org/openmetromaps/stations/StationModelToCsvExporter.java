@@ -17,16 +17,23 @@
 
 package org.openmetromaps.stations;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 
 import org.openmetromaps.maps.MapModel;
-import org.openmetromaps.maps.MapModelUtil;
 import org.openmetromaps.maps.graph.LineNetwork;
 import org.openmetromaps.maps.graph.LineNetworkUtil;
 import org.openmetromaps.maps.graph.Node;
@@ -35,8 +42,6 @@ import org.openmetromaps.maps.model.Station;
 import org.openmetromaps.maps.model.Stop;
 import org.openmetromaps.stations.Change;
 import org.openmetromaps.stations.StationModel;
-import org.openmetromaps.stations.StationModels;
-import org.openmetromaps.stations.StationUtil;
 import org.openmetromaps.stations.LineWithOrientation;
 import org.openmetromaps.stations.Location;
 
@@ -48,6 +53,11 @@ import de.topobyte.collections.util.ListUtil;
  * This class converts our change model to the CSV format specified and used in
  * this repository: <a href=
  * "https://github.com/juliuste/vbb-change-positions">juliuste/vbb-change-positions</a>.
+ * 
+ * Stations, lines and stop positions are looked up through maps that are
+ * built once on construction. The changes are converted in parallel while the
+ * rows are written in the order of the changes in the model as soon as they
+ * are available.
  */
 public class StationModelToCsvExporter
 {
@@ -57,6 +67,11 @@ public class StationModelToCsvExporter
 	private StationModel model;
 	private Map<String, String> nameToId;
 
+	private LineIndex lineIndex;
+	private Map<String, Station> nameToStation = new HashMap<>();
+	private Map<Line, Map<String, Integer>> stopIndexes = new HashMap<>();
+	private Map<Location, String> positions = new EnumMap<>(Location.class);
+
 	public StationModelToCsvExporter(MapModel mapModel, LineNetwork lineNetwork,
 			StationModel model, Map<String, String> nameToId)
 	{
@@ -64,28 +79,76 @@ public class StationModelToCsvExporter
 		this.lineNetwork = lineNetwork;
 		this.model = model;
 		this.nameToId = nameToId;
+		lineIndex = new LineIndex(mapModel.getData().lines);
+
+		for (Station station : mapModel.getData().stations) {
+			nameToStation.putIfAbsent(station.getName(), station);
+		}
+
+		for (Line line : mapModel.getData().lines) {
+			Map<String, Integer> indexes = new HashMap<>();
+			List<Stop> stops = line.getStops();
+			for (int i = 0; i < stops.size(); i++) {
+				indexes.putIfAbsent(stops.get(i).getStation().getName(), i);
+			}
+			stopIndexes.put(line, indexes);
+		}
+
+		DecimalFormat df = (DecimalFormat) NumberFormat
+				.getNumberInstance(Locale.US);
+		df.setMaximumFractionDigits(3);
+		for (Location location : Location.values()) {
+			positions.put(location, df.format(position(location)));
+		}
+	}
+
+	/**
+	 * Print the CSV rows for all changes to standard output.
+	 */
+	public void print() throws IOException
+	{
+		Writer writer = new BufferedWriter(new OutputStreamWriter(System.out));
+		export(writer);
+		writer.flush();
 	}
 
-	public void print()
+	/**
+	 * Write the CSV rows for all changes to the specified writer. The writer is
+	 * neither flushed nor closed.
+	 */
+	public void export(Writer writer) throws IOException
 	{
-		for (Change change : model.getChanges()) {
-			print(change, mapModel, lineNetwork);
+		try {
+			model.getChanges().parallelStream().map(this::rows)
+					.forEachOrdered(rows -> write(writer, rows));
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
 		}
 	}
 
-	private void print(Change change, MapModel mapModel,
-			LineNetwork lineNetwork)
+	private static void write(Writer writer, List<String> rows)
 	{
-		List<Line> lines = mapModel.getData().lines;
-		List<Station> stations = mapModel.getData().stations;
+		try {
+			for (String row : rows) {
+				writer.write(row);
+				writer.write('\n');
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
 
-		Station station = MapModelUtil.findStation(stations, change.getAt());
+	private List<String> rows(Change change)
+	{
+		List<String> rows = new ArrayList<>();
+
+		Station station = nameToStation.get(change.getAt());
 
 		Node node = lineNetwork.getStationToNode().get(station);
 		Set<Line> linesAtStation = LineNetworkUtil.getLines(node);
 
-		Line lineFrom = StationUtil.findLine(lines, change.getLine());
-		List<LineWithOrientation> matchingLines = StationModels
+		Line lineFrom = lineIndex.findLine(change.getLine());
+		List<LineWithOrientation> matchingLines = lineIndex
 				.match(change.getMatcher(), linesAtStation);
 		for (LineWithOrientation lineTo : matchingLines) {
 			List<Stop> stopsTo = lineTo.getLine().getStops();
@@ -93,17 +156,18 @@ public class StationModelToCsvExporter
 			Stop last = ListUtil.last(stopsTo);
 			if (!lineTo.isReverse()) {
 				if (!last.getStation().getName().equals(change.getAt())) {
-					print(lineFrom, lineTo, change, false);
+					rows.add(row(lineFrom, lineTo, change, false));
 				}
 			} else {
 				if (!first.getStation().getName().equals(change.getAt())) {
-					print(lineFrom, lineTo, change, true);
+					rows.add(row(lineFrom, lineTo, change, true));
 				}
 			}
 		}
+		return rows;
 	}
 
-	private void print(Line lineFrom, LineWithOrientation lineTo, Change change,
+	private String row(Line lineFrom, LineWithOrientation lineTo, Change change,
 			boolean toReverse)
 	{
 		// Example output:
@@ -117,7 +181,7 @@ public class StationModelToCsvExporter
 
 		String fromTowards = change.getTowards();
 		List<Stop> fromStops = lineFrom.getStops();
-		int fromIndex = MapModelUtil.findStop(fromStops, change.getAt());
+		int fromIndex = findStop(lineFrom, change.getAt());
 		if (fromIndex < 0) {
 			throw new IllegalArgumentException(
 					"change station not found on from line");
@@ -142,7 +206,7 @@ public class StationModelToCsvExporter
 		Stop fromBefore = fromStops.get(before);
 
 		List<Stop> toStops = lineTo.getLine().getStops();
-		int toIndex = MapModelUtil.findStop(toStops, change.getAt());
+		int toIndex = findStop(lineTo.getLine(), change.getAt());
 		if (toIndex < 0) {
 			throw new IllegalArgumentException(
 					"change station not found on to line");
@@ -151,17 +215,12 @@ public class StationModelToCsvExporter
 		int after = toReverse ? toIndex - 1 : toIndex + 1;
 		Stop toAfter = toStops.get(after);
 
-		DecimalFormat df = (DecimalFormat) NumberFormat
-				.getNumberInstance(Locale.US);
-		df.setMaximumFractionDigits(3);
-
 		Location fromLocation = change.getLocation();
 		String valueFromPosition;
 		if (fromLocation == null) {
 			valueFromPosition = "";
 		} else {
-			double fromPos = position(fromLocation);
-			valueFromPosition = df.format(fromPos);
+			valueFromPosition = positions.get(fromLocation);
 		}
 
 		boolean isSamePlatform = false;
@@ -187,8 +246,13 @@ public class StationModelToCsvExporter
 				fromStation, fromStationName, fromTrack, fromPosition, toLine,
 				toStation, toStationName, toTrack, toPosition, samePlatform);
 
-		String line = Joiner.on(",").join(values);
-		System.out.println(line);
+		return Joiner.on(",").join(values);
+	}
+
+	private int findStop(Line line, String stationName)
+	{
+		Integer index = stopIndexes.get(line).get(stationName);
+		return index != null ? index : -1;
 	}
 
 	private String getId(String name)
@@ -27,8 +27,8 @@ import java.util.Map;
 
 import javax.xml.parsers.ParserConfigurationException;
 
-import org.openmetromaps.gtfs4j.csv.GtfsZip;
-import org.openmetromaps.gtfs4j.model.Stop;
+import org.openmetromaps.gtfs.GtfsArchive;
+import org.openmetromaps.gtfs.GtfsStop;
 import org.openmetromaps.maps.MapModel;
 import org.openmetromaps.maps.MapModelUtil;
 import org.openmetromaps.maps.TestData;
@@ -75,9 +75,9 @@ public class TestConvertStationModelBerlin
 
 		Map<String, String> nameToId = new HashMap<>();
 
-		GtfsZip gtfs = new GtfsZip(pathGtfs);
-		List<Stop> stops = gtfs.readStops();
-		for (Stop stop : stops) {
+		GtfsArchive gtfs = new GtfsArchive(pathGtfs);
+		List<GtfsStop> stops = gtfs.readStops();
+		for (GtfsStop stop : stops) {
 			String name = nameChanger.applyNameFixes(stop.getName());
 			name = fix(name);
 			name = expandAbbreveations(name);
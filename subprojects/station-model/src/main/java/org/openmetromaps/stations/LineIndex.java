@@ -0,0 +1,189 @@
+// Copyright 2019 Sebastian Kuerten
+//
+// This file is part of OpenMetroMaps.
+//
+// OpenMetroMaps is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Lesser General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// OpenMetroMaps is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with OpenMetroMaps. If not, see <http://www.gnu.org/licenses/>.
+
+package org.openmetromaps.stations;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+import org.openmetromaps.maps.model.Line;
+
+/**
+ * An index of the lines of a model by name for matching changes against
+ * lines. The set of lines whose name matches a {@link Matcher} is determined
+ * once per matcher and cached, so that matching the changes of a station model
+ * does not test every matcher against every line again and again. Regular
+ * expressions are only evaluated for names that start with the literal prefix
+ * of the expression. The index is safe for use by multiple threads.
+ */
+public class LineIndex
+{
+
+	private Map<String, List<Line>> nameToLines = new LinkedHashMap<>();
+	private SortedMap<String, List<Line>> sortedNames;
+
+	private Map<Matcher, Set<Line>> matches = new ConcurrentHashMap<>();
+
+	public LineIndex(Collection<Line> lines)
+	{
+		for (Line line : lines) {
+			List<Line> list = nameToLines.get(line.getName());
+			if (list == null) {
+				list = new ArrayList<>(1);
+				nameToLines.put(line.getName(), list);
+			}
+			list.add(line);
+		}
+		sortedNames = new TreeMap<>(nameToLines);
+	}
+
+	/**
+	 * @return the lines with the specified name.
+	 */
+	public List<Line> getLines(String name)
+	{
+		List<Line> lines = nameToLines.get(name);
+		return lines != null ? lines : Collections.emptyList();
+	}
+
+	/**
+	 * @return the first line with the specified name or null if there is no
+	 *         such line.
+	 */
+	public Line findLine(String name)
+	{
+		List<Line> lines = nameToLines.get(name);
+		return lines != null ? lines.get(0) : null;
+	}
+
+	/**
+	 * @return the lines whose name is matched by the matcher.
+	 */
+	public Set<Line> getMatchingLines(Matcher matcher)
+	{
+		if (matcher == null) {
+			return Collections.emptySet();
+		}
+		return matches.computeIfAbsent(matcher, this::findMatchingLines);
+	}
+
+	/**
+	 * Find all lines matched by the matcher, in both directions where
+	 * applicable.
+	 */
+	public List<LineWithOrientation> match(Matcher matcher)
+	{
+		List<LineWithOrientation> results = new ArrayList<>();
+		for (Line line : getMatchingLines(matcher)) {
+			StationModels.addOrientations(results, matcher, line);
+		}
+		return results;
+	}
+
+	/**
+	 * Like {@link StationModels#match(Matcher, Collection)}, but only looks
+	 * up the lines in the set of lines matched by the matcher. The lines need
+	 * to be lines of this index.
+	 */
+	public List<LineWithOrientation> match(Matcher matcher,
+			Collection<Line> lines)
+	{
+		Set<Line> matching = getMatchingLines(matcher);
+		List<LineWithOrientation> results = new ArrayList<>();
+		if (matching.isEmpty()) {
+			return results;
+		}
+		for (Line line : lines) {
+			if (matching.contains(line)) {
+				StationModels.addOrientations(results, matcher, line);
+			}
+		}
+		return results;
+	}
+
+	private Set<Line> findMatchingLines(Matcher matcher)
+	{
+		Set<Line> results = Collections
+				.newSetFromMap(new LinkedHashMap<Line, Boolean>());
+		if (matcher instanceof SimpleMatcher) {
+			results.addAll(getLines(((SimpleMatcher) matcher).getName()));
+		} else if (matcher instanceof LineTowardsMatcher) {
+			results.addAll(getLines(((LineTowardsMatcher) matcher).getName()));
+		} else if (matcher instanceof RegexMatcher) {
+			RegexMatcher rm = (RegexMatcher) matcher;
+			Pattern pattern = rm.getCompiledPattern();
+			String prefix = literalPrefix(rm.getPattern());
+			for (Map.Entry<String, List<Line>> entry : candidates(prefix)
+					.entrySet()) {
+				if (pattern.matcher(entry.getKey()).matches()) {
+					results.addAll(entry.getValue());
+				}
+			}
+		}
+		return results;
+	}
+
+	private SortedMap<String, List<Line>> candidates(String prefix)
+	{
+		if (prefix.isEmpty()) {
+			return sortedNames;
+		}
+		// all strings starting with the prefix sort before the prefix with
+		// its last character incremented
+		int last = prefix.length() - 1;
+		if (prefix.charAt(last) == Character.MAX_VALUE) {
+			return sortedNames.tailMap(prefix);
+		}
+		String end = prefix.substring(0, last)
+				+ (char) (prefix.charAt(last) + 1);
+		return sortedNames.subMap(prefix, end);
+	}
+
+	/**
+	 * @return the literal characters a regular expression's matches need to
+	 *         start with. This is conservative, i.e. the empty string is
+	 *         returned for anything but plain characters at the start of the
+	 *         expression.
+	 */
+	static String literalPrefix(String regex)
+	{
+		if (regex.indexOf('|') >= 0) {
+			return "";
+		}
+		int i = 0;
+		while (i < regex.length()
+				&& "\\[](){}.*+?^$".indexOf(regex.charAt(i)) < 0) {
+			i++;
+		}
+		// a quantifier applies to the last literal character
+		if (i < regex.length() && "*?{".indexOf(regex.charAt(i)) >= 0
+				&& i > 0) {
+			i--;
+		}
+		return regex.substring(0, i);
+	}
+
+}
@@ -17,14 +17,18 @@
 
 package org.openmetromaps.stations;
 
+import java.util.regex.Pattern;
+
 public class RegexMatcher implements Matcher
 {
 
 	private String pattern;
+	private Pattern compiledPattern;
 
 	public RegexMatcher(String pattern)
 	{
 		this.pattern = pattern;
+		compiledPattern = Pattern.compile(pattern);
 	}
 
 	public String getPattern()
@@ -32,4 +36,9 @@ public class RegexMatcher implements Matcher
 		return pattern;
 	}
 
+	public Pattern getCompiledPattern()
+	{
+		return compiledPattern;
+	}
+
 }
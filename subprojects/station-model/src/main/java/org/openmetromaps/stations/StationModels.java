@@ -20,7 +20,6 @@ package org.openmetromaps.stations;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
-import java.util.regex.Pattern;
 
 import org.openmetromaps.maps.model.Line;
 import org.openmetromaps.maps.model.ModelData;
@@ -42,11 +41,11 @@ public class StationModels
 		List<Change> changes = new ArrayList<>();
 		List<Exit> exits = new ArrayList<>();
 
-		List<Line> lines = modelData.lines;
+		LineIndex lineIndex = new LineIndex(modelData.lines);
 
 		for (org.openmetromaps.rawstations.Change change : rawModel
 				.getChanges()) {
-			convert(changes, change, lines);
+			convert(changes, change, lineIndex);
 		}
 
 		for (org.openmetromaps.rawstations.Exit exit : rawModel.getExits()) {
@@ -57,7 +56,7 @@ public class StationModels
 	}
 
 	private static void convert(List<Change> changes,
-			org.openmetromaps.rawstations.Change raw, List<Line> lines)
+			org.openmetromaps.rawstations.Change raw, LineIndex lineIndex)
 	{
 		Matcher matcher = null;
 		if (raw.getChangeLine() != null) {
@@ -79,7 +78,7 @@ public class StationModels
 					? raw.getReverseLine() : raw.getLine();
 			String reverseTowards = raw.getReverseTowards() != null
 					? raw.getReverseTowards()
-					: reverse(lines, raw.getLine(), raw.getTowards());
+					: reverse(lineIndex, raw.getLine(), raw.getTowards());
 			logger.debug(String.format(
 					"Determine reverse for line '%s' towards '%s': '%s' towards '%s'",
 					raw.getLine(), raw.getTowards(), reverseLine,
@@ -91,10 +90,10 @@ public class StationModels
 		}
 	}
 
-	private static String reverse(List<Line> lines, String lineName,
+	private static String reverse(LineIndex lineIndex, String lineName,
 			String towards)
 	{
-		Line line = StationUtil.findLine(lines, lineName);
+		Line line = lineIndex.findLine(lineName);
 		if (line == null) {
 			return null;
 		}
@@ -176,54 +175,69 @@ public class StationModels
 
 	public static void addMatches(List<LineWithOrientation> results,
 			Matcher matcher, Line line)
+	{
+		if (matches(matcher, line)) {
+			addOrientations(results, matcher, line);
+		}
+	}
+
+	/**
+	 * @return whether the line's name is matched by the matcher.
+	 */
+	public static boolean matches(Matcher matcher, Line line)
 	{
 		if (matcher instanceof SimpleMatcher) {
 			SimpleMatcher sm = (SimpleMatcher) matcher;
-			if (sm.getName().equals(line.getName())) {
-				results.add(new LineWithOrientation(line, false));
-				if (!line.isCircular()) {
-					results.add(new LineWithOrientation(line, true));
-				}
-			}
+			return sm.getName().equals(line.getName());
 		} else if (matcher instanceof LineTowardsMatcher) {
 			LineTowardsMatcher ltm = (LineTowardsMatcher) matcher;
-			if (ltm.getName().equals(line.getName())) {
-				List<Stop> stops = line.getStops();
-				Stop first = stops.get(0);
-				Stop last = ListUtil.last(stops);
-
-				boolean valid = false;
-				boolean reverse = false;
-				if (last.getStation().getName().equals(ltm.getTowards())) {
-					reverse = false;
-					valid = true;
-				} else if (first.getStation().getName()
-						.equals(ltm.getTowards())) {
-					reverse = true;
-					valid = true;
-				}
-
-				if (valid) {
-					results.add(new LineWithOrientation(line, reverse));
-				} else {
-					logger.warn(String.format(
-							"Unable to find towards value '%s' on line '%s', having '%s' and '%s'",
-							ltm.getTowards(), line.getName(),
-							first.getStation().getName(),
-							last.getStation().getName()));
-				}
-			}
+			return ltm.getName().equals(line.getName());
 		} else if (matcher instanceof RegexMatcher) {
 			RegexMatcher rm = (RegexMatcher) matcher;
-			Pattern pattern = Pattern.compile(rm.getPattern());
-			java.util.regex.Matcher m = pattern.matcher(line.getName());
-			if (m.matches()) {
-				results.add(new LineWithOrientation(line, false));
-				if (!line.isCircular()) {
-					results.add(new LineWithOrientation(line, true));
-				}
+			return rm.getCompiledPattern().matcher(line.getName()).matches();
+		}
+		return false;
+	}
+
+	/*
+	 * Add the orientations of a line matched by the matcher: both directions
+	 * unless the line is circular, or the one direction selected by a towards
+	 * value.
+	 */
+	static void addOrientations(List<LineWithOrientation> results,
+			Matcher matcher, Line line)
+	{
+		if (!(matcher instanceof LineTowardsMatcher)) {
+			results.add(new LineWithOrientation(line, false));
+			if (!line.isCircular()) {
+				results.add(new LineWithOrientation(line, true));
 			}
+			return;
+		}
+
+		LineTowardsMatcher ltm = (LineTowardsMatcher) matcher;
+		List<Stop> stops = line.getStops();
+		Stop first = stops.get(0);
+		Stop last = ListUtil.last(stops);
+
+		boolean valid = false;
+		boolean reverse = false;
+		if (last.getStation().getName().equals(ltm.getTowards())) {
+			reverse = false;
+			valid = true;
+		} else if (first.getStation().getName().equals(ltm.getTowards())) {
+			reverse = true;
+			valid = true;
+		}
 
+		if (valid) {
+			results.add(new LineWithOrientation(line, reverse));
+		} else {
+			logger.warn(String.format(
+					"Unable to find towards value '%s' on line '%s', having '%s' and '%s'",
+					ltm.getTowards(), line.getName(),
+					first.getStation().getName(),
+					last.getStation().getName()));
 		}
 	}
 
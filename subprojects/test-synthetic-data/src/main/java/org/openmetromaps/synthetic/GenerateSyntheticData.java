@@ -0,0 +1,66 @@
+// Copyright 2019 Sebastian Kuerten
+//
+// This file is part of OpenMetroMaps.
+//
+// OpenMetroMaps is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Lesser General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// OpenMetroMaps is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with OpenMetroMaps. If not, see <http://www.gnu.org/licenses/>.
+
+package org.openmetromaps.synthetic;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import de.topobyte.osm4j.utils.FileFormat;
+
+/**
+ * Writes a synthetic GTFS feed and the corresponding OSM data in TBO and PBF
+ * format to a directory.
+ *
+ * Usage: GenerateSyntheticData &lt;output directory&gt; [seed] [scale]
+ */
+public class GenerateSyntheticData
+{
+
+	public static void main(String[] args) throws IOException
+	{
+		if (args.length < 1) {
+			System.out.println(
+					"usage: GenerateSyntheticData <output directory> [seed] [scale]");
+			System.exit(1);
+		}
+
+		Path dir = Paths.get(args[0]);
+		NetworkConfig config = new NetworkConfig();
+		if (args.length > 1) {
+			config.setSeed(Long.parseLong(args[1]));
+		}
+		if (args.length > 2) {
+			config.scale(Integer.parseInt(args[2]));
+		}
+
+		Files.createDirectories(dir);
+
+		SyntheticNetwork network = new SyntheticNetwork(config);
+		System.out.println(String.format("%d stations, %d lines",
+				network.getStations().size(), network.getLines().size()));
+
+		new GtfsFeedGenerator(network).write(dir.resolve("gtfs.zip"));
+
+		OsmDataGenerator osm = new OsmDataGenerator(network);
+		osm.write(dir.resolve("data.tbo"), FileFormat.TBO);
+		osm.write(dir.resolve("data.pbf"), FileFormat.PBF);
+	}
+
+}
@@ -0,0 +1,220 @@
+// Copyright 2019 Sebastian Kuerten
+//
+// This file is part of OpenMetroMaps.
+//
+// OpenMetroMaps is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Lesser General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// OpenMetroMaps is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with OpenMetroMaps. If not, see <http://www.gnu.org/licenses/>.
+
+package org.openmetromaps.synthetic;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.openmetromaps.synthetic.SyntheticNetwork.Line;
+import org.openmetromaps.synthetic.SyntheticNetwork.Station;
+
+/**
+ * Writes a {@link SyntheticNetwork} as a zipped GTFS feed. Each station becomes
+ * a parent station with one platform per direction, each line a route with
+ * trips in both directions for each of its variants.
+ */
+public class GtfsFeedGenerator
+{
+
+	private static final int SECONDS_BETWEEN_STOPS = 120;
+	private static final int SECONDS_BETWEEN_TRIPS = 300;
+	private static final LocalDateTime ENTRY_TIME = LocalDateTime.of(2020, 1,
+			1, 0, 0);
+
+	private SyntheticNetwork network;
+	private boolean writeBoms = false;
+
+	public GtfsFeedGenerator(SyntheticNetwork network)
+	{
+		this.network = network;
+	}
+
+	/**
+	 * Whether to start each file with a UTF-8 byte order mark, as some
+	 * agencies do.
+	 */
+	public void setWriteBoms(boolean writeBoms)
+	{
+		this.writeBoms = writeBoms;
+	}
+
+	public void write(Path path) throws IOException
+	{
+		try (OutputStream os = Files.newOutputStream(path);
+				ZipOutputStream zip = new ZipOutputStream(os)) {
+			Writer writer = new BufferedWriter(
+					new OutputStreamWriter(zip, StandardCharsets.UTF_8),
+					64 * 1024);
+
+			begin(zip, writer, "agency.txt");
+			writer.write("agency_id,agency_name,agency_url,agency_timezone\n");
+			writer.write("1,Synthetic Transit,http://example.com,"
+					+ "Europe/Berlin\n");
+			end(zip, writer);
+
+			begin(zip, writer, "calendar.txt");
+			writer.write("service_id,monday,tuesday,wednesday,thursday,"
+					+ "friday,saturday,sunday,start_date,end_date\n");
+			writer.write("1,1,1,1,1,1,1,1,20200101,20301231\n");
+			end(zip, writer);
+
+			begin(zip, writer, "stops.txt");
+			writeStops(writer);
+			end(zip, writer);
+
+			begin(zip, writer, "routes.txt");
+			writeRoutes(writer);
+			end(zip, writer);
+
+			begin(zip, writer, "trips.txt");
+			writer.write("route_id,service_id,trip_id,direction_id\n");
+			writeTrips(writer, null);
+			end(zip, writer);
+
+			begin(zip, writer, "stop_times.txt");
+			writer.write("trip_id,arrival_time,departure_time,stop_id,"
+					+ "stop_sequence\n");
+			writeTrips(null, writer);
+			end(zip, writer);
+		}
+	}
+
+	private void begin(ZipOutputStream zip, Writer writer, String name)
+			throws IOException
+	{
+		// fixed timestamps so that output only depends on the seed, stored as
+		// local time to be independent of the default time zone
+		ZipEntry entry = new ZipEntry(name);
+		entry.setTimeLocal(ENTRY_TIME);
+		zip.putNextEntry(entry);
+		if (writeBoms) {
+			writer.write('\uFEFF');
+		}
+	}
+
+	private void end(ZipOutputStream zip, Writer writer) throws IOException
+	{
+		writer.flush();
+		zip.closeEntry();
+	}
+
+	private void writeStops(Writer writer) throws IOException
+	{
+		writer.write("stop_id,stop_name,stop_lat,stop_lon,location_type,"
+				+ "parent_station\n");
+		for (Station station : network.getStations()) {
+			String id = stationId(station.getIndex());
+			String lat = String.format(Locale.ROOT, "%.6f",
+					station.getLat());
+			String lon = String.format(Locale.ROOT, "%.6f",
+					station.getLon());
+			writer.write(String.format("%s,\"%s\",%s,%s,1,\n", id,
+					station.getName(), lat, lon));
+			for (int platform = 0; platform < 2; platform++) {
+				writer.write(String.format("%s,\"%s\",%s,%s,0,%s\n",
+						platformId(station.getIndex(), platform),
+						station.getName(), lat, lon, id));
+			}
+		}
+	}
+
+	private void writeRoutes(Writer writer) throws IOException
+	{
+		writer.write("route_id,agency_id,route_short_name,route_long_name,"
+				+ "route_type,route_color\n");
+		for (Line line : network.getLines()) {
+			int[] stations = line.getStations();
+			String from = network.getStations().get(stations[0]).getName();
+			String to = network.getStations()
+					.get(stations[stations.length - 1]).getName();
+			writer.write(String.format("R%d,1,%s,\"%s - %s\",1,%s\n",
+					line.getIndex() + 1, line.getName(), from, to,
+					line.getColor()));
+		}
+	}
+
+	/*
+	 * Trips and stop times are enumerated the same way, write either of them
+	 * depending on which writer is given.
+	 */
+	private void writeTrips(Writer trips, Writer stopTimes) throws IOException
+	{
+		int tripId = 0;
+		for (Line line : network.getLines()) {
+			List<int[]> variants = line.getVariants();
+			for (int v = 0; v < variants.size(); v++) {
+				int[] stations = variants.get(v);
+				int numTrips = line.getVariantTrips().get(v);
+				for (int t = 0; t < numTrips; t++) {
+					tripId++;
+					int direction = t % 2;
+					if (trips != null) {
+						trips.write(String.format("R%d,1,T%d,%d\n",
+								line.getIndex() + 1, tripId, direction));
+					}
+					if (stopTimes != null) {
+						int start = 5 * 3600 + t / 2 * SECONDS_BETWEEN_TRIPS;
+						writeStopTimes(stopTimes, tripId, stations, direction,
+								start);
+					}
+				}
+			}
+		}
+	}
+
+	private void writeStopTimes(Writer writer, int tripId, int[] stations,
+			int direction, int start) throws IOException
+	{
+		int n = stations.length;
+		for (int i = 0; i < n; i++) {
+			int station = direction == 0 ? stations[i] : stations[n - 1 - i];
+			String time = time(start + i * SECONDS_BETWEEN_STOPS);
+			// sequence numbers do not need to be consecutive
+			writer.write(String.format("T%d,%s,%s,%s,%d\n", tripId, time, time,
+					platformId(station, direction), (i + 1) * 10));
+		}
+	}
+
+	private static String stationId(int station)
+	{
+		return "S" + (station + 1);
+	}
+
+	private static String platformId(int station, int platform)
+	{
+		return String.format("S%d:%d", station + 1, platform + 1);
+	}
+
+	private static String time(int seconds)
+	{
+		return String.format("%02d:%02d:%02d", seconds / 3600,
+				seconds / 60 % 60, seconds % 60);
+	}
+
+}
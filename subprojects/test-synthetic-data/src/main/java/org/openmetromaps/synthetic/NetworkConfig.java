@@ -0,0 +1,159 @@
+// Copyright 2019 Sebastian Kuerten
+//
+// This file is part of OpenMetroMaps.
+//
+// OpenMetroMaps is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Lesser General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// OpenMetroMaps is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with OpenMetroMaps. If not, see <http://www.gnu.org/licenses/>.
+
+package org.openmetromaps.synthetic;
+
+/**
+ * Parameters for generating a {@link SyntheticNetwork}. The defaults describe
+ * a network of the size of a mid-sized city's metro system.
+ */
+public class NetworkConfig
+{
+
+	private long seed = 1;
+
+	private int numLines = 20;
+	private int numTrunks = 4;
+	private int trunkLength = 10;
+	private int stationsPerLine = 25;
+	private int variantsPerLine = 4;
+	private int tripsPerLine = 100;
+
+	private double centerLat = 52.52;
+	private double centerLon = 13.40;
+	private double stationSpacing = 800;
+
+	public long getSeed()
+	{
+		return seed;
+	}
+
+	public void setSeed(long seed)
+	{
+		this.seed = seed;
+	}
+
+	public int getNumLines()
+	{
+		return numLines;
+	}
+
+	public void setNumLines(int numLines)
+	{
+		this.numLines = numLines;
+	}
+
+	/**
+	 * @return the number of trunk segments that are shared by several lines.
+	 */
+	public int getNumTrunks()
+	{
+		return numTrunks;
+	}
+
+	public void setNumTrunks(int numTrunks)
+	{
+		this.numTrunks = numTrunks;
+	}
+
+	/**
+	 * @return the number of stations on each trunk segment.
+	 */
+	public int getTrunkLength()
+	{
+		return trunkLength;
+	}
+
+	public void setTrunkLength(int trunkLength)
+	{
+		this.trunkLength = trunkLength;
+	}
+
+	public int getStationsPerLine()
+	{
+		return stationsPerLine;
+	}
+
+	public void setStationsPerLine(int stationsPerLine)
+	{
+		this.stationsPerLine = stationsPerLine;
+	}
+
+	/**
+	 * @return the number of distinct stop sequences per line and direction,
+	 *         i.e. the full line and short-turning variants.
+	 */
+	public int getVariantsPerLine()
+	{
+		return variantsPerLine;
+	}
+
+	public void setVariantsPerLine(int variantsPerLine)
+	{
+		this.variantsPerLine = variantsPerLine;
+	}
+
+	public int getTripsPerLine()
+	{
+		return tripsPerLine;
+	}
+
+	public void setTripsPerLine(int tripsPerLine)
+	{
+		this.tripsPerLine = tripsPerLine;
+	}
+
+	public double getCenterLat()
+	{
+		return centerLat;
+	}
+
+	public double getCenterLon()
+	{
+		return centerLon;
+	}
+
+	public void setCenter(double lat, double lon)
+	{
+		this.centerLat = lat;
+		this.centerLon = lon;
+	}
+
+	/**
+	 * @return the approximate distance between adjacent stations in meters.
+	 */
+	public double getStationSpacing()
+	{
+		return stationSpacing;
+	}
+
+	public void setStationSpacing(double stationSpacing)
+	{
+		this.stationSpacing = stationSpacing;
+	}
+
+	/**
+	 * Multiply the number of lines, trunks and trips by the specified factor.
+	 */
+	public void scale(int factor)
+	{
+		numLines *= factor;
+		numTrunks *= factor;
+		tripsPerLine *= factor;
+	}
+
+}
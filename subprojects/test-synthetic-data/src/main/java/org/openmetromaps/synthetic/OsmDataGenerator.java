@@ -0,0 +1,263 @@
+// Copyright 2019 Sebastian Kuerten
+//
+// This file is part of OpenMetroMaps.
+//
+// OpenMetroMaps is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Lesser General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// OpenMetroMaps is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with OpenMetroMaps. If not, see <http://www.gnu.org/licenses/>.
+
+package org.openmetromaps.synthetic;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.openmetromaps.synthetic.SyntheticNetwork.Line;
+import org.openmetromaps.synthetic.SyntheticNetwork.Station;
+
+import com.slimjars.dist.gnu.trove.list.array.TLongArrayList;
+
+import de.topobyte.osm4j.core.access.OsmOutputStream;
+import de.topobyte.osm4j.core.model.iface.EntityType;
+import de.topobyte.osm4j.core.model.iface.OsmTag;
+import de.topobyte.osm4j.core.model.impl.Node;
+import de.topobyte.osm4j.core.model.impl.Relation;
+import de.topobyte.osm4j.core.model.impl.RelationMember;
+import de.topobyte.osm4j.core.model.impl.Tag;
+import de.topobyte.osm4j.core.model.impl.Way;
+import de.topobyte.osm4j.utils.FileFormat;
+import de.topobyte.osm4j.utils.OsmIoUtils;
+import de.topobyte.osm4j.utils.OsmOutputConfig;
+
+/**
+ * Writes a {@link SyntheticNetwork} as OSM data in any format supported by
+ * osm4j, e.g. TBO or PBF. Stations become nodes tagged 'railway=station', the
+ * tracks between them ways shared by all lines running there, and each line
+ * one route relation per direction plus a route master relation. Unrelated
+ * nodes and ways are added as noise, so that filters have something to drop.
+ * Entities are written sorted by type and id.
+ */
+public class OsmDataGenerator
+{
+
+	private SyntheticNetwork network;
+	private Random random;
+
+	private int nodesPerSegment = 3;
+	private int noiseWaysPerStation = 20;
+	private int noiseNodesPerWay = 5;
+
+	private List<Node> nodes = new ArrayList<>();
+	private List<Way> ways = new ArrayList<>();
+	private List<Relation> relations = new ArrayList<>();
+
+	private long nextNodeId = 1;
+	private long nextWayId = 1;
+	private long nextRelationId = 1;
+
+	public OsmDataGenerator(SyntheticNetwork network)
+	{
+		this.network = network;
+		random = new Random(network.getConfig().getSeed());
+	}
+
+	/**
+	 * @param nodesPerSegment
+	 *            the number of nodes between two stations along a track.
+	 */
+	public void setNodesPerSegment(int nodesPerSegment)
+	{
+		this.nodesPerSegment = nodesPerSegment;
+	}
+
+	/**
+	 * @param noiseWaysPerStation
+	 *            the number of unrelated ways per station.
+	 */
+	public void setNoiseWaysPerStation(int noiseWaysPerStation)
+	{
+		this.noiseWaysPerStation = noiseWaysPerStation;
+	}
+
+	public void setNoiseNodesPerWay(int noiseNodesPerWay)
+	{
+		this.noiseNodesPerWay = noiseNodesPerWay;
+	}
+
+	public void write(Path path, FileFormat format) throws IOException
+	{
+		if (nodes.isEmpty()) {
+			generate();
+		}
+
+		OutputStream os = new BufferedOutputStream(
+				Files.newOutputStream(path));
+		OsmOutputStream output = OsmIoUtils.setupOsmOutput(os,
+				new OsmOutputConfig(format, false));
+		for (Node node : nodes) {
+			output.write(node);
+		}
+		for (Way way : ways) {
+			output.write(way);
+		}
+		for (Relation relation : relations) {
+			output.write(relation);
+		}
+		output.complete();
+		os.close();
+	}
+
+	private void generate()
+	{
+		List<Station> stations = network.getStations();
+
+		long[] stationNodes = new long[stations.size()];
+		for (Station station : stations) {
+			stationNodes[station.getIndex()] = createNode(station.getLat(),
+					station.getLon(), tags("railway", "station",
+							"public_transport", "station", "name",
+							station.getName()));
+		}
+
+		// one track way per pair of adjacent stations, shared by lines
+		Map<Long, Long> segmentToWay = new HashMap<>();
+		for (Line line : network.getLines()) {
+			int[] lineStations = line.getStations();
+			for (int i = 1; i < lineStations.length; i++) {
+				int a = Math.min(lineStations[i - 1], lineStations[i]);
+				int b = Math.max(lineStations[i - 1], lineStations[i]);
+				long key = ((long) a << 32) | b;
+				if (!segmentToWay.containsKey(key)) {
+					segmentToWay.put(key, createTrack(stations.get(a),
+							stations.get(b), stationNodes[a], stationNodes[b]));
+				}
+			}
+		}
+
+		for (Station station : stations) {
+			for (int i = 0; i < noiseWaysPerStation; i++) {
+				createNoiseWay(station);
+			}
+		}
+
+		for (Line line : network.getLines()) {
+			createRoutes(line, stationNodes, segmentToWay);
+		}
+	}
+
+	private long createTrack(Station a, Station b, long nodeA, long nodeB)
+	{
+		TLongArrayList wayNodes = new TLongArrayList();
+		wayNodes.add(nodeA);
+		for (int i = 1; i <= nodesPerSegment; i++) {
+			double f = i / (double) (nodesPerSegment + 1);
+			double lat = a.getLat() + f * (b.getLat() - a.getLat());
+			double lon = a.getLon() + f * (b.getLon() - a.getLon());
+			wayNodes.add(createNode(lat, lon, new ArrayList<>()));
+		}
+		wayNodes.add(nodeB);
+		return createWay(wayNodes, tags("railway", "subway"));
+	}
+
+	private void createNoiseWay(Station station)
+	{
+		double spacing = network.getConfig().getStationSpacing() / 111320;
+		double lat = station.getLat() + (random.nextDouble() - 0.5) * spacing;
+		double lon = station.getLon() + (random.nextDouble() - 0.5) * spacing;
+
+		TLongArrayList wayNodes = new TLongArrayList();
+		for (int i = 0; i < noiseNodesPerWay; i++) {
+			List<Tag> tags = new ArrayList<>();
+			if (random.nextInt(10) == 0) {
+				tags = tags("amenity", "bench");
+			}
+			wayNodes.add(createNode(lat, lon, tags));
+			lat += (random.nextDouble() - 0.5) * spacing / 10;
+			lon += (random.nextDouble() - 0.5) * spacing / 10;
+		}
+		createWay(wayNodes, tags("highway", "residential"));
+	}
+
+	private void createRoutes(Line line, long[] stationNodes,
+			Map<Long, Long> segmentToWay)
+	{
+		String route = line.getIndex() % 3 == 2 ? "light_rail" : "subway";
+		int[] stations = line.getStations();
+		int n = stations.length;
+
+		List<RelationMember> routes = new ArrayList<>();
+		for (int direction = 0; direction < 2; direction++) {
+			List<RelationMember> members = new ArrayList<>();
+			for (int i = 0; i < n; i++) {
+				int station = direction == 0 ? stations[i]
+						: stations[n - 1 - i];
+				members.add(new RelationMember(stationNodes[station],
+						EntityType.Node, "stop"));
+			}
+			for (int i = 1; i < n; i++) {
+				int a = direction == 0 ? stations[i - 1] : stations[n - i];
+				int b = direction == 0 ? stations[i] : stations[n - 1 - i];
+				long key = ((long) Math.min(a, b) << 32) | Math.max(a, b);
+				members.add(new RelationMember(segmentToWay.get(key),
+						EntityType.Way, ""));
+			}
+			long id = createRelation(members,
+					tags("type", "route", "route", route, "ref",
+							line.getName(), "name",
+							String.format("%s %d", line.getName(),
+									direction + 1),
+							"colour", "#" + line.getColor()));
+			routes.add(new RelationMember(id, EntityType.Relation, ""));
+		}
+		createRelation(routes, tags("type", "route_master", "route_master",
+				route, "ref", line.getName()));
+	}
+
+	private long createNode(double lat, double lon, List<Tag> tags)
+	{
+		long id = nextNodeId++;
+		nodes.add(new Node(id, lon, lat, tags));
+		return id;
+	}
+
+	private long createWay(TLongArrayList wayNodes, List<Tag> tags)
+	{
+		long id = nextWayId++;
+		ways.add(new Way(id, wayNodes, tags));
+		return id;
+	}
+
+	private long createRelation(List<RelationMember> members,
+			List<? extends OsmTag> tags)
+	{
+		long id = nextRelationId++;
+		relations.add(new Relation(id, members, tags));
+		return id;
+	}
+
+	private static List<Tag> tags(String... keysAndValues)
+	{
+		List<Tag> tags = new ArrayList<>();
+		for (int i = 0; i + 1 < keysAndValues.length; i += 2) {
+			tags.add(new Tag(keysAndValues[i], keysAndValues[i + 1]));
+		}
+		return tags;
+	}
+
+}
@@ -0,0 +1,302 @@
+// Copyright 2019 Sebastian Kuerten
+//
+// This file is part of OpenMetroMaps.
+//
+// OpenMetroMaps is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Lesser General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// OpenMetroMaps is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with OpenMetroMaps. If not, see <http://www.gnu.org/licenses/>.
+
+package org.openmetromaps.synthetic;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A randomly generated, yet deterministic transit network. Lines run through
+ * a shared trunk segment and continue on branches of their own at both ends.
+ * Trunks are assigned to lines with a skewed distribution so that some trunks
+ * carry many lines. Each line has a number of variants, the full line and
+ * short-turning parts of it, with skewed numbers of trips.
+ */
+public class SyntheticNetwork
+{
+
+	private static final double METERS_PER_DEGREE = 111320;
+
+	public static class Station
+	{
+
+		private int index;
+		private String name;
+		private double lat;
+		private double lon;
+
+		Station(int index, String name, double lat, double lon)
+		{
+			this.index = index;
+			this.name = name;
+			this.lat = lat;
+			this.lon = lon;
+		}
+
+		public int getIndex()
+		{
+			return index;
+		}
+
+		public String getName()
+		{
+			return name;
+		}
+
+		public double getLat()
+		{
+			return lat;
+		}
+
+		public double getLon()
+		{
+			return lon;
+		}
+
+	}
+
+	public static class Line
+	{
+
+		private int index;
+		private String name;
+		private String color;
+		private int[] stations;
+		private List<int[]> variants = new ArrayList<>();
+		private List<Integer> variantTrips = new ArrayList<>();
+
+		Line(int index, String name, String color, int[] stations)
+		{
+			this.index = index;
+			this.name = name;
+			this.color = color;
+			this.stations = stations;
+		}
+
+		public int getIndex()
+		{
+			return index;
+		}
+
+		public String getName()
+		{
+			return name;
+		}
+
+		/**
+		 * @return the color as a six digit hex string without leading '#'.
+		 */
+		public String getColor()
+		{
+			return color;
+		}
+
+		/**
+		 * @return the indices of the stations of the full line.
+		 */
+		public int[] getStations()
+		{
+			return stations;
+		}
+
+		/**
+		 * @return the stop sequences of this line, the first one is the full
+		 *         line.
+		 */
+		public List<int[]> getVariants()
+		{
+			return variants;
+		}
+
+		/**
+		 * @return the number of trips for each variant and direction.
+		 */
+		public List<Integer> getVariantTrips()
+		{
+			return variantTrips;
+		}
+
+	}
+
+	private NetworkConfig config;
+	private Random random;
+
+	private List<Station> stations = new ArrayList<>();
+	private List<Line> lines = new ArrayList<>();
+
+	public SyntheticNetwork(NetworkConfig config)
+	{
+		this.config = config;
+		random = new Random(config.getSeed());
+		generate();
+	}
+
+	public NetworkConfig getConfig()
+	{
+		return config;
+	}
+
+	public List<Station> getStations()
+	{
+		return stations;
+	}
+
+	public List<Line> getLines()
+	{
+		return lines;
+	}
+
+	private void generate()
+	{
+		int trunkLength = Math.max(2, Math.min(config.getTrunkLength(),
+				config.getStationsPerLine()));
+
+		List<int[]> trunks = new ArrayList<>();
+		for (int i = 0; i < config.getNumTrunks(); i++) {
+			double angle = random.nextDouble() * Math.PI;
+			double offset = (random.nextDouble() - 0.5) * trunkLength;
+			double startX = -Math.sin(angle) * offset
+					- Math.cos(angle) * trunkLength / 2.0;
+			double startY = Math.cos(angle) * offset
+					- Math.sin(angle) * trunkLength / 2.0;
+			trunks.add(walk(startX, startY, angle, trunkLength, 0.1));
+		}
+
+		for (int i = 0; i < config.getNumLines(); i++) {
+			// square of a uniform value, lower trunks get more lines
+			double r = random.nextDouble();
+			int[] trunk = trunks.get((int) (r * r * trunks.size()));
+
+			int rest = Math.max(0, config.getStationsPerLine() - trunk.length);
+			int before = rest == 0 ? 0 : random.nextInt(rest + 1);
+			int after = rest - before;
+
+			int[] branchBefore = branch(trunk[0], trunk[1], before);
+			int[] branchAfter = branch(trunk[trunk.length - 1],
+					trunk[trunk.length - 2], after);
+
+			int[] lineStations = new int[trunk.length + rest];
+			int k = 0;
+			for (int j = branchBefore.length - 1; j >= 0; j--) {
+				lineStations[k++] = branchBefore[j];
+			}
+			for (int station : trunk) {
+				lineStations[k++] = station;
+			}
+			for (int station : branchAfter) {
+				lineStations[k++] = station;
+			}
+
+			String color = String.format("%06X", random.nextInt(0x1000000));
+			Line line = new Line(i, "L" + (i + 1), color, lineStations);
+			createVariants(line);
+			lines.add(line);
+		}
+	}
+
+	private void createVariants(Line line)
+	{
+		int[] full = line.getStations();
+		line.variants.add(full);
+		for (int i = 1; i < config.getVariantsPerLine() && full.length > 2; i++) {
+			int length = 2 + random.nextInt(full.length - 2);
+			int start = random.nextInt(full.length - length + 1);
+			int[] variant = new int[length];
+			System.arraycopy(full, start, variant, 0, length);
+			line.variants.add(variant);
+		}
+
+		// weights 1, 1/2, 1/3, ... for the variants
+		double sum = 0;
+		for (int i = 0; i < line.variants.size(); i++) {
+			sum += 1.0 / (i + 1);
+		}
+		int remaining = config.getTripsPerLine();
+		for (int i = 0; i < line.variants.size(); i++) {
+			int trips = (int) Math.round(
+					config.getTripsPerLine() / (sum * (i + 1)));
+			if (i == line.variants.size() - 1) {
+				trips = remaining;
+			}
+			trips = Math.max(0, Math.min(trips, remaining));
+			line.variantTrips.add(trips);
+			remaining -= trips;
+		}
+	}
+
+	/*
+	 * Continue away from station 'from' in the direction given by the way from
+	 * 'previous' to 'from'.
+	 */
+	private int[] branch(int from, int previous, int length)
+	{
+		if (length == 0) {
+			return new int[0];
+		}
+		double[] p = xy(stations.get(from));
+		double[] q = xy(stations.get(previous));
+		double angle = Math.atan2(p[1] - q[1], p[0] - q[0]);
+		angle += (random.nextDouble() - 0.5) * Math.PI / 2;
+		double x = p[0] + Math.cos(angle);
+		double y = p[1] + Math.sin(angle);
+		return walk(x, y, angle, length, 0.3);
+	}
+
+	/*
+	 * Create 'length' new stations on a random walk starting at (x, y) in units
+	 * of the station spacing, heading into the specified direction.
+	 */
+	private int[] walk(double x, double y, double angle, int length,
+			double curviness)
+	{
+		int[] result = new int[length];
+		for (int i = 0; i < length; i++) {
+			result[i] = createStation(x, y);
+			angle += (random.nextDouble() - 0.5) * curviness;
+			double step = 0.7 + random.nextDouble() * 0.6;
+			x += Math.cos(angle) * step;
+			y += Math.sin(angle) * step;
+		}
+		return result;
+	}
+
+	private int createStation(double x, double y)
+	{
+		double spacing = config.getStationSpacing();
+		double lat = config.getCenterLat() + y * spacing / METERS_PER_DEGREE;
+		double lon = config.getCenterLon() + x * spacing / (METERS_PER_DEGREE
+				* Math.cos(Math.toRadians(config.getCenterLat())));
+		int index = stations.size();
+		stations.add(new Station(index, "Station " + (index + 1), lat, lon));
+		return index;
+	}
+
+	private double[] xy(Station station)
+	{
+		double spacing = config.getStationSpacing();
+		double y = (station.getLat() - config.getCenterLat())
+				* METERS_PER_DEGREE / spacing;
+		double x = (station.getLon() - config.getCenterLon())
+				* (METERS_PER_DEGREE
+						* Math.cos(Math.toRadians(config.getCenterLat())))
+				/ spacing;
+		return new double[] { x, y };
+	}
+
+}